@@ -0,0 +1,34 @@
+package synapse.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors for blocking work that must not run on servlet threads.
+ */
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * Bounded pool for blocking page fetches (Jsoup) done before AI
+     * classification.
+     *
+     * @param threads   maximum concurrent fetches
+     * @param queueSize pending fetches before callers are rejected
+     * @return the extraction executor
+     */
+    @Bean
+    public ThreadPoolTaskExecutor extractionExecutor(
+            @Value("${project.extraction.threads:16}") int threads,
+            @Value("${project.extraction.queueSize:500}") int queueSize) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueSize);
+        executor.setThreadNamePrefix("extraction-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        return executor;
+    }
+}
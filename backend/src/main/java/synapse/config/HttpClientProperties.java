@@ -0,0 +1,108 @@
+package synapse.config;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Settings of the shared outbound HTTP client ({@code project.http}).
+ *
+ * Connections are pooled for the whole application and kept alive for
+ * {@code keepAliveMs}, so repeated calls to the same host skip the DNS,
+ * TCP and TLS handshakes. Timeouts and the response size cap are set per
+ * destination (e.g. {@code llm}, {@code extraction}); destinations without
+ * an entry use the {@link Destination} defaults.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "project.http")
+public class HttpClientProperties {
+
+    private int maxIdleConnections = 32;
+    private long keepAliveMs = 300_000;
+    private boolean http2 = true;
+    private Map<String, Destination> destinations = new HashMap<>();
+
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public void setMaxIdleConnections(int maxIdleConnections) {
+        this.maxIdleConnections = maxIdleConnections;
+    }
+
+    public long getKeepAliveMs() {
+        return keepAliveMs;
+    }
+
+    public void setKeepAliveMs(long keepAliveMs) {
+        this.keepAliveMs = keepAliveMs;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+
+    public Map<String, Destination> getDestinations() {
+        return destinations;
+    }
+
+    public void setDestinations(Map<String, Destination> destinations) {
+        this.destinations = destinations;
+    }
+
+    /**
+     * @return the destination's settings, or the defaults
+     */
+    public Destination destination(String name) {
+        return destinations.getOrDefault(name, new Destination());
+    }
+
+    /**
+     * Timeouts and size cap of one kind of outbound call. A timeout of 0
+     * means none.
+     */
+    public static class Destination {
+        private long connectTimeoutMs = 10_000;
+        private long readTimeoutMs = 10_000;
+        private long callTimeoutMs = 0;
+        private long maxResponseBytes = 2 * 1024 * 1024;
+
+        public long getConnectTimeoutMs() {
+            return connectTimeoutMs;
+        }
+
+        public void setConnectTimeoutMs(long connectTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+        }
+
+        public long getReadTimeoutMs() {
+            return readTimeoutMs;
+        }
+
+        public void setReadTimeoutMs(long readTimeoutMs) {
+            this.readTimeoutMs = readTimeoutMs;
+        }
+
+        public long getCallTimeoutMs() {
+            return callTimeoutMs;
+        }
+
+        public void setCallTimeoutMs(long callTimeoutMs) {
+            this.callTimeoutMs = callTimeoutMs;
+        }
+
+        public long getMaxResponseBytes() {
+            return maxResponseBytes;
+        }
+
+        public void setMaxResponseBytes(long maxResponseBytes) {
+            this.maxResponseBytes = maxResponseBytes;
+        }
+    }
+}
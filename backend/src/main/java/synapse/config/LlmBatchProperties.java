@@ -0,0 +1,42 @@
+package synapse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Batch classification ({@code project.llama.batch}): contents are
+ * compacted to {@code itemTokens} each and packed into prompts of at most
+ * {@code maxItems} contents and {@code promptTokens} tokens.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "project.llama.batch")
+public class LlmBatchProperties {
+
+    private int maxItems = 8;
+    private int promptTokens = 3000;
+    private int itemTokens = 500;
+
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    public void setMaxItems(int maxItems) {
+        this.maxItems = maxItems;
+    }
+
+    public int getPromptTokens() {
+        return promptTokens;
+    }
+
+    public void setPromptTokens(int promptTokens) {
+        this.promptTokens = promptTokens;
+    }
+
+    public int getItemTokens() {
+        return itemTokens;
+    }
+
+    public void setItemTokens(int itemTokens) {
+        this.itemTokens = itemTokens;
+    }
+}
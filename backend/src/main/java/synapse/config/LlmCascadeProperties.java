@@ -0,0 +1,80 @@
+package synapse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Classification cascade ({@code project.llama.cascade}): single
+ * classifications try a small model first, on the primary provider's
+ * endpoint with its own rate limit, and escalate to the main model when the
+ * content is long or the answer is not good enough. An empty {@code model}
+ * disables the cascade.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "project.llama.cascade")
+public class LlmCascadeProperties {
+
+    private String model = "";
+    private int maxTokens = 2000;
+    private int requestsPerMinute = 30;
+    private int tokensPerMinute = 6000;
+    private int maxInputTokens = 1200;
+    private int minTags = 3;
+    private int minDetailedContent = 500;
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public int getMaxTokens() {
+        return maxTokens;
+    }
+
+    public void setMaxTokens(int maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+
+    public int getRequestsPerMinute() {
+        return requestsPerMinute;
+    }
+
+    public void setRequestsPerMinute(int requestsPerMinute) {
+        this.requestsPerMinute = requestsPerMinute;
+    }
+
+    public int getTokensPerMinute() {
+        return tokensPerMinute;
+    }
+
+    public void setTokensPerMinute(int tokensPerMinute) {
+        this.tokensPerMinute = tokensPerMinute;
+    }
+
+    public int getMaxInputTokens() {
+        return maxInputTokens;
+    }
+
+    public void setMaxInputTokens(int maxInputTokens) {
+        this.maxInputTokens = maxInputTokens;
+    }
+
+    public int getMinTags() {
+        return minTags;
+    }
+
+    public void setMinTags(int minTags) {
+        this.minTags = minTags;
+    }
+
+    public int getMinDetailedContent() {
+        return minDetailedContent;
+    }
+
+    public void setMinDetailedContent(int minDetailedContent) {
+        this.minDetailedContent = minDetailedContent;
+    }
+}
@@ -0,0 +1,61 @@
+package synapse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Circuit breaker of each LLM provider ({@code project.llama.circuitBreaker}):
+ * over the last {@code windowSize} calls, a failure rate or a rate of calls
+ * slower than {@code slowCallMs} above the thresholds opens the breaker for
+ * {@code openMs}.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "project.llama.circuit-breaker")
+public class LlmCircuitBreakerProperties {
+
+    private int windowSize = 20;
+    private double failureRate = 0.5;
+    private double slowCallRate = 0.8;
+    private long slowCallMs = 30000;
+    private long openMs = 30000;
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    public double getSlowCallRate() {
+        return slowCallRate;
+    }
+
+    public void setSlowCallRate(double slowCallRate) {
+        this.slowCallRate = slowCallRate;
+    }
+
+    public long getSlowCallMs() {
+        return slowCallMs;
+    }
+
+    public void setSlowCallMs(long slowCallMs) {
+        this.slowCallMs = slowCallMs;
+    }
+
+    public long getOpenMs() {
+        return openMs;
+    }
+
+    public void setOpenMs(long openMs) {
+        this.openMs = openMs;
+    }
+}
@@ -0,0 +1,84 @@
+package synapse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * How the LLM client sends calls ({@code project.llama}): at most
+ * {@code maxInFlight} run at once and {@code maxQueued} wait for them, and
+ * {@code details.lazy} and {@code combined.enabled} choose what a
+ * classification asks the model for.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "project.llama")
+public class LlmClientProperties {
+
+    private int maxInFlight = 32;
+    private int maxQueued = 256;
+    private Details details = new Details();
+    private Combined combined = new Combined();
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    public Details getDetails() {
+        return details;
+    }
+
+    public void setDetails(Details details) {
+        this.details = details;
+    }
+
+    public Combined getCombined() {
+        return combined;
+    }
+
+    public void setCombined(Combined combined) {
+        this.combined = combined;
+    }
+
+    /**
+     * Two-phase mode: classifications leave out detailedContent, which is
+     * generated when a saved note is opened.
+     */
+    public static class Details {
+        private boolean lazy = true;
+
+        public boolean isLazy() {
+            return lazy;
+        }
+
+        public void setLazy(boolean lazy) {
+            this.lazy = lazy;
+        }
+    }
+
+    /**
+     * Interactive and background classifications also fact-check the content
+     * in the same call.
+     */
+    public static class Combined {
+        private boolean enabled;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+}
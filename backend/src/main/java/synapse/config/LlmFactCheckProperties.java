@@ -0,0 +1,33 @@
+package synapse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Fact-checking ({@code project.llama.factCheck}): sentences are verified in
+ * concurrent calls of up to {@code chunkTokens}; content longer than
+ * {@code maxChunks} calls is compacted first.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "project.llama.fact-check")
+public class LlmFactCheckProperties {
+
+    private int chunkTokens = 800;
+    private int maxChunks = 6;
+
+    public int getChunkTokens() {
+        return chunkTokens;
+    }
+
+    public void setChunkTokens(int chunkTokens) {
+        this.chunkTokens = chunkTokens;
+    }
+
+    public int getMaxChunks() {
+        return maxChunks;
+    }
+
+    public void setMaxChunks(int maxChunks) {
+        this.maxChunks = maxChunks;
+    }
+}
@@ -0,0 +1,43 @@
+package synapse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Hedged LLM requests ({@code project.llama.hedge}): with more than one
+ * provider, a call still unanswered past the provider's p95 latency
+ * ({@code delayMs} until that is known, never less than {@code minDelayMs})
+ * is also sent to the next provider and the first answer wins.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "project.llama.hedge")
+public class LlmHedgeProperties {
+
+    private boolean enabled = true;
+    private long delayMs = 10000;
+    private long minDelayMs = 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getDelayMs() {
+        return delayMs;
+    }
+
+    public void setDelayMs(long delayMs) {
+        this.delayMs = delayMs;
+    }
+
+    public long getMinDelayMs() {
+        return minDelayMs;
+    }
+
+    public void setMinDelayMs(long minDelayMs) {
+        this.minDelayMs = minDelayMs;
+    }
+}
@@ -0,0 +1,137 @@
+package synapse.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * OpenAI-compatible chat completion endpoints the LLM client may use.
+ *
+ * The primary provider comes from {@code project.llama.apiUrl},
+ * {@code apiKey} and {@code model}; {@code project.llama.providers} adds
+ * further endpoints the client can route to when they are faster or
+ * healthier.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "project.llama")
+public class LlmProviderProperties {
+
+    private String apiUrl;
+    private String apiKey;
+    private String model;
+    private boolean jsonMode = true;
+    private List<Provider> providers = new ArrayList<>();
+
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
+    public void setApiUrl(String apiUrl) {
+        this.apiUrl = apiUrl;
+    }
+
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    public void setApiKey(String apiKey) {
+        this.apiKey = apiKey;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public boolean isJsonMode() {
+        return jsonMode;
+    }
+
+    public void setJsonMode(boolean jsonMode) {
+        this.jsonMode = jsonMode;
+    }
+
+    public List<Provider> getProviders() {
+        return providers;
+    }
+
+    public void setProviders(List<Provider> providers) {
+        this.providers = providers;
+    }
+
+    /**
+     * An additional endpoint. The rate limits default to the global
+     * {@code project.llama.rateLimit.*} values and {@code jsonMode} to the
+     * primary provider's.
+     */
+    public static class Provider {
+        private String name;
+        private String apiUrl;
+        private String apiKey;
+        private String model;
+        private Integer requestsPerMinute;
+        private Integer tokensPerMinute;
+        private Boolean jsonMode;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getApiUrl() {
+            return apiUrl;
+        }
+
+        public void setApiUrl(String apiUrl) {
+            this.apiUrl = apiUrl;
+        }
+
+        public String getApiKey() {
+            return apiKey;
+        }
+
+        public void setApiKey(String apiKey) {
+            this.apiKey = apiKey;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public void setModel(String model) {
+            this.model = model;
+        }
+
+        public Integer getRequestsPerMinute() {
+            return requestsPerMinute;
+        }
+
+        public void setRequestsPerMinute(Integer requestsPerMinute) {
+            this.requestsPerMinute = requestsPerMinute;
+        }
+
+        public Integer getTokensPerMinute() {
+            return tokensPerMinute;
+        }
+
+        public void setTokensPerMinute(Integer tokensPerMinute) {
+            this.tokensPerMinute = tokensPerMinute;
+        }
+
+        public Boolean getJsonMode() {
+            return jsonMode;
+        }
+
+        public void setJsonMode(Boolean jsonMode) {
+            this.jsonMode = jsonMode;
+        }
+    }
+}
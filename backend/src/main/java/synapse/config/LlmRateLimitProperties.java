@@ -0,0 +1,52 @@
+package synapse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Client-side rate limit of each LLM provider
+ * ({@code project.llama.rateLimit}): calls wait up to {@code maxWaitMs} for
+ * request and token budget, and a 429 answer is retried {@code retries}
+ * times. Additional providers may override the per-minute limits.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "project.llama.rate-limit")
+public class LlmRateLimitProperties {
+
+    private int requestsPerMinute = 30;
+    private int tokensPerMinute = 12000;
+    private long maxWaitMs = 20000;
+    private int retries = 2;
+
+    public int getRequestsPerMinute() {
+        return requestsPerMinute;
+    }
+
+    public void setRequestsPerMinute(int requestsPerMinute) {
+        this.requestsPerMinute = requestsPerMinute;
+    }
+
+    public int getTokensPerMinute() {
+        return tokensPerMinute;
+    }
+
+    public void setTokensPerMinute(int tokensPerMinute) {
+        this.tokensPerMinute = tokensPerMinute;
+    }
+
+    public long getMaxWaitMs() {
+        return maxWaitMs;
+    }
+
+    public void setMaxWaitMs(long maxWaitMs) {
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+}
@@ -0,0 +1,61 @@
+package synapse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Priority scheduling of LLM calls ({@code project.llama.scheduler}).
+ * Interactive calls may use all {@code maxConcurrent} slots, batch and
+ * background calls only their share; a call waiting {@code agingMs} or more
+ * goes first whatever its class.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "project.llama.scheduler")
+public class LlmSchedulerProperties {
+
+    private int maxConcurrent = 16;
+    private double batchShare = 0.5;
+    private double backgroundShare = 0.25;
+    private int maxQueued = 256;
+    private long agingMs = 15_000;
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public double getBatchShare() {
+        return batchShare;
+    }
+
+    public void setBatchShare(double batchShare) {
+        this.batchShare = batchShare;
+    }
+
+    public double getBackgroundShare() {
+        return backgroundShare;
+    }
+
+    public void setBackgroundShare(double backgroundShare) {
+        this.backgroundShare = backgroundShare;
+    }
+
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    public void setMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+    }
+
+    public long getAgingMs() {
+        return agingMs;
+    }
+
+    public void setAgingMs(long agingMs) {
+        this.agingMs = agingMs;
+    }
+}
@@ -0,0 +1,62 @@
+package synapse.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Speculative classification of link previews
+ * ({@code project.llama.speculation}): the extracted page is kept for
+ * {@code ttlSeconds} (at most {@code maxEntries} pages) and classified in the
+ * background, within a spend cap of {@code maxInFlight} calls at once and
+ * {@code tokensPerMinute}.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "project.llama.speculation")
+public class LlmSpeculationProperties {
+
+    private boolean enabled = true;
+    private long ttlSeconds = 600;
+    private int maxEntries = 500;
+    private int maxInFlight = 4;
+    private long tokensPerMinute = 20000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public long getTokensPerMinute() {
+        return tokensPerMinute;
+    }
+
+    public void setTokensPerMinute(long tokensPerMinute) {
+        this.tokensPerMinute = tokensPerMinute;
+    }
+}
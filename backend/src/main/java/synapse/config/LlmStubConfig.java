@@ -0,0 +1,74 @@
+package synapse.config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import synapse.model.services.LlmStubServer;
+
+/**
+ * Runs the application against a local LLM stub instead of the configured
+ * providers (profile {@code llm-stub}), so the whole pipeline can be load
+ * tested or developed offline with deterministic answers.
+ */
+@Configuration
+@Profile("llm-stub")
+public class LlmStubConfig {
+
+    /**
+     * The stub, started on {@code project.llama.stub.port} (0 picks a free
+     * port).
+     */
+    @Bean(destroyMethod = "stop")
+    public LlmStubServer llmStubServer(
+            @Value("${project.llama.stub.port:0}") int port,
+            @Value("${project.llama.stub.latencyMedianMs:800}") long latencyMedianMs,
+            @Value("${project.llama.stub.latencyP99Ms:4000}") long latencyP99Ms,
+            @Value("${project.llama.stub.errorRate:0}") double errorRate,
+            @Value("${project.llama.stub.rateLimitRate:0}") double rateLimitRate,
+            @Value("${project.llama.stub.seed:42}") long seed,
+            @Value("${project.llama.stub.fixturesDir:}") String fixturesDir,
+            @Value("${project.llama.stub.journal:}") String journal) {
+        LlmStubServer server = new LlmStubServer(port, Duration.ofMillis(latencyMedianMs),
+                Duration.ofMillis(latencyP99Ms), errorRate, rateLimitRate, seed);
+        try {
+            if (!fixturesDir.isBlank()) {
+                server.loadFixtures(Path.of(fixturesDir));
+            }
+            if (!journal.isBlank()) {
+                server.loadJournal(Path.of(journal));
+            }
+            server.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start the LLM stub", e);
+        }
+        return server;
+    }
+
+    /**
+     * Points the primary provider at the stub and drops the additional ones
+     * before the LLM client reads them.
+     */
+    @Bean
+    public static BeanPostProcessor llmStubProviderOverride(ObjectProvider<LlmStubServer> stub) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof LlmProviderProperties properties) {
+                    properties.setApiUrl(stub.getObject().getUrl());
+                    properties.setApiKey("stub");
+                    properties.getProviders().clear();
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -4,6 +4,8 @@ import static org.springframework.security.web.util.matcher.AntPathRequestMatche
 
 import java.util.List;
 
+import jakarta.servlet.DispatcherType;
+
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -59,6 +61,8 @@ public class SecurityConfig {
             .httpBasic(basic -> basic.disable())
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(authorize -> authorize
+                // Async re-dispatch of AI endpoints: the original request was already authorized
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                 // Static / SPA resources
                 .requestMatchers(antMatcher("/*")).permitAll()
                 .requestMatchers(antMatcher("/static/**")).permitAll()
@@ -73,7 +77,8 @@ public class SecurityConfig {
                 .requestMatchers(antMatcher("/ws/**")).permitAll()
                 // Brain: media is public (embedded), rest requires auth
                 .requestMatchers(antMatcher("/api/brains/media/**")).permitAll()
-                .requestMatchers(antMatcher("/actuator/**")).permitAll()
+                // Only health is public; metrics expose cache, token and rate-limit figures
+                .requestMatchers(antMatcher("/actuator/health")).permitAll()
                 .anyRequest().authenticated()
             )
             .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class);
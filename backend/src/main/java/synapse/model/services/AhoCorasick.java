@@ -0,0 +1,195 @@
+package synapse.model.services;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.IntConsumer;
+
+/**
+ * Finds whole-word occurrences of many patterns in a single pass over a
+ * text.
+ *
+ * Patterns and text are compared case- and accent-insensitively: every char
+ * is folded on the fly ({@code Fútbol} matches {@code futbol}), so the text
+ * is never copied. Patterns are compiled into a deterministic automaton over
+ * the chars they use; any other char sends the scan back to the root. A
+ * match counts only at word boundaries; a pattern ending in {@code *}
+ * matches any word that starts with it ({@code equipo*} matches
+ * {@code equipos}).
+ */
+final class AhoCorasick {
+
+    /** Chars up to here are folded through a table, the rest only lower-cased. */
+    private static final int FOLD_TABLE_SIZE = 0x250;
+    private static final char[] FOLD = new char[FOLD_TABLE_SIZE];
+
+    static {
+        for (int c = 0; c < FOLD_TABLE_SIZE; c++) {
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                FOLD[c] = ' ';
+            } else {
+                String decomposed = Normalizer.normalize(String.valueOf((char) c), Normalizer.Form.NFD);
+                FOLD[c] = Character.toLowerCase(decomposed.charAt(0));
+            }
+        }
+    }
+
+    /** Alphabet index of each folded char used by the patterns; 0 for any other char. */
+    private final int[] alphabet;
+    /** Alphabet index of each char below {@link #FOLD_TABLE_SIZE}, folding included. */
+    private final int[] symbols = new int[FOLD_TABLE_SIZE];
+    private final int alphabetSize;
+    /**
+     * Transition table, one row of {@code alphabetSize} entries per state.
+     * Each entry holds the row offset of the next state shifted left by one,
+     * with the low bit set when patterns end at that state, so the scan
+     * needs neither a multiplication nor a second lookup per char.
+     */
+    private final int[] next;
+    /** Patterns ending at each state, including those of its suffix states. */
+    private final int[][] outputs;
+    private final int[] lengths;
+    private final boolean[] prefixes;
+
+    /**
+     * @param patterns the patterns; the index of each is reported on match
+     */
+    AhoCorasick(List<String> patterns) {
+        int count = patterns.size();
+        lengths = new int[count];
+        prefixes = new boolean[count];
+        List<char[]> folded = new ArrayList<>(count);
+        int maxChar = 0;
+        for (int i = 0; i < count; i++) {
+            String pattern = patterns.get(i).strip();
+            prefixes[i] = pattern.endsWith("*");
+            if (prefixes[i]) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            if (pattern.isEmpty()) {
+                throw new IllegalArgumentException("Empty pattern at index " + i);
+            }
+            char[] chars = new char[pattern.length()];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = fold(pattern.charAt(j));
+                maxChar = Math.max(maxChar, chars[j]);
+            }
+            lengths[i] = chars.length;
+            folded.add(chars);
+        }
+
+        alphabet = new int[maxChar + 1];
+        int size = 1;
+        for (char[] chars : folded) {
+            for (char c : chars) {
+                if (alphabet[c] == 0) {
+                    alphabet[c] = size++;
+                }
+            }
+        }
+        alphabetSize = size;
+        for (int c = 0; c < FOLD_TABLE_SIZE; c++) {
+            symbols[c] = FOLD[c] < alphabet.length ? alphabet[FOLD[c]] : 0;
+        }
+
+        // Trie of the patterns; 0 marks a missing transition (the root has no incoming edges)
+        List<int[]> trie = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        trie.add(new int[alphabetSize]);
+        ends.add(new ArrayList<>());
+        for (int i = 0; i < count; i++) {
+            int state = 0;
+            for (char c : folded.get(i)) {
+                int symbol = alphabet[c];
+                if (trie.get(state)[symbol] == 0) {
+                    trie.get(state)[symbol] = trie.size();
+                    trie.add(new int[alphabetSize]);
+                    ends.add(new ArrayList<>());
+                }
+                state = trie.get(state)[symbol];
+            }
+            ends.get(state).add(i);
+        }
+
+        // Breadth-first: failure links turn the trie into a complete automaton
+        int states = trie.size();
+        next = new int[states * alphabetSize];
+        outputs = new int[states][];
+        int[] fail = new int[states];
+        outputs[0] = new int[0];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 1; symbol < alphabetSize; symbol++) {
+            int child = trie.get(0)[symbol];
+            next[symbol] = child;
+            if (child != 0) {
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            int[] own = ends.get(state).stream().mapToInt(Integer::intValue).toArray();
+            int[] inherited = outputs[fail[state]];
+            outputs[state] = Arrays.copyOf(own, own.length + inherited.length);
+            System.arraycopy(inherited, 0, outputs[state], own.length, inherited.length);
+            for (int symbol = 1; symbol < alphabetSize; symbol++) {
+                int child = trie.get(state)[symbol];
+                int fallback = next[fail[state] * alphabetSize + symbol];
+                if (child != 0) {
+                    fail[child] = fallback;
+                    next[state * alphabetSize + symbol] = child;
+                    queue.add(child);
+                } else {
+                    next[state * alphabetSize + symbol] = fallback;
+                }
+            }
+        }
+        for (int i = 0; i < next.length; i++) {
+            int target = next[i];
+            next[i] = (target * alphabetSize) << 1 | (outputs[target].length > 0 ? 1 : 0);
+        }
+    }
+
+    /**
+     * Reports the index of every pattern occurring in the text as a whole
+     * word (or word start, for {@code *} patterns), once per occurrence.
+     */
+    void scan(String text, IntConsumer onMatch) {
+        int entry = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            entry = next[(entry >>> 1) + symbol(text.charAt(i))];
+            if ((entry & 1) == 0) {
+                continue;
+            }
+            for (int pattern : outputs[(entry >>> 1) / alphabetSize]) {
+                int start = i - lengths[pattern] + 1;
+                if ((start == 0 || !isWordChar(text.charAt(start - 1)))
+                        && (prefixes[pattern] || i + 1 == length || !isWordChar(text.charAt(i + 1)))) {
+                    onMatch.accept(pattern);
+                }
+            }
+        }
+    }
+
+    private int symbol(char c) {
+        if (c < FOLD_TABLE_SIZE) {
+            return symbols[c];
+        }
+        char folded = Character.toLowerCase(c);
+        return folded < alphabet.length ? alphabet[folded] : 0;
+    }
+
+    /**
+     * Lower case without diacritics; whitespace becomes a plain space.
+     */
+    static char fold(char c) {
+        return c < FOLD_TABLE_SIZE ? FOLD[c] : Character.toLowerCase(c);
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+}
@@ -4,15 +4,30 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import synapse.config.LlmSpeculationProperties;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
 /**
  * Service that orchestrates content suggestion workflows.
  * Encapsulates URL validation, content extraction, and AI classification.
+ *
+ * A link preview is usually followed by a suggestion for the same URL, so
+ * the preview keeps the extracted page and starts a background
+ * classification of it (within a spend cap). The suggestion then reuses the
+ * page and attaches to that classification instead of starting over.
  */
 @Service
 public class BrainSuggestionService {
@@ -21,14 +36,48 @@ public class BrainSuggestionService {
 
     private final ContentExtractionService contentExtractionService;
     private final LlamaAIService llamaAIService;
+    /** Compacts classification prompts; its budget bounds what a speculation can spend. */
+    private final PromptCompactor promptCompactor;
     private final MediaStorageService mediaStorageService;
+    private final Executor extractionExecutor;
+    private final SingleFlight<String, ContentExtractionService.ExtractedContent> inFlightExtractions = new SingleFlight<>();
+    private final boolean speculationEnabled;
+    private final Speculations<PreparedContent, LlamaAIService.ClassificationResult> speculations;
+
+    private static final int SPECULATION_COMPLETION_TOKENS = 1500;
 
     public BrainSuggestionService(ContentExtractionService contentExtractionService,
             LlamaAIService llamaAIService,
-            MediaStorageService mediaStorageService) {
+            PromptCompactor promptCompactor,
+            MediaStorageService mediaStorageService,
+            @Qualifier("extractionExecutor") Executor extractionExecutor,
+            LlmSpeculationProperties speculationProperties,
+            MeterRegistry meterRegistry) {
         this.contentExtractionService = contentExtractionService;
         this.llamaAIService = llamaAIService;
+        this.promptCompactor = promptCompactor;
         this.mediaStorageService = mediaStorageService;
+        this.extractionExecutor = extractionExecutor;
+        this.speculationEnabled = speculationProperties.isEnabled();
+        this.speculations = new Speculations<>(speculationProperties.getTtlSeconds() * 1000,
+                speculationProperties.getMaxEntries(), speculationProperties.getMaxInFlight(),
+                speculationProperties.getTokensPerMinute(), System::nanoTime);
+        registerMetrics(meterRegistry);
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("llm.speculation", speculations, Speculations::getStarted)
+                .tag("result", "started")
+                .description("Background classifications started from link previews")
+                .register(registry);
+        FunctionCounter.builder("llm.speculation", speculations, Speculations::getSkipped)
+                .tag("result", "skipped")
+                .description("Link previews not classified because of the speculative spend cap")
+                .register(registry);
+        FunctionCounter.builder("llm.speculation", speculations, Speculations::getUsed)
+                .tag("result", "used")
+                .description("Suggestions that reused a link preview")
+                .register(registry);
     }
 
     /**
@@ -36,47 +85,239 @@ public class BrainSuggestionService {
      * classification.
      */
     public SuggestionResult suggest(String rawContent) {
+        return suggestAsync(rawContent).join();
+    }
+
+    /**
+     * Non-blocking variant of {@link #suggest(String)}. URL extraction runs on
+     * the extraction executor and the AI call is asynchronous, so no request
+     * thread is held while waiting for the page or the model.
+     */
+    public CompletableFuture<SuggestionResult> suggestAsync(String rawContent) {
         String inputContent = rawContent == null ? "" : rawContent.trim();
 
         if (inputContent.isEmpty()) {
-            return new SuggestionResult("note", "Note", "", "", "note", new String[] { "general" });
+            return CompletableFuture.completedFuture(
+                    new SuggestionResult("note", "Note", "", "", "note", new String[] { "general" }));
         }
 
-        // 1. Extract content if it is a URL
-        String contentToAnalyze = inputContent;
-        ContentExtractionService.ExtractedContent extracted = null;
+        Speculations.Entry<PreparedContent, LlamaAIService.ClassificationResult> speculation = speculation(
+                inputContent, true);
+        if (speculation != null) {
+            return attach(speculation);
+        }
 
-        if (isUrl(inputContent)) {
-            String urlToExtract = normalizeUrl(inputContent);
-            try {
-                validateExternalUrl(urlToExtract);
-                extracted = contentExtractionService.extractContent(urlToExtract);
-                StringBuilder fullContent = new StringBuilder();
-                if (!extracted.getTitle().isEmpty()) {
-                    fullContent.append("Title: ").append(extracted.getTitle()).append("\n\n");
-                }
-                if (!extracted.getDescription().isEmpty()) {
-                    fullContent.append("Description: ").append(extracted.getDescription()).append("\n\n");
-                }
-                if (!extracted.getContent().isEmpty()) {
-                    fullContent.append("Content: ").append(extracted.getContent());
-                }
-                contentToAnalyze = fullContent.toString();
-                if (contentToAnalyze.trim().isEmpty()) {
-                    contentToAnalyze = inputContent;
-                }
-            } catch (Exception e) {
-                logger.error("Error extracting content from URL {}: {}", inputContent, e.getMessage());
-                contentToAnalyze = inputContent;
+        // 1. Extract content if it is a URL, 2. AI classification, 3. merge extraction and AI results
+        return prepareContent(inputContent).thenCompose(content -> {
+            logger.info("Sending content to AI for classification...");
+            return llamaAIService.classifyContentAsync(content.text)
+                    .thenApply(classification -> mergeResult(classification, content.extracted));
+        });
+    }
+
+    /**
+     * Batch variant of {@link #suggestAsync(String)} for processing the inbox:
+     * URLs are extracted in parallel and the contents are classified together,
+     * several items per model call.
+     *
+     * @return one result per raw content, in the same order
+     */
+    public CompletableFuture<List<SuggestionResult>> suggestBatchAsync(List<String> rawContents) {
+        List<CompletableFuture<PreparedContent>> prepared = new ArrayList<>();
+        for (String rawContent : rawContents) {
+            String inputContent = rawContent == null ? "" : rawContent.trim();
+            prepared.add(inputContent.isEmpty()
+                    ? CompletableFuture.completedFuture(new PreparedContent("", null))
+                    : prepareContent(inputContent));
+        }
+
+        return CompletableFuture.allOf(prepared.toArray(new CompletableFuture[0])).thenCompose(done -> {
+            List<PreparedContent> contents = prepared.stream().map(CompletableFuture::join).toList();
+            logger.info("Sending {} contents to AI for batch classification...", contents.size());
+            return llamaAIService.classifyBatchAsync(contents.stream().map(content -> content.text).toList())
+                    .thenApply(classifications -> {
+                        List<SuggestionResult> results = new ArrayList<>();
+                        for (int i = 0; i < contents.size(); i++) {
+                            results.add(mergeResult(classifications.get(i), contents.get(i).extracted));
+                        }
+                        return results;
+                    });
+        });
+    }
+
+    /**
+     * Streaming variant of {@link #suggestAsync(String)}: classification fields
+     * are reported to the listener while the model generates them. When the
+     * extracted page already determines the type (video, link), it is reported
+     * first and the model's type is not forwarded. A finished background
+     * classification of a previewed link is replayed to the listener instead
+     * of classifying again.
+     */
+    public CompletableFuture<SuggestionResult> suggestStream(String rawContent,
+            ClassificationStreamParser.Listener listener) {
+        String inputContent = rawContent == null ? "" : rawContent.trim();
+
+        if (inputContent.isEmpty()) {
+            return CompletableFuture.completedFuture(
+                    new SuggestionResult("note", "Note", "", "", "note", new String[] { "general" }));
+        }
+
+        Speculations.Entry<PreparedContent, LlamaAIService.ClassificationResult> speculation = speculation(
+                inputContent, true);
+        LlamaAIService.ClassificationResult speculated = speculation != null ? finished(speculation) : null;
+        CompletableFuture<PreparedContent> prepared = speculation != null
+                ? CompletableFuture.completedFuture(speculation.input())
+                : prepareContent(inputContent);
+        return prepared.thenCompose(content -> {
+            ClassificationStreamParser.Listener effective = listener;
+            ContentExtractionService.ExtractedContent extracted = content.extracted;
+            if (extracted != null && extracted.getType() != null && !extracted.getType().equals("text")) {
+                listener.onField("type", extracted.getType());
+                effective = new ClassificationStreamParser.Listener() {
+                    @Override
+                    public void onField(String name, String value) {
+                        if (!name.equals("type")) {
+                            listener.onField(name, value);
+                        }
+                    }
+
+                    @Override
+                    public void onTags(List<String> tags) {
+                        listener.onTags(tags);
+                    }
+
+                    @Override
+                    public void onDetailedContentDelta(String delta) {
+                        listener.onDetailedContentDelta(delta);
+                    }
+                };
+            }
+            if (speculated != null) {
+                logger.info("Streaming the background classification of the previewed link");
+                LlamaAIService.replay(speculated, effective);
+                return CompletableFuture.completedFuture(mergeResult(speculated, extracted));
             }
-            logger.info("Content extracted from URL: {}", contentToAnalyze);
+            return llamaAIService.classifyContentStreaming(content.text, effective)
+                    .thenApply(classification -> mergeResult(classification, extracted));
+        });
+    }
+
+    private CompletableFuture<PreparedContent> prepareContent(String inputContent) {
+        if (!isUrl(inputContent)) {
+            return CompletableFuture.completedFuture(new PreparedContent(inputContent, null));
+        }
+        Speculations.Entry<PreparedContent, LlamaAIService.ClassificationResult> speculation = speculation(
+                inputContent, true);
+        if (speculation != null) {
+            return CompletableFuture.completedFuture(speculation.input());
+        }
+        return CompletableFuture.supplyAsync(() -> prepareUrlContent(inputContent), extractionExecutor);
+    }
+
+    private PreparedContent prepareUrlContent(String inputContent) {
+        String urlToExtract = normalizeUrl(inputContent);
+        PreparedContent prepared;
+        try {
+            validateExternalUrl(urlToExtract);
+            prepared = toPreparedContent(inputContent, extractShared(urlToExtract));
+        } catch (Exception e) {
+            logger.error("Error extracting content from URL {}: {}", inputContent, e.getMessage());
+            prepared = new PreparedContent(inputContent, null);
+        }
+        logger.info("Content extracted from URL: {}", prepared.text);
+        return prepared;
+    }
+
+    private static PreparedContent toPreparedContent(String inputContent,
+            ContentExtractionService.ExtractedContent extracted) {
+        StringBuilder fullContent = new StringBuilder();
+        if (!extracted.getTitle().isEmpty()) {
+            fullContent.append("Title: ").append(extracted.getTitle()).append("\n\n");
+        }
+        if (!extracted.getDescription().isEmpty()) {
+            fullContent.append("Description: ").append(extracted.getDescription()).append("\n\n");
+        }
+        if (!extracted.getContent().isEmpty()) {
+            fullContent.append("Content: ").append(extracted.getContent());
+        }
+        String contentToAnalyze = fullContent.toString();
+        if (contentToAnalyze.trim().isEmpty()) {
+            contentToAnalyze = inputContent;
+        }
+        return new PreparedContent(contentToAnalyze, extracted);
+    }
+
+    // ── Speculative classification ──────────────────────────────────────
+
+    /**
+     * @param use whether a suggestion uses the entry (counted in
+     *            {@code llm.speculation{result=used}}) or a preview only looks
+     *            at it
+     * @return what the link preview of the URL left behind, or null
+     */
+    private Speculations.Entry<PreparedContent, LlamaAIService.ClassificationResult> speculation(
+            String inputContent, boolean use) {
+        if (!speculationEnabled || !isUrl(inputContent)) {
+            return null;
         }
+        String key = canonicalUrl(inputContent);
+        return use ? speculations.use(key) : speculations.get(key);
+    }
 
-        // 2. AI classification
-        logger.info("Sending content to AI for classification...");
-        LlamaAIService.ClassificationResult classification = llamaAIService.classifyContent(contentToAnalyze);
+    /**
+     * Keeps the page extracted for a preview and classifies it in the
+     * background, so the suggestion that usually follows is ready sooner.
+     */
+    private void speculate(String url, ContentExtractionService.ExtractedContent extracted) {
+        if (!speculationEnabled || extracted == null
+                || safe(extracted.getContent()).startsWith(ContentExtractionService.EXTRACTION_ERROR)) {
+            return;
+        }
+        PreparedContent content = toPreparedContent(url, extracted);
+        int tokens = Math.min(TokenEstimator.estimate(content.text), promptCompactor.getTokenBudget())
+                + SPECULATION_COMPLETION_TOKENS;
+        if (speculations.offer(canonicalUrl(url), content, tokens,
+                prepared -> llamaAIService.classifyContentAsync(prepared.text, LlmPriority.BACKGROUND))) {
+            logger.info("Classifying {} in the background after its preview", url);
+        }
+    }
 
-        // 3. Merge extraction and AI results
+    /**
+     * Suggestion for a URL whose preview was already extracted: reuses the
+     * finished classification, or classifies now, which joins the background
+     * call still running for the same content and lifts it to interactive
+     * priority.
+     */
+    private CompletableFuture<SuggestionResult> attach(
+            Speculations.Entry<PreparedContent, LlamaAIService.ClassificationResult> speculation) {
+        PreparedContent content = speculation.input();
+        LlamaAIService.ClassificationResult speculated = finished(speculation);
+        CompletableFuture<LlamaAIService.ClassificationResult> classification;
+        if (speculated != null) {
+            logger.info("Using the background classification of the previewed link");
+            classification = CompletableFuture.completedFuture(speculated);
+        } else {
+            logger.info("Sending previewed content to AI for classification...");
+            classification = llamaAIService.classifyContentAsync(content.text);
+        }
+        return classification.thenApply(c -> mergeResult(c, content.extracted));
+    }
+
+    /**
+     * @return the background classification of the entry if it has finished
+     *         without falling back, otherwise null
+     */
+    private static LlamaAIService.ClassificationResult finished(
+            Speculations.Entry<PreparedContent, LlamaAIService.ClassificationResult> speculation) {
+        CompletableFuture<LlamaAIService.ClassificationResult> result = speculation.result();
+        if (result == null || !result.isDone() || result.isCompletedExceptionally() || result.join().isFallback()) {
+            return null;
+        }
+        return result.join();
+    }
+
+    private SuggestionResult mergeResult(LlamaAIService.ClassificationResult classification,
+            ContentExtractionService.ExtractedContent extracted) {
         String finalTitle = classification.getTitle();
         if (extracted != null && !extracted.getTitle().isEmpty() &&
                 (finalTitle == null || finalTitle.isEmpty() || finalTitle.equals("Note"))) {
@@ -94,7 +335,10 @@ public class BrainSuggestionService {
                 classification.getSummary(),
                 classification.getDetailedContent(),
                 classification.getDestination(),
-                classification.getTags());
+                classification.getTags(),
+                null,
+                null,
+                classification.isFallback());
     }
 
     /**
@@ -177,7 +421,8 @@ public class BrainSuggestionService {
                 classification.getDestination(),
                 classification.getTags(),
                 mediaUrl,
-                contentType);
+                contentType,
+                classification.isFallback());
     }
 
     /**
@@ -187,7 +432,15 @@ public class BrainSuggestionService {
         String normalized = normalizeUrl(url);
         validateExternalUrl(normalized);
 
-        ContentExtractionService.ExtractedContent extracted = contentExtractionService.extractContent(normalized);
+        Speculations.Entry<PreparedContent, LlamaAIService.ClassificationResult> speculation = speculation(
+                normalized, false);
+        ContentExtractionService.ExtractedContent extracted;
+        if (speculation != null && speculation.input().extracted != null) {
+            extracted = speculation.input().extracted;
+        } else {
+            extracted = extractShared(normalized);
+            speculate(normalized, extracted);
+        }
         String title = extracted != null ? safe(extracted.getTitle()) : "";
         String desc = extracted != null ? safe(extracted.getDescription()) : "";
         String type = extracted != null ? safe(extracted.getType()) : "link";
@@ -202,6 +455,15 @@ public class BrainSuggestionService {
         return new LinkPreviewResult(normalized, type, title, desc, snippet);
     }
 
+    /**
+     * Extracts a URL, sharing the fetch with any concurrent request for the
+     * same canonical URL (e.g. a whole team saving the same article).
+     */
+    private ContentExtractionService.ExtractedContent extractShared(String url) {
+        String key = canonicalUrl(url);
+        return inFlightExtractions.execute(key, () -> contentExtractionService.extractContent(url));
+    }
+
     // ── URL validation helpers ──────────────────────────────────────────
 
     public boolean isUrl(String content) {
@@ -223,6 +485,28 @@ public class BrainSuggestionService {
         return trimmed;
     }
 
+    /**
+     * Canonical form of a URL used to detect identical requests: lower-case
+     * scheme and host, no default port, no fragment and no bare trailing slash.
+     */
+    public String canonicalUrl(String url) {
+        String normalized = normalizeUrl(url);
+        try {
+            URI uri = new URI(normalized);
+            String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase() : "";
+            String host = uri.getHost() != null ? uri.getHost().toLowerCase() : "";
+            int port = uri.getPort();
+            if ((port == 80 && scheme.equals("http")) || (port == 443 && scheme.equals("https"))) {
+                port = -1;
+            }
+            String path = uri.getRawPath() == null || uri.getRawPath().equals("/") ? "" : uri.getRawPath();
+            return scheme + "://" + host + (port == -1 ? "" : ":" + port) + path
+                    + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "");
+        } catch (URISyntaxException e) {
+            return normalized;
+        }
+    }
+
     public void validateExternalUrl(String url) {
         if (url == null || url.trim().isEmpty()) {
             throw new IllegalArgumentException("Empty URL");
@@ -269,6 +553,19 @@ public class BrainSuggestionService {
 
     // ── Result classes ──────────────────────────────────────────────────
 
+    /**
+     * Text sent to the AI together with the extraction it came from (if any).
+     */
+    private static class PreparedContent {
+        private final String text;
+        private final ContentExtractionService.ExtractedContent extracted;
+
+        private PreparedContent(String text, ContentExtractionService.ExtractedContent extracted) {
+            this.text = text;
+            this.extracted = extracted;
+        }
+    }
+
     public static class SuggestionResult {
         private final String type;
         private final String title;
@@ -278,14 +575,20 @@ public class BrainSuggestionService {
         private final String[] tags;
         private final String mediaUrl;
         private final String mediaContentType;
+        private final boolean fallback;
 
         public SuggestionResult(String type, String title, String summary, String detailedContent,
                 String destination, String[] tags) {
-            this(type, title, summary, detailedContent, destination, tags, null, null);
+            this(type, title, summary, detailedContent, destination, tags, null, null, false);
         }
 
         public SuggestionResult(String type, String title, String summary, String detailedContent,
                 String destination, String[] tags, String mediaUrl, String mediaContentType) {
+            this(type, title, summary, detailedContent, destination, tags, mediaUrl, mediaContentType, false);
+        }
+
+        public SuggestionResult(String type, String title, String summary, String detailedContent,
+                String destination, String[] tags, String mediaUrl, String mediaContentType, boolean fallback) {
             this.type = type;
             this.title = title;
             this.summary = summary;
@@ -294,6 +597,7 @@ public class BrainSuggestionService {
             this.tags = tags;
             this.mediaUrl = mediaUrl;
             this.mediaContentType = mediaContentType;
+            this.fallback = fallback;
         }
 
         public String getType() { return type; }
@@ -304,6 +608,7 @@ public class BrainSuggestionService {
         public String[] getTags() { return tags; }
         public String getMediaUrl() { return mediaUrl; }
         public String getMediaContentType() { return mediaContentType; }
+        public boolean isFallback() { return fallback; }
     }
 
     public static class LinkPreviewResult {
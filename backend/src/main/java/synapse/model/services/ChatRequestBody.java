@@ -0,0 +1,155 @@
+package synapse.model.services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.ByteString;
+
+/**
+ * Body of a chat completion request with one user message, written straight
+ * to the connection.
+ *
+ * The JSON is never built as a tree or a string: the constant parts are
+ * encoded once, and model and prompt are escaped and encoded while they are
+ * written into the sink's pooled segments. Prompts of several thousand
+ * characters thus cost no transient copies, and the body can be written again
+ * for a retry or a hedged call. The length is counted without encoding.
+ */
+final class ChatRequestBody extends RequestBody {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private static final ByteString MODEL = ByteString.encodeUtf8("{\"model\":");
+    private static final ByteString MAX_TOKENS = ByteString.encodeUtf8(",\"max_tokens\":");
+    private static final ByteString TEMPERATURE = ByteString.encodeUtf8(",\"temperature\":0.7");
+    private static final ByteString STREAM = ByteString.encodeUtf8(",\"stream\":true");
+    private static final ByteString JSON_MODE = ByteString.encodeUtf8(",\"response_format\":{\"type\":\"json_object\"}");
+    private static final ByteString USER_MESSAGE = ByteString.encodeUtf8(",\"messages\":[{\"role\":\"user\",\"content\":");
+    private static final ByteString END = ByteString.encodeUtf8("}]}");
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final String model;
+    private final String prompt;
+    private final int maxTokens;
+    private final boolean stream;
+    private final boolean jsonMode;
+    private long contentLength = -1;
+
+    /**
+     * @param stream   {@code stream=true}
+     * @param jsonMode {@code response_format: json_object}
+     */
+    ChatRequestBody(String model, String prompt, int maxTokens, boolean stream, boolean jsonMode) {
+        this.model = model;
+        this.prompt = prompt;
+        this.maxTokens = maxTokens;
+        this.stream = stream;
+        this.jsonMode = jsonMode;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public long contentLength() {
+        if (contentLength < 0) {
+            contentLength = MODEL.size() + quotedLength(model) + MAX_TOKENS.size()
+                    + Integer.toString(maxTokens).length() + TEMPERATURE.size()
+                    + (stream ? STREAM.size() : 0) + (jsonMode ? JSON_MODE.size() : 0)
+                    + USER_MESSAGE.size() + quotedLength(prompt) + END.size();
+        }
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        sink.write(MODEL);
+        writeQuoted(sink, model);
+        sink.write(MAX_TOKENS);
+        sink.writeDecimalLong(maxTokens);
+        sink.write(TEMPERATURE);
+        if (stream) {
+            sink.write(STREAM);
+        }
+        if (jsonMode) {
+            sink.write(JSON_MODE);
+        }
+        sink.write(USER_MESSAGE);
+        writeQuoted(sink, prompt);
+        sink.write(END);
+    }
+
+    /**
+     * Writes a JSON string: runs of plain characters are encoded straight
+     * from the string, quotes, backslashes and control characters escaped.
+     */
+    private static void writeQuoted(BufferedSink sink, String value) throws IOException {
+        if (value == null) {
+            sink.writeUtf8("null");
+            return;
+        }
+        sink.writeByte('"');
+        int run = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            if (run < i) {
+                sink.writeUtf8(value, run, i);
+            }
+            run = i + 1;
+            switch (c) {
+                case '"' -> sink.writeByte('\\').writeByte('"');
+                case '\\' -> sink.writeByte('\\').writeByte('\\');
+                case '\n' -> sink.writeByte('\\').writeByte('n');
+                case '\r' -> sink.writeByte('\\').writeByte('r');
+                case '\t' -> sink.writeByte('\\').writeByte('t');
+                case '\b' -> sink.writeByte('\\').writeByte('b');
+                case '\f' -> sink.writeByte('\\').writeByte('f');
+                default -> sink.writeUtf8("\\u00").writeByte(HEX[c >> 4]).writeByte(HEX[c & 0xf]);
+            }
+        }
+        if (run < value.length()) {
+            sink.writeUtf8(value, run, value.length());
+        }
+        sink.writeByte('"');
+    }
+
+    /**
+     * Bytes {@link #writeQuoted} writes for the value, quotes included. Like
+     * okio, an unpaired surrogate is encoded as {@code ?}.
+     */
+    private static long quotedLength(String value) {
+        if (value == null) {
+            return 4;
+        }
+        long length = 2;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x20) {
+                length += c == '\n' || c == '\r' || c == '\t' || c == '\b' || c == '\f' ? 2 : 6;
+            } else if (c == '"' || c == '\\') {
+                length += 2;
+            } else if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
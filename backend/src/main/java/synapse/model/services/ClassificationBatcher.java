@@ -0,0 +1,102 @@
+package synapse.model.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Packing and unpacking of multi-item classification calls.
+ *
+ * Items are packed in their original order into groups that stay under both
+ * an item count and a prompt token budget, so one call can classify several
+ * short inbox entries. The model answers with
+ * {@code {"results":[{"id":n, ...}]}}; results are mapped back by id, so a
+ * missing or malformed entry only affects its own item.
+ */
+final class ClassificationBatcher {
+
+    static final String RESULTS = "results";
+    static final String ID = "id";
+
+    private ClassificationBatcher() {
+    }
+
+    /**
+     * Splits items into consecutive groups of at most {@code maxItems} items
+     * whose summed cost stays within {@code tokenBudget}. An item that exceeds
+     * the budget on its own gets a group of its own.
+     *
+     * @param tokenCosts estimated prompt tokens of each item
+     * @return groups of item indexes, in order
+     */
+    static List<List<Integer>> pack(List<Integer> tokenCosts, int maxItems, int tokenBudget) {
+        List<List<Integer>> groups = new ArrayList<>();
+        List<Integer> current = new ArrayList<>();
+        int currentTokens = 0;
+        for (int i = 0; i < tokenCosts.size(); i++) {
+            int cost = tokenCosts.get(i);
+            if (!current.isEmpty() && (current.size() >= maxItems || currentTokens + cost > tokenBudget)) {
+                groups.add(current);
+                current = new ArrayList<>();
+                currentTokens = 0;
+            }
+            current.add(i);
+            currentTokens += cost;
+        }
+        if (!current.isEmpty()) {
+            groups.add(current);
+        }
+        return groups;
+    }
+
+    /**
+     * Maps the entries of a batch answer to the item ids (1-based positions
+     * in the group) they belong to. Entries without a valid id, or with an id
+     * outside the group, are ignored.
+     *
+     * @param json      the JSON object extracted from the model answer
+     * @param groupSize number of items that were sent
+     * @return results by id, or null when the answer is not a batch answer at
+     *         all (e.g. cut off by the completion limit)
+     */
+    static Map<Integer, JsonObject> parseResults(String json, int groupSize) {
+        JsonArray results;
+        try {
+            JsonElement root = JsonParser.parseString(json);
+            if (root.isJsonArray()) {
+                results = root.getAsJsonArray();
+            } else if (root.isJsonObject() && root.getAsJsonObject().has(RESULTS)
+                    && root.getAsJsonObject().get(RESULTS).isJsonArray()) {
+                results = root.getAsJsonObject().getAsJsonArray(RESULTS);
+            } else {
+                return null;
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+
+        Map<Integer, JsonObject> byId = new HashMap<>();
+        for (JsonElement element : results) {
+            if (!element.isJsonObject()) {
+                continue;
+            }
+            JsonObject entry = element.getAsJsonObject();
+            int id;
+            try {
+                id = entry.has(ID) ? entry.get(ID).getAsInt() : -1;
+            } catch (RuntimeException e) {
+                continue;
+            }
+            if (id >= 1 && id <= groupSize && !byId.containsKey(id)) {
+                byId.put(id, entry);
+            }
+        }
+        return byId;
+    }
+}
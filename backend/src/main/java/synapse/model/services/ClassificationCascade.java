@@ -0,0 +1,77 @@
+package synapse.model.services;
+
+import java.io.IOException;
+import java.util.Set;
+
+/**
+ * Rules of the classification cascade: which contents start on the small
+ * model and which small-model answers are good enough to keep.
+ *
+ * Contents longer than {@code maxInputTokens} go straight to the large
+ * model. A small-model answer is escalated when it is not a JSON object with
+ * a title, has fewer than {@code minTags} specific tags (the generic ones the
+ * prompt forbids are not counted) or a detailedContent shorter than
+ * {@code minDetailedContent}; 0 when the prompt does not ask for one.
+ */
+final class ClassificationCascade {
+
+    static final String SMALL = "small";
+    static final String LARGE = "large";
+
+    /** Outcomes, used as the {@code outcome} tag of {@code llm.cascade.requests}. */
+    static final String ACCEPTED = "accepted";
+    static final String INVALID_JSON = "invalid_json";
+    static final String GENERIC_TAGS = "generic_tags";
+    static final String SHORT_CONTENT = "short_content";
+    static final String ERROR = "error";
+    static final String LONG_INPUT = "long_input";
+    static final String ESCALATED = "escalated";
+
+    private static final Set<String> GENERIC_TAG_NAMES = Set.of("general", "various", "others", "varios", "otros",
+            "technology", "programming", "content", "note");
+
+    private final int maxInputTokens;
+    private final int minTags;
+    private final int minDetailedContent;
+
+    ClassificationCascade(int maxInputTokens, int minTags, int minDetailedContent) {
+        this.maxInputTokens = maxInputTokens;
+        this.minTags = minTags;
+        this.minDetailedContent = minDetailedContent;
+    }
+
+    boolean startsSmall(String content) {
+        return TokenEstimator.estimate(content) <= maxInputTokens;
+    }
+
+    /**
+     * @return {@link #ACCEPTED}, or the reason the answer is escalated
+     */
+    String review(String response) {
+        LlmResponseDecoder.Classification json;
+        try {
+            json = response != null ? LlmResponseDecoder.readClassification(response) : null;
+        } catch (IOException | RuntimeException e) {
+            return INVALID_JSON;
+        }
+        if (json == null || json.title == null || json.title.isBlank()) {
+            return INVALID_JSON;
+        }
+        int specific = 0;
+        if (json.tags != null) {
+            for (String tag : json.tags) {
+                if (tag != null && !tag.isBlank() && !GENERIC_TAG_NAMES.contains(tag.trim().toLowerCase())) {
+                    specific++;
+                }
+            }
+        }
+        if (specific < minTags) {
+            return GENERIC_TAGS;
+        }
+        if (minDetailedContent > 0
+                && (json.detailedContent == null || json.detailedContent.length() < minDetailedContent)) {
+            return SHORT_CONTENT;
+        }
+        return ACCEPTED;
+    }
+}
@@ -0,0 +1,240 @@
+package synapse.model.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental parser for the classification JSON while the model is still
+ * writing it.
+ *
+ * Text is fed in arbitrary chunks. Top-level string fields are reported as
+ * soon as their closing quote arrives, the {@code tags} array as soon as it is
+ * closed, and {@code detailedContent} is reported piece by piece while it is
+ * being generated. Any text before the first '{' (preambles, ```json fences)
+ * is ignored, as is everything after the top-level object closes.
+ */
+public class ClassificationStreamParser {
+
+    public static final String DETAILED_CONTENT = "detailedContent";
+    public static final String TAGS = "tags";
+
+    /**
+     * Receives fields as they complete.
+     */
+    public interface Listener {
+
+        void onField(String name, String value);
+
+        void onTags(List<String> tags);
+
+        void onDetailedContentDelta(String delta);
+    }
+
+    private enum State {
+        SEEK_OBJECT, SEEK_KEY, IN_KEY, SEEK_COLON, SEEK_VALUE, IN_STRING_VALUE, IN_ARRAY, IN_ARRAY_STRING,
+        SKIP_VALUE, DONE
+    }
+
+    private final Listener listener;
+
+    private State state = State.SEEK_OBJECT;
+    private final StringBuilder key = new StringBuilder();
+    private final StringBuilder value = new StringBuilder();
+    private final StringBuilder delta = new StringBuilder();
+    private final List<String> arrayItems = new ArrayList<>();
+    private String currentKey;
+
+    private boolean escape;
+    private int unicodeDigits = -1;
+    private int unicodeValue;
+
+    private int skipDepth;
+    private boolean skipInString;
+    private boolean skipEscape;
+
+    public ClassificationStreamParser(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Feeds the next chunk of model output.
+     */
+    public void accept(CharSequence chunk) {
+        for (int i = 0; i < chunk.length() && state != State.DONE; i++) {
+            step(chunk.charAt(i));
+        }
+        flushDelta();
+    }
+
+    public boolean isDone() {
+        return state == State.DONE;
+    }
+
+    private void step(char c) {
+        switch (state) {
+            case SEEK_OBJECT:
+                if (c == '{') {
+                    state = State.SEEK_KEY;
+                }
+                break;
+            case SEEK_KEY:
+                if (c == '"') {
+                    key.setLength(0);
+                    state = State.IN_KEY;
+                } else if (c == '}') {
+                    state = State.DONE;
+                }
+                break;
+            case IN_KEY:
+                if (readStringChar(c, key)) {
+                    currentKey = key.toString();
+                    state = State.SEEK_COLON;
+                }
+                break;
+            case SEEK_COLON:
+                if (c == ':') {
+                    state = State.SEEK_VALUE;
+                }
+                break;
+            case SEEK_VALUE:
+                startValue(c);
+                break;
+            case IN_STRING_VALUE:
+                if (DETAILED_CONTENT.equals(currentKey)) {
+                    if (readStringChar(c, delta)) {
+                        flushDelta();
+                        state = State.SEEK_KEY;
+                    }
+                } else if (readStringChar(c, value)) {
+                    listener.onField(currentKey, value.toString());
+                    state = State.SEEK_KEY;
+                }
+                break;
+            case IN_ARRAY:
+                if (c == '"') {
+                    value.setLength(0);
+                    state = State.IN_ARRAY_STRING;
+                } else if (c == ']') {
+                    if (TAGS.equals(currentKey)) {
+                        listener.onTags(new ArrayList<>(arrayItems));
+                    }
+                    state = State.SEEK_KEY;
+                }
+                break;
+            case IN_ARRAY_STRING:
+                if (readStringChar(c, value)) {
+                    arrayItems.add(value.toString());
+                    state = State.IN_ARRAY;
+                }
+                break;
+            case SKIP_VALUE:
+                skip(c);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void startValue(char c) {
+        if (Character.isWhitespace(c)) {
+            return;
+        }
+        if (c == '"') {
+            value.setLength(0);
+            state = State.IN_STRING_VALUE;
+        } else if (c == '[') {
+            arrayItems.clear();
+            state = State.IN_ARRAY;
+        } else {
+            // Numbers, literals and nested objects are not streamed
+            skipDepth = (c == '{') ? 1 : 0;
+            skipInString = false;
+            skipEscape = false;
+            state = State.SKIP_VALUE;
+        }
+    }
+
+    private void skip(char c) {
+        if (skipInString) {
+            if (skipEscape) {
+                skipEscape = false;
+            } else if (c == '\\') {
+                skipEscape = true;
+            } else if (c == '"') {
+                skipInString = false;
+            }
+            return;
+        }
+        if (c == '"') {
+            skipInString = true;
+        } else if (c == '{' || c == '[') {
+            skipDepth++;
+        } else if ((c == '}' || c == ']') && skipDepth > 0) {
+            skipDepth--;
+        } else if (skipDepth == 0 && c == ',') {
+            state = State.SEEK_KEY;
+        } else if (skipDepth == 0 && c == '}') {
+            state = State.DONE;
+        }
+    }
+
+    /**
+     * Decodes one character of a JSON string into the target.
+     *
+     * @return true when the closing quote was read
+     */
+    private boolean readStringChar(char c, StringBuilder target) {
+        if (unicodeDigits >= 0) {
+            unicodeValue = (unicodeValue << 4) + Character.digit(c, 16);
+            if (++unicodeDigits == 4) {
+                target.append((char) unicodeValue);
+                unicodeDigits = -1;
+            }
+            return false;
+        }
+        if (escape) {
+            escape = false;
+            switch (c) {
+                case 'n':
+                    target.append('\n');
+                    break;
+                case 't':
+                    target.append('\t');
+                    break;
+                case 'r':
+                    target.append('\r');
+                    break;
+                case 'b':
+                    target.append('\b');
+                    break;
+                case 'f':
+                    target.append('\f');
+                    break;
+                case 'u':
+                    unicodeDigits = 0;
+                    unicodeValue = 0;
+                    break;
+                default:
+                    target.append(c);
+                    break;
+            }
+            return false;
+        }
+        if (c == '\\') {
+            escape = true;
+            return false;
+        }
+        if (c == '"') {
+            return true;
+        }
+        target.append(c);
+        return false;
+    }
+
+    private void flushDelta() {
+        if (delta.length() > 0) {
+            listener.onDetailedContentDelta(delta.toString());
+            delta.setLength(0);
+        }
+    }
+}
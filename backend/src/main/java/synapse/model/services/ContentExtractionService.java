@@ -3,13 +3,24 @@ package synapse.model.services;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.regex.Pattern;
 
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
 import org.jsoup.select.Elements;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
 import org.springframework.stereotype.Service;
 
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
 /**
  * Service for extracting content from URLs (web pages, videos, etc.)
  */
@@ -17,8 +28,22 @@ import org.springframework.stereotype.Service;
 public class ContentExtractionService {
     private static final Logger logger = LoggerFactory.getLogger(ContentExtractionService.class);
 
-    private static final int TIMEOUT_MS = 10000;
+    /** Start of the content of a page that could not be extracted. */
+    public static final String EXTRACTION_ERROR = "Error extracting content: ";
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36";
+    private static final String BROWSER_USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36";
     private static final int MAX_CONTENT_LENGTH = 50000; // Limit extracted content
+    private static final Pattern WHITESPACE = Pattern.compile("[\\s\u00a0]+");
+    // Banners, share bars, comment threads and forms that sit inside the page body
+    private static final String BOILERPLATE_SELECTOR = "form, button, noscript, iframe, svg, "
+            + "[class*=cookie], [id*=cookie], [class*=share], [class*=social], [class*=comment], [id*=comment], [class*=comentario], "
+            + "[class*=newsletter], [aria-hidden=true]";
+
+    private final OutboundHttpClient httpClient;
+
+    public ContentExtractionService(OutboundHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
 
     /**
      * Extracts content from a URL.
@@ -47,7 +72,7 @@ public class ContentExtractionService {
         } catch (Exception e) {
             logger.error("Error extracting content from URL {}: {}", urlString, e.getMessage(), e);
             // If extraction fails, return the original URL
-            return new ExtractedContent(urlString, "", "Error extracting content: " + e.getMessage(), contentType);
+            return new ExtractedContent(urlString, "", EXTRACTION_ERROR + e.getMessage(), contentType);
         }
     }
 
@@ -77,14 +102,50 @@ public class ContentExtractionService {
      * Extracts content from a web page.
      */
     private ExtractedContent extractWebPageContent(String urlString) throws IOException {
-        Document doc = Jsoup.connect(urlString)
-                .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
-                .timeout(TIMEOUT_MS)
-                .followRedirects(true)
-                .get();
+        Document doc = fetchDocument(urlString, USER_AGENT);
 
         logger.info("Web page connected: {}. Title: {}", urlString, doc.title());
+        return extractWebPageContent(doc, urlString);
+    }
 
+    /**
+     * Downloads and parses a page through the shared HTTP client, so
+     * repeated fetches from a site reuse its connection. Redirects are
+     * followed; error statuses and non-HTML bodies fail like Jsoup's own
+     * fetch did. The charset comes from the Content-Type header or, when
+     * absent, from the page itself.
+     */
+    private Document fetchDocument(String urlString, String userAgent) throws IOException {
+        Request request = new Request.Builder()
+                .url(urlString)
+                .header("User-Agent", userAgent)
+                .header("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8")
+                .build();
+        try (Response response = httpClient.client(OutboundHttpClient.EXTRACTION).newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP error fetching URL. Status=" + response.code() + ", URL=" + urlString);
+            }
+            ResponseBody body = response.body();
+            MediaType type = body.contentType();
+            if (type != null && !isMarkup(type)) {
+                throw new IOException("Unhandled content type " + type + " for URL " + urlString);
+            }
+            Charset charset = type != null ? type.charset() : null;
+            return Jsoup.parse(body.byteStream(), charset != null ? charset.name() : null,
+                    response.request().url().toString());
+        }
+    }
+
+    private static boolean isMarkup(MediaType type) {
+        return type.type().equals("text") || type.subtype().equals("xml") || type.subtype().endsWith("+xml");
+    }
+
+    /**
+     * Extracts title, description and main text from a parsed page. The text
+     * keeps one line per block element (paragraph, list item, heading...), so
+     * later stages can tell sentences from menus and buttons.
+     */
+    ExtractedContent extractWebPageContent(Document doc, String urlString) {
         // Extract title
         String title = "";
         Element titleElement = doc.selectFirst("title");
@@ -113,13 +174,15 @@ public class ContentExtractionService {
         if (mainContent != null) {
             // Remove scripts, styles, and other unwanted elements
             mainContent.select("script, style, nav, header, footer, aside, .advertisement, .ad").remove();
-            content.append(mainContent.text());
+            removeBoilerplate(mainContent);
+            content.append(blockText(mainContent));
         } else {
             // If no main content, use body
             Element body = doc.body();
             if (body != null) {
                 body.select("script, style, nav, header, footer, aside").remove();
-                content.append(body.text());
+                removeBoilerplate(body);
+                content.append(blockText(body));
             }
         }
 
@@ -136,6 +199,64 @@ public class ContentExtractionService {
         return new ExtractedContent(title, description, contentText, "link");
     }
 
+    private static void removeBoilerplate(Element root) {
+        for (Element element : root.select(BOILERPLATE_SELECTOR)) {
+            if (element != root) {
+                element.remove();
+            }
+        }
+    }
+
+    private static boolean isPreformatted(TextNode textNode) {
+        for (Element parent = (Element) textNode.parent(); parent != null; parent = parent.parent()) {
+            if (parent.normalName().equals("pre")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Like {@link Element#text()}, but ends a line at every block element.
+     */
+    static String blockText(Element root) {
+        StringBuilder raw = new StringBuilder();
+        NodeTraversor.traverse(new NodeVisitor() {
+            @Override
+            public void head(Node node, int depth) {
+                if (node instanceof TextNode textNode) {
+                    if (isPreformatted(textNode)) {
+                        raw.append(textNode.getWholeText());
+                    } else {
+                        raw.append(WHITESPACE.matcher(textNode.getWholeText()).replaceAll(" "));
+                    }
+                } else if (node instanceof Element element
+                        && (element.isBlock() || element.normalName().equals("br"))) {
+                    raw.append('\n');
+                }
+            }
+
+            @Override
+            public void tail(Node node, int depth) {
+                if (node instanceof Element element && element.isBlock()) {
+                    raw.append('\n');
+                }
+            }
+        }, root);
+
+        StringBuilder text = new StringBuilder();
+        for (String line : raw.toString().split("\n")) {
+            String trimmed = line.strip();
+            if (!trimmed.isEmpty()) {
+                if (text.length() > 0) {
+                    text.append('\n');
+                }
+                text.append(trimmed);
+            }
+        }
+        return text.toString();
+    }
+
     /**
      * Extracts video information (YouTube, Vimeo, etc.).
      */
@@ -147,12 +268,7 @@ public class ContentExtractionService {
         try {
             // For YouTube, try to extract complete information from the page
             if (urlString.contains("youtube.com") || urlString.contains("youtu.be")) {
-                Document doc = Jsoup.connect(urlString)
-                        .userAgent(
-                                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36")
-                        .timeout(TIMEOUT_MS)
-                        .followRedirects(true)
-                        .get();
+                Document doc = fetchDocument(urlString, BROWSER_USER_AGENT);
 
                 logger.info("YouTube video connected: {}. Title: {}", urlString, doc.title());
 
@@ -232,11 +348,7 @@ public class ContentExtractionService {
                 }
             } else {
                 // For other videos (Vimeo, etc.), try to extract basic information
-                Document doc = Jsoup.connect(urlString)
-                        .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
-                        .timeout(TIMEOUT_MS)
-                        .followRedirects(true)
-                        .get();
+                Document doc = fetchDocument(urlString, USER_AGENT);
 
                 Element titleElement = doc.selectFirst("title");
                 if (titleElement != null) {
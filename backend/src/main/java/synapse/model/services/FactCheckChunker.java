@@ -0,0 +1,153 @@
+package synapse.model.services;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import synapse.rest.dtos.FactCheckResponseDto.ClaimVerification;
+
+/**
+ * Splitting of fact-check input into sentences and merging of the verdicts.
+ *
+ * Content is cut into sentences the way {@link PromptCompactor} does;
+ * headings, header labels, links and fragments too short to state a fact
+ * are left out, and repeated sentences are checked once. Sentences are sent
+ * to the model numbered, and the model tags each claim with the number of
+ * the sentence it comes from, so verdicts can be kept per sentence under its
+ * normalized text. The claims of all chunks are merged at the end, one per
+ * normalized claim text.
+ */
+final class FactCheckChunker {
+
+    /** Sentences with fewer words are not claims (captions, list items, bylines). */
+    private static final int MIN_CLAIM_WORDS = 4;
+
+    private static final Pattern HEADER_LABEL = Pattern.compile(
+            "^(Title|Description|URL|CHANNEL|VIDEO TITLE|VIDEO DESCRIPTION):");
+    private static final Pattern BODY_LABEL = Pattern.compile("^Content:\\s*");
+    private static final Pattern URL = Pattern.compile("^(https?://|www\\.)\\S+$");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private FactCheckChunker() {
+    }
+
+    /**
+     * Verdicts of one chunk.
+     *
+     * @param bySentence the claims of each sentence, in sentence order
+     * @param complete   false when some claim could not be traced back to
+     *                   its sentence (it is then listed under the first one)
+     */
+    record Verdicts(List<List<ClaimVerification>> bySentence, boolean complete) {
+    }
+
+    /**
+     * @return the sentences of the content that may hold a verifiable
+     *         claim, each once, in order
+     */
+    static List<String> sentences(String content) {
+        Map<String, String> byKey = new LinkedHashMap<>();
+        for (String line : content.split("\\r?\\n")) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#") || HEADER_LABEL.matcher(line).find()) {
+                continue;
+            }
+            line = BODY_LABEL.matcher(line).replaceFirst("");
+            for (String sentence : PromptCompactor.SENTENCE_END.split(line)) {
+                sentence = sentence.strip();
+                if (sentence.split("\\s+").length >= MIN_CLAIM_WORDS && !URL.matcher(sentence).matches()) {
+                    byKey.putIfAbsent(normalize(sentence), sentence);
+                }
+            }
+        }
+        return new ArrayList<>(byKey.values());
+    }
+
+    /**
+     * Lower case, without accents, punctuation or repeated spaces: the key
+     * under which a sentence or claim is cached and deduplicated.
+     */
+    static String normalize(String text) {
+        String folded = COMBINING_MARKS.matcher(Normalizer.normalize(text.toLowerCase(Locale.ROOT),
+                Normalizer.Form.NFD)).replaceAll("");
+        return NON_WORD.matcher(folded).replaceAll(" ").strip();
+    }
+
+    /**
+     * The sentences as sent to the model: one per line, numbered from 1.
+     */
+    static String numbered(List<String> sentences) {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < sentences.size(); i++) {
+            out.append('[').append(i + 1).append("] ").append(sentences.get(i)).append('\n');
+        }
+        return out.toString().stripTrailing();
+    }
+
+    /**
+     * Assigns each claim of a chunk answer to its sentence: by the number
+     * the model gave, else by the sentence that contains the claim text.
+     */
+    static Verdicts assign(List<LlmResponseDecoder.Claim> claims, List<String> sentences) {
+        List<List<ClaimVerification>> bySentence = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (String sentence : sentences) {
+            bySentence.add(new ArrayList<>());
+            keys.add(normalize(sentence));
+        }
+        boolean complete = true;
+        for (LlmResponseDecoder.Claim claim : claims) {
+            int index = claim.sentence() - 1;
+            if (index < 0 || index >= sentences.size()) {
+                index = indexOf(keys, normalize(claim.verification().getOriginalText()));
+            }
+            if (index < 0) {
+                complete = false;
+                index = 0;
+            }
+            bySentence.get(index).add(claim.verification());
+        }
+        return new Verdicts(bySentence, complete);
+    }
+
+    private static int indexOf(List<String> sentenceKeys, String claimKey) {
+        if (claimKey.isEmpty()) {
+            return -1;
+        }
+        for (int i = 0; i < sentenceKeys.size(); i++) {
+            String sentenceKey = sentenceKeys.get(i);
+            if (sentenceKey.contains(claimKey) || claimKey.contains(sentenceKey)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Keeps one claim per normalized text, in order of first appearance.
+     * When the same claim got different verdicts, the most severe one
+     * ({@code false} over {@code suspicious} over {@code true}) is kept.
+     */
+    static List<ClaimVerification> merge(List<ClaimVerification> claims) {
+        Map<String, ClaimVerification> byKey = new LinkedHashMap<>();
+        for (ClaimVerification claim : claims) {
+            byKey.merge(normalize(claim.getOriginalText()), claim,
+                    (kept, other) -> severity(other) > severity(kept) ? other : kept);
+        }
+        return new ArrayList<>(byKey.values());
+    }
+
+    private static int severity(ClaimVerification claim) {
+        String status = claim.getStatus() != null ? claim.getStatus().toLowerCase(Locale.ROOT) : "";
+        return switch (status) {
+            case "false" -> 2;
+            case "true" -> 0;
+            default -> 1;
+        };
+    }
+}
@@ -0,0 +1,196 @@
+package synapse.model.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.gson.Gson;
+
+/**
+ * Tags for the local fallback result, used when the model is not available.
+ *
+ * Tags come from topic rules: each rule lists the terms that reveal a topic
+ * and the tags it adds. All terms are compiled at startup into one
+ * {@link AhoCorasick} automaton, so title, summary and content are scanned
+ * once each, without lower-casing or copying them. Rules are ranked by their
+ * hits, weighted by where they occur (title, then summary, then content); a
+ * rule with {@code requires} only applies when a rule giving that tag
+ * matched too. The remaining slots are filled with words from the title.
+ *
+ * The rules are read from {@code fallback.tagRules}, or from the bundled
+ * {@code fallback-tags.json} when it is not set:
+ *
+ * <pre>
+ * {"rules": [{"tags": ["sports"], "terms": ["futbol*", "liga"]},
+ *            {"tags": ["spanish-football"], "requires": "sports", "terms": ["españa"]}],
+ *  "titleStopwords": ["sobre"]}
+ * </pre>
+ */
+@Service
+public class FallbackTagger {
+
+    private static final Logger logger = LoggerFactory.getLogger(FallbackTagger.class);
+
+    private static final String BUNDLED_RULES = "/fallback-tags.json";
+    static final int MAX_TAGS = 6;
+    private static final int TITLE_WEIGHT = 3;
+    private static final int SUMMARY_WEIGHT = 2;
+    private static final int CONTENT_WEIGHT = 1;
+    /** Title words this short say little about the topic. */
+    private static final int MIN_TITLE_WORD = 5;
+
+    private final List<Rule> rules;
+    private final Set<String> titleStopwords = new HashSet<>();
+    private final AhoCorasick automaton;
+    /** Rule each pattern of the automaton belongs to. */
+    private final int[] patternRules;
+
+    /**
+     * Rule set as stored in JSON.
+     */
+    static final class Rules {
+        List<Rule> rules = List.of();
+        List<String> titleStopwords = List.of();
+    }
+
+    static final class Rule {
+        List<String> tags = List.of();
+        List<String> terms = List.of();
+        String requires;
+    }
+
+    @Autowired
+    public FallbackTagger(@Value("${project.llama.fallback.tagRules:}") String rulesFile) throws IOException {
+        this(read(rulesFile));
+        logger.info("Fallback tagger: {} rules from {}", rules.size(),
+                rulesFile.isBlank() ? "bundled rules" : rulesFile);
+    }
+
+    FallbackTagger(Rules ruleSet) {
+        this.rules = List.copyOf(ruleSet.rules);
+        for (String stopword : ruleSet.titleStopwords) {
+            titleStopwords.add(fold(stopword));
+        }
+        List<String> patterns = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (int r = 0; r < rules.size(); r++) {
+            for (String term : rules.get(r).terms) {
+                patterns.add(term);
+                owners.add(r);
+            }
+        }
+        this.automaton = new AhoCorasick(patterns);
+        this.patternRules = owners.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static Rules read(String rulesFile) throws IOException {
+        try (InputStream in = rulesFile.isBlank()
+                ? FallbackTagger.class.getResourceAsStream(BUNDLED_RULES)
+                : Files.newInputStream(Paths.get(rulesFile))) {
+            if (in == null) {
+                throw new IOException("Missing bundled tag rules " + BUNDLED_RULES);
+            }
+            return parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+        }
+    }
+
+    static Rules parse(Reader json) {
+        Rules rules = new Gson().fromJson(json, Rules.class);
+        return rules != null ? rules : new Rules();
+    }
+
+    /**
+     * @return up to {@link #MAX_TAGS} tags, most relevant first; never empty
+     */
+    public List<String> tags(String title, String summary, String content) {
+        int[] scores = new int[rules.size()];
+        scan(title, TITLE_WEIGHT, scores);
+        scan(summary, SUMMARY_WEIGHT, scores);
+        scan(content, CONTENT_WEIGHT, scores);
+
+        List<Integer> matched = new ArrayList<>();
+        for (int r = 0; r < scores.length; r++) {
+            if (scores[r] > 0) {
+                matched.add(r);
+            }
+        }
+        // Stable: equally scored rules keep their order in the file
+        matched.sort((a, b) -> Integer.compare(scores[b], scores[a]));
+
+        List<String> tags = new ArrayList<>();
+        Set<String> applied = new HashSet<>();
+        for (int r : matched) {
+            applied.addAll(rules.get(r).tags);
+        }
+        for (int r : matched) {
+            Rule rule = rules.get(r);
+            if (rule.requires != null && !applied.contains(rule.requires)) {
+                continue;
+            }
+            for (String tag : rule.tags) {
+                if (tags.size() < MAX_TAGS && !tags.contains(tag)) {
+                    tags.add(tag);
+                }
+            }
+        }
+
+        addTitleWords(title, tags);
+        if (tags.isEmpty()) {
+            tags.add("content");
+        }
+        return tags;
+    }
+
+    private void scan(String text, int weight, int[] scores) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        automaton.scan(text, pattern -> scores[patternRules[pattern]] += weight);
+    }
+
+    /**
+     * Adds the longer words of the title (letters only, lower case) while
+     * there is room.
+     */
+    private void addTitleWords(String title, List<String> tags) {
+        if (title == null) {
+            return;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= title.length() && tags.size() < MAX_TAGS; i++) {
+            char c = i < title.length() ? title.charAt(i) : ' ';
+            if (Character.isWhitespace(c) || c == '|') {
+                String candidate = word.toString();
+                word.setLength(0);
+                if (candidate.length() >= MIN_TITLE_WORD && !tags.contains(candidate)
+                        && !titleStopwords.contains(fold(candidate))) {
+                    tags.add(candidate);
+                }
+            } else if (Character.isLetter(c)) {
+                word.append(Character.toLowerCase(c));
+            }
+        }
+    }
+
+    private static String fold(String text) {
+        StringBuilder folded = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            folded.append(AhoCorasick.fold(text.charAt(i)));
+        }
+        return folded.toString();
+    }
+}
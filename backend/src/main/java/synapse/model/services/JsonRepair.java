@@ -0,0 +1,180 @@
+package synapse.model.services;
+
+import java.util.Arrays;
+
+/**
+ * Repairs the JSON object a model wrote when it is slightly broken, so the
+ * answer can still be decoded instead of falling back to a local result.
+ *
+ * One pass from the first {@code {} of the content fixes the usual defects:
+ * raw control characters (newlines in {@code detailedContent}) and invalid
+ * escapes inside strings, quotes inside a string that do not end it,
+ * trailing commas before {@code }} or {@code ]}, and closers that do not
+ * match. An answer cut off (at {@code max_tokens}) keeps every complete
+ * field: it is cut back after the last complete value and the open objects
+ * and arrays are closed. Text after the object is dropped.
+ */
+final class JsonRepair {
+
+    private JsonRepair() {
+    }
+
+    /**
+     * @return the repaired object, or null if the content has no {@code {}
+     */
+    static String repair(String content) {
+        int start = content != null ? content.indexOf('{') : -1;
+        if (start < 0) {
+            return null;
+        }
+        StringBuilder out = new StringBuilder(content.length() - start + 16);
+        char[] stack = new char[16];
+        boolean[] keyNext = new boolean[16];
+        int depth = 0;
+        boolean inString = false;
+        boolean stringIsKey = false;
+        boolean inToken = false;
+        // Output length and depth after the last complete value
+        int safeLength = 0;
+        int safeDepth = 0;
+
+        for (int i = start; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    char next = i + 1 < content.length() ? content.charAt(i + 1) : 0;
+                    if (next != 0 && "\"\\/bfnrtu".indexOf(next) >= 0) {
+                        out.append(c).append(next);
+                        i++;
+                    } else if (next != 0) {
+                        out.append("\\\\");
+                    }
+                } else if (c == '"') {
+                    if (endsString(content, i + 1)) {
+                        out.append(c);
+                        inString = false;
+                        if (stringIsKey) {
+                            keyNext[depth - 1] = false;
+                        } else {
+                            safeLength = out.length();
+                            safeDepth = depth;
+                        }
+                    } else {
+                        out.append("\\\"");
+                    }
+                } else if (c < 0x20) {
+                    appendControl(out, c);
+                } else {
+                    out.append(c);
+                }
+                continue;
+            }
+
+            boolean delimiter = c == '{' || c == '[' || c == '}' || c == ']' || c == ',' || c == ':' || c == '"'
+                    || Character.isWhitespace(c);
+            if (inToken && delimiter) {
+                inToken = false;
+                safeLength = out.length();
+                safeDepth = depth;
+            }
+            switch (c) {
+                case '{', '[' -> {
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                        keyNext = Arrays.copyOf(keyNext, depth * 2);
+                    }
+                    stack[depth] = c;
+                    keyNext[depth++] = c == '{';
+                    out.append(c);
+                    safeLength = out.length();
+                    safeDepth = depth;
+                }
+                case '}', ']' -> {
+                    if (depth == 0) {
+                        continue;
+                    }
+                    trimTrailingComma(out);
+                    out.append(closer(stack[--depth]));
+                    safeLength = out.length();
+                    safeDepth = depth;
+                    if (depth == 0) {
+                        return out.toString();
+                    }
+                }
+                case ',' -> {
+                    out.append(c);
+                    if (depth > 0 && stack[depth - 1] == '{') {
+                        keyNext[depth - 1] = true;
+                    }
+                }
+                case ':' -> {
+                    out.append(c);
+                    if (depth > 0) {
+                        keyNext[depth - 1] = false;
+                    }
+                }
+                case '"' -> {
+                    out.append(c);
+                    inString = true;
+                    stringIsKey = depth > 0 && stack[depth - 1] == '{' && keyNext[depth - 1];
+                }
+                default -> {
+                    out.append(c);
+                    if (!Character.isWhitespace(c)) {
+                        inToken = true;
+                    }
+                }
+            }
+        }
+
+        // Cut off: keep what was complete and close what is still open
+        out.setLength(safeLength);
+        trimTrailingComma(out);
+        for (int d = safeDepth - 1; d >= 0; d--) {
+            out.append(closer(stack[d]));
+        }
+        return out.toString();
+    }
+
+    /**
+     * A quote ends a string when what follows it can follow a string: a
+     * separator, a closer or the end of the content. Otherwise the model
+     * forgot to escape it.
+     */
+    private static boolean endsString(String content, int from) {
+        for (int i = from; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                return c == ',' || c == ':' || c == '}' || c == ']';
+            }
+        }
+        return true;
+    }
+
+    private static void appendControl(StringBuilder out, char c) {
+        switch (c) {
+            case '\n' -> out.append("\\n");
+            case '\r' -> out.append("\\r");
+            case '\t' -> out.append("\\t");
+            default -> out.append(String.format("\\u%04x", (int) c));
+        }
+    }
+
+    private static void trimTrailingComma(StringBuilder out) {
+        int end = out.length();
+        while (end > 0 && Character.isWhitespace(out.charAt(end - 1))) {
+            end--;
+        }
+        if (end > 0 && out.charAt(end - 1) == ',') {
+            end--;
+            while (end > 0 && Character.isWhitespace(out.charAt(end - 1))) {
+                end--;
+            }
+        }
+        out.setLength(end);
+    }
+
+    private static char closer(char opener) {
+        return opener == '{' ? '}' : ']';
+    }
+}
@@ -1,27 +1,59 @@
 package synapse.model.services;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.ArrayList;
-
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import synapse.config.LlmBatchProperties;
+import synapse.config.LlmCascadeProperties;
+import synapse.config.LlmCircuitBreakerProperties;
+import synapse.config.LlmClientProperties;
+import synapse.config.LlmFactCheckProperties;
+import synapse.config.LlmHedgeProperties;
+import synapse.config.LlmProviderProperties;
+import synapse.config.LlmRateLimitProperties;
+import synapse.config.LlmSchedulerProperties;
+import synapse.model.services.exceptions.LlmRateLimitException;
+import synapse.model.services.exceptions.LlmUnavailableException;
 import synapse.rest.dtos.FactCheckResponseDto;
 import synapse.rest.dtos.TrendsInsightsParamsDto;
 import synapse.rest.dtos.TrendsInsightsResponseDto;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 
-import okhttp3.MediaType;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okio.BufferedSource;
 
 /**
  * Service for interacting with the LLaMA API (Groq, OpenAI-compatible
@@ -30,26 +62,259 @@ import okhttp3.Response;
 @Service
 public class LlamaAIService {
     private static final Logger logger = LoggerFactory.getLogger(LlamaAIService.class);
-    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final int MAX_TOKENS = 4000;
+    /** Completion tokens assumed when reserving budget; corrected with the real usage afterwards. */
+    private static final int EXPECTED_COMPLETION_TOKENS = 1500;
+    /** Completion tokens reserved and allowed per item of a batch call (no detailedContent). */
+    private static final int BATCH_COMPLETION_TOKENS_PER_ITEM = 200;
+    private static final int BATCH_MAX_TOKENS_PER_ITEM = 400;
+    /** Completion limit and expected size of a classification without detailedContent. */
+    private static final int SUMMARY_MAX_TOKENS = 800;
+    private static final int SUMMARY_COMPLETION_TOKENS = 350;
+    /** Completion limit and expected size added for the claims of a combined classify + fact-check answer. */
+    private static final int CLAIMS_MAX_TOKENS = 1200;
+    private static final int CLAIMS_COMPLETION_TOKENS = 500;
+    /** Shorter generated details are replaced by the local template. */
+    private static final int MIN_DETAILED_CONTENT = 200;
+    /** Sentences per fact-check call, whatever their length. */
+    private static final int FACT_CHECK_MAX_SENTENCES = 40;
     private final OkHttpClient client;
     private final Gson gson;
+    private final LlmResponseCache responseCache;
+    private final PromptCompactor promptCompactor;
+    private final FallbackTagger fallbackTagger;
+    private final LocalClassifier localClassifier;
+    private final LlmJournal journal;
+    private final SingleFlight<String, String> inFlightCalls = new SingleFlight<>();
+    private final int maxQueued;
+    private final ScheduledExecutorService scheduler;
+    private final int rateLimitRetries;
+    private final LlmRouter router;
+    /** Admits calls by priority class, ahead of the rate limiter and the dispatcher. */
+    private final LlmScheduler llmScheduler;
+    private final LlmMetrics metrics;
+    /** Model of the primary provider; answers are cached under it whichever provider produced them. */
+    private final String model;
+    /** Small model tried first for classifications; null when the cascade is disabled. */
+    private final LlmRouter smallRouter;
+    private final String smallModel;
+    private final ClassificationCascade cascade;
+    /** Completion limit of the small model. */
+    private final int cascadeMaxTokens;
+    /**
+     * Two-phase mode: classifications leave out detailedContent, which is
+     * generated on demand by {@link #generateDetailedContentAsync}.
+     */
+    private final boolean lazyDetails;
+    private final int classifyMaxTokens;
+    private final int classifyCompletionTokens;
 
-    @Value("${project.llama.apiKey:${project.llama.api-key:}}")
-    private String apiKey;
-
-    @Value("${project.llama.apiUrl:${project.llama.api-url:}}")
-    private String apiUrl;
-
-    @Value("${project.llama.model:}")
-    private String model;
+    private final int batchMaxItems;
+    private final int batchPromptTokens;
+    private final int batchItemTokens;
+    private final int factCheckChunkTokens;
+    private final int factCheckMaxChunks;
+    private final boolean combinedEnabled;
 
-    private static final String CONST_CONTENT = "content";
     private static final String CONST_NOTE = "note";
-    private static final String CONST_CLAIMS = "claims";
 
-    public LlamaAIService() {
-        this.client = new OkHttpClient();
+    public LlamaAIService(LlmResponseCache responseCache, PromptCompactor promptCompactor,
+            FallbackTagger fallbackTagger, LocalClassifier localClassifier, LlmJournal journal,
+            LlmProviderProperties providerProperties, LlmClientProperties clientProperties,
+            LlmRateLimitProperties rateLimit, LlmCircuitBreakerProperties circuitBreaker, LlmHedgeProperties hedge,
+            LlmCascadeProperties cascadeProperties, LlmSchedulerProperties schedulerProperties,
+            LlmBatchProperties batchProperties, LlmFactCheckProperties factCheckProperties,
+            OutboundHttpClient httpClient, MeterRegistry meterRegistry) {
+        int maxInFlight = clientProperties.getMaxInFlight();
+        int requestsPerMinute = rateLimit.getRequestsPerMinute();
+        int tokensPerMinute = rateLimit.getTokensPerMinute();
+        Duration maxWait = Duration.ofMillis(rateLimit.getMaxWaitMs());
+        Duration hedgeDelay = Duration.ofMillis(hedge.getDelayMs());
+        Duration hedgeMinDelay = Duration.ofMillis(hedge.getMinDelayMs());
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxInFlight);
+        dispatcher.setMaxRequestsPerHost(maxInFlight);
+        // Shares the application's connection pool; the own dispatcher bounds in-flight LLM calls
+        this.client = httpClient.client(OutboundHttpClient.LLM).newBuilder()
+                .dispatcher(dispatcher)
+                .build();
         this.gson = new Gson();
+        this.responseCache = responseCache;
+        this.promptCompactor = promptCompactor;
+        this.fallbackTagger = fallbackTagger;
+        this.localClassifier = localClassifier;
+        this.journal = journal;
+        this.maxQueued = clientProperties.getMaxQueued();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "llm-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.rateLimitRetries = rateLimit.getRetries();
+        this.llmScheduler = new LlmScheduler(schedulerProperties.getMaxConcurrent(),
+                schedulerProperties.getBatchShare(), schedulerProperties.getBackgroundShare(),
+                schedulerProperties.getMaxQueued(), schedulerProperties.getAgingMs());
+        this.model = providerProperties.getModel();
+        this.metrics = new LlmMetrics(meterRegistry);
+
+        List<LlmProvider> providers = new ArrayList<>();
+        providers.add(new LlmProvider("primary", providerProperties.getApiUrl(), providerProperties.getApiKey(),
+                providerProperties.getModel(), providerProperties.isJsonMode(),
+                new LlmRateLimiter(requestsPerMinute, tokensPerMinute, maxWait, scheduler),
+                newCircuitBreaker(circuitBreaker)));
+        for (LlmProviderProperties.Provider extra : providerProperties.getProviders()) {
+            int rpm = extra.getRequestsPerMinute() != null ? extra.getRequestsPerMinute() : requestsPerMinute;
+            int tpm = extra.getTokensPerMinute() != null ? extra.getTokensPerMinute() : tokensPerMinute;
+            boolean jsonMode = extra.getJsonMode() != null ? extra.getJsonMode() : providerProperties.isJsonMode();
+            providers.add(new LlmProvider(extra.getName(), extra.getApiUrl(), extra.getApiKey(), extra.getModel(),
+                    jsonMode,
+                    new LlmRateLimiter(rpm, tpm, maxWait, scheduler),
+                    newCircuitBreaker(circuitBreaker)));
+        }
+        this.router = new LlmRouter(providers, scheduler, hedge.isEnabled(), hedgeDelay, hedgeMinDelay);
+        logger.info("LLM providers: {}", router.getProviders().stream().map(LlmProvider::getName).toList());
+
+        String cascadeModel = cascadeProperties.getModel();
+        if (cascadeModel == null || cascadeModel.isBlank()) {
+            this.smallModel = null;
+            this.smallRouter = null;
+        } else {
+            // Same endpoint as the primary provider; providers limit each model separately
+            this.smallModel = cascadeModel;
+            this.smallRouter = new LlmRouter(List.of(new LlmProvider("cascade", providerProperties.getApiUrl(),
+                    providerProperties.getApiKey(), cascadeModel, providerProperties.isJsonMode(),
+                    new LlmRateLimiter(cascadeProperties.getRequestsPerMinute(),
+                            cascadeProperties.getTokensPerMinute(), maxWait, scheduler),
+                    newCircuitBreaker(circuitBreaker))),
+                    scheduler, false, hedgeDelay, hedgeMinDelay);
+            logger.info("Classification cascade: {} first, then {}", cascadeModel, model);
+        }
+        boolean lazyDetails = clientProperties.getDetails().isLazy();
+        this.lazyDetails = lazyDetails;
+        this.classifyMaxTokens = lazyDetails ? SUMMARY_MAX_TOKENS : MAX_TOKENS;
+        this.classifyCompletionTokens = lazyDetails ? SUMMARY_COMPLETION_TOKENS : EXPECTED_COMPLETION_TOKENS;
+        this.cascade = new ClassificationCascade(cascadeProperties.getMaxInputTokens(), cascadeProperties.getMinTags(),
+                lazyDetails ? 0 : cascadeProperties.getMinDetailedContent());
+        this.cascadeMaxTokens = cascadeProperties.getMaxTokens();
+        this.combinedEnabled = clientProperties.getCombined().isEnabled();
+        this.batchMaxItems = batchProperties.getMaxItems();
+        this.batchPromptTokens = batchProperties.getPromptTokens();
+        this.batchItemTokens = batchProperties.getItemTokens();
+        this.factCheckChunkTokens = factCheckProperties.getChunkTokens();
+        this.factCheckMaxChunks = factCheckProperties.getMaxChunks();
+        registerMetrics(meterRegistry);
+    }
+
+    private static LlmCircuitBreaker newCircuitBreaker(LlmCircuitBreakerProperties properties) {
+        int window = properties.getWindowSize();
+        return new LlmCircuitBreaker(window, Math.min(window, 5), properties.getFailureRate(),
+                properties.getSlowCallRate(), Duration.ofMillis(properties.getSlowCallMs()),
+                Duration.ofMillis(properties.getOpenMs()), 2);
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        for (LlmProvider provider : router.getProviders()) {
+            registerMetrics(registry, provider);
+        }
+        if (smallRouter != null) {
+            for (LlmProvider provider : smallRouter.getProviders()) {
+                registerMetrics(registry, provider);
+            }
+        }
+        FunctionCounter.builder("llm.hedge.sent", router, LlmRouter::getHedged)
+                .description("Duplicate requests sent to a second provider because the first was slow")
+                .register(registry);
+        FunctionCounter.builder("llm.hedge.won", router, LlmRouter::getHedgesWon)
+                .description("Hedged requests that answered before the original one")
+                .register(registry);
+        FunctionCounter.builder("llm.failover", router, LlmRouter::getFailovers)
+                .description("Calls retried on another provider after the first one failed")
+                .register(registry);
+        FunctionCounter.builder("llm.singleflight.calls", inFlightCalls, SingleFlight::getExecutions)
+                .tag("result", "executed")
+                .description("LLM calls sent, and identical calls that shared one already in flight")
+                .register(registry);
+        FunctionCounter.builder("llm.singleflight.calls", inFlightCalls, SingleFlight::getShared)
+                .tag("result", "shared")
+                .description("LLM calls sent, and identical calls that shared one already in flight")
+                .register(registry);
+        Gauge.builder("llm.singleflight.inflight", inFlightCalls, SingleFlight::inFlightCount)
+                .description("LLM calls in flight that identical calls can join")
+                .register(registry);
+        for (LlmPriority priority : LlmPriority.values()) {
+            String tag = priority.name().toLowerCase();
+            Gauge.builder("llm.scheduler.queued", llmScheduler, s -> s.queued(priority))
+                    .tag("priority", tag)
+                    .description("Calls waiting for a slot of their priority class")
+                    .register(registry);
+            Gauge.builder("llm.scheduler.running", llmScheduler, s -> s.running(priority))
+                    .tag("priority", tag)
+                    .description("Calls of the priority class holding a slot")
+                    .register(registry);
+            FunctionTimer.builder("llm.scheduler.wait", llmScheduler, s -> s.started(priority),
+                    s -> s.waitNanos(priority), TimeUnit.NANOSECONDS)
+                    .tag("priority", tag)
+                    .description("Time calls spent queued before getting a slot")
+                    .register(registry);
+            FunctionCounter.builder("llm.scheduler.rejected", llmScheduler, s -> s.rejected(priority))
+                    .tag("priority", tag)
+                    .description("Calls refused because their class queue was full")
+                    .register(registry);
+        }
+        FunctionCounter.builder("llm.scheduler.promoted", llmScheduler, LlmScheduler::getPromoted)
+                .description("Calls started ahead of a higher class because they waited too long")
+                .register(registry);
+    }
+
+    private void registerMetrics(MeterRegistry registry, LlmProvider provider) {
+        LlmRateLimiter rateLimiter = provider.getRateLimiter();
+        LlmCircuitBreaker circuitBreaker = provider.getCircuitBreaker();
+        String name = provider.getName();
+        Gauge.builder("llm.ratelimit.available", rateLimiter, LlmRateLimiter::availableRequests)
+                .tags("provider", name, "resource", "requests")
+                .description("Requests the client-side rate limiter would grant right now")
+                .register(registry);
+        Gauge.builder("llm.ratelimit.available", rateLimiter, LlmRateLimiter::availableTokens)
+                .tags("provider", name, "resource", "tokens")
+                .description("Tokens the client-side rate limiter would grant right now")
+                .register(registry);
+        Gauge.builder("llm.ratelimit.waiting", rateLimiter, LlmRateLimiter::waitingCount)
+                .tag("provider", name)
+                .description("Calls waiting for rate limit budget")
+                .register(registry);
+        FunctionCounter.builder("llm.ratelimit.throttled", rateLimiter, LlmRateLimiter::getThrottled)
+                .tag("provider", name)
+                .description("Responses rejected by the provider with HTTP 429")
+                .register(registry);
+        FunctionCounter.builder("llm.ratelimit.rejected", rateLimiter, LlmRateLimiter::getRejected)
+                .tag("provider", name)
+                .description("Calls given up after waiting the maximum time for budget")
+                .register(registry);
+        Gauge.builder("llm.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .tag("provider", name)
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(registry);
+        FunctionCounter.builder("llm.circuit.short_circuited", circuitBreaker, LlmCircuitBreaker::getShortCircuited)
+                .tag("provider", name)
+                .description("Calls refused because the provider's circuit was open")
+                .register(registry);
+        FunctionCounter.builder("llm.circuit.opened", circuitBreaker, LlmCircuitBreaker::getOpened)
+                .tag("provider", name)
+                .register(registry);
+        Gauge.builder("llm.provider.latency", provider, LlmProvider::latencyMillis)
+                .tag("provider", name)
+                .description("Moving average of the provider's response time in milliseconds")
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("llm.provider.error_rate", provider, LlmProvider::errorRate)
+                .tag("provider", name)
+                .description("Moving average of the provider's failed calls (0..1)")
+                .register(registry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
     }
 
     /**
@@ -59,259 +324,1055 @@ public class LlamaAIService {
      * @return classification result with suggestions
      */
     public ClassificationResult classifyContent(String content) {
+        return classifyContentAsync(content).join();
+    }
+
+    /**
+     * Non-blocking variant of {@link #classifyContent(String)}. The returned
+     * future never completes exceptionally: failures degrade to the local
+     * fallback result.
+     */
+    public CompletableFuture<ClassificationResult> classifyContentAsync(String content) {
+        return classifyContentAsync(content, LlmPriority.INTERACTIVE);
+    }
+
+    /**
+     * Like {@link #classifyContentAsync(String)}, scheduled with the given
+     * priority. An interactive classification of the same content started
+     * later joins this call and lifts its priority; with
+     * {@code combined.enabled} that holds for background classifications too,
+     * as both go through {@link #classifyAndVerifyAsync}.
+     */
+    public CompletableFuture<ClassificationResult> classifyContentAsync(String content, LlmPriority priority) {
         if (content == null || content.trim().isEmpty()) {
-            return createDefaultResult();
+            return CompletableFuture.completedFuture(createDefaultResult());
         }
 
         logger.info("Classifying content of length: {}", content.length());
 
         // If no API key is configured, generate basic content from text
-        if (apiKey == null || apiKey.isEmpty() || apiKey.equals("your-groq-api-key-here")) {
+        if (!isApiKeyConfigured()) {
             logger.warn("LLaMA API key not configured, generating basic content");
-            return createSmartDefaultResult(content);
+            return CompletableFuture.completedFuture(createSmartDefaultResult(content));
         }
 
-        try {
-            String prompt = buildClassificationPrompt(content);
-            logger.info("Sending prompt to LLaMA, length: {}", prompt.length());
-            String response = callLlamaApi(prompt);
-            logger.info("Response received from LLaMA, length: {}", response != null ? response.length() : 0);
-            if (response == null || response.trim().isEmpty()) {
-                logger.warn("Empty response from LLaMA, generating basic content");
-                return createSmartDefaultResult(content);
+        List<String> sentences = null;
+        String combinedPrompt = null;
+        if (combinedEnabled) {
+            sentences = factCheckSentences(content);
+            combinedPrompt = buildCombinedPrompt(content, FactCheckChunker.numbered(sentences));
+            ClassificationResult combined = cachedCombinedClassification(content, combinedPrompt);
+            if (combined != null) {
+                return CompletableFuture.completedFuture(combined);
             }
-            ClassificationResult result = parseLlamaResponse(response, content);
+        }
+        ClassificationResult local = createLocalResult(content);
+        if (local != null) {
+            return CompletableFuture.completedFuture(local);
+        }
+        if (combinedEnabled && priority != LlmPriority.BATCH) {
+            return classifyAndVerify(content, sentences, combinedPrompt, priority)
+                    .thenApply(CombinedResult::classification);
+        }
+
+        String prompt = buildClassificationPrompt(content);
+        logger.info("Sending prompt to LLaMA, length: {}", prompt.length());
+        return classifyInCascade(content, prompt, LlmMetrics.CLASSIFY, classifyMaxTokens, classifyCompletionTokens,
+                priority)
+                .thenApply(response -> toClassificationResult(response, content))
+                .exceptionally(e -> {
+                    logFailure("Error classifying content with LLaMA", e);
+                    return createSmartDefaultResult(content);
+                });
+    }
+
+    /**
+     * Classifies content while streaming the model output. Fields are reported
+     * to the listener as soon as the model finishes them; the returned future
+     * completes with the same final result {@link #classifyContent(String)}
+     * would produce (including the local fallback on errors).
+     *
+     * A cached answer is replayed, including one of the small model the
+     * cascade accepts; otherwise the main model is streamed without trying
+     * the small model first, which would hold back the first field.
+     */
+    public CompletableFuture<ClassificationResult> classifyContentStreaming(String content,
+            ClassificationStreamParser.Listener listener) {
+        if (content == null || content.trim().isEmpty()) {
+            return CompletableFuture.completedFuture(createDefaultResult());
+        }
+        if (!isApiKeyConfigured()) {
+            logger.warn("LLaMA API key not configured, generating basic content");
+            return CompletableFuture.completedFuture(createSmartDefaultResult(content));
+        }
+
+        ClassificationResult ready = combinedEnabled ? cachedCombinedClassification(content,
+                buildCombinedPrompt(content, FactCheckChunker.numbered(factCheckSentences(content)))) : null;
+        if (ready == null) {
+            ready = createLocalResult(content);
+        }
+        if (ready != null) {
+            replay(ready, listener);
+            return CompletableFuture.completedFuture(ready);
+        }
+
+        String prompt = buildClassificationPrompt(content);
+        String cacheKey = LlmResponseCache.key(model, prompt);
+        ClassificationStreamParser parser = new ClassificationStreamParser(
+                lazyDetails ? withoutDetails(listener) : listener);
+
+        String cached = cachedCascadeAnswer(prompt);
+        CompletableFuture<String> response;
+        if (cached != null) {
+            logger.info("LLM cache hit for streamed classification (key: {})", cacheKey.substring(0, 12));
+            parser.accept(cached);
+            response = CompletableFuture.completedFuture(cached);
+        } else {
+            response = streamLlamaApi(prompt, cacheKey, parser::accept);
+        }
 
-            // Validate that the result has useful content
-            if (result.getTitle().equals("Note") && result.getSummary().isEmpty() &&
-                    result.getDetailedContent().contains("Unprocessed content")) {
-                logger.warn("Result appears to be default, generating smart content");
-                return createSmartDefaultResult(content);
+        return metrics.time(LlmMetrics.CLASSIFY, model, prompt, response)
+                .thenApply(r -> toClassificationResult(r, content))
+                .exceptionally(e -> {
+                    logFailure("Error streaming classification from LLaMA", e);
+                    return createSmartDefaultResult(content);
+                });
+    }
+
+    /**
+     * Reports a finished classification to a streaming listener, as if the
+     * model had just generated it.
+     */
+    static void replay(ClassificationResult result, ClassificationStreamParser.Listener listener) {
+        listener.onField("type", result.getType());
+        listener.onField("title", result.getTitle());
+        listener.onField("summary", result.getSummary());
+        listener.onField("destination", result.getDestination());
+        listener.onTags(List.of(result.getTags()));
+        if (result.getDetailedContent() != null) {
+            listener.onDetailedContentDelta(result.getDetailedContent());
+        }
+    }
+
+    /**
+     * Drops detailedContent deltas a model writes although the two-phase
+     * prompt does not ask for them, as the final result does.
+     */
+    private static ClassificationStreamParser.Listener withoutDetails(ClassificationStreamParser.Listener listener) {
+        return new ClassificationStreamParser.Listener() {
+            @Override
+            public void onField(String name, String value) {
+                listener.onField(name, value);
             }
 
-            logger.info("Parsed result - title: '{}', tags: {}", result.getTitle(), result.getTags().length);
-            return result;
-        } catch (Exception e) {
-            logger.error("Error classifying content with LLaMA: {}", e.getMessage(), e);
+            @Override
+            public void onTags(List<String> tags) {
+                listener.onTags(tags);
+            }
+
+            @Override
+            public void onDetailedContentDelta(String delta) {
+            }
+        };
+    }
+
+    /**
+     * Classifies several independent contents with as few model calls as
+     * possible. Contents are compacted to {@code batch.itemTokens} and packed
+     * into calls of at most {@code batch.maxItems} items and
+     * {@code batch.promptTokens} prompt tokens. A call whose answer is cut off
+     * or is not a batch answer is split in halves and retried; an item
+     * missing from an otherwise valid answer is classified on its own. As
+     * with {@link #classifyContentAsync(String)}, the returned future never
+     * completes exceptionally.
+     *
+     * @return one result per content, in the same order
+     */
+    public CompletableFuture<List<ClassificationResult>> classifyBatchAsync(List<String> contents) {
+        List<ClassificationResult> results = new ArrayList<>(Collections.nCopies(contents.size(), null));
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < contents.size(); i++) {
+            String content = contents.get(i);
+            if (content == null || content.trim().isEmpty()) {
+                results.set(i, createDefaultResult());
+            } else if (!isApiKeyConfigured()) {
+                results.set(i, createSmartDefaultResult(content));
+            } else {
+                ClassificationResult local = createLocalResult(content);
+                if (local != null) {
+                    results.set(i, local);
+                } else {
+                    pending.add(i);
+                }
+            }
+        }
+        if (pending.isEmpty()) {
+            return CompletableFuture.completedFuture(results);
+        }
+
+        List<String> compacted = new ArrayList<>();
+        List<Integer> costs = new ArrayList<>();
+        for (int index : pending) {
+            String itemContent = promptCompactor.compact(contents.get(index), batchItemTokens);
+            compacted.add(itemContent);
+            costs.add(TokenEstimator.estimate(itemContent));
+        }
+        List<List<Integer>> groups = ClassificationBatcher.pack(costs, batchMaxItems, batchPromptTokens);
+        logger.info("Classifying {} items in {} batched calls", pending.size(), groups.size());
+
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        for (List<Integer> group : groups) {
+            List<String> originals = new ArrayList<>();
+            List<String> groupContents = new ArrayList<>();
+            for (int position : group) {
+                originals.add(contents.get(pending.get(position)));
+                groupContents.add(compacted.get(position));
+            }
+            calls.add(classifyGroup(originals, groupContents).thenAccept(groupResults -> {
+                for (int i = 0; i < group.size(); i++) {
+                    results.set(pending.get(group.get(i)), groupResults.get(i));
+                }
+            }));
+        }
+        return CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).thenApply(done -> results);
+    }
+
+    private CompletableFuture<List<ClassificationResult>> classifyGroup(List<String> originals,
+            List<String> compacted) {
+        if (originals.size() == 1) {
+            return classifyContentAsync(originals.get(0), LlmPriority.BATCH).thenApply(List::of);
+        }
+
+        int size = originals.size();
+        String prompt = buildBatchClassificationPrompt(compacted);
+        return metrics.time(LlmMetrics.CLASSIFY_BATCH, model, prompt,
+                callLlamaApiAsync(prompt, Math.min(MAX_TOKENS, size * BATCH_MAX_TOKENS_PER_ITEM),
+                        size * BATCH_COMPLETION_TOKENS_PER_ITEM, LlmPriority.BATCH))
+                .handle((response, error) -> {
+                    if (error != null) {
+                        // Unavailable or rate limited: per-item calls would fail the same way
+                        logFailure("Error classifying batch with LLaMA", error);
+                        List<ClassificationResult> fallbacks = new ArrayList<>();
+                        originals.forEach(content -> fallbacks.add(createSmartDefaultResult(content)));
+                        return CompletableFuture.completedFuture(fallbacks);
+                    }
+                    Map<Integer, JsonObject> byId = ClassificationBatcher.parseResults(extractJSON(response), size);
+                    if (byId == null) {
+                        logger.warn("Batch answer for {} items could not be parsed, splitting", size);
+                        metrics.parseFailure(LlmMetrics.CLASSIFY_BATCH, model);
+                        int half = size / 2;
+                        return classifyGroup(originals.subList(0, half), compacted.subList(0, half))
+                                .thenCombine(classifyGroup(originals.subList(half, size), compacted.subList(half, size)),
+                                        (first, second) -> {
+                                            List<ClassificationResult> joined = new ArrayList<>(first);
+                                            joined.addAll(second);
+                                            return joined;
+                                        });
+                    }
+                    return mapBatchResults(byId, originals);
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Asks the small model first when the cascade is enabled and the content
+     * is short enough, keeping its answer if {@link ClassificationCascade}
+     * accepts it; otherwise, or if the small model fails, asks the large
+     * model. Outcomes per tier are counted in {@code llm.cascade.requests},
+     * and the latency of each tier is timed under its own model.
+     *
+     * @param operation          operation the latency is timed under
+     * @param maxTokens          completion limit of the large model
+     * @param expectedCompletion completion tokens reserved for the large model
+     * @return the raw answer of the model that was kept
+     */
+    private CompletableFuture<String> classifyInCascade(String content, String prompt, String operation,
+            int maxTokens, int expectedCompletion, LlmPriority priority) {
+        if (smallRouter == null || !smallRouter.hasProviders()) {
+            return metrics.time(operation, model, prompt,
+                    callLlamaApiAsync(prompt, maxTokens, expectedCompletion, priority));
+        }
+        if (!cascade.startsSmall(content)) {
+            metrics.cascade(ClassificationCascade.LARGE, model, ClassificationCascade.LONG_INPUT);
+            return metrics.time(operation, model, prompt,
+                    callLlamaApiAsync(prompt, maxTokens, expectedCompletion, priority));
+        }
+        return metrics.time(operation, smallModel, prompt,
+                callLlamaApiAsync(smallRouter, smallModel, prompt, Math.min(cascadeMaxTokens, maxTokens),
+                        Math.min(cascadeMaxTokens / 2, expectedCompletion), priority))
+                .handle((response, error) -> {
+                    String outcome = error != null ? ClassificationCascade.ERROR : cascade.review(response);
+                    metrics.cascade(ClassificationCascade.SMALL, smallModel, outcome);
+                    if (outcome.equals(ClassificationCascade.ACCEPTED)) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    if (error == null) {
+                        // Cached when it was read; a rejected answer must not serve later lookups
+                        responseCache.remove(LlmResponseCache.key(smallModel, prompt));
+                    }
+                    logger.info("Escalating classification to {} ({})", model, outcome);
+                    metrics.cascade(ClassificationCascade.LARGE, model, ClassificationCascade.ESCALATED);
+                    return metrics.time(operation, model, prompt,
+                            callLlamaApiAsync(prompt, maxTokens, expectedCompletion, priority));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Classifies and fact-checks content with one call and one prompt
+     * ({@code combined.enabled} routes interactive and background
+     * classifications here). The content is sent once, as numbered sentences,
+     * and the answer holds the classification fields plus the claims of each
+     * sentence. The sentences are those {@link #verifyInformationAsync(String)}
+     * checks, compacted to the same budget. The call goes through the cascade like a classification, with
+     * the classification budget plus room for the claims.
+     *
+     * The answer is cached under its prompt, where a later classification of
+     * the same content finds it, and the verdicts are cached per
+     * sentence like those of {@link #verifyInformationAsync(String)}, which
+     * then only sends the sentences the combined call did not cover. As with
+     * {@link #classifyContentAsync(String)}, the returned future never
+     * completes exceptionally.
+     */
+    public CompletableFuture<CombinedResult> classifyAndVerifyAsync(String content, LlmPriority priority) {
+        if (content == null || content.trim().isEmpty()) {
+            return CompletableFuture.completedFuture(new CombinedResult(createDefaultResult(), List.of()));
+        }
+        if (!isApiKeyConfigured()) {
+            logger.warn("LLaMA API key not configured, generating basic content");
+            return CompletableFuture.completedFuture(new CombinedResult(createSmartDefaultResult(content), List.of()));
+        }
+
+        List<String> sentences = factCheckSentences(content);
+        return classifyAndVerify(content, sentences, buildCombinedPrompt(content, FactCheckChunker.numbered(sentences)),
+                priority);
+    }
+
+    private CompletableFuture<CombinedResult> classifyAndVerify(String content, List<String> sentences,
+            String prompt, LlmPriority priority) {
+        logger.info("Classifying and fact-checking {} sentences in one call", sentences.size());
+        return classifyInCascade(content, prompt, LlmMetrics.CLASSIFY_FACT_CHECK,
+                Math.min(MAX_TOKENS, classifyMaxTokens + CLAIMS_MAX_TOKENS),
+                Math.min(EXPECTED_COMPLETION_TOKENS, classifyCompletionTokens + CLAIMS_COMPLETION_TOKENS), priority)
+                .thenApply(response -> {
+                    ClassificationResult classification = toClassificationResult(response, content);
+                    List<List<FactCheckResponseDto.ClaimVerification>> verdicts = List.of();
+                    try {
+                        FactCheckChunker.Verdicts assigned = FactCheckChunker.assign(
+                                LlmResponseDecoder.readNumberedClaims(response), sentences);
+                        verdicts = assigned.bySentence();
+                        if (assigned.complete()) {
+                            for (int i = 0; i < sentences.size(); i++) {
+                                responseCache.put(verdictKey(sentences.get(i)), gson.toJson(verdicts.get(i)));
+                            }
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        logger.warn("Malformed claims in combined answer: {}", e.getMessage());
+                        metrics.parseFailure(LlmMetrics.CLASSIFY_FACT_CHECK, model);
+                    }
+                    return new CombinedResult(classification,
+                            FactCheckChunker.merge(verdicts.stream().flatMap(List::stream).toList()));
+                })
+                .exceptionally(e -> {
+                    logFailure("Error classifying and fact-checking content with LLaMA", e);
+                    return new CombinedResult(createSmartDefaultResult(content), List.of());
+                });
+    }
+
+    /**
+     * @param prompt the combined prompt of this content
+     * @return the classification part of a cached combined answer for this
+     *         content, or null
+     */
+    private ClassificationResult cachedCombinedClassification(String content, String prompt) {
+        String cached = cachedCascadeAnswer(prompt);
+        if (cached == null) {
+            return null;
+        }
+        logger.info("Classification served from a combined classify + fact-check answer");
+        return toClassificationResult(cached, content);
+    }
+
+    /**
+     * @return the cached large-model answer to a cascade prompt or, failing
+     *         that, a cached small-model answer the cascade accepts; null if
+     *         there is neither
+     */
+    private String cachedCascadeAnswer(String prompt) {
+        String cached = responseCache.get(LlmResponseCache.key(model, prompt));
+        if (cached != null || smallModel == null) {
+            return cached;
+        }
+        String small = responseCache.get(LlmResponseCache.key(smallModel, prompt));
+        return small != null && cascade.review(small).equals(ClassificationCascade.ACCEPTED) ? small : null;
+    }
+
+    /**
+     * Sentences of the content as fact-checked: longer content than
+     * {@code factCheck.maxChunks} chunks is compacted first. The combined call
+     * and {@link #verifyInformationAsync(String)} share them, so the verdicts
+     * one caches are found by the other.
+     */
+    private List<String> factCheckSentences(String content) {
+        return FactCheckChunker.sentences(promptCompactor.compact(content, factCheckChunkTokens * factCheckMaxChunks));
+    }
+
+    /**
+     * Generates the detailed Markdown document of a saved note, the part of a
+     * classification left out in two-phase mode. Someone is waiting for it,
+     * so it is scheduled as {@link LlmPriority#INTERACTIVE}. The returned
+     * future never completes exceptionally: on failure the document is built
+     * locally and flagged as fallback.
+     *
+     * @param title   title of the note
+     * @param content body of the note
+     */
+    public CompletableFuture<DetailedContentResult> generateDetailedContentAsync(String title, String content) {
+        String body = content != null ? content : "";
+        if (body.isBlank() || !isApiKeyConfigured()) {
+            return CompletableFuture.completedFuture(
+                    new DetailedContentResult(buildDetailedContentFromSummary(title, "", body), true));
+        }
+
+        String prompt = buildDetailedContentPrompt(title, body);
+        return metrics.time(LlmMetrics.DETAILS, model, prompt,
+                callLlamaApiAsync(prompt, MAX_TOKENS, EXPECTED_COMPLETION_TOKENS, LlmPriority.INTERACTIVE))
+                .thenApply(response -> {
+                    String detailedContent = null;
+                    try {
+                        LlmResponseDecoder.Classification json = LlmResponseDecoder.readClassification(response);
+                        detailedContent = json != null ? json.detailedContent : null;
+                    } catch (IOException | RuntimeException e) {
+                        logger.warn("Malformed detailed content answer: {}", e.getMessage());
+                    }
+                    if (detailedContent == null || detailedContent.length() < MIN_DETAILED_CONTENT) {
+                        metrics.parseFailure(LlmMetrics.DETAILS, model);
+                        return new DetailedContentResult(buildDetailedContentFromSummary(title, "", body), true);
+                    }
+                    return new DetailedContentResult(detailedContent, false);
+                })
+                .exceptionally(e -> {
+                    logFailure("Error generating detailed content with LLaMA", e);
+                    return new DetailedContentResult(buildDetailedContentFromSummary(title, "", body), true);
+                });
+    }
+
+    private CompletableFuture<List<ClassificationResult>> mapBatchResults(Map<Integer, JsonObject> byId,
+            List<String> originals) {
+        List<CompletableFuture<ClassificationResult>> items = new ArrayList<>();
+        for (int i = 0; i < originals.size(); i++) {
+            JsonObject entry = byId.get(i + 1);
+            String original = originals.get(i);
+            ClassificationResult result = null;
+            if (entry != null && entry.has("title") && !entry.get("title").getAsString().isBlank()) {
+                try {
+                    result = toClassification(LlmResponseDecoder.classificationOf(entry), original);
+                } catch (RuntimeException e) {
+                    logger.warn("Invalid batch entry {}: {}", i + 1, e.getMessage());
+                }
+            }
+            if (result != null) {
+                items.add(CompletableFuture.completedFuture(result));
+            } else {
+                logger.info("Item {} missing from batch answer, classifying it on its own", i + 1);
+                items.add(classifyContentAsync(original, LlmPriority.BATCH));
+            }
+        }
+        return CompletableFuture.allOf(items.toArray(new CompletableFuture[0]))
+                .thenApply(done -> items.stream().map(CompletableFuture::join).toList());
+    }
+
+    private ClassificationResult toClassificationResult(String response, String content) {
+        logger.info("Response received from LLaMA, length: {}", response != null ? response.length() : 0);
+        if (response == null || response.trim().isEmpty()) {
+            logger.warn("Empty response from LLaMA, generating basic content");
+            metrics.parseFailure(LlmMetrics.CLASSIFY, model);
+            return createSmartDefaultResult(content);
+        }
+        ClassificationResult result = parseLlamaResponse(response, content);
+
+        // Validate that the result has useful content
+        if (result.getTitle().equals("Note") && result.getSummary().isEmpty() &&
+                result.getDetailedContent() != null && result.getDetailedContent().contains("Unprocessed content")) {
+            logger.warn("Result appears to be default, generating smart content");
+            metrics.parseFailure(LlmMetrics.CLASSIFY, model);
             return createSmartDefaultResult(content);
         }
+
+        logger.info("Parsed result - title: '{}', tags: {}", result.getTitle(), result.getTags().length);
+        return result;
+    }
+
+    private boolean isApiKeyConfigured() {
+        return router.hasProviders();
+    }
+
+    @FunctionalInterface
+    private interface ResponseHandler {
+        String handle(Response response) throws IOException;
+    }
+
+    private static void logFailure(String message, Throwable e) {
+        Throwable cause = unwrap(e);
+        if (cause instanceof LlmUnavailableException) {
+            logger.warn("{}: {}, using local fallback", message, cause.getMessage());
+        } else {
+            logger.error("{}: {}", message, cause.getMessage(), cause);
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
     }
 
     /**
      * Builds the prompt for LLaMA - optimized for better accuracy.
      */
     private String buildClassificationPrompt(String content) {
-        String contentPreview = content.substring(0, Math.min(content.length(), 15000));
-        boolean isVideo = content.contains("VIDEO") || content.contains("YOUTUBE VIDEO") ||
-                content.contains("CHANNEL:") || content.contains("VIDEO TITLE:");
+        String contentPreview = promptCompactor.compact(content);
+        boolean isVideo = isVideo(content);
 
         return "Analyze the following content and generate a JSON classification. " +
                 "BE SPECIFIC AND PRECISE. DO NOT use generic tags like 'general'.\n\n" +
                 "CONTENT:\n" + contentPreview + "\n\n" +
-                "MANDATORY RULES:\n" +
+                classificationRules(isVideo) +
+                "Respond ONLY with valid JSON, no additional text:\n" +
+                "{" + classificationSchema() + "}";
+    }
+
+    private static boolean isVideo(String content) {
+        return content.contains("VIDEO") || content.contains("YOUTUBE VIDEO") ||
+                content.contains("CHANNEL:") || content.contains("VIDEO TITLE:");
+    }
+
+    /**
+     * Classification rules shared by the classification and combined prompts.
+     */
+    private String classificationRules(boolean isVideo) {
+        return "MANDATORY RULES:\n" +
                 "1. TITLE: Create a descriptive and specific title based on the actual content (max 120 characters)\n"
                 +
                 "2. SUMMARY: Detailed summary of 200-800 characters explaining WHAT it teaches, WHAT concepts it covers, WHAT technologies it mentions\n"
                 +
-                "3. DETAILEDCONTENT: Complete Markdown document (min 500 characters) with:\n" +
-                "   - Main title\n" +
-                "   - Executive summary\n" +
-                "   - Key points by sections\n" +
-                "   - Important concepts\n" +
-                "   - Technologies/frameworks mentioned\n" +
-                "   - Conclusions or takeaways\n" +
-                "4. TYPE: 'video', 'article', 'tutorial', 'code', 'documentation', 'research', or 'note'\n" +
-                "5. DESTINATION: 'note', 'idea', 'resource', or 'task'\n" +
-                "6. TAGS: Array with 4-6 SPECIFIC tags extracted from the content. " +
+                "3. TYPE: 'video', 'article', 'tutorial', 'code', 'documentation', 'research', or 'note'\n" +
+                "4. DESTINATION: 'note', 'idea', 'resource', or 'task'\n" +
+                "5. TAGS: Array with 4-6 SPECIFIC tags extracted from the content. " +
                 "Examples: 'react-hooks', 'spanish-football', 'public-healthcare', 'graph-algorithms'. " +
-                "FORBIDDEN: 'general', 'various', 'others', 'technology', 'programming'.\n\n" +
+                "FORBIDDEN: 'general', 'various', 'others', 'technology', 'programming'.\n" +
+                (lazyDetails ? "" : "6. DETAILEDCONTENT: " + DETAILED_CONTENT_RULES) +
+                "\n" +
                 (isVideo
                         ? "THIS IS A VIDEO: Analyze the title and description to extract specific topics, technologies and concepts.\n\n"
-                        : "")
-                +
-                "Respond ONLY with valid JSON, no additional text:\n" +
-                "{\"type\":\"type\",\"title\":\"title\",\"summary\":\"summary\",\"detailedContent\":\"# Title\\n\\n## Summary\\n\\n...\",\"destination\":\"note\",\"tags\":[\"tag1\",\"tag2\",\"tag3\",\"tag4\"]}";
+                        : "");
     }
 
     /**
-     * Calls the LLaMA API (Groq - OpenAI-compatible format).
+     * Classification fields of the JSON answer, without the braces.
      */
-    private String callLlamaApi(String prompt) throws IOException {
-        JsonObject requestBody = new JsonObject();
-        requestBody.addProperty("model", model);
-        requestBody.addProperty("max_tokens", 4000);
-        requestBody.addProperty("temperature", 0.7);
+    private String classificationSchema() {
+        return "\"type\":\"type\",\"title\":\"title\",\"tags\":[\"tag1\",\"tag2\",\"tag3\",\"tag4\"],\"summary\":\"summary\",\"destination\":\"note\""
+                + (lazyDetails ? "" : ",\"detailedContent\":\"# Title\\n\\n## Summary\\n\\n...\"");
+    }
 
-        logger.info("Calling Groq API: {} with model: {}", apiUrl, model);
+    /**
+     * Builds the prompt of the combined classify + fact-check call: the
+     * content once, as numbered sentences, and one schema for both answers.
+     */
+    private String buildCombinedPrompt(String content, String numberedSentences) {
+        boolean isVideo = isVideo(content);
 
-        JsonArray messages = new JsonArray();
-        JsonObject message = new JsonObject();
-        message.addProperty("role", "user");
-        message.addProperty("content", prompt);
-        messages.add(message);
+        return "Analyze the following content: classify it and fact-check it. " +
+                "BE SPECIFIC AND PRECISE. DO NOT use generic tags like 'general'.\n\n" +
+                "CONTENT (one numbered sentence per line):\n" + numberedSentences + "\n\n" +
+                "CLASSIFICATION " + classificationRules(isVideo) + "\n" +
+                "FACT-CHECK " + FACT_CHECK_RULES + "\n" +
+                "Respond ONLY with valid JSON, no additional text:\n" +
+                "{" + classificationSchema() + ",\"claims\":[{\"sentence\":1,\"originalText\":\"text of the claim\"," +
+                "\"status\":\"true|false|suspicious\",\"explanation\":\"detailed explanation\"," +
+                "\"correction\":\"corrected version\"}]}";
+    }
 
-        requestBody.add("messages", messages);
+    private static final String DETAILED_CONTENT_RULES = "Complete Markdown document (min 500 characters) with:\n" +
+            "   - Main title\n" +
+            "   - Executive summary\n" +
+            "   - Key points by sections\n" +
+            "   - Important concepts\n" +
+            "   - Technologies/frameworks mentioned\n" +
+            "   - Conclusions or takeaways\n";
 
-        RequestBody body = RequestBody.create(requestBody.toString(), JSON);
-        Request request = new Request.Builder()
-                .url(apiUrl)
-                .header("Authorization", "Bearer " + apiKey)
-                .header("Content-Type", "application/json")
-                .post(body)
-                .build();
+    /**
+     * Builds the prompt for the detailed content of a saved note (second
+     * phase of the two-phase mode).
+     */
+    private String buildDetailedContentPrompt(String title, String content) {
+        return "Write the detailed Markdown document of the following note, in the language of the content.\n\n" +
+                "TITLE: " + title + "\n\n" +
+                "CONTENT:\n" + promptCompactor.compact(content) + "\n\n" +
+                "DETAILEDCONTENT: " + DETAILED_CONTENT_RULES + "\n" +
+                "Respond ONLY with valid JSON, no additional text:\n" +
+                "{\"detailedContent\":\"# Title\\n\\n## Summary\\n\\n...\"}";
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = response.body() != null ? response.body().string() : "";
-                logger.error("Error in Groq API response: HTTP {} - Body: {}", response.code(), errorBody);
-                throw new IOException("Unexpected code: " + response.code() + " - " + errorBody);
-            }
-
-            String responseBody = response.body().string();
-            logger.info("Successful response from Groq (length: {})", responseBody.length());
-            logger.debug("Complete response from Groq: {}", responseBody);
-            JsonObject jsonResponse = gson.fromJson(responseBody, JsonObject.class);
-
-            // Extract response content (OpenAI/Groq format)
-            JsonArray choices = jsonResponse.getAsJsonArray("choices");
-            if (choices != null && choices.size() > 0) {
-                JsonObject choice = choices.get(0).getAsJsonObject();
-                JsonObject messageObj = choice.getAsJsonObject("message");
-                if (messageObj != null && messageObj.has(CONST_CONTENT)) {
-                    String responseContent = messageObj.get(CONST_CONTENT).getAsString();
-                    logger.debug("Extracted content: {}",
-                            responseContent.substring(0, Math.min(responseContent.length(), 200)));
-                    return responseContent;
-                }
-            }
+    /**
+     * Builds the prompt for a batch of short items. Only the fields needed to
+     * file an entry are requested (no detailedContent) so the answer stays
+     * small enough for several items per call.
+     */
+    private String buildBatchClassificationPrompt(List<String> contents) {
+        StringBuilder items = new StringBuilder();
+        for (int i = 0; i < contents.size(); i++) {
+            items.append("### ITEM ").append(i + 1).append("\n").append(contents.get(i)).append("\n\n");
+        }
 
-            logger.warn("No content found in Groq response");
-            return "";
+        return "Analyze each of the following " + contents.size() + " independent items and generate a JSON " +
+                "classification for every one. BE SPECIFIC AND PRECISE. DO NOT use generic tags like 'general'.\n\n" +
+                items +
+                "MANDATORY RULES FOR EACH ITEM:\n" +
+                "1. TITLE: Create a descriptive and specific title based on the actual content (max 120 characters)\n" +
+                "2. SUMMARY: Summary of 100-400 characters explaining WHAT the item is about\n" +
+                "3. TYPE: 'video', 'article', 'tutorial', 'code', 'documentation', 'research', or 'note'\n" +
+                "4. DESTINATION: 'note', 'idea', 'resource', or 'task'\n" +
+                "5. TAGS: Array with 3-5 SPECIFIC tags extracted from the content. " +
+                "FORBIDDEN: 'general', 'various', 'others', 'technology', 'programming'.\n" +
+                "6. Classify every item on its own; never mix information between items. " +
+                "For videos, use the title and description to extract specific topics.\n\n" +
+                "Respond ONLY with valid JSON, no additional text, with one entry per item and the item number as id:\n" +
+                "{\"results\":[{\"id\":1,\"type\":\"type\",\"title\":\"title\",\"tags\":[\"tag1\",\"tag2\",\"tag3\"]," +
+                "\"summary\":\"summary\",\"destination\":\"note\"}]}";
+    }
+
+    /**
+     * Calls the LLaMA API (Groq - OpenAI-compatible format) without blocking
+     * the caller. Identical model + prompt pairs are answered from the response
+     * cache, and concurrent identical calls share a single upstream request
+     * (scheduled with the highest priority of its callers). Calls first wait for
+     * a slot of their priority class in the {@link LlmScheduler}, then for
+     * budget from the rate limiter. At most {@code maxInFlight} requests run
+     * at once; further calls wait in the dispatcher queue, which is bounded
+     * by {@code maxQueued}.
+     */
+    private CompletableFuture<String> callLlamaApiAsync(String prompt, LlmPriority priority) {
+        return callLlamaApiAsync(prompt, MAX_TOKENS, EXPECTED_COMPLETION_TOKENS, priority);
+    }
+
+    /**
+     * @param maxTokens          completion limit sent to the provider
+     * @param expectedCompletion completion tokens reserved from the rate limit
+     */
+    private CompletableFuture<String> callLlamaApiAsync(String prompt, int maxTokens, int expectedCompletion,
+            LlmPriority priority) {
+        return callLlamaApiAsync(router, model, prompt, maxTokens, expectedCompletion, priority);
+    }
+
+    /**
+     * @param target      providers to route the call to
+     * @param targetModel model the answer is cached under
+     */
+    private CompletableFuture<String> callLlamaApiAsync(LlmRouter target, String targetModel, String prompt,
+            int maxTokens, int expectedCompletion, LlmPriority priority) {
+        String cacheKey = LlmResponseCache.key(targetModel, prompt);
+        String cached = responseCache.get(cacheKey);
+        if (cached != null) {
+            logger.info("LLM cache hit (key: {}, length: {})", cacheKey.substring(0, 12), cached.length());
+            return CompletableFuture.completedFuture(cached);
         }
+
+        CompletableFuture<String> call = inFlightCalls.executeAsync(cacheKey, () -> llmScheduler.submit(priority,
+                cacheKey, () -> doCallLlamaApi(target, prompt, cacheKey, maxTokens, expectedCompletion, priority)));
+        // Joining a waiting call of a lower class lifts it to ours
+        llmScheduler.promote(cacheKey, priority);
+        return call;
+    }
+
+    private CompletableFuture<String> doCallLlamaApi(LlmRouter target, String prompt, String cacheKey,
+            int maxTokens, int expectedCompletion, LlmPriority priority) {
+        int estimatedTokens = estimateTokens(prompt, expectedCompletion);
+        return target.execute(estimatedTokens, provider -> send(provider,
+                buildRequest(provider, prompt, false, maxTokens), estimatedTokens, priority,
+                response -> readResponseContent(response, provider, prompt, cacheKey, estimatedTokens), 0));
     }
 
     /**
-     * Parses the LLaMA response.
+     * Streams a completion ({@code stream=true}), passing each content delta
+     * to the consumer as it arrives. Completes with the full content. Deltas
+     * cannot be taken back, so streamed calls go to the best provider only,
+     * without hedging or failover. Someone is always watching a stream, so it
+     * is scheduled as {@link LlmPriority#INTERACTIVE}.
      */
-    private ClassificationResult parseLlamaResponse(String response, String originalContent) {
-        try {
-            logger.debug("Parseando respuesta, longitud: {}", response.length());
+    private CompletableFuture<String> streamLlamaApi(String prompt, String cacheKey, Consumer<String> onDelta) {
+        int estimatedTokens = estimateTokens(prompt, classifyCompletionTokens);
+        return llmScheduler.submit(LlmPriority.INTERACTIVE, () -> {
+            LlmProvider provider = router.primary();
+            return send(provider, buildRequest(provider, prompt, true, classifyMaxTokens), estimatedTokens,
+                    LlmPriority.INTERACTIVE,
+                    response -> readStreamedContent(response, provider, prompt, cacheKey, onDelta, estimatedTokens), 0);
+        });
+    }
 
-            // Try to extract JSON from the response
-            String jsonStr = extractJSON(response);
-            logger.debug("Extracted JSON: {}", jsonStr.substring(0, Math.min(jsonStr.length(), 200)));
-
-            JsonObject json = gson.fromJson(jsonStr, JsonObject.class);
-
-            String type = json.has("type") ? json.get("type").getAsString() : CONST_NOTE;
-            String title = json.has("title") ? json.get("title").getAsString() : "Note";
-            String summary = json.has("summary") ? json.get("summary").getAsString() : "";
-            String detailedContent = json.has("detailedContent") ? json.get("detailedContent").getAsString() : "";
-            String destination = json.has("destination") ? json.get("destination").getAsString() : CONST_NOTE;
-
-            List<String> tags = new ArrayList<>();
-            if (json.has("tags") && json.get("tags").isJsonArray()) {
-                JsonArray tagsArray = json.getAsJsonArray("tags");
-                for (int i = 0; i < tagsArray.size(); i++) {
-                    String tag = tagsArray.get(i).getAsString();
-                    // Filter out generic tags
-                    if (!tag.equalsIgnoreCase("general") && !tag.equalsIgnoreCase("varios") &&
-                            !tag.equalsIgnoreCase("otros") && !tag.trim().isEmpty()) {
-                        tags.add(tag);
-                    }
-                }
-            }
+    /**
+     * Token count for budgeting: the prompt plus the completion we expect back.
+     */
+    private static int estimateTokens(String prompt, int expectedCompletion) {
+        return TokenEstimator.estimate(prompt) + expectedCompletion;
+    }
 
-            // If no valid tags, try to generate some from content
-            if (tags.isEmpty()) {
-                tags = generateTagsFromContent(originalContent, title, summary);
+    /**
+     * Waits for the provider's rate limit budget, then sends the request. A
+     * 429 pauses the limiter for the time the provider asked for and the call
+     * is retried up to {@code rateLimitRetries} times; every wait is bounded
+     * by {@code maxWaitMs}, and higher priority calls are granted budget
+     * first. While the provider's circuit breaker is open the call fails
+     * immediately with {@link LlmUnavailableException}. Cancelling the
+     * returned future cancels the wait or the HTTP call in progress.
+     */
+    private CompletableFuture<String> send(LlmProvider provider, Request request, int estimatedTokens,
+            LlmPriority priority, ResponseHandler handler, int attempt) {
+        LlmCircuitBreaker breaker = provider.getCircuitBreaker();
+        if (!breaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new LlmUnavailableException(provider.getName()));
+        }
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        CompletableFuture<Void> permit = provider.getRateLimiter().acquire(estimatedTokens, priority);
+        AtomicReference<CompletableFuture<?>> stage = new AtomicReference<>(permit);
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                stage.get().cancel(true);
             }
+        });
 
-            // If no detailedContent, create a detailed one
-            if (detailedContent.isEmpty() || detailedContent.length() < 200) {
-                detailedContent = buildDetailedContentFromSummary(title, summary, originalContent);
+        permit.whenComplete((granted, permitError) -> {
+            if (permitError != null || result.isDone()) {
+                breaker.release();
+                if (permitError != null) {
+                    result.completeExceptionally(unwrap(permitError));
+                }
+                return;
+            }
+            CompletableFuture<String> call = enqueue(provider, request, handler);
+            recordOutcome(provider, call);
+            stage.set(call);
+            if (result.isCancelled()) {
+                call.cancel(true);
             }
+            call.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                } else if (unwrap(error) instanceof LlmRateLimitException && attempt < rateLimitRetries
+                        && !result.isDone()) {
+                    logger.warn("{} rate limit hit, retrying (attempt {})", provider.getName(), attempt + 1);
+                    CompletableFuture<String> retry = send(provider, request, estimatedTokens, priority, handler,
+                            attempt + 1);
+                    stage.set(retry);
+                    retry.whenComplete((retryValue, retryError) -> {
+                        if (retryError == null) {
+                            result.complete(retryValue);
+                        } else {
+                            result.completeExceptionally(unwrap(retryError));
+                        }
+                    });
+                    if (result.isCancelled()) {
+                        retry.cancel(true);
+                    }
+                } else {
+                    result.completeExceptionally(unwrap(error));
+                }
+            });
+        });
+        return result;
+    }
 
-            // Ensure the summary has content
-            if (summary.isEmpty() && !originalContent.isEmpty()) {
-                summary = originalContent.substring(0, Math.min(originalContent.length(), 500)) + "...";
+    /**
+     * Reports the outcome and duration of an upstream call to the provider's
+     * circuit breaker and latency statistics. Rate limit rejections say
+     * nothing about the provider's health, and calls cancelled because
+     * another provider answered first say nothing about their latency;
+     * neither is counted.
+     */
+    private void recordOutcome(LlmProvider provider, CompletableFuture<String> call) {
+        long start = System.nanoTime();
+        call.whenComplete((result, error) -> {
+            long duration = System.nanoTime() - start;
+            Throwable cause = unwrap(error);
+            if (error == null) {
+                provider.getCircuitBreaker().onSuccess(duration);
+                provider.recordSuccess(duration);
+            } else if (cause instanceof LlmRateLimitException || cause instanceof CancellationException) {
+                provider.getCircuitBreaker().release();
+            } else {
+                provider.getCircuitBreaker().onFailure(duration);
+                provider.recordFailure(duration);
             }
+        });
+    }
 
-            logger.debug("Final result - title: '{}', tags: {}, summary length: {}",
-                    title, tags.size(), summary.length());
+    private Request buildRequest(LlmProvider provider, String prompt, boolean stream, int maxTokens) {
+        logger.info("Calling {} API: {} with model: {}", provider.getName(), provider.getApiUrl(),
+                provider.getModel());
 
-            return new ClassificationResult(type, title, summary, detailedContent, destination,
-                    tags.toArray(new String[0]));
-        } catch (Exception e) {
-            logger.error("Error parsing LLaMA response", e);
-            logger.error("Response that caused the error: {}", response);
-            return createSmartDefaultResult(originalContent);
+        // Every prompt asks for a JSON object; Groq does not combine JSON mode with streaming
+        RequestBody body = new ChatRequestBody(provider.getModel(), prompt, maxTokens, stream,
+                !stream && provider.isJsonMode());
+        return new Request.Builder()
+                .url(provider.getApiUrl())
+                .header("Authorization", "Bearer " + provider.getApiKey())
+                .header("Content-Type", "application/json")
+                .post(body)
+                .build();
+    }
+
+    private CompletableFuture<String> enqueue(LlmProvider provider, Request request, ResponseHandler handler) {
+        if (client.dispatcher().queuedCallsCount() >= maxQueued) {
+            return CompletableFuture.failedFuture(new IOException("LLM request queue is full"));
         }
+
+        CompletableFuture<String> future = new CompletableFuture<>();
+        Call call = client.newCall(request);
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call failedCall, IOException e) {
+                if (!failedCall.isCanceled()) {
+                    metrics.httpResponse(provider.getName(), provider.getModel(), -1);
+                }
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call successfulCall, Response response) {
+                try (response) {
+                    metrics.httpResponse(provider.getName(), provider.getModel(), response.code());
+                    LlmRateLimiter rateLimiter = provider.getRateLimiter();
+                    rateLimiter.onResponse(response.code(), response.headers());
+                    if (response.code() == 429) {
+                        logger.warn("{} API rate limit response: {}", provider.getName(),
+                                response.body() != null ? response.body().string() : "");
+                        throw new LlmRateLimitException(rateLimiter.pausedForMillis());
+                    }
+                    future.complete(handler.handle(response));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        return future;
     }
 
     /**
-     * Generates basic tags from content when the AI does not provide them.
+     * Reads an OpenAI-compatible event stream: {@code data: {chunk}} lines
+     * terminated by {@code data: [DONE]}.
      */
-    private List<String> generateTagsFromContent(String content, String title, String summary) {
-        List<String> tags = new ArrayList<>();
-        String allText = (title + " " + summary + " " + content).toLowerCase();
+    private String readStreamedContent(Response response, LlmProvider provider, String prompt, String cacheKey,
+            Consumer<String> onDelta, int estimatedTokens) throws IOException {
+        if (!response.isSuccessful()) {
+            String errorBody = response.body() != null ? response.body().string() : "";
+            logger.error("Error in {} API response: HTTP {} - Body: {}", provider.getName(), response.code(),
+                    errorBody);
+            throw new IOException("Unexpected code: " + response.code() + " - " + errorBody);
+        }
 
-        // Detect specific topics
-        if (allText.contains("futbol") || allText.contains("fútbol") || allText.contains("deporte") ||
-                allText.contains("liga") || allText.contains("equipo")) {
-            tags.add("sports");
-            if (allText.contains("español") || allText.contains("españa")) {
-                tags.add("spanish-football");
+        StringBuilder content = new StringBuilder();
+        LlmResponseDecoder.Usage usage = LlmResponseDecoder.Usage.NONE;
+        BufferedSource source = response.body().source();
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (!line.startsWith("data:")) {
+                continue;
+            }
+            String data = line.substring(5).trim();
+            if (data.equals("[DONE]")) {
+                break;
+            }
+            if (data.isEmpty()) {
+                continue;
+            }
+            LlmResponseDecoder.Completion chunk = LlmResponseDecoder.readStreamChunk(data);
+            provider.getRateLimiter().reconcile(estimatedTokens, chunk.totalTokens());
+            metrics.tokens(provider.getModel(), chunk.usage());
+            if (chunk.totalTokens() > 0) {
+                usage = chunk.usage();
             }
+            if (!chunk.content().isEmpty()) {
+                content.append(chunk.content());
+                onDelta.accept(chunk.content());
+            }
+        }
+
+        String responseContent = content.toString();
+        logger.info("Streamed response from {} completed (length: {})", provider.getName(),
+                responseContent.length());
+        journal.record(provider.getModel(), prompt, responseContent,
+                System.currentTimeMillis() - response.sentRequestAtMillis(), usage);
+        responseContent = salvage(responseContent, provider);
+        if (isCacheable(responseContent)) {
+            responseCache.put(cacheKey, responseContent);
         }
-        if (allText.contains("sanidad") || allText.contains("salud") || allText.contains("medicina") ||
-                allText.contains("mir") || allText.contains("hospital")) {
-            tags.add("healthcare");
-            if (allText.contains("publica") || allText.contains("pública")) {
-                tags.add("public-healthcare");
+        return responseContent;
+    }
+
+    private String readResponseContent(Response response, LlmProvider provider, String prompt, String cacheKey,
+            int estimatedTokens) throws IOException {
+        if (!response.isSuccessful()) {
+            String errorBody = response.body() != null ? response.body().string() : "";
+            // JSON mode: output that is not valid JSON comes back as an error, with the output attached
+            String failedGeneration = response.code() == 400 ? LlmResponseDecoder.readFailedGeneration(errorBody)
+                    : null;
+            if (failedGeneration != null) {
+                journal.record(provider.getModel(), prompt, failedGeneration,
+                        System.currentTimeMillis() - response.sentRequestAtMillis(), LlmResponseDecoder.Usage.NONE);
+                String repaired = repair(failedGeneration, provider);
+                if (repaired != null) {
+                    responseCache.put(cacheKey, repaired);
+                    return repaired;
+                }
             }
+            logger.error("Error in {} API response: HTTP {} - Body: {}", provider.getName(), response.code(),
+                    errorBody);
+            throw new IOException("Unexpected code: " + response.code() + " - " + errorBody);
         }
-        if (allText.contains("historia") || allText.contains("histórico") || allText.contains("rey") ||
-                allText.contains("23f") || allText.contains("desclasificacion")) {
-            tags.add("history");
-            tags.add("politics");
+
+        // Decoded while reading the body: only the content string is kept
+        LlmResponseDecoder.Completion completion = LlmResponseDecoder.readCompletion(response.body().source());
+        provider.getRateLimiter().reconcile(estimatedTokens, completion.totalTokens());
+        metrics.tokens(provider.getModel(), completion.usage());
+        String responseContent = completion.content();
+        journal.record(provider.getModel(), prompt, responseContent,
+                System.currentTimeMillis() - response.sentRequestAtMillis(), completion.usage());
+        if (responseContent.isEmpty()) {
+            logger.warn("No content found in {} response", provider.getName());
+            return "";
         }
-        if (allText.contains("tecnologia") || allText.contains("tecnología") || allText.contains("programacion") ||
-                allText.contains("software") || allText.contains("aplicacion")) {
-            tags.add("technology");
+
+        logger.info("Successful response from {} (content length: {})", provider.getName(),
+                responseContent.length());
+        logger.debug("Extracted content: {}", responseContent.substring(0, Math.min(responseContent.length(), 200)));
+        responseContent = salvage(responseContent, provider);
+        if (isCacheable(responseContent)) {
+            responseCache.put(cacheKey, responseContent);
         }
-        if (allText.contains("sociedad") || allText.contains("noticia") || allText.contains("actualidad")) {
-            tags.add("society");
+        return responseContent;
+    }
+
+    /**
+     * Repairs an answer that is not a complete JSON object (see
+     * {@link JsonRepair}), so its complete fields are used instead of the
+     * local fallback.
+     *
+     * @return the repaired answer, or the same answer when it was valid or
+     *         could not be repaired
+     */
+    private String salvage(String responseContent, LlmProvider provider) {
+        if (responseContent.isEmpty() || LlmResponseDecoder.isJsonObject(responseContent)) {
+            return responseContent;
         }
-        if (allText.contains("video") || allText.contains("youtube") || allText.contains("vimeo")) {
-            tags.add("video");
+        String repaired = repair(responseContent, provider);
+        return repaired != null ? repaired : responseContent;
+    }
+
+    /**
+     * @return the repaired answer, or null when nothing could be salvaged
+     */
+    private String repair(String malformed, LlmProvider provider) {
+        String repaired = JsonRepair.repair(malformed);
+        if (repaired != null && LlmResponseDecoder.isJsonObject(repaired)) {
+            logger.info("Repaired malformed JSON from {} ({} -> {} chars)", provider.getName(),
+                    malformed.length(), repaired.length());
+            metrics.malformedResponse(provider.getModel(), LlmMetrics.SALVAGED);
+            return repaired;
         }
-        if (allText.contains("articulo") || allText.contains("artículo") || allText.contains("noticia") ||
-                allText.contains("cadena ser") || allText.contains("el país")) {
-            tags.add("article");
+        logger.warn("Malformed JSON from {} could not be repaired", provider.getName());
+        metrics.malformedResponse(provider.getModel(), LlmMetrics.WASTED);
+        return null;
+    }
+
+    /**
+     * Only well-formed JSON answers are cached; a broken response must not pin
+     * the fallback result for the whole TTL.
+     */
+    private boolean isCacheable(String responseContent) {
+        return LlmResponseDecoder.isJsonObject(responseContent);
+    }
+
+    /**
+     * Parses the LLaMA response.
+     */
+    private ClassificationResult parseLlamaResponse(String response, String originalContent) {
+        try {
+            logger.debug("Parseando respuesta, longitud: {}", response.length());
+
+            LlmResponseDecoder.Classification json = LlmResponseDecoder.readClassification(response);
+            if (json == null) {
+                logger.warn("Could not extract valid JSON from response");
+                metrics.parseFailure(LlmMetrics.CLASSIFY, model);
+                return createSmartDefaultResult(originalContent);
+            }
+            return toClassification(json, originalContent);
+        } catch (Exception e) {
+            logger.error("Error parsing LLaMA response", e);
+            logger.error("Response that caused the error: {}", response);
+            metrics.parseFailure(LlmMetrics.CLASSIFY, model);
+            return createSmartDefaultResult(originalContent);
         }
+    }
 
-        // Extract keywords from title
-        if (title != null && !title.isEmpty()) {
-            String[] titleWords = title.toLowerCase().split("[\\s|]+");
-            for (String word : titleWords) {
-                word = word.replaceAll("[^a-záéíóúñ]", "");
-                if (word.length() > 4 && !tags.contains(word) && tags.size() < 6) {
-                    // Evitar palabras muy comunes
-                    if (!word.equals("sobre") && !word.equals("cuando") && !word.equals("desde") &&
-                            !word.equals("hasta") && !word.equals("después") && !word.equals("note")) {
-                        tags.add(word);
-                    }
+    /**
+     * Builds a result from one classification object, completing missing
+     * tags, detailed content and summary from the original content. In
+     * two-phase mode the detailed content is left null: it is generated on
+     * demand, never taken from the suggestion or the local template.
+     */
+    private ClassificationResult toClassification(LlmResponseDecoder.Classification json, String originalContent) {
+        String type = json.type != null ? json.type : CONST_NOTE;
+        String title = json.title != null ? json.title : "Note";
+        String summary = json.summary != null ? json.summary : "";
+        String detailedContent = json.detailedContent != null ? json.detailedContent : "";
+        String destination = json.destination != null ? json.destination : CONST_NOTE;
+
+        List<String> tags = new ArrayList<>();
+        if (json.tags != null) {
+            for (String tag : json.tags) {
+                // Filter out generic tags
+                if (!tag.equalsIgnoreCase("general") && !tag.equalsIgnoreCase("varios") &&
+                        !tag.equalsIgnoreCase("otros") && !tag.trim().isEmpty()) {
+                    tags.add(tag);
                 }
             }
         }
 
-        // If still no tags, use a generic but specific one
+        // If no valid tags, try to generate some from content
         if (tags.isEmpty()) {
-            tags.add("content");
+            tags = generateTagsFromContent(originalContent, title, summary);
+        }
+
+        if (lazyDetails) {
+            // Not asked for: the details endpoint is its only source
+            detailedContent = null;
+        } else if (detailedContent.isEmpty() || detailedContent.length() < MIN_DETAILED_CONTENT) {
+            // If no detailedContent, create a detailed one
+            detailedContent = buildDetailedContentFromSummary(title, summary, originalContent);
         }
 
-        return tags;
+        // Ensure the summary has content
+        if (summary.isEmpty() && !originalContent.isEmpty()) {
+            summary = originalContent.substring(0, Math.min(originalContent.length(), 500)) + "...";
+        }
+
+        logger.debug("Final result - title: '{}', tags: {}, summary length: {}",
+                title, tags.size(), summary.length());
+
+        return new ClassificationResult(type, title, summary, detailedContent, destination,
+                tags.toArray(new String[0]));
+    }
+
+    /**
+     * Generates basic tags from content when the AI does not provide them.
+     */
+    private List<String> generateTagsFromContent(String content, String title, String summary) {
+        return fallbackTagger.tags(title, summary, content);
     }
 
     /**
@@ -404,13 +1465,46 @@ public class LlamaAIService {
         // Detect type
         String type = detectTypeFromContent(content);
 
-        return new ClassificationResult(
+        ClassificationResult result = new ClassificationResult(
                 type,
                 title,
                 summary,
                 detailedContent,
                 "note",
                 tags.toArray(new String[0]));
+        result.setFallback(true);
+        return result;
+    }
+
+    /**
+     * Creates a result with the labels of the local classifier when it is
+     * confident enough to skip the model; title, summary and (unless it is
+     * generated on demand) detailed content are extracted as for the fallback
+     * result.
+     *
+     * @return the result, or null when the model has to be called
+     */
+    private ClassificationResult createLocalResult(String content) {
+        LocalClassifier.Prediction prediction = localClassifier.confidentPrediction(content);
+        if (prediction == null) {
+            return null;
+        }
+        String title = extractTitleFromContent(content);
+        String summary = extractSummaryFromContent(content);
+        List<String> tags = new ArrayList<>(prediction.tags());
+        for (String tag : generateTagsFromContent(content, title, summary)) {
+            if (tags.size() < FallbackTagger.MAX_TAGS && !tags.contains(tag) && !tag.equals("content")) {
+                tags.add(tag);
+            }
+        }
+        if (tags.isEmpty()) {
+            tags.add("content");
+        }
+        logger.info("Local classifier is confident ({}), skipping the model",
+                String.format("%.2f", prediction.confidence()));
+        String detailedContent = lazyDetails ? null : buildDetailedContentFromSummary(title, summary, content);
+        return new ClassificationResult(prediction.type(), title, summary, detailedContent, prediction.destination(),
+                tags.toArray(new String[0]));
     }
 
     /**
@@ -543,25 +1637,97 @@ public class LlamaAIService {
      * Identifies false or doubtful claims and provides corrections.
      */
     public List<FactCheckResponseDto.ClaimVerification> verifyInformation(String content) {
+        return verifyInformationAsync(content).join();
+    }
+
+    /**
+     * Non-blocking variant of {@link #verifyInformation(String)}.
+     *
+     * Content longer than {@code factCheck.maxChunks} chunks is compacted
+     * first. Its sentences are then verified in chunks of at most
+     * {@code factCheck.chunkTokens} tokens, concurrently, and the claims of
+     * all chunks are merged without duplicates. Verdicts are cached per
+     * sentence under its normalized text, so re-checking an edited note only
+     * sends the sentences that changed. A failed chunk contributes no claims.
+     */
+    public CompletableFuture<List<FactCheckResponseDto.ClaimVerification>> verifyInformationAsync(String content) {
         if (content == null || content.trim().isEmpty()) {
-            return new ArrayList<>();
+            return CompletableFuture.completedFuture(new ArrayList<>());
         }
 
         logger.info("Verifying information in content of length: {}", content.length());
 
-        try {
-            String prompt = buildFactCheckPrompt(content);
-            String response = callLlamaApi(prompt);
-
-            if (response == null || response.trim().isEmpty()) {
-                return new ArrayList<>();
+        List<String> sentences = factCheckSentences(content);
+        List<List<FactCheckResponseDto.ClaimVerification>> verdicts =
+                new ArrayList<>(Collections.nCopies(sentences.size(), null));
+        List<Integer> pending = new ArrayList<>();
+        List<Integer> costs = new ArrayList<>();
+        for (int i = 0; i < sentences.size(); i++) {
+            String cached = responseCache.get(verdictKey(sentences.get(i)));
+            if (cached != null) {
+                verdicts.set(i, List.of(gson.fromJson(cached, FactCheckResponseDto.ClaimVerification[].class)));
+            } else {
+                pending.add(i);
+                costs.add(TokenEstimator.estimate(sentences.get(i)) + 2);
             }
+        }
 
-            return parseFactCheckResponse(response);
-        } catch (Exception e) {
-            logger.error("Error verifying information with LLaMA: {}", e.getMessage(), e);
-            return new ArrayList<>();
+        List<List<Integer>> chunks = ClassificationBatcher.pack(costs, FACT_CHECK_MAX_SENTENCES,
+                factCheckChunkTokens);
+        logger.info("Fact-checking {} sentences ({} cached) in {} calls", sentences.size(),
+                sentences.size() - pending.size(), chunks.size());
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        for (List<Integer> chunk : chunks) {
+            List<String> chunkSentences = chunk.stream().map(position -> sentences.get(pending.get(position)))
+                    .toList();
+            calls.add(verifyChunk(chunkSentences).thenAccept(chunkVerdicts -> {
+                for (int i = 0; i < chunk.size(); i++) {
+                    verdicts.set(pending.get(chunk.get(i)), chunkVerdicts.get(i));
+                }
+            }));
         }
+        return CompletableFuture.allOf(calls.toArray(new CompletableFuture[0]))
+                .thenApply(done -> FactCheckChunker.merge(verdicts.stream().flatMap(List::stream).toList()));
+    }
+
+    /**
+     * Verifies one chunk of sentences.
+     *
+     * @return the claims of each sentence; empty lists when the call fails
+     */
+    private CompletableFuture<List<List<FactCheckResponseDto.ClaimVerification>>> verifyChunk(
+            List<String> sentences) {
+        String prompt = buildFactCheckPrompt(FactCheckChunker.numbered(sentences));
+        return metrics.time(LlmMetrics.FACT_CHECK, model, prompt, callLlamaApiAsync(prompt, LlmPriority.BATCH))
+                .thenApply(response -> {
+                    if (response == null || response.trim().isEmpty()) {
+                        metrics.parseFailure(LlmMetrics.FACT_CHECK, model);
+                        throw new IllegalStateException("Empty fact-check response");
+                    }
+                    FactCheckChunker.Verdicts verdicts;
+                    try {
+                        verdicts = FactCheckChunker.assign(LlmResponseDecoder.readNumberedClaims(response),
+                                sentences);
+                    } catch (IOException e) {
+                        metrics.parseFailure(LlmMetrics.FACT_CHECK, model);
+                        throw new IllegalStateException("Malformed fact-check response", e);
+                    }
+                    // Claims that could not be traced to a sentence would be cached under the wrong one
+                    if (verdicts.complete()) {
+                        for (int i = 0; i < sentences.size(); i++) {
+                            responseCache.put(verdictKey(sentences.get(i)), gson.toJson(verdicts.bySentence().get(i)));
+                        }
+                    }
+                    return verdicts.bySentence();
+                })
+                .exceptionally(e -> {
+                    logFailure("Error verifying information with LLaMA", e);
+                    return Collections.nCopies(sentences.size(), List.of());
+                });
+    }
+
+    private String verdictKey(String sentence) {
+        return LlmResponseCache.key(model, "fact-check:" + FactCheckChunker.normalize(sentence));
     }
 
     /**
@@ -572,125 +1738,166 @@ public class LlamaAIService {
      * Returns a JSON with more specific labels and insight phrases.
      */
     public TrendsInsightsResponseDto generateTrendsInsights(TrendsInsightsParamsDto params) {
+        return generateTrendsInsightsAsync(params).join();
+    }
+
+    /**
+     * Non-blocking variant of {@link #generateTrendsInsights(TrendsInsightsParamsDto)}.
+     * Scheduled as {@link LlmPriority#BACKGROUND}, so recomputing trends never
+     * holds back classification requests.
+     */
+    public CompletableFuture<TrendsInsightsResponseDto> generateTrendsInsightsAsync(TrendsInsightsParamsDto params) {
         if (params == null) {
-            return new TrendsInsightsResponseDto();
+            return CompletableFuture.completedFuture(new TrendsInsightsResponseDto());
         }
 
         // If no API key configured, return empty (the frontend will use deterministic fallback)
-        if (apiKey == null || apiKey.isEmpty() || apiKey.equals("your-groq-api-key-here")) {
+        if (!isApiKeyConfigured()) {
             logger.warn("LLaMA API key not configured, returning empty insights");
-            return new TrendsInsightsResponseDto();
+            return CompletableFuture.completedFuture(new TrendsInsightsResponseDto());
         }
 
-        try {
-            String prompt = buildTrendsInsightsPrompt(params);
-            String response = callLlamaApi(prompt);
+        String prompt = buildTrendsInsightsPrompt(params);
+        return metrics.time(LlmMetrics.TRENDS, model, prompt, callLlamaApiAsync(prompt, LlmPriority.BACKGROUND))
+                .thenApply(response -> {
+                    TrendsInsightsResponseDto dto = null;
+                    try {
+                        dto = response != null ? LlmResponseDecoder.readTrends(response) : null;
+                    } catch (RuntimeException e) {
+                        logger.warn("Malformed trend insights response: {}", e.getMessage());
+                    }
+                    if (dto == null) {
+                        metrics.parseFailure(LlmMetrics.TRENDS, model);
+                        return new TrendsInsightsResponseDto();
+                    }
+                    return dto;
+                })
+                .exceptionally(e -> {
+                    logFailure("Error generating trend insights with LLaMA", e);
+                    return new TrendsInsightsResponseDto();
+                });
+    }
 
-            if (response == null || response.trim().isEmpty()) {
-                return new TrendsInsightsResponseDto();
-            }
+    private static final String TRENDS_INSTRUCTIONS = "Act as a personal trend analyst. I provide a RADAR of topics (recent vs previous counts) and a sample of real items (title/tags/excerpt).\n\n"
+            + "OBJECTIVE:\n"
+            + "1) Label each topic with a more specific name in English (without making things up).\n"
+            + "   - If you detect music, specify the genre/subgenre (e.g. rap, techno, flamenco, reggaeton).\n"
+            + "   - If you detect politics, specify the scope (national/international/elections/parties/public policies).\n"
+            + "   - If there is not enough evidence, use a general label (e.g. 'music', 'politics').\n"
+            + "2) Generate 'insights' (1-3 sentences) and 'recommendations' (1-3) based on the data.\n\n"
+            + "DATA (JSON):\n";
+
+    private static final String TRENDS_RULES = "\n\n"
+            + "RULES:\n"
+            + "- Do not make up facts or proper names; if in doubt, be conservative.\n"
+            + "- Return ONLY valid JSON, no additional text or markdown.\n\n"
+            + "OUTPUT FORMAT:\n"
+            + "{\n"
+            + "  \"topicLabels\": {\"originalTopic\": \"Specific label\"},\n"
+            + "  \"insights\": [\"...\"],\n"
+            + "  \"recommendations\": [\"...\"]\n"
+            + "}";
+
+    private static final int TRENDS_MAX_ITEMS = 60;
+    private static final int TRENDS_MAX_CONTENT = 600;
 
-            String jsonStr = extractJSON(response);
-            TrendsInsightsResponseDto dto = gson.fromJson(jsonStr, TrendsInsightsResponseDto.class);
-            return dto != null ? dto : new TrendsInsightsResponseDto();
-        } catch (Exception e) {
-            logger.error("Error generating trend insights with LLaMA: {}", e.getMessage(), e);
-            return new TrendsInsightsResponseDto();
+    /**
+     * Builds the trend insights prompt. The data is written as JSON straight
+     * into the prompt buffer, sized up front, instead of through a Gson tree
+     * and an intermediate string.
+     */
+    private String buildTrendsInsightsPrompt(TrendsInsightsParamsDto params) {
+        int items = params.getItems() != null ? Math.min(params.getItems().size(), TRENDS_MAX_ITEMS) : 0;
+        int topics = params.getTopics() != null ? params.getTopics().size() : 0;
+        StringWriter prompt = new StringWriter(TRENDS_INSTRUCTIONS.length() + TRENDS_RULES.length() + 64
+                + topics * 96 + items * (TRENDS_MAX_CONTENT + 256));
+        prompt.write(TRENDS_INSTRUCTIONS);
+        try {
+            JsonWriter data = new JsonWriter(prompt);
+            // As Gson.toJson writes it
+            data.setHtmlSafe(true);
+            data.setSerializeNulls(false);
+            writeTrendsData(data, params, items);
+            data.flush();
+        } catch (IOException e) {
+            // StringWriter does not fail
+            throw new IllegalStateException(e);
         }
+        prompt.write(TRENDS_RULES);
+        return prompt.toString();
     }
 
-    private String buildTrendsInsightsPrompt(TrendsInsightsParamsDto params) {
-        JsonObject payload = new JsonObject();
-        payload.addProperty("windowDays", params.getWindowDays());
+    private static void writeTrendsData(JsonWriter data, TrendsInsightsParamsDto params, int items)
+            throws IOException {
+        data.beginObject();
+        data.name("windowDays").value(params.getWindowDays());
 
-        JsonArray topicsArray = new JsonArray();
+        data.name("topics").beginArray();
         if (params.getTopics() != null) {
             for (TrendsInsightsParamsDto.TopicCountDto t : params.getTopics()) {
                 if (t == null) {
                     continue;
                 }
-
-                JsonObject o = new JsonObject();
-                o.addProperty("topic", t.getTopic());
-                o.addProperty("trend", t.getTrend());
-                o.addProperty("recentCount", t.getRecentCount() == null ? 0 : t.getRecentCount());
-                o.addProperty("previousCount", t.getPreviousCount() == null ? 0 : t.getPreviousCount());
-                topicsArray.add(o);
+                data.beginObject();
+                data.name("topic").value(t.getTopic());
+                data.name("trend").value(t.getTrend());
+                data.name("recentCount").value(t.getRecentCount() == null ? 0 : t.getRecentCount());
+                data.name("previousCount").value(t.getPreviousCount() == null ? 0 : t.getPreviousCount());
+                data.endObject();
             }
         }
-        payload.add("topics", topicsArray);
-
-        JsonArray itemsArray = new JsonArray();
-        if (params.getItems() != null) {
-            int max = Math.min(params.getItems().size(), 60);
-            for (int i = 0; i < max; i++) {
-                TrendsInsightsParamsDto.TrendSampleItemDto it = params.getItems().get(i);
-                if (it == null) {
-                    continue;
-                }
-
-                JsonObject o = new JsonObject();
-                o.addProperty("createdAt", it.getCreatedAt());
-                o.addProperty("type", it.getType());
-                o.addProperty("title", it.getTitle());
+        data.endArray();
 
-                if (it.getTags() != null) {
-                    JsonArray tags = new JsonArray();
-                    for (String tag : it.getTags()) {
-                        if (tag != null && !tag.trim().isEmpty()) {
-                            tags.add(tag);
-                        }
+        data.name("items").beginArray();
+        for (int i = 0; i < items; i++) {
+            TrendsInsightsParamsDto.TrendSampleItemDto it = params.getItems().get(i);
+            if (it == null) {
+                continue;
+            }
+            data.beginObject();
+            data.name("createdAt").value(it.getCreatedAt());
+            data.name("type").value(it.getType());
+            data.name("title").value(it.getTitle());
+
+            if (it.getTags() != null) {
+                data.name("tags").beginArray();
+                for (String tag : it.getTags()) {
+                    if (tag != null && !tag.trim().isEmpty()) {
+                        data.value(tag);
                     }
-                    o.add("tags", tags);
                 }
+                data.endArray();
+            }
 
-                String c = it.getContent();
-                if (c != null && c.length() > 600) {
-                    c = c.substring(0, 600) + "...";
-                }
-                o.addProperty("content", c);
-
-                itemsArray.add(o);
+            String c = it.getContent();
+            if (c != null && c.length() > TRENDS_MAX_CONTENT) {
+                c = c.substring(0, TRENDS_MAX_CONTENT) + "...";
             }
+            data.name("content").value(c);
+            data.endObject();
         }
-        payload.add("items", itemsArray);
-
-        String data = gson.toJson(payload);
-
-        return "Act as a personal trend analyst. I provide a RADAR of topics (recent vs previous counts) and a sample of real items (title/tags/excerpt).\n\n"
-                + "OBJECTIVE:\n"
-                + "1) Label each topic with a more specific name in English (without making things up).\n"
-                + "   - If you detect music, specify the genre/subgenre (e.g. rap, techno, flamenco, reggaeton).\n"
-                + "   - If you detect politics, specify the scope (national/international/elections/parties/public policies).\n"
-                + "   - If there is not enough evidence, use a general label (e.g. 'music', 'politics').\n"
-                + "2) Generate 'insights' (1-3 sentences) and 'recommendations' (1-3) based on the data.\n\n"
-                + "DATA (JSON):\n" + data + "\n\n"
-                + "RULES:\n"
-                + "- Do not make up facts or proper names; if in doubt, be conservative.\n"
-                + "- Return ONLY valid JSON, no additional text or markdown.\n\n"
-                + "OUTPUT FORMAT:\n"
-                + "{\n"
-                + "  \"topicLabels\": {\"originalTopic\": \"Specific label\"},\n"
-                + "  \"insights\": [\"...\"],\n"
-                + "  \"recommendations\": [\"...\"]\n"
-                + "}";
+        data.endArray();
+        data.endObject();
     }
 
-    private String buildFactCheckPrompt(String content) {
+    private static final String FACT_CHECK_RULES = "RULES:\n" +
+            "1. Split the text into individual claims.\n" +
+            "2. Evaluate each claim as 'true', 'false', or 'suspicious' (doubtful/no clear consensus).\n" +
+            "3. For each 'false' or 'suspicious', provide a detailed explanation of why and a corrected version of the information.\n"
+            +
+            "4. If the claim is 'true', the explanation can be brief and no correction is required.\n" +
+            "5. Give in \"sentence\" the number of the sentence the claim comes from. Sentences without verifiable facts get no claim.\n\n";
+
+    private String buildFactCheckPrompt(String numberedSentences) {
         return "Act as an expert in fact-checking. Analyze the following content and extract the most important claims that can be objectively verified.\n\n"
                 +
-                "CONTENT:\n" + content + "\n\n" +
-                "RULES:\n" +
-                "1. Split the text into individual claims.\n" +
-                "2. Evaluate each claim as 'true', 'false', or 'suspicious' (doubtful/no clear consensus).\n"
-                +
-                "3. For each 'false' or 'suspicious', provide a detailed explanation of why and a corrected version of the information.\n"
-                +
-                "4. If the claim is 'true', the explanation can be brief and no correction is required.\n\n" +
+                "CONTENT (one numbered sentence per line):\n" + numberedSentences + "\n\n" +
+                FACT_CHECK_RULES +
                 "Respond EXCLUSIVELY with a JSON in this format:\n" +
                 "{\n" +
                 "  \"claims\": [\n" +
                 "    {\n" +
+                "      \"sentence\": 1,\n" +
                 "      \"originalText\": \"text of the claim\",\n" +
                 "      \"status\": \"true|false|suspicious\",\n" +
                 "      \"explanation\": \"detailed explanation\",\n" +
@@ -700,27 +1907,20 @@ public class LlamaAIService {
                 "}";
     }
 
-    private List<FactCheckResponseDto.ClaimVerification> parseFactCheckResponse(String response) {
-        List<FactCheckResponseDto.ClaimVerification> results = new ArrayList<>();
-        try {
-            String jsonStr = extractJSON(response);
-            JsonObject json = gson.fromJson(jsonStr, JsonObject.class);
-
-            if (json.has(CONST_CLAIMS) && json.get(CONST_CLAIMS).isJsonArray()) {
-                JsonArray claimsArray = json.getAsJsonArray(CONST_CLAIMS);
-                for (int i = 0; i < claimsArray.size(); i++) {
-                    JsonObject claimJson = claimsArray.get(i).getAsJsonObject();
-                    results.add(new FactCheckResponseDto.ClaimVerification(
-                            claimJson.has("originalText") ? claimJson.get("originalText").getAsString() : "",
-                            claimJson.has("status") ? claimJson.get("status").getAsString() : "suspicious",
-                            claimJson.has("explanation") ? claimJson.get("explanation").getAsString() : "",
-                            claimJson.has("correction") ? claimJson.get("correction").getAsString() : ""));
-                }
-            }
-        } catch (Exception e) {
-            logger.error("Error parsing fact-check response", e);
-        }
-        return results;
+    /**
+     * Classification and claims of one content, from a combined call.
+     */
+    public record CombinedResult(ClassificationResult classification,
+            List<FactCheckResponseDto.ClaimVerification> claims) {
+    }
+
+    /**
+     * Detailed Markdown document of a note.
+     *
+     * @param fallback true when it was built locally because the model could
+     *                 not be used
+     */
+    public record DetailedContentResult(String detailedContent, boolean fallback) {
     }
 
     public static class ClassificationResult {
@@ -730,6 +1930,7 @@ public class LlamaAIService {
         private String detailedContent;
         private String destination;
         private String[] tags;
+        private boolean fallback;
 
         public ClassificationResult(String type, String title, String summary, String destination, String[] tags) {
             this.type = type;
@@ -776,5 +1977,17 @@ public class LlamaAIService {
         public void setDetailedContent(String detailedContent) {
             this.detailedContent = detailedContent;
         }
+
+        /**
+         * True when the result was built locally because the model could not
+         * be used (not configured, unavailable or unparseable answer).
+         */
+        public boolean isFallback() {
+            return fallback;
+        }
+
+        public void setFallback(boolean fallback) {
+            this.fallback = fallback;
+        }
     }
 }
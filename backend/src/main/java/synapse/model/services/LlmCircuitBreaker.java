@@ -0,0 +1,200 @@
+package synapse.model.services;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker for calls to an LLM provider.
+ *
+ * Outcomes of the last {@code windowSize} calls are kept in a ring. Once at
+ * least {@code minimumCalls} are recorded, the circuit opens when the share of
+ * failed calls or of slow calls (longer than {@code slowCallThreshold})
+ * reaches its threshold. While open, {@link #tryAcquire()} refuses calls so
+ * callers can go straight to their local fallback. After {@code openDuration}
+ * the circuit lets {@code halfOpenProbes} calls through: if they all succeed
+ * it closes again, any failure re-opens it.
+ */
+public class LlmCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    private final LongSupplier nanoClock;
+
+    private final boolean[] failedCalls;
+    private final boolean[] slowCalls;
+    private int recorded;
+    private int next;
+    private int failures;
+    private int slow;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    private final AtomicLong shortCircuited = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+
+    /**
+     * @param windowSize            number of recent calls considered
+     * @param minimumCalls          calls needed before the rates are evaluated
+     * @param failureRateThreshold  failure share (0..1) that opens the circuit
+     * @param slowCallRateThreshold slow-call share (0..1) that opens the circuit
+     * @param slowCallThreshold     duration from which a call counts as slow
+     * @param openDuration          time the circuit stays open before probing
+     * @param halfOpenProbes        calls allowed through while half-open
+     */
+    public LlmCircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+            double slowCallRateThreshold, Duration slowCallThreshold, Duration openDuration, int halfOpenProbes) {
+        this(windowSize, minimumCalls, failureRateThreshold, slowCallRateThreshold, slowCallThreshold,
+                openDuration, halfOpenProbes, System::nanoTime);
+    }
+
+    LlmCircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+            double slowCallRateThreshold, Duration slowCallThreshold, Duration openDuration, int halfOpenProbes,
+            LongSupplier nanoClock) {
+        this.windowSize = Math.max(1, windowSize);
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, this.windowSize));
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallNanos = slowCallThreshold.toNanos();
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenProbes = Math.max(1, halfOpenProbes);
+        this.nanoClock = nanoClock;
+        this.failedCalls = new boolean[this.windowSize];
+        this.slowCalls = new boolean[this.windowSize];
+    }
+
+    /**
+     * Asks permission for a call. Every granted call must be followed by
+     * exactly one of {@link #onSuccess(long)}, {@link #onFailure(long)} or
+     * {@link #release()}.
+     *
+     * @return false if the circuit is open and the caller should fall back
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAt < openNanos) {
+                shortCircuited.incrementAndGet();
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesStarted = 0;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesStarted >= halfOpenProbes) {
+                shortCircuited.incrementAndGet();
+                return false;
+            }
+            probesStarted++;
+        }
+        return true;
+    }
+
+    /**
+     * Records a call that completed.
+     *
+     * @param durationNanos how long the call took
+     */
+    public synchronized void onSuccess(long durationNanos) {
+        boolean isSlow = durationNanos >= slowCallNanos;
+        if (state == State.HALF_OPEN) {
+            if (isSlow) {
+                open();
+            } else if (++probesSucceeded >= halfOpenProbes) {
+                close();
+            }
+            return;
+        }
+        record(false, isSlow);
+    }
+
+    /**
+     * Records a call that failed.
+     *
+     * @param durationNanos how long the call took until it failed
+     */
+    public synchronized void onFailure(long durationNanos) {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true, durationNanos >= slowCallNanos);
+    }
+
+    /**
+     * Returns a permit without recording an outcome, for calls that never
+     * reached the provider.
+     */
+    public synchronized void release() {
+        if (state == State.HALF_OPEN && probesStarted > 0) {
+            probesStarted--;
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * Calls refused because the circuit was open.
+     */
+    public long getShortCircuited() {
+        return shortCircuited.get();
+    }
+
+    /**
+     * Number of times the circuit has opened.
+     */
+    public long getOpened() {
+        return opened.get();
+    }
+
+    private void record(boolean failed, boolean isSlow) {
+        if (recorded == windowSize) {
+            failures -= failedCalls[next] ? 1 : 0;
+            slow -= slowCalls[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failedCalls[next] = failed;
+        slowCalls[next] = isSlow;
+        failures += failed ? 1 : 0;
+        slow += isSlow ? 1 : 0;
+        next = (next + 1) % windowSize;
+
+        if (state == State.CLOSED && recorded >= minimumCalls
+                && ((double) failures / recorded >= failureRateThreshold
+                        || (double) slow / recorded >= slowCallRateThreshold)) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+        opened.incrementAndGet();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+        slow = 0;
+    }
+}
@@ -0,0 +1,157 @@
+package synapse.model.services;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Append-only journal of the LLM traffic: one JSON line per answered call
+ * with model, prompt, answer, latency and token usage.
+ *
+ * Recording is on when {@code journal.file} is set. A journal is replayed by
+ * the LLM stub ({@code stub.journal}), which answers the recorded prompts with
+ * the recorded answers, usage and latencies, so prompt, batching or cache
+ * changes can be measured offline on real traffic. Lines are flushed as they
+ * are written; a line cut short by a crash is skipped when reading.
+ */
+@Service
+public class LlmJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmJournal.class);
+    private static final Gson GSON = new Gson();
+
+    private final Path file;
+    private BufferedWriter writer;
+    private final AtomicLong records = new AtomicLong();
+
+    /**
+     * One recorded call.
+     *
+     * @param t                when the answer arrived (epoch millis)
+     * @param latencyMs        from sending the request to the end of the answer
+     */
+    record Entry(long t, String model, String prompt, String response, long latencyMs, int promptTokens,
+            int completionTokens) {
+    }
+
+    @Autowired
+    public LlmJournal(@Value("${project.llama.journal.file:}") String file, MeterRegistry meterRegistry) {
+        this(file);
+        FunctionCounter.builder("llm.journal.records", records, AtomicLong::get)
+                .description("LLM calls written to the journal")
+                .register(meterRegistry);
+    }
+
+    LlmJournal(String file) {
+        this.file = (file == null || file.isBlank()) ? null : Paths.get(file.trim()).normalize();
+        if (this.file != null) {
+            try {
+                Path parent = this.file.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                writer = Files.newBufferedWriter(this.file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not open the LLM journal: " + this.file, e);
+            }
+            logger.info("Recording LLM traffic to {}", this.file.toAbsolutePath());
+        }
+    }
+
+    public boolean isRecording() {
+        return file != null;
+    }
+
+    /**
+     * Appends one answered call. Write errors are logged and the call is
+     * left out; they never fail the request.
+     */
+    void record(String model, String prompt, String response, long latencyMillis, LlmResponseDecoder.Usage usage) {
+        if (file == null) {
+            return;
+        }
+        String line = GSON.toJson(new Entry(System.currentTimeMillis(), model, prompt, response, latencyMillis,
+                usage.promptTokens(), usage.completionTokens()));
+        synchronized (this) {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.write(line);
+                writer.newLine();
+                writer.flush();
+                records.incrementAndGet();
+            } catch (IOException e) {
+                logger.warn("Could not write to the LLM journal {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    public long getRecords() {
+        return records.get();
+    }
+
+    /**
+     * Reads a journal in recorded order, skipping unreadable lines.
+     */
+    static List<Entry> read(Path file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    Entry entry = GSON.fromJson(line, Entry.class);
+                    if (entry != null && entry.prompt() != null && entry.response() != null) {
+                        entries.add(entry);
+                        continue;
+                    }
+                } catch (JsonParseException e) {
+                    // Torn or hand-edited line
+                }
+                skipped++;
+            }
+        }
+        if (skipped > 0) {
+            logger.warn("Skipped {} unreadable lines of the LLM journal {}", skipped, file);
+        }
+        return entries;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.warn("Could not close the LLM journal {}: {}", file, e.getMessage());
+            }
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package synapse.model.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Usage and latency meters of the LLM calls, all tagged by model.
+ *
+ * <ul>
+ * <li>{@code llm.operation.latency}: time from the start of an operation
+ * (classify, classify_batch, classify_fact_check, details, fact_check,
+ * trends) until the model answer is available, cache hits included, with a
+ * percentile histogram for SLOs;
+ * {@code outcome} is success or error.</li>
+ * <li>{@code llm.prompt.chars}: size of the prompts sent per operation.</li>
+ * <li>{@code llm.tokens}: prompt and completion tokens the provider reported
+ * in {@code usage}.</li>
+ * <li>{@code llm.http.responses}: upstream responses by HTTP status, or
+ * {@code io_error} when no response arrived.</li>
+ * <li>{@code llm.parse.failures}: answers that could not be decoded, so the
+ * operation fell back to a local result.</li>
+ * <li>{@code llm.malformed.responses}: answers that were not valid JSON,
+ * by whether the repair salvaged them or they were wasted.</li>
+ * <li>{@code llm.cascade.requests}: classifications per cascade tier (small
+ * or large) and outcome, such as accepted or the reason for escalating.</li>
+ * </ul>
+ */
+final class LlmMetrics {
+
+    static final String CLASSIFY = "classify";
+    static final String CLASSIFY_BATCH = "classify_batch";
+    static final String CLASSIFY_FACT_CHECK = "classify_fact_check";
+    static final String DETAILS = "details";
+    static final String FACT_CHECK = "fact_check";
+    static final String TRENDS = "trends";
+
+    /** Outcomes of {@code llm.malformed.responses}. */
+    static final String SALVAGED = "salvaged";
+    static final String WASTED = "wasted";
+
+    private final MeterRegistry registry;
+
+    LlmMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Records the prompt size now and the latency of the answer when the
+     * future completes. Cancelled calls are not timed.
+     *
+     * @return the same future
+     */
+    <T> CompletableFuture<T> time(String operation, String model, String prompt, CompletableFuture<T> answer) {
+        DistributionSummary.builder("llm.prompt.chars")
+                .tags("operation", operation, "model", model)
+                .description("Characters of the prompts sent to the model")
+                .baseUnit("characters")
+                .register(registry)
+                .record(prompt.length());
+        long start = System.nanoTime();
+        answer.whenComplete((value, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+            if (cause instanceof CancellationException) {
+                return;
+            }
+            Timer.builder("llm.operation.latency")
+                    .tags("operation", operation, "model", model, "outcome", error == null ? "success" : "error")
+                    .description("Time until the model answer of an operation is available")
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        });
+        return answer;
+    }
+
+    void tokens(String model, LlmResponseDecoder.Usage usage) {
+        if (usage.promptTokens() > 0) {
+            tokenCounter(model, "prompt").increment(usage.promptTokens());
+        }
+        if (usage.completionTokens() > 0) {
+            tokenCounter(model, "completion").increment(usage.completionTokens());
+        }
+    }
+
+    /**
+     * @param status the HTTP status code, or -1 when the call failed without
+     *               a response
+     */
+    void httpResponse(String provider, String model, int status) {
+        Counter.builder("llm.http.responses")
+                .tags("provider", provider, "model", model, "status", status < 0 ? "io_error" : String.valueOf(status))
+                .description("Upstream LLM responses by HTTP status")
+                .register(registry)
+                .increment();
+    }
+
+    void parseFailure(String operation, String model) {
+        Counter.builder("llm.parse.failures")
+                .tags("operation", operation, "model", model)
+                .description("Model answers that could not be decoded and fell back to a local result")
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * @param outcome {@link #SALVAGED} or {@link #WASTED}
+     */
+    void malformedResponse(String model, String outcome) {
+        Counter.builder("llm.malformed.responses")
+                .tags("model", model, "outcome", outcome)
+                .description("Model answers that were not valid JSON, salvaged by the repair or wasted")
+                .register(registry)
+                .increment();
+    }
+
+    void cascade(String tier, String model, String outcome) {
+        Counter.builder("llm.cascade.requests")
+                .tags("tier", tier, "model", model, "outcome", outcome)
+                .description("Classifications per cascade tier and outcome")
+                .register(registry)
+                .increment();
+    }
+
+    private Counter tokenCounter(String model, String type) {
+        return Counter.builder("llm.tokens")
+                .tags("model", model, "type", type)
+                .description("Tokens reported by the provider")
+                .register(registry);
+    }
+}
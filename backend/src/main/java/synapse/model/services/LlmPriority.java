@@ -0,0 +1,13 @@
+package synapse.model.services;
+
+/**
+ * Priority classes of LLM work, highest first.
+ */
+public enum LlmPriority {
+    /** A user is waiting for the answer (single suggestions). */
+    INTERACTIVE,
+    /** User-triggered work over several items (batch suggestions, fact-checks). */
+    BATCH,
+    /** Work nobody is waiting on right now (trend insights). */
+    BACKGROUND
+}
@@ -0,0 +1,192 @@
+package synapse.model.services;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * One OpenAI-compatible chat completion endpoint, with its own rate limiter,
+ * circuit breaker and latency statistics.
+ *
+ * Latency and error rate are tracked as exponentially weighted moving
+ * averages of the calls made to this provider. The error rate also decays
+ * with time, so a provider that had a bad minute is not avoided forever. The
+ * 95th percentile of the last {@value #LATENCY_SAMPLES} successful calls is
+ * used as the delay before hedging a call to another provider.
+ */
+public class LlmProvider {
+
+    private static final double ALPHA = 0.2;
+    private static final int LATENCY_SAMPLES = 100;
+    /** Samples needed before the p95 is trusted. */
+    private static final int MIN_P95_SAMPLES = 20;
+    /** An error rate of 1 makes a provider look this many times slower. */
+    private static final double ERROR_PENALTY = 10;
+    private static final long ERROR_HALF_LIFE_NANOS = 60_000_000_000L;
+
+    private final String name;
+    private final String apiUrl;
+    private final String apiKey;
+    private final String model;
+    private final boolean jsonMode;
+    private final LlmRateLimiter rateLimiter;
+    private final LlmCircuitBreaker circuitBreaker;
+    private final LongSupplier nanoClock;
+
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int samples;
+    private int next;
+    private long p95Nanos = -1;
+    private double ewmaLatencyNanos = -1;
+    private double ewmaErrorRate;
+    private long errorRateAt;
+
+    public LlmProvider(String name, String apiUrl, String apiKey, String model, LlmRateLimiter rateLimiter,
+            LlmCircuitBreaker circuitBreaker) {
+        this(name, apiUrl, apiKey, model, false, rateLimiter, circuitBreaker, System::nanoTime);
+    }
+
+    /**
+     * @param jsonMode whether the endpoint supports
+     *                 {@code response_format: json_object}
+     */
+    public LlmProvider(String name, String apiUrl, String apiKey, String model, boolean jsonMode,
+            LlmRateLimiter rateLimiter, LlmCircuitBreaker circuitBreaker) {
+        this(name, apiUrl, apiKey, model, jsonMode, rateLimiter, circuitBreaker, System::nanoTime);
+    }
+
+    LlmProvider(String name, String apiUrl, String apiKey, String model, LlmRateLimiter rateLimiter,
+            LlmCircuitBreaker circuitBreaker, LongSupplier nanoClock) {
+        this(name, apiUrl, apiKey, model, false, rateLimiter, circuitBreaker, nanoClock);
+    }
+
+    private LlmProvider(String name, String apiUrl, String apiKey, String model, boolean jsonMode,
+            LlmRateLimiter rateLimiter, LlmCircuitBreaker circuitBreaker, LongSupplier nanoClock) {
+        this.name = name;
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.model = model;
+        this.jsonMode = jsonMode;
+        this.rateLimiter = rateLimiter;
+        this.circuitBreaker = circuitBreaker;
+        this.nanoClock = nanoClock;
+        this.errorRateAt = nanoClock.getAsLong();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public boolean isJsonMode() {
+        return jsonMode;
+    }
+
+    public LlmRateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    public LlmCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * True when the provider has an endpoint and a real API key.
+     */
+    public boolean isConfigured() {
+        return apiUrl != null && !apiUrl.isBlank() && apiKey != null && !apiKey.isBlank()
+                && !apiKey.equals("your-groq-api-key-here");
+    }
+
+    /**
+     * Records a call that returned an answer.
+     */
+    public synchronized void recordSuccess(long latencyNanos) {
+        ewmaLatencyNanos = ewmaLatencyNanos < 0 ? latencyNanos
+                : ALPHA * latencyNanos + (1 - ALPHA) * ewmaLatencyNanos;
+        decayErrorRate();
+        ewmaErrorRate = (1 - ALPHA) * ewmaErrorRate;
+
+        latencies[next] = latencyNanos;
+        next = (next + 1) % LATENCY_SAMPLES;
+        samples = Math.min(samples + 1, LATENCY_SAMPLES);
+        if (samples >= MIN_P95_SAMPLES) {
+            long[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+            p95Nanos = sorted[(int) Math.ceil(samples * 0.95) - 1];
+        }
+    }
+
+    /**
+     * Records a call that failed. Its duration counts as latency too: a
+     * provider that times out is slow.
+     */
+    public synchronized void recordFailure(long latencyNanos) {
+        if (ewmaLatencyNanos >= 0) {
+            ewmaLatencyNanos = ALPHA * Math.max(latencyNanos, ewmaLatencyNanos) + (1 - ALPHA) * ewmaLatencyNanos;
+        }
+        decayErrorRate();
+        ewmaErrorRate = ALPHA + (1 - ALPHA) * ewmaErrorRate;
+    }
+
+    /**
+     * Expected cost of a call: the latency average penalized by the error
+     * rate. Lower is better; -1 while the provider has no successful calls.
+     */
+    public synchronized double score() {
+        if (ewmaLatencyNanos < 0) {
+            return -1;
+        }
+        decayErrorRate();
+        return ewmaLatencyNanos * (1 + ERROR_PENALTY * ewmaErrorRate);
+    }
+
+    /**
+     * @return the average latency in milliseconds, or -1 if unknown
+     */
+    public synchronized double latencyMillis() {
+        return ewmaLatencyNanos < 0 ? -1 : ewmaLatencyNanos / 1_000_000;
+    }
+
+    public synchronized double errorRate() {
+        decayErrorRate();
+        return ewmaErrorRate;
+    }
+
+    /**
+     * @return the 95th percentile latency in nanoseconds, or -1 until enough
+     *         calls have been seen
+     */
+    public synchronized long p95Nanos() {
+        return p95Nanos;
+    }
+
+    /**
+     * True when a hedged request could be sent right now without waiting
+     * for budget or hitting an open circuit.
+     */
+    public boolean canTakeHedge(int estimatedTokens) {
+        return circuitBreaker.getState() == LlmCircuitBreaker.State.CLOSED
+                && rateLimiter.availableRequests() >= 1
+                && rateLimiter.availableTokens() >= estimatedTokens;
+    }
+
+    private void decayErrorRate() {
+        long now = nanoClock.getAsLong();
+        long elapsed = now - errorRateAt;
+        if (elapsed > 0) {
+            ewmaErrorRate *= Math.pow(0.5, (double) elapsed / ERROR_HALF_LIFE_NANOS);
+            errorRateAt = now;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package synapse.model.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import synapse.model.services.exceptions.LlmRateLimitException;
+
+import okhttp3.Headers;
+
+/**
+ * Client-side token bucket for an LLM provider that enforces both requests
+ * per minute and tokens per minute.
+ *
+ * Callers acquire one request plus an estimate of the tokens they will use.
+ * When the bucket is short they wait, up to {@code maxWait}; after that the
+ * acquire fails instead of sending a request that is bound to be rejected.
+ * Waiters are served in FIFO order within a priority class, and a caller
+ * queues ahead of waiters of lower classes unless those have already waited
+ * half of {@code maxWait}. The bucket follows the provider's own accounting: the
+ * {@code x-ratelimit-*} headers of every response clamp the local budget, a
+ * {@code Retry-After} pauses all callers, and the token estimate of each call
+ * is corrected with the real usage once the response arrives.
+ */
+public class LlmRateLimiter {
+
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+    private static final long DEFAULT_RETRY_AFTER_MILLIS = 1000;
+
+    private final long maxWaitNanos;
+    private final ScheduledExecutorService scheduler;
+    private final LongSupplier nanoClock;
+
+    private final double requestCapacity;
+    private double tokenCapacity;
+    private double requestsAvailable;
+    private double tokensAvailable;
+    private long lastRefill;
+    private long blockedUntil;
+
+    private final LinkedList<Waiter> waiters = new LinkedList<>();
+    private ScheduledFuture<?> pendingDrain;
+    private long pendingDrainAt;
+
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private static final class Waiter {
+        private final int tokens;
+        private final LlmPriority priority;
+        private final long enqueuedAt;
+        private final long deadline;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Waiter(int tokens, LlmPriority priority, long enqueuedAt, long deadline) {
+            this.tokens = tokens;
+            this.priority = priority;
+            this.enqueuedAt = enqueuedAt;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * @param requestsPerMinute request budget per minute
+     * @param tokensPerMinute   token budget per minute (adapted from the
+     *                          provider's {@code x-ratelimit-limit-tokens})
+     * @param maxWait           longest time a caller may wait for budget
+     * @param scheduler         used to wake waiters when budget refills
+     */
+    public LlmRateLimiter(int requestsPerMinute, int tokensPerMinute, Duration maxWait,
+            ScheduledExecutorService scheduler) {
+        this(requestsPerMinute, tokensPerMinute, maxWait, scheduler, System::nanoTime);
+    }
+
+    LlmRateLimiter(int requestsPerMinute, int tokensPerMinute, Duration maxWait,
+            ScheduledExecutorService scheduler, LongSupplier nanoClock) {
+        this.requestCapacity = Math.max(1, requestsPerMinute);
+        this.tokenCapacity = Math.max(1, tokensPerMinute);
+        this.requestsAvailable = requestCapacity;
+        this.tokensAvailable = tokenCapacity;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.scheduler = scheduler;
+        this.nanoClock = nanoClock;
+        this.lastRefill = nanoClock.getAsLong();
+        this.blockedUntil = lastRefill;
+    }
+
+    /**
+     * Reserves one request and {@code estimatedTokens} tokens. The future
+     * completes when the budget is granted, or fails with
+     * {@link LlmRateLimitException} once the wait would exceed the limit.
+     */
+    public CompletableFuture<Void> acquire(int estimatedTokens) {
+        return acquire(estimatedTokens, LlmPriority.INTERACTIVE);
+    }
+
+    /**
+     * Like {@link #acquire(int)}, queueing by priority class.
+     */
+    public CompletableFuture<Void> acquire(int estimatedTokens, LlmPriority priority) {
+        Waiter waiter;
+        List<Runnable> completions;
+        synchronized (this) {
+            long now = nanoClock.getAsLong();
+            waiter = new Waiter(Math.max(0, estimatedTokens), priority, now, now + maxWaitNanos);
+            enqueue(waiter, now);
+            completions = drain();
+        }
+        completions.forEach(Runnable::run);
+        waiter.future.whenComplete((ignored, error) -> {
+            if (waiter.future.isCancelled()) {
+                synchronized (this) {
+                    waiters.remove(waiter);
+                }
+            }
+        });
+        return waiter.future;
+    }
+
+    /**
+     * Inserts a waiter behind every waiter of its class or a higher one,
+     * and behind lower-class waiters that have waited half of maxWait.
+     */
+    private void enqueue(Waiter waiter, long now) {
+        ListIterator<Waiter> it = waiters.listIterator(waiters.size());
+        while (it.hasPrevious()) {
+            Waiter previous = it.previous();
+            if (previous.priority.compareTo(waiter.priority) <= 0
+                    || now - previous.enqueuedAt >= maxWaitNanos / 2) {
+                it.next();
+                break;
+            }
+        }
+        it.add(waiter);
+    }
+
+    /**
+     * Corrects a reservation with the tokens the call actually used.
+     */
+    public void reconcile(int estimatedTokens, int actualTokens) {
+        if (actualTokens <= 0) {
+            return;
+        }
+        List<Runnable> completions;
+        synchronized (this) {
+            refill(nanoClock.getAsLong());
+            tokensAvailable = Math.min(tokenCapacity, tokensAvailable + estimatedTokens - actualTokens);
+            completions = drain();
+        }
+        completions.forEach(Runnable::run);
+    }
+
+    /**
+     * Aligns the bucket with the provider's view of the quota. Understands the
+     * OpenAI/Groq headers: {@code x-ratelimit-limit-tokens},
+     * {@code x-ratelimit-remaining-(requests|tokens)},
+     * {@code x-ratelimit-reset-(requests|tokens)} and, on 429,
+     * {@code Retry-After}.
+     */
+    public void onResponse(int code, Headers headers) {
+        List<Runnable> completions;
+        synchronized (this) {
+            applyHeaders(code, headers);
+            completions = drain();
+        }
+        completions.forEach(Runnable::run);
+    }
+
+    private void applyHeaders(int code, Headers headers) {
+        long now = nanoClock.getAsLong();
+        refill(now);
+
+        Double limitTokens = parseNumber(headers.get("x-ratelimit-limit-tokens"));
+        if (limitTokens != null && limitTokens > 0) {
+            tokenCapacity = limitTokens;
+            tokensAvailable = Math.min(tokensAvailable, tokenCapacity);
+        }
+
+        Double remainingTokens = parseNumber(headers.get("x-ratelimit-remaining-tokens"));
+        if (remainingTokens != null) {
+            tokensAvailable = Math.min(tokensAvailable, remainingTokens);
+        }
+
+        Double remainingRequests = parseNumber(headers.get("x-ratelimit-remaining-requests"));
+        if (remainingRequests != null && remainingRequests < 1) {
+            // Groq reports the daily request quota here; when it is exhausted
+            // nothing will succeed before the reset.
+            blockFor(now, parseDurationMillis(headers.get("x-ratelimit-reset-requests")));
+        }
+
+        if (code == 429) {
+            throttled.incrementAndGet();
+            long retryAfter = parseRetryAfterMillis(headers.get("Retry-After"));
+            if (retryAfter < 0) {
+                retryAfter = parseDurationMillis(headers.get("x-ratelimit-reset-tokens"));
+            }
+            blockFor(now, retryAfter >= 0 ? retryAfter : DEFAULT_RETRY_AFTER_MILLIS);
+        }
+    }
+
+    /**
+     * Requests that can be sent right now.
+     */
+    public synchronized double availableRequests() {
+        refill(nanoClock.getAsLong());
+        return requestsAvailable;
+    }
+
+    /**
+     * Tokens that can be spent right now.
+     */
+    public synchronized double availableTokens() {
+        refill(nanoClock.getAsLong());
+        return Math.max(0, tokensAvailable);
+    }
+
+    public synchronized int waitingCount() {
+        return waiters.size();
+    }
+
+    /**
+     * Responses rejected by the provider with HTTP 429.
+     */
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    /**
+     * Acquires that gave up after waiting {@code maxWait}.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Remaining time a caller would have to wait before a call that returned
+     * 429 may be retried, or 0 when the limiter is not paused.
+     */
+    public synchronized long pausedForMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(blockedUntil - nanoClock.getAsLong()));
+    }
+
+    private void blockFor(long now, long millis) {
+        if (millis > 0) {
+            blockedUntil = Math.max(blockedUntil, now + TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefill;
+        if (elapsed <= 0) {
+            return;
+        }
+        double minutes = elapsed / 60_000_000_000.0;
+        requestsAvailable = Math.min(requestCapacity, requestsAvailable + minutes * requestCapacity);
+        tokensAvailable = Math.min(tokenCapacity, tokensAvailable + minutes * tokenCapacity);
+        lastRefill = now;
+    }
+
+    /**
+     * Grants waiters in arrival order while budget lasts, fails the ones past
+     * their deadline and schedules a wake-up for when the head can proceed.
+     * Must be called while holding the lock; the returned completions must be
+     * run after releasing it, so callers' continuations never run under the
+     * lock.
+     */
+    private List<Runnable> drain() {
+        List<Runnable> completions = new ArrayList<>();
+        long now = nanoClock.getAsLong();
+        refill(now);
+
+        for (Iterator<Waiter> it = waiters.iterator(); it.hasNext();) {
+            Waiter waiter = it.next();
+            if (waiter.future.isDone()) {
+                it.remove();
+            }
+        }
+
+        while (!waiters.isEmpty()) {
+            Waiter head = waiters.peekFirst();
+            long readyAt = readyAt(head, now);
+            if (readyAt <= now) {
+                waiters.pollFirst();
+                requestsAvailable -= 1;
+                tokensAvailable -= Math.min(head.tokens, tokenCapacity);
+                completions.add(() -> head.future.complete(null));
+                continue;
+            }
+            if (readyAt > head.deadline) {
+                waiters.pollFirst();
+                rejected.incrementAndGet();
+                LlmRateLimitException error = new LlmRateLimitException(
+                        TimeUnit.NANOSECONDS.toMillis(readyAt - now));
+                completions.add(() -> head.future.completeExceptionally(error));
+                continue;
+            }
+            scheduleDrain(readyAt, now);
+            break;
+        }
+        return completions;
+    }
+
+    private long readyAt(Waiter waiter, long now) {
+        double minuteNanos = 60_000_000_000.0;
+        long waitRequests = requestsAvailable >= 1 ? 0
+                : (long) Math.ceil((1 - requestsAvailable) / requestCapacity * minuteNanos);
+        double tokens = Math.min(waiter.tokens, tokenCapacity);
+        long waitTokens = tokensAvailable >= tokens ? 0
+                : (long) Math.ceil((tokens - tokensAvailable) / tokenCapacity * minuteNanos);
+        return Math.max(blockedUntil, now + Math.max(waitRequests, waitTokens));
+    }
+
+    private void scheduleDrain(long at, long now) {
+        if (pendingDrain != null && !pendingDrain.isDone() && pendingDrainAt <= at) {
+            return;
+        }
+        if (pendingDrain != null) {
+            pendingDrain.cancel(false);
+        }
+        pendingDrainAt = at;
+        pendingDrain = scheduler.schedule(() -> {
+            List<Runnable> completions;
+            synchronized (this) {
+                pendingDrain = null;
+                completions = drain();
+            }
+            completions.forEach(Runnable::run);
+        }, Math.max(1, at - now), TimeUnit.NANOSECONDS);
+    }
+
+    private static Double parseNumber(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses {@code Retry-After} (seconds). HTTP dates are not used by the
+     * providers we talk to and are ignored.
+     */
+    static long parseRetryAfterMillis(String value) {
+        Double seconds = parseNumber(value);
+        return seconds != null ? (long) (seconds * 1000) : -1;
+    }
+
+    /**
+     * Parses reset durations such as {@code 7.66s}, {@code 2m59.56s} or
+     * {@code 120ms}.
+     *
+     * @return the duration in milliseconds, or -1 if absent or unparseable
+     */
+    static long parseDurationMillis(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        Matcher matcher = DURATION_PART.matcher(value.trim());
+        double millis = 0;
+        boolean found = false;
+        while (matcher.find()) {
+            found = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            switch (matcher.group(2)) {
+                case "h":
+                    millis += amount * 3_600_000;
+                    break;
+                case "m":
+                    millis += amount * 60_000;
+                    break;
+                case "s":
+                    millis += amount * 1000;
+                    break;
+                default:
+                    millis += amount;
+                    break;
+            }
+        }
+        return found ? (long) Math.ceil(millis) : -1;
+    }
+}
@@ -0,0 +1,279 @@
+package synapse.model.services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Content-addressed cache for raw LLM responses.
+ *
+ * Entries are keyed by a SHA-256 hash of model + prompt, expire after a TTL
+ * and are evicted in LRU order once the total number of cached characters
+ * exceeds the configured weight. When a directory is configured every entry is
+ * mirrored to disk (one file per hash), so the cache survives restarts.
+ */
+@Service
+public class LlmResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmResponseCache.class);
+    private static final String FILE_SUFFIX = ".llm";
+
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final long maxWeight;
+    private final Path dir;
+    private final Clock clock;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long weight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Autowired
+    public LlmResponseCache(@Value("${project.llama.cache.enabled:true}") boolean enabled,
+            @Value("${project.llama.cache.ttlMinutes:1440}") long ttlMinutes,
+            @Value("${project.llama.cache.maxChars:20000000}") long maxChars,
+            @Value("${project.llama.cache.dir:}") String dir,
+            MeterRegistry meterRegistry) {
+        this(enabled, ttlMinutes * 60_000L, maxChars, dir, Clock.systemUTC());
+        registerMetrics(meterRegistry);
+    }
+
+    LlmResponseCache(boolean enabled, long ttlMillis, long maxWeight, String dir, Clock clock) {
+        this.enabled = enabled;
+        this.ttlMillis = ttlMillis;
+        this.maxWeight = maxWeight;
+        this.clock = clock;
+        this.dir = (dir == null || dir.trim().isEmpty()) ? null : Paths.get(dir.trim()).normalize();
+        if (enabled && this.dir != null) {
+            loadFromDisk();
+        }
+    }
+
+    /**
+     * Builds the content address of a request: hex SHA-256 of model and prompt.
+     */
+    public static String key(String model, String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((model == null ? "" : model).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update((prompt == null ? "" : prompt).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Returns the cached response for the key, or null on a miss.
+     */
+    public String get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        long now = clock.millis();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    hits.incrementAndGet();
+                    return entry.value;
+                }
+                removeEntry(key, entry);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores a response. Values larger than the whole cache are ignored.
+     */
+    public void put(String key, String value) {
+        if (!enabled || value == null || value.isEmpty() || value.length() > maxWeight) {
+            return;
+        }
+        long expiresAt = clock.millis() + ttlMillis;
+        synchronized (this) {
+            Entry previous = entries.put(key, new Entry(value, expiresAt));
+            if (previous != null) {
+                weight -= previous.value.length();
+            }
+            weight += value.length();
+            evictOverweight();
+        }
+        writeToDisk(key, value, expiresAt);
+    }
+
+    /**
+     * Drops the response stored under the key, if any.
+     */
+    public void remove(String key) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                removeEntry(key, entry);
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return weight;
+    }
+
+    private void evictOverweight() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            it.remove();
+            weight -= eldest.getValue().value.length();
+            evictions.incrementAndGet();
+            deleteFromDisk(eldest.getKey());
+        }
+    }
+
+    private void removeEntry(String key, Entry entry) {
+        entries.remove(key);
+        weight -= entry.value.length();
+        deleteFromDisk(key);
+    }
+
+    // ── Disk mirror ─────────────────────────────────────────────────────
+
+    private void loadFromDisk() {
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not create the LLM cache directory: " + dir, e);
+        }
+
+        long now = clock.millis();
+        int loaded = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String key = name.substring(0, name.length() - FILE_SUFFIX.length());
+                try {
+                    String raw = Files.readString(file, StandardCharsets.UTF_8);
+                    int newline = raw.indexOf('\n');
+                    long expiresAt = newline > 0 ? Long.parseLong(raw.substring(0, newline)) : 0L;
+                    if (expiresAt <= now) {
+                        Files.deleteIfExists(file);
+                        continue;
+                    }
+                    String value = raw.substring(newline + 1);
+                    synchronized (this) {
+                        entries.put(key, new Entry(value, expiresAt));
+                        weight += value.length();
+                        evictOverweight();
+                    }
+                    loaded++;
+                } catch (IOException | NumberFormatException e) {
+                    logger.warn("Discarding unreadable LLM cache file {}: {}", file, e.getMessage());
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read the LLM cache directory {}: {}", dir, e.getMessage());
+        }
+        logger.info("LLM response cache directory: {} ({} entries loaded)", dir.toAbsolutePath(), loaded);
+    }
+
+    private void writeToDisk(String key, String value, long expiresAt) {
+        if (dir == null) {
+            return;
+        }
+        Path file = dir.resolve(key + FILE_SUFFIX);
+        Path tmp = dir.resolve(key + FILE_SUFFIX + ".tmp");
+        try {
+            Files.writeString(tmp, expiresAt + "\n" + value, StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not persist LLM cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void deleteFromDisk(String key) {
+        if (dir == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(dir.resolve(key + FILE_SUFFIX));
+        } catch (IOException e) {
+            logger.warn("Could not delete LLM cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("llm.cache.requests", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .description("LLM response cache lookups")
+                .register(registry);
+        FunctionCounter.builder("llm.cache.requests", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .description("LLM response cache lookups")
+                .register(registry);
+        FunctionCounter.builder("llm.cache.evictions", evictions, AtomicLong::get)
+                .register(registry);
+        Gauge.builder("llm.cache.size", this, LlmResponseCache::size)
+                .register(registry);
+        Gauge.builder("llm.cache.weight", this, LlmResponseCache::weight)
+                .baseUnit("chars")
+                .register(registry);
+    }
+
+    private static final class Entry {
+        private final String value;
+        private final long expiresAt;
+
+        private Entry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package synapse.model.services;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import okio.BufferedSource;
+
+import synapse.rest.dtos.FactCheckResponseDto;
+import synapse.rest.dtos.TrendsInsightsResponseDto;
+
+/**
+ * Streaming decoding of chat completion responses.
+ *
+ * The response envelope is read token by token from the HTTP body: only
+ * {@code choices[0].message.content} and the token counts of {@code usage}
+ * are kept, everything else is skipped without building a tree. The JSON the
+ * model wrote inside the content is decoded the same way, straight into the
+ * result objects. Decoding starts at the first {@code {} of the content and
+ * stops at the end of that object, so leading prose, Markdown code fences
+ * and trailing text are ignored without copying the content.
+ */
+final class LlmResponseDecoder {
+
+    private static final Gson GSON = new Gson();
+
+    private LlmResponseDecoder() {
+    }
+
+    /**
+     * Token counts reported in {@code usage}; 0 when not reported.
+     */
+    record Usage(int promptTokens, int completionTokens, int totalTokens) {
+
+        static final Usage NONE = new Usage(0, 0, 0);
+    }
+
+    /**
+     * Content and token usage of a completion.
+     *
+     * @param content the message content, empty when the response has none
+     * @param usage   the reported usage, {@link Usage#NONE} when absent
+     */
+    record Completion(String content, Usage usage) {
+
+        int totalTokens() {
+            return usage.totalTokens();
+        }
+    }
+
+    /**
+     * Fields of a classification answer; null when the model left them out.
+     */
+    static final class Classification {
+        String type;
+        String title;
+        String summary;
+        String detailedContent;
+        String destination;
+        List<String> tags;
+    }
+
+    /**
+     * Reads a non-streamed completion ({@code chat.completion} object)
+     * straight from the response body.
+     */
+    static Completion readCompletion(BufferedSource body) throws IOException {
+        return readCompletion(new Utf8SourceReader(body));
+    }
+
+    static Completion readCompletion(Reader body) throws IOException {
+        JsonReader reader = new JsonReader(body);
+        reader.setLenient(true);
+        String content = null;
+        Usage usage = Usage.NONE;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "choices" -> content = readFirstChoice(reader, "message");
+                case "usage" -> usage = readUsage(reader);
+                default -> reader.skipValue();
+            }
+        }
+        return new Completion(content != null ? content : "", usage);
+    }
+
+    /**
+     * Reads one {@code data:} chunk of a streamed completion. Groq reports
+     * usage in the last chunk under {@code x_groq}.
+     *
+     * @return the content delta (empty if none) and the usage, if reported
+     */
+    static Completion readStreamChunk(String data) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(data));
+        reader.setLenient(true);
+        String delta = null;
+        Usage usage = Usage.NONE;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "choices" -> delta = readFirstChoice(reader, "delta");
+                case "usage" -> usage = readUsage(reader);
+                case "x_groq" -> {
+                    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                        reader.skipValue();
+                        break;
+                    }
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("usage")) {
+                            usage = readUsage(reader);
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                }
+                default -> reader.skipValue();
+            }
+        }
+        return new Completion(delta != null ? delta : "", usage);
+    }
+
+    /**
+     * Reads the answer a provider rejected in JSON mode: Groq answers HTTP
+     * 400 with code {@code json_validate_failed} and the model output in
+     * {@code error.failed_generation}.
+     *
+     * @return the rejected output, or null when the body holds none
+     */
+    static String readFailedGeneration(String errorBody) {
+        int start = errorBody != null ? errorBody.indexOf('{') : -1;
+        if (start < 0) {
+            return null;
+        }
+        try {
+            JsonReader reader = new JsonReader(new StringReader(errorBody.substring(start)));
+            reader.setLenient(true);
+            String failedGeneration = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("error") || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("failed_generation")) {
+                        failedGeneration = readString(reader);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            }
+            return failedGeneration;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decodes a classification answer.
+     *
+     * @return the classification, or null when the content holds no JSON
+     *         object
+     * @throws IOException if the JSON is malformed or cut off
+     */
+    static Classification readClassification(String content) throws IOException {
+        JsonReader reader = open(content);
+        if (reader == null) {
+            return null;
+        }
+        Classification result = new Classification();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type" -> result.type = readString(reader);
+                case "title" -> result.title = readString(reader);
+                case "summary" -> result.summary = readString(reader);
+                case "detailedContent" -> result.detailedContent = readString(reader);
+                case "destination" -> result.destination = readString(reader);
+                case "tags" -> result.tags = readStrings(reader);
+                default -> reader.skipValue();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a classification out of an already parsed object (an entry of a
+     * batch answer), with the same leniency as
+     * {@link #readClassification(String)}.
+     */
+    static Classification classificationOf(JsonObject json) {
+        Classification result = new Classification();
+        result.type = stringOf(json.get("type"));
+        result.title = stringOf(json.get("title"));
+        result.summary = stringOf(json.get("summary"));
+        result.detailedContent = stringOf(json.get("detailedContent"));
+        result.destination = stringOf(json.get("destination"));
+        if (json.has("tags") && json.get("tags").isJsonArray()) {
+            JsonArray tags = json.getAsJsonArray("tags");
+            result.tags = new ArrayList<>();
+            for (JsonElement tag : tags) {
+                String value = stringOf(tag);
+                if (value != null) {
+                    result.tags.add(value);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A fact-check claim and the number of the sentence it was taken from.
+     *
+     * @param sentence the {@code sentence} field of the claim, or -1 when
+     *                 missing or not a number
+     */
+    record Claim(int sentence, FactCheckResponseDto.ClaimVerification verification) {
+    }
+
+    /**
+     * Decodes a fact-check answer ({@code {"claims":[...]}}). Claims that are
+     * not objects are skipped.
+     *
+     * @return the claims, empty when the content holds no JSON object
+     * @throws IOException if the JSON is malformed or cut off
+     */
+    static List<FactCheckResponseDto.ClaimVerification> readClaims(String content) throws IOException {
+        return readNumberedClaims(content).stream().map(Claim::verification).toList();
+    }
+
+    /**
+     * Like {@link #readClaims(String)}, keeping the sentence number of each
+     * claim.
+     */
+    static List<Claim> readNumberedClaims(String content) throws IOException {
+        List<Claim> claims = new ArrayList<>();
+        JsonReader reader = open(content);
+        if (reader == null) {
+            return claims;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("claims") || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+                String originalText = null;
+                String status = null;
+                String explanation = null;
+                String correction = null;
+                int sentence = -1;
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    switch (reader.nextName()) {
+                        case "originalText" -> originalText = readString(reader);
+                        case "status" -> status = readString(reader);
+                        case "explanation" -> explanation = readString(reader);
+                        case "correction" -> correction = readString(reader);
+                        case "sentence" -> sentence = readInt(reader);
+                        default -> reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                claims.add(new Claim(sentence, new FactCheckResponseDto.ClaimVerification(
+                        originalText != null ? originalText : "",
+                        status != null ? status : "suspicious",
+                        explanation != null ? explanation : "",
+                        correction != null ? correction : "")));
+            }
+            reader.endArray();
+        }
+        return claims;
+    }
+
+    /**
+     * Decodes a trend insights answer.
+     *
+     * @return the insights, or null when the content holds no JSON object
+     */
+    static TrendsInsightsResponseDto readTrends(String content) {
+        JsonReader reader = open(content);
+        return reader == null ? null : GSON.fromJson(reader, TrendsInsightsResponseDto.class);
+    }
+
+    /**
+     * True when the content holds a complete JSON object.
+     */
+    static boolean isJsonObject(String content) {
+        JsonReader reader = open(content);
+        if (reader == null) {
+            return false;
+        }
+        try {
+            reader.skipValue();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A lenient reader positioned at the first {@code {} of the content, or
+     * null if there is none.
+     */
+    private static JsonReader open(String content) {
+        int start = content != null ? content.indexOf('{') : -1;
+        if (start < 0) {
+            return null;
+        }
+        StringReader source = new StringReader(content);
+        try {
+            source.skip(start);
+        } catch (IOException e) {
+            // StringReader does not fail
+            throw new IllegalStateException(e);
+        }
+        JsonReader reader = new JsonReader(source);
+        reader.setLenient(true);
+        return reader;
+    }
+
+    /**
+     * Reads {@code choices[0].<field>.content}, skipping the other choices.
+     */
+    private static String readFirstChoice(JsonReader reader, String field) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+        String content = null;
+        boolean first = true;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (!first || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            first = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals(field) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("content")) {
+                            content = readString(reader);
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+        return content;
+    }
+
+    private static Usage readUsage(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return Usage.NONE;
+        }
+        int prompt = 0;
+        int completion = 0;
+        int total = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() != JsonToken.NUMBER) {
+                reader.skipValue();
+                continue;
+            }
+            switch (name) {
+                case "prompt_tokens" -> prompt = reader.nextInt();
+                case "completion_tokens" -> completion = reader.nextInt();
+                case "total_tokens" -> total = reader.nextInt();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Usage(prompt, completion, total);
+    }
+
+    /**
+     * Reads a scalar as text; null for JSON null, objects and arrays.
+     */
+    private static String readString(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case STRING, NUMBER:
+                return reader.nextString();
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    /**
+     * Reads a whole number, also when written as a string; -1 otherwise.
+     */
+    private static int readInt(JsonReader reader) throws IOException {
+        String value = readString(reader);
+        try {
+            return value != null ? (int) Double.parseDouble(value.trim()) : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static List<String> readStrings(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String value = readString(reader);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        reader.endArray();
+        return values;
+    }
+
+    private static String stringOf(JsonElement element) {
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+    }
+
+    /**
+     * Decodes UTF-8 from the source's own buffer into the caller's array.
+     * Unlike an InputStreamReader it needs no byte and char buffers of its
+     * own, which for a response of a few KB cost more than the response.
+     */
+    static final class Utf8SourceReader extends Reader {
+        private final BufferedSource source;
+        /** Low surrogate left over when only one char fit in the last read. */
+        private int pendingLowSurrogate = -1;
+
+        Utf8SourceReader(BufferedSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            int count = 0;
+            if (pendingLowSurrogate >= 0) {
+                buffer[offset + count++] = (char) pendingLowSurrogate;
+                pendingLowSurrogate = -1;
+            } else if (!source.request(1)) {
+                return -1;
+            }
+            // Only block for the first char; afterwards take what is buffered
+            while (count < length && source.getBuffer().size() > 0) {
+                int codePoint = source.readUtf8CodePoint();
+                if (Character.isBmpCodePoint(codePoint)) {
+                    buffer[offset + count++] = (char) codePoint;
+                } else {
+                    buffer[offset + count++] = Character.highSurrogate(codePoint);
+                    if (count < length) {
+                        buffer[offset + count++] = Character.lowSurrogate(codePoint);
+                    } else {
+                        pendingLowSurrogate = Character.lowSurrogate(codePoint);
+                    }
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package synapse.model.services;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Routes LLM calls across several providers.
+ *
+ * Each call goes to the provider with the best score (latency average
+ * penalized by error rate); providers without data come after the measured
+ * ones, in configuration order, and every {@value #EXPLORE_EVERY}th call goes
+ * to the runner-up so its statistics stay current. When hedging is enabled
+ * and the first provider has not answered after its p95 latency, a duplicate
+ * request is sent to the next provider that has budget right now. The first
+ * answer wins and the other request is cancelled. If the first provider
+ * fails, the call fails over to the next one. At most two providers are
+ * used per call.
+ */
+public class LlmRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmRouter.class);
+    private static final int MAX_ATTEMPTS = 2;
+    private static final int EXPLORE_EVERY = 20;
+
+    private final List<LlmProvider> providers;
+    private final ScheduledExecutorService scheduler;
+    private final boolean hedging;
+    private final long defaultHedgeDelayNanos;
+    private final long minHedgeDelayNanos;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedged = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+    private final AtomicLong failovers = new AtomicLong();
+
+    /**
+     * @param providers         providers in configuration order (unconfigured
+     *                          ones are ignored)
+     * @param scheduler         used to fire hedged requests
+     * @param hedging           whether hedged requests are sent at all
+     * @param defaultHedgeDelay delay before hedging while a provider has no p95
+     * @param minHedgeDelay     lower bound for the hedge delay
+     */
+    public LlmRouter(List<LlmProvider> providers, ScheduledExecutorService scheduler, boolean hedging,
+            Duration defaultHedgeDelay, Duration minHedgeDelay) {
+        this.providers = providers.stream().filter(LlmProvider::isConfigured).toList();
+        this.scheduler = scheduler;
+        this.hedging = hedging;
+        this.defaultHedgeDelayNanos = defaultHedgeDelay.toNanos();
+        this.minHedgeDelayNanos = minHedgeDelay.toNanos();
+    }
+
+    /**
+     * True when at least one provider can be called.
+     */
+    public boolean hasProviders() {
+        return !providers.isEmpty();
+    }
+
+    public List<LlmProvider> getProviders() {
+        return providers;
+    }
+
+    /**
+     * Providers in the order they should be tried for the next call. Those
+     * with an open circuit go last: they would only fail fast.
+     */
+    public List<LlmProvider> rank() {
+        // Scores change while calls complete; sort on a snapshot
+        Map<LlmProvider, double[]> keys = new HashMap<>();
+        for (LlmProvider provider : providers) {
+            double score = provider.score();
+            boolean open = provider.getCircuitBreaker().getState() == LlmCircuitBreaker.State.OPEN;
+            keys.put(provider, new double[] { open ? 1 : 0, score < 0 ? 1 : 0, score });
+        }
+        List<LlmProvider> ranked = new ArrayList<>(providers);
+        ranked.sort(Comparator.comparingDouble((LlmProvider provider) -> keys.get(provider)[0])
+                .thenComparingDouble(provider -> keys.get(provider)[1])
+                .thenComparingDouble(provider -> keys.get(provider)[2]));
+        if (ranked.size() > 1 && calls.incrementAndGet() % EXPLORE_EVERY == 0
+                && keys.get(ranked.get(1))[0] == 0) {
+            ranked.add(0, ranked.remove(1));
+        }
+        return ranked;
+    }
+
+    /**
+     * Runs a call on the best provider, hedging and failing over as
+     * described above. Cancelling the returned future cancels the requests
+     * in flight.
+     *
+     * @param estimatedTokens tokens the call will use, to check a hedge target
+     *                        has budget
+     * @param attempt         starts the call on a provider; cancelling its
+     *                        future must cancel the request
+     */
+    public <T> CompletableFuture<T> execute(int estimatedTokens, Function<LlmProvider, CompletableFuture<T>> attempt) {
+        if (providers.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No LLM provider configured"));
+        }
+        return new RoutedCall<>(rank(), estimatedTokens, attempt).start();
+    }
+
+    /**
+     * Provider a call that cannot be hedged (e.g. a streamed answer) should
+     * use.
+     */
+    public LlmProvider primary() {
+        if (providers.isEmpty()) {
+            throw new IllegalStateException("No LLM provider configured");
+        }
+        return rank().get(0);
+    }
+
+    /**
+     * Duplicate requests sent because the first provider was slow.
+     */
+    public long getHedged() {
+        return hedged.get();
+    }
+
+    /**
+     * Hedged requests that answered before the original one.
+     */
+    public long getHedgesWon() {
+        return hedgesWon.get();
+    }
+
+    /**
+     * Calls retried on another provider after the first one failed.
+     */
+    public long getFailovers() {
+        return failovers.get();
+    }
+
+    private long hedgeDelayNanos(LlmProvider provider) {
+        long p95 = provider.p95Nanos();
+        return Math.max(minHedgeDelayNanos, p95 > 0 ? p95 : defaultHedgeDelayNanos);
+    }
+
+    /**
+     * State of one routed call: the attempts started so far and the hedge
+     * timer.
+     */
+    private final class RoutedCall<T> {
+        private final List<LlmProvider> ranked;
+        private final int estimatedTokens;
+        private final Function<LlmProvider, CompletableFuture<T>> attempt;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final List<CompletableFuture<T>> running = new ArrayList<>();
+        private int started;
+        private int outstanding;
+        private boolean answered;
+        private ScheduledFuture<?> hedgeTimer;
+
+        private RoutedCall(List<LlmProvider> ranked, int estimatedTokens,
+                Function<LlmProvider, CompletableFuture<T>> attempt) {
+            this.ranked = ranked;
+            this.estimatedTokens = estimatedTokens;
+            this.attempt = attempt;
+        }
+
+        private CompletableFuture<T> start() {
+            result.whenComplete((value, error) -> cancelRemaining());
+            launch(false);
+            if (hedging && ranked.size() > 1 && !result.isDone()) {
+                synchronized (this) {
+                    hedgeTimer = scheduler.schedule(this::hedge, hedgeDelayNanos(ranked.get(0)),
+                            TimeUnit.NANOSECONDS);
+                }
+            }
+            return result;
+        }
+
+        private void hedge() {
+            LlmProvider target;
+            synchronized (this) {
+                if (result.isDone() || started >= Math.min(MAX_ATTEMPTS, ranked.size())
+                        || !ranked.get(started).canTakeHedge(estimatedTokens)) {
+                    return;
+                }
+                target = ranked.get(started);
+            }
+            hedged.incrementAndGet();
+            logger.info("LLM call to {} is slow, hedging to {}", ranked.get(0).getName(), target.getName());
+            launch(true);
+        }
+
+        private void launch(boolean isHedge) {
+            LlmProvider provider;
+            synchronized (this) {
+                if (result.isDone() || started >= Math.min(MAX_ATTEMPTS, ranked.size())) {
+                    return;
+                }
+                provider = ranked.get(started++);
+                outstanding++;
+            }
+
+            CompletableFuture<T> call;
+            try {
+                call = attempt.apply(provider);
+            } catch (RuntimeException e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            synchronized (this) {
+                running.add(call);
+            }
+            if (result.isDone()) {
+                call.cancel(true);
+                return;
+            }
+
+            call.whenComplete((value, error) -> {
+                if (error == null) {
+                    boolean won;
+                    synchronized (this) {
+                        won = !answered;
+                        answered = true;
+                    }
+                    if (won && isHedge) {
+                        hedgesWon.incrementAndGet();
+                    }
+                    result.complete(value);
+                    return;
+                }
+                boolean failover;
+                synchronized (this) {
+                    failover = --outstanding == 0 && !result.isDone()
+                            && started < Math.min(MAX_ATTEMPTS, ranked.size());
+                    if (!failover && outstanding > 0) {
+                        // The other attempt may still answer
+                        return;
+                    }
+                }
+                if (failover) {
+                    failovers.incrementAndGet();
+                    logger.warn("LLM call to {} failed ({}), failing over", provider.getName(),
+                            unwrap(error).getMessage());
+                    launch(false);
+                } else {
+                    result.completeExceptionally(unwrap(error));
+                }
+            });
+        }
+
+        private void cancelRemaining() {
+            List<CompletableFuture<T>> toCancel;
+            synchronized (this) {
+                if (hedgeTimer != null) {
+                    hedgeTimer.cancel(false);
+                }
+                toCancel = new ArrayList<>(running);
+            }
+            toCancel.forEach(call -> call.cancel(true));
+        }
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+}
@@ -0,0 +1,292 @@
+package synapse.model.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Admission control for LLM calls by priority class.
+ *
+ * At most {@code maxConcurrent} calls run at once (waiting for rate limit
+ * budget counts as running). Each class may use only its share of those
+ * slots: {@link LlmPriority#INTERACTIVE} all of them, the lower classes a
+ * fraction, so a burst of background work always leaves room for
+ * interactive calls. When a slot frees up, the oldest call of the highest
+ * class that is under its share starts next. Starvation guard: a call that
+ * has waited {@code agingMs} or more goes first regardless of its class.
+ * A waiting call submitted with a key can be moved to a higher class with
+ * {@link #promote}, e.g. when a user starts waiting for a call that was
+ * started speculatively.
+ */
+public class LlmScheduler {
+
+    private static final LlmPriority[] CLASSES = LlmPriority.values();
+
+    private final int maxConcurrent;
+    private final int[] limits = new int[CLASSES.length];
+    private final int maxQueued;
+    private final long agingNanos;
+    private final LongSupplier nanoClock;
+
+    private final List<Deque<Task<?>>> queues = new ArrayList<>();
+    private final Map<Object, Task<?>> queuedByKey = new HashMap<>();
+    private final int[] running = new int[CLASSES.length];
+    private int totalRunning;
+
+    private final long[] started = new long[CLASSES.length];
+    private final long[] waitNanos = new long[CLASSES.length];
+    private final long[] rejected = new long[CLASSES.length];
+    private long promoted;
+
+    private static final class Task<T> {
+        private LlmPriority priority;
+        private final Object key;
+        private final Supplier<CompletableFuture<T>> work;
+        private final long enqueuedAt;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Task(LlmPriority priority, Object key, Supplier<CompletableFuture<T>> work, long enqueuedAt) {
+            this.priority = priority;
+            this.key = key;
+            this.work = work;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    /**
+     * @param maxConcurrent     calls running at once, all classes together
+     * @param batchShare        fraction of the slots batch calls may use
+     * @param backgroundShare   fraction of the slots background calls may use
+     * @param maxQueued         waiting calls per class before new ones are
+     *                          rejected
+     * @param agingMillis       wait after which a call goes first
+     */
+    public LlmScheduler(int maxConcurrent, double batchShare, double backgroundShare, int maxQueued,
+            long agingMillis) {
+        this(maxConcurrent, batchShare, backgroundShare, maxQueued, agingMillis, System::nanoTime);
+    }
+
+    LlmScheduler(int maxConcurrent, double batchShare, double backgroundShare, int maxQueued, long agingMillis,
+            LongSupplier nanoClock) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.limits[LlmPriority.INTERACTIVE.ordinal()] = this.maxConcurrent;
+        this.limits[LlmPriority.BATCH.ordinal()] = share(this.maxConcurrent, batchShare);
+        this.limits[LlmPriority.BACKGROUND.ordinal()] = share(this.maxConcurrent, backgroundShare);
+        this.maxQueued = maxQueued;
+        this.agingNanos = agingMillis * 1_000_000;
+        this.nanoClock = nanoClock;
+        for (int i = 0; i < CLASSES.length; i++) {
+            queues.add(new ArrayDeque<>());
+        }
+    }
+
+    private static int share(int slots, double fraction) {
+        return Math.max(1, Math.min(slots, (int) Math.round(slots * fraction)));
+    }
+
+    /**
+     * Runs {@code work} once a slot of its class is free. Cancelling the
+     * returned future removes a waiting call from the queue or cancels the
+     * running one.
+     *
+     * @return the work's result; fails with
+     *         {@link RejectedExecutionException} when the class queue is full
+     */
+    public <T> CompletableFuture<T> submit(LlmPriority priority, Supplier<CompletableFuture<T>> work) {
+        return submit(priority, null, work);
+    }
+
+    /**
+     * Like {@link #submit(LlmPriority, Supplier)}; while the call waits, it
+     * can be promoted by its key.
+     */
+    public <T> CompletableFuture<T> submit(LlmPriority priority, Object key, Supplier<CompletableFuture<T>> work) {
+        Task<T> task = new Task<>(priority, key, work, nanoClock.getAsLong());
+        List<Task<?>> toStart;
+        synchronized (this) {
+            Deque<Task<?>> queue = queues.get(priority.ordinal());
+            if (queue.size() >= maxQueued) {
+                rejected[priority.ordinal()]++;
+                return CompletableFuture.failedFuture(
+                        new RejectedExecutionException("LLM " + priority + " queue is full"));
+            }
+            queue.addLast(task);
+            if (key != null) {
+                queuedByKey.put(key, task);
+            }
+            toStart = startable();
+        }
+        task.result.whenComplete((value, error) -> {
+            if (task.result.isCancelled()) {
+                synchronized (this) {
+                    queues.get(task.priority.ordinal()).remove(task);
+                    unindex(task);
+                }
+            }
+        });
+        toStart.forEach(this::start);
+        return task.result;
+    }
+
+    /**
+     * Moves the waiting call submitted with {@code key} to a higher class,
+     * keeping its place by submission time. Does nothing when there is no
+     * such call or it already has that class or a higher one.
+     *
+     * @return true if the call was moved
+     */
+    public boolean promote(Object key, LlmPriority priority) {
+        List<Task<?>> toStart;
+        synchronized (this) {
+            Task<?> task = queuedByKey.get(key);
+            if (task == null || task.priority.compareTo(priority) <= 0) {
+                return false;
+            }
+            queues.get(task.priority.ordinal()).remove(task);
+            task.priority = priority;
+            Deque<Task<?>> queue = queues.get(priority.ordinal());
+            List<Task<?>> reordered = new ArrayList<>(queue);
+            int position = 0;
+            while (position < reordered.size() && reordered.get(position).enqueuedAt <= task.enqueuedAt) {
+                position++;
+            }
+            reordered.add(position, task);
+            queue.clear();
+            queue.addAll(reordered);
+            toStart = startable();
+        }
+        toStart.forEach(this::start);
+        return true;
+    }
+
+    private void unindex(Task<?> task) {
+        if (task.key != null) {
+            queuedByKey.remove(task.key, task);
+        }
+    }
+
+    public synchronized int queued(LlmPriority priority) {
+        return queues.get(priority.ordinal()).size();
+    }
+
+    public synchronized int running(LlmPriority priority) {
+        return running[priority.ordinal()];
+    }
+
+    /**
+     * Calls of the class started so far.
+     */
+    public synchronized long started(LlmPriority priority) {
+        return started[priority.ordinal()];
+    }
+
+    /**
+     * Total time the class's started calls spent queued, in nanoseconds.
+     */
+    public synchronized long waitNanos(LlmPriority priority) {
+        return waitNanos[priority.ordinal()];
+    }
+
+    public synchronized long rejected(LlmPriority priority) {
+        return rejected[priority.ordinal()];
+    }
+
+    /**
+     * Calls started ahead of a higher class because they waited too long.
+     */
+    public synchronized long getPromoted() {
+        return promoted;
+    }
+
+    private <T> void start(Task<T> task) {
+        CompletableFuture<T> call;
+        try {
+            call = task.work.get();
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> running = call;
+        task.result.whenComplete((value, error) -> {
+            if (task.result.isCancelled()) {
+                running.cancel(true);
+            }
+        });
+        running.whenComplete((value, error) -> {
+            release(task.priority);
+            if (error == null) {
+                task.result.complete(value);
+            } else {
+                task.result.completeExceptionally(
+                        error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        });
+    }
+
+    private void release(LlmPriority priority) {
+        List<Task<?>> toStart;
+        synchronized (this) {
+            running[priority.ordinal()]--;
+            totalRunning--;
+            toStart = startable();
+        }
+        toStart.forEach(this::start);
+    }
+
+    /**
+     * Takes the calls that can start now off the queues. Must be called
+     * while holding the lock; the calls must be started after releasing it.
+     */
+    private List<Task<?>> startable() {
+        List<Task<?>> toStart = new ArrayList<>();
+        long now = nanoClock.getAsLong();
+        while (totalRunning < maxConcurrent) {
+            Task<?> next = next(now);
+            if (next == null) {
+                break;
+            }
+            int c = next.priority.ordinal();
+            queues.get(c).pollFirst();
+            unindex(next);
+            running[c]++;
+            totalRunning++;
+            started[c]++;
+            waitNanos[c] += now - next.enqueuedAt;
+            toStart.add(next);
+        }
+        return toStart;
+    }
+
+    private Task<?> next(long now) {
+        Task<?> first = null;
+        Task<?> aged = null;
+        for (LlmPriority priority : CLASSES) {
+            Deque<Task<?>> queue = queues.get(priority.ordinal());
+            while (!queue.isEmpty() && queue.peekFirst().result.isDone()) {
+                unindex(queue.pollFirst());
+            }
+            Task<?> head = queue.peekFirst();
+            if (head == null || running[priority.ordinal()] >= limits[priority.ordinal()]) {
+                continue;
+            }
+            if (first == null) {
+                first = head;
+            }
+            if (now - head.enqueuedAt >= agingNanos && (aged == null || head.enqueuedAt < aged.enqueuedAt)) {
+                aged = head;
+            }
+        }
+        if (aged != null && aged != first) {
+            promoted++;
+            return aged;
+        }
+        return first;
+    }
+}
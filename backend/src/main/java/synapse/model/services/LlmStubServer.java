@@ -0,0 +1,509 @@
+package synapse.model.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for an OpenAI-compatible {@code /chat/completions}
+ * endpoint, for load tests, benchmarks and offline development.
+ *
+ * Answers are deterministic: the prompts LlamaAIService builds
+ * (classification, batch classification, fact-check, combined
+ * classification and fact-check, trend insights) get a JSON answer derived
+ * from the content in the prompt. Fixtures can replace the answer for
+ * prompts matching a pattern, and a recorded {@link LlmJournal} replays real
+ * answers with their latencies. Both plain and
+ * {@code stream=true} requests are supported, with {@code usage} reported
+ * like Groq does and {@code max_tokens} honoured (the answer is cut and
+ * {@code finish_reason} is {@code length}).
+ *
+ * Latency follows a log-normal distribution given by its median and p99.
+ * A share of requests can be answered with HTTP 500 or with HTTP 429 and
+ * {@code Retry-After}. The random sequence is seeded, so a run can be
+ * repeated.
+ */
+public class LlmStubServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmStubServer.class);
+    private static final Gson GSON = new Gson();
+    /** z-score of the 99th percentile of a normal distribution. */
+    private static final double Z_99 = 2.326;
+    private static final int STREAM_CHUNK_CHARS = 24;
+    private static final Pattern WORD = Pattern.compile("\\p{L}{5,}");
+    private static final Pattern SENTENCE = Pattern.compile("[^.!?\\n]{20,}[.!?]");
+    private static final Pattern BATCH_ITEM = Pattern.compile("### ITEM (\\d+)\\n");
+    private static final Pattern NUMBERED_SENTENCE = Pattern.compile("(?m)^\\[(\\d+)\\] (.+)$");
+
+    private final int port;
+    private final double medianMillis;
+    private final double sigma;
+    private final double errorRate;
+    private final double rateLimitRate;
+    private final Random random;
+    private final Map<Pattern, String> fixtures = new LinkedHashMap<>();
+    /** Recorded calls by model + prompt, answered in recorded order. */
+    private final Map<String, Replay> journal = new HashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param port          port to listen on, 0 for any free port
+     * @param medianLatency median response time
+     * @param p99Latency    99th percentile response time
+     * @param errorRate     share of requests answered with HTTP 500 (0..1)
+     * @param rateLimitRate share of requests answered with HTTP 429 (0..1)
+     * @param seed          seed of the latency and error sequence
+     */
+    public LlmStubServer(int port, Duration medianLatency, Duration p99Latency, double errorRate,
+            double rateLimitRate, long seed) {
+        this.port = port;
+        this.medianMillis = Math.max(0, medianLatency.toMillis());
+        long p99 = Math.max(p99Latency.toMillis(), medianLatency.toMillis());
+        this.sigma = medianMillis > 0 && p99 > medianMillis ? Math.log(p99 / medianMillis) / Z_99 : 0;
+        this.errorRate = errorRate;
+        this.rateLimitRate = rateLimitRate;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Answers prompts matching {@code pattern} with {@code content} instead
+     * of the generated answer. Fixtures are checked in the order added.
+     */
+    public LlmStubServer addFixture(Pattern pattern, String content) {
+        fixtures.put(pattern, content);
+        return this;
+    }
+
+    /**
+     * Loads fixtures from {@code *.json} files holding
+     * {@code {"match": "<regex>", "content": "<answer>"}}, in file name order.
+     */
+    public LlmStubServer loadFixtures(Path dir) throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(dir)) {
+            files = list.filter(file -> file.toString().endsWith(".json"))
+                    .sorted(Comparator.naturalOrder()).toList();
+        }
+        for (Path file : files) {
+            JsonObject fixture = JsonParser.parseString(Files.readString(file)).getAsJsonObject();
+            JsonElement content = fixture.get("content");
+            addFixture(Pattern.compile(fixture.get("match").getAsString(), Pattern.DOTALL),
+                    content.isJsonPrimitive() ? content.getAsString() : content.toString());
+        }
+        logger.info("Loaded {} LLM stub fixtures from {}", files.size(), dir);
+        return this;
+    }
+
+    /**
+     * Loads an {@link LlmJournal}: requests with a recorded model and prompt
+     * are answered with the recorded answer, usage and latency instead of the
+     * generated answer and the configured latency. A prompt recorded several
+     * times gets its answers in turn.
+     */
+    public LlmStubServer loadJournal(Path file) throws IOException {
+        List<LlmJournal.Entry> entries = LlmJournal.read(file);
+        for (LlmJournal.Entry entry : entries) {
+            journal.computeIfAbsent(LlmResponseCache.key(entry.model(), entry.prompt()), key -> new Replay())
+                    .entries.add(entry);
+        }
+        logger.info("Loaded {} recorded LLM calls ({} distinct prompts) from {}", entries.size(), journal.size(),
+                file);
+        return this;
+    }
+
+    private static final class Replay {
+        private final List<LlmJournal.Entry> entries = new ArrayList<>();
+        private int next;
+
+        private synchronized LlmJournal.Entry next() {
+            return entries.get(next++ % entries.size());
+        }
+    }
+
+    public synchronized void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        logger.info("LLM stub listening on {}", getUrl());
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * @return the chat completions URL to configure as {@code apiUrl}
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    /**
+     * Requests received so far.
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            if (!exchange.getRequestMethod().equals("POST")
+                    || !exchange.getRequestURI().getPath().endsWith("/chat/completions")) {
+                sendJson(exchange, 404, error("Not found", "invalid_request_error"));
+                return;
+            }
+
+            JsonObject request;
+            try (InputStream in = exchange.getRequestBody()) {
+                request = JsonParser.parseString(new String(in.readAllBytes(), StandardCharsets.UTF_8))
+                        .getAsJsonObject();
+            } catch (RuntimeException e) {
+                sendJson(exchange, 400, error("Invalid JSON body", "invalid_request_error"));
+                return;
+            }
+
+            double roll;
+            long latency;
+            synchronized (random) {
+                roll = random.nextDouble();
+                latency = (long) (medianMillis * Math.exp(sigma * random.nextGaussian()));
+            }
+            if (roll < rateLimitRate) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                exchange.getResponseHeaders().add("x-ratelimit-reset-tokens", "1s");
+                sendJson(exchange, 429, error("Rate limit reached (stub)", "rate_limit_exceeded"));
+                return;
+            }
+            if (roll < rateLimitRate + errorRate) {
+                sleep(latency);
+                sendJson(exchange, 500, error("Internal error (stub)", "server_error"));
+                return;
+            }
+
+            String model = request.has("model") ? request.get("model").getAsString() : "stub";
+            String prompt = prompt(request);
+            // prompt() ends every message with a newline; the journal holds the prompt as sent
+            Replay replay = journal.isEmpty() || prompt.isEmpty() ? null
+                    : journal.get(LlmResponseCache.key(model, prompt.substring(0, prompt.length() - 1)));
+            String content;
+            int promptTokens;
+            int completionTokens;
+            if (replay != null) {
+                LlmJournal.Entry recorded = replay.next();
+                content = recorded.response();
+                latency = recorded.latencyMs();
+                promptTokens = recorded.promptTokens() > 0 ? recorded.promptTokens() : TokenEstimator.estimate(prompt);
+                completionTokens = recorded.completionTokens() > 0 ? recorded.completionTokens()
+                        : TokenEstimator.estimate(content);
+            } else {
+                content = answer(prompt);
+                promptTokens = TokenEstimator.estimate(prompt);
+                completionTokens = TokenEstimator.estimate(content);
+            }
+            String finishReason = "stop";
+            if (request.has("max_tokens") && completionTokens > request.get("max_tokens").getAsInt()) {
+                int maxTokens = request.get("max_tokens").getAsInt();
+                content = content.substring(0, (int) ((long) content.length() * maxTokens / completionTokens));
+                completionTokens = maxTokens;
+                finishReason = "length";
+            }
+            JsonObject usage = new JsonObject();
+            usage.addProperty("prompt_tokens", promptTokens);
+            usage.addProperty("completion_tokens", completionTokens);
+            usage.addProperty("total_tokens", promptTokens + completionTokens);
+
+            if (request.has("stream") && request.get("stream").getAsBoolean()) {
+                stream(exchange, model, content, finishReason, usage, latency);
+            } else {
+                sleep(latency);
+                sendJson(exchange, 200, completion(model, content, finishReason, usage));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Client cancelled the call (e.g. the loser of a hedged request)
+            logger.debug("LLM stub client went away: {}", e.getMessage());
+        }
+    }
+
+    private void stream(HttpExchange exchange, String model, String content, String finishReason,
+            JsonObject usage, long latency) throws IOException, InterruptedException {
+        int chunks = Math.max(1, (content.length() + STREAM_CHUNK_CHARS - 1) / STREAM_CHUNK_CHARS);
+        // A quarter of the latency goes to the first token, the rest is spread over the chunks
+        sleep(latency / 4);
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        for (int i = 0; i < chunks; i++) {
+            String delta = content.substring(i * STREAM_CHUNK_CHARS,
+                    Math.min(content.length(), (i + 1) * STREAM_CHUNK_CHARS));
+            JsonObject deltaObj = new JsonObject();
+            deltaObj.addProperty("content", delta);
+            writeEvent(out, chunk(model, deltaObj, null));
+            sleep(latency * 3 / 4 / chunks);
+        }
+        JsonObject last = chunk(model, new JsonObject(), finishReason);
+        JsonObject groq = new JsonObject();
+        groq.add("usage", usage);
+        last.add("x_groq", groq);
+        writeEvent(out, last);
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void writeEvent(OutputStream out, JsonObject data) throws IOException {
+        out.write(("data: " + GSON.toJson(data) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static JsonObject chunk(String model, JsonObject delta, String finishReason) {
+        JsonObject choice = new JsonObject();
+        choice.addProperty("index", 0);
+        choice.add("delta", delta);
+        choice.addProperty("finish_reason", finishReason);
+        JsonArray choices = new JsonArray();
+        choices.add(choice);
+        JsonObject chunk = new JsonObject();
+        chunk.addProperty("id", "stub");
+        chunk.addProperty("object", "chat.completion.chunk");
+        chunk.addProperty("model", model);
+        chunk.add("choices", choices);
+        return chunk;
+    }
+
+    private static JsonObject completion(String model, String content, String finishReason, JsonObject usage) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "assistant");
+        message.addProperty("content", content);
+        JsonObject choice = new JsonObject();
+        choice.addProperty("index", 0);
+        choice.add("message", message);
+        choice.addProperty("finish_reason", finishReason);
+        JsonArray choices = new JsonArray();
+        choices.add(choice);
+        JsonObject completion = new JsonObject();
+        completion.addProperty("id", "stub");
+        completion.addProperty("object", "chat.completion");
+        completion.addProperty("model", model);
+        completion.add("choices", choices);
+        completion.add("usage", usage);
+        return completion;
+    }
+
+    private static JsonObject error(String message, String code) {
+        JsonObject error = new JsonObject();
+        error.addProperty("message", message);
+        error.addProperty("code", code);
+        JsonObject body = new JsonObject();
+        body.add("error", error);
+        return body;
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, JsonObject body) throws IOException {
+        byte[] bytes = GSON.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    private static String prompt(JsonObject request) {
+        StringBuilder prompt = new StringBuilder();
+        if (request.has("messages") && request.get("messages").isJsonArray()) {
+            for (JsonElement message : request.getAsJsonArray("messages")) {
+                JsonElement content = message.getAsJsonObject().get("content");
+                if (content != null && content.isJsonPrimitive()) {
+                    prompt.append(content.getAsString()).append('\n');
+                }
+            }
+        }
+        return prompt.toString();
+    }
+
+    // ── Generated answers ───────────────────────────────────────────────
+
+    String answer(String prompt) {
+        for (Map.Entry<Pattern, String> fixture : fixtures.entrySet()) {
+            if (fixture.getKey().matcher(prompt).find()) {
+                return fixture.getValue();
+            }
+        }
+        if (prompt.contains("### ITEM ")) {
+            return GSON.toJson(batchAnswer(prompt));
+        }
+        if (prompt.contains("classify it and fact-check it")) {
+            String sentences = section(prompt, "sentence per line):\n", "\n\nCLASSIFICATION");
+            JsonObject answer = classification(NUMBERED_SENTENCE.matcher(sentences).replaceAll("$2"),
+                    prompt.contains("DETAILEDCONTENT"));
+            answer.add("claims", factCheck(sentences).get("claims"));
+            return GSON.toJson(answer);
+        }
+        if (prompt.contains("JSON classification")) {
+            return GSON.toJson(classification(section(prompt, "CONTENT:\n", "\n\nMANDATORY RULES"), true));
+        }
+        if (prompt.contains("fact-checking")) {
+            return GSON.toJson(factCheck(section(prompt, "sentence per line):\n", "\n\nRULES:")));
+        }
+        if (prompt.contains("trend analyst")) {
+            return GSON.toJson(trends());
+        }
+        return "{}";
+    }
+
+    private static JsonObject batchAnswer(String prompt) {
+        String items = section(prompt, "", "MANDATORY RULES FOR EACH ITEM");
+        Matcher matcher = BATCH_ITEM.matcher(items);
+        List<int[]> starts = new ArrayList<>();
+        while (matcher.find()) {
+            starts.add(new int[] { Integer.parseInt(matcher.group(1)), matcher.start(), matcher.end() });
+        }
+        JsonArray results = new JsonArray();
+        for (int i = 0; i < starts.size(); i++) {
+            int end = i + 1 < starts.size() ? starts.get(i + 1)[1] : items.length();
+            JsonObject result = classification(items.substring(starts.get(i)[2], end).trim(), false);
+            JsonObject entry = new JsonObject();
+            entry.addProperty("id", starts.get(i)[0]);
+            result.entrySet().forEach(field -> entry.add(field.getKey(), field.getValue()));
+            results.add(entry);
+        }
+        JsonObject answer = new JsonObject();
+        answer.add("results", results);
+        return answer;
+    }
+
+    private static JsonObject classification(String content, boolean detailed) {
+        String title = "Note";
+        for (String line : content.split("\n")) {
+            String candidate = line.replaceFirst("^(Title|VIDEO TITLE|Content):\\s*", "").trim();
+            if (!candidate.isEmpty()) {
+                title = candidate.length() > 120 ? candidate.substring(0, 117) + "..." : candidate;
+                break;
+            }
+        }
+        String flat = content.replaceAll("\\s+", " ").trim();
+        String summary = flat.length() > 300 ? flat.substring(0, 300) + "..." : flat;
+
+        JsonObject result = new JsonObject();
+        result.addProperty("type", content.contains("VIDEO") ? "video" : flat.length() < 300 ? "note" : "article");
+        result.addProperty("title", title);
+        JsonArray tags = new JsonArray();
+        topWords(flat, 4).forEach(tags::add);
+        result.add("tags", tags);
+        result.addProperty("summary", summary);
+        result.addProperty("destination", "note");
+        if (detailed) {
+            StringBuilder markdown = new StringBuilder("# ").append(title).append("\n\n## Summary\n\n")
+                    .append(summary).append("\n\n## Key points\n\n");
+            Matcher sentences = SENTENCE.matcher(flat);
+            for (int i = 0; i < 5 && sentences.find(); i++) {
+                markdown.append("- ").append(sentences.group().trim()).append('\n');
+            }
+            result.addProperty("detailedContent", markdown.toString());
+        }
+        return result;
+    }
+
+    /**
+     * One claim per numbered sentence of at least 20 characters: suspicious
+     * when it has figures, true otherwise.
+     */
+    private static JsonObject factCheck(String content) {
+        JsonArray claims = new JsonArray();
+        Matcher sentences = NUMBERED_SENTENCE.matcher(content);
+        while (sentences.find()) {
+            String sentence = sentences.group(2).trim();
+            if (sentence.length() < 20) {
+                continue;
+            }
+            JsonObject claim = new JsonObject();
+            claim.addProperty("sentence", Integer.parseInt(sentences.group(1)));
+            claim.addProperty("originalText", sentence);
+            boolean suspicious = sentence.matches(".*\\d.*");
+            claim.addProperty("status", suspicious ? "suspicious" : "true");
+            claim.addProperty("explanation", suspicious ? "Figures could not be verified (stub)." : "Consistent (stub).");
+            claim.addProperty("correction", "");
+            claims.add(claim);
+        }
+        JsonObject answer = new JsonObject();
+        answer.add("claims", claims);
+        return answer;
+    }
+
+    private static JsonObject trends() {
+        JsonObject answer = new JsonObject();
+        answer.add("topicLabels", new JsonObject());
+        JsonArray insights = new JsonArray();
+        insights.add("Your recent captures concentrate on a few recurring topics (stub).");
+        answer.add("insights", insights);
+        JsonArray recommendations = new JsonArray();
+        recommendations.add("Review the notes of your most active topic (stub).");
+        answer.add("recommendations", recommendations);
+        return answer;
+    }
+
+    private static String section(String prompt, String startMarker, String endMarker) {
+        int start = prompt.indexOf(startMarker);
+        start = start < 0 ? 0 : start + startMarker.length();
+        int end = prompt.indexOf(endMarker, start);
+        return prompt.substring(start, end < 0 ? prompt.length() : end);
+    }
+
+    private static List<String> topWords(String text, int count) {
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        Matcher words = WORD.matcher(text.toLowerCase(Locale.ROOT));
+        while (words.find()) {
+            frequencies.merge(words.group(), 1, Integer::sum);
+        }
+        List<String> top = frequencies.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .toList();
+        return top.isEmpty() ? List.of("stub") : top;
+    }
+}
@@ -0,0 +1,405 @@
+package synapse.model.services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * In-process classifier trained on the saved notes, so confident cases can
+ * skip the model.
+ *
+ * Every note in the notes directory is an example: its body is the input and
+ * the {@code type}, {@code destination} and {@code tags} of its front matter
+ * are the labels (the Spanish names the app saves are mapped to the model's
+ * vocabulary). One {@link NaiveBayes} per field is trained at startup and
+ * then on every saved note. A prediction whose type and destination both
+ * reach {@code local.threshold} is used instead of calling the model, once
+ * at least {@code local.minExamples} notes have been learned.
+ *
+ * A fixed slice of the notes ({@code local.holdoutPercent}, chosen by note
+ * id) is never learned: it measures how often the local labels agree with
+ * those of the model, overall and on the notes that would have been skipped.
+ */
+@Service
+public class LocalClassifier {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalClassifier.class);
+
+    /** Only the start of long pages is read. */
+    private static final int MAX_CHARS = 20_000;
+    private static final int MAX_FEATURES = 400;
+    private static final int MAX_TAGS = 5;
+    /** Tags used on fewer notes are not suggested. */
+    private static final int MIN_TAG_NOTES = 2;
+    private static final double MIN_TAG_PROBABILITY = 0.05;
+
+    /** Labels saved by the app, by the name the model uses. */
+    private static final Map<String, String> LABELS = Map.of(
+            "nota", "note", "texto", "note", "apunte", "note", "recurso", "resource", "tarea", "task",
+            "codigo", "code", "documentacion", "documentation", "articulo", "article", "link", "article");
+
+    private final boolean enabled;
+    private final double threshold;
+    private final int minExamples;
+    private final int holdoutPercent;
+
+    private final NaiveBayes types = new NaiveBayes();
+    private final NaiveBayes destinations = new NaiveBayes();
+    private final NaiveBayes tags = new NaiveBayes();
+    private final Set<String> learned = new HashSet<>();
+
+    private long skipped;
+    private long sent;
+    private long holdout;
+    private long typeAgreed;
+    private long destinationAgreed;
+    private long holdoutConfident;
+    private long confidentAgreed;
+
+    /**
+     * Labels predicted for a content.
+     *
+     * @param confidence the lower of the type and destination probabilities
+     */
+    public record Prediction(String type, String destination, List<String> tags, double confidence) {
+    }
+
+    @Autowired
+    public LocalClassifier(@Value("${project.notes.dir:digital-brain-notes}") String notesDir,
+            @Value("${project.llama.local.enabled:true}") boolean enabled,
+            @Value("${project.llama.local.threshold:0.9}") double threshold,
+            @Value("${project.llama.local.minExamples:200}") int minExamples,
+            @Value("${project.llama.local.holdoutPercent:10}") int holdoutPercent,
+            MeterRegistry meterRegistry) {
+        this(enabled, threshold, minExamples, holdoutPercent);
+        if (enabled) {
+            train(Paths.get(notesDir).normalize());
+        }
+        registerMetrics(meterRegistry);
+    }
+
+    LocalClassifier(boolean enabled, double threshold, int minExamples, int holdoutPercent) {
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.minExamples = minExamples;
+        this.holdoutPercent = holdoutPercent;
+    }
+
+    /**
+     * Learns every note of the directory; holdout notes are evaluated after
+     * the rest is learned.
+     */
+    void train(Path notesDir) {
+        long start = System.nanoTime();
+        List<Path> files;
+        try (Stream<Path> list = Files.list(notesDir)) {
+            files = list.filter(file -> file.toString().endsWith(".md")).sorted().toList();
+        } catch (IOException e) {
+            logger.warn("Could not list the notes in {}: {}", notesDir, e.getMessage());
+            return;
+        }
+        List<Note> held = new ArrayList<>();
+        for (Path file : files) {
+            Note note;
+            try {
+                note = Note.parse(Files.readString(file, StandardCharsets.UTF_8));
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Skipping note {}: {}", file.getFileName(), e.getMessage());
+                continue;
+            }
+            if (note == null) {
+                continue;
+            }
+            if (isHoldout(note.id)) {
+                held.add(note);
+            } else {
+                learnNote(note);
+            }
+        }
+        held.forEach(this::evaluate);
+        logger.info("Local classifier trained on {} notes ({} held out) in {} ms", types.size(), held.size(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Learns a saved note; holdout notes are only evaluated.
+     */
+    public void learn(String noteId, String type, String destination, String[] noteTags, String body) {
+        if (!enabled) {
+            return;
+        }
+        Note note = new Note(noteId, type, destination, noteTags != null ? List.of(noteTags) : List.of(),
+                body != null ? body : "");
+        if (!note.isLabeled()) {
+            return;
+        }
+        if (isHoldout(note.id)) {
+            evaluate(note);
+        } else {
+            learnNote(note);
+        }
+    }
+
+    /**
+     * @return the labels of the content when they are confident enough to
+     *         skip the model, otherwise null
+     */
+    public Prediction confidentPrediction(String content) {
+        if (!enabled || types.size() < minExamples) {
+            return null;
+        }
+        Prediction prediction = predict(content);
+        boolean confident = prediction != null && prediction.confidence() >= threshold;
+        synchronized (this) {
+            if (confident) {
+                skipped++;
+            } else {
+                sent++;
+            }
+        }
+        return confident ? prediction : null;
+    }
+
+    /**
+     * @return the most probable labels, or null when nothing was learned
+     */
+    Prediction predict(String content) {
+        int[] features = features(content);
+        List<NaiveBayes.Prediction> type = types.predict(features, 1);
+        List<NaiveBayes.Prediction> destination = destinations.predict(features, 1);
+        if (type.isEmpty() || destination.isEmpty()) {
+            return null;
+        }
+        List<String> suggested = new ArrayList<>();
+        for (NaiveBayes.Prediction tag : tags.predict(features, MIN_TAG_NOTES)) {
+            if (suggested.size() == MAX_TAGS || tag.probability() < MIN_TAG_PROBABILITY) {
+                break;
+            }
+            suggested.add(tag.label());
+        }
+        return new Prediction(type.get(0).label(), destination.get(0).label(), suggested,
+                Math.min(type.get(0).probability(), destination.get(0).probability()));
+    }
+
+    private void learnNote(Note note) {
+        synchronized (this) {
+            // A note saved again after an edit is not counted twice
+            if (note.id != null && !learned.add(note.id)) {
+                return;
+            }
+        }
+        int[] features = features(note.body);
+        types.add(features, note.type);
+        destinations.add(features, note.destination);
+        for (String tag : note.tags) {
+            tags.add(features, tag);
+        }
+    }
+
+    private void evaluate(Note note) {
+        Prediction prediction = predict(note.body);
+        if (prediction == null) {
+            return;
+        }
+        boolean typeOk = prediction.type().equals(note.type);
+        boolean destinationOk = prediction.destination().equals(note.destination);
+        synchronized (this) {
+            holdout++;
+            typeAgreed += typeOk ? 1 : 0;
+            destinationAgreed += destinationOk ? 1 : 0;
+            if (prediction.confidence() >= threshold) {
+                holdoutConfident++;
+                confidentAgreed += typeOk && destinationOk ? 1 : 0;
+            }
+        }
+    }
+
+    private boolean isHoldout(String noteId) {
+        return noteId != null && Math.floorMod(noteId.hashCode(), 100) < holdoutPercent;
+    }
+
+    /**
+     * Distinct hashes of the lower-case, accent-free words of the text.
+     */
+    static int[] features(String text) {
+        if (text == null) {
+            return new int[0];
+        }
+        int[] features = new int[MAX_FEATURES];
+        int count = 0;
+        int hash = 0;
+        int length = 0;
+        int end = Math.min(text.length(), MAX_CHARS);
+        for (int i = 0; i <= end && count < MAX_FEATURES; i++) {
+            char c = i < end ? AhoCorasick.fold(text.charAt(i)) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                hash = 31 * hash + c;
+                length++;
+            } else {
+                if (length >= 2) {
+                    features[count++] = hash;
+                }
+                hash = 0;
+                length = 0;
+            }
+        }
+        int[] distinct = Arrays.copyOf(features, count);
+        Arrays.sort(distinct);
+        int size = 0;
+        for (int i = 0; i < distinct.length; i++) {
+            if (i == 0 || distinct[i] != distinct[i - 1]) {
+                distinct[size++] = distinct[i];
+            }
+        }
+        return Arrays.copyOf(distinct, size);
+    }
+
+    static String label(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder folded = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            folded.append(AhoCorasick.fold(value.charAt(i)));
+        }
+        String name = folded.toString().trim();
+        return LABELS.getOrDefault(name, name);
+    }
+
+    synchronized long getSkipped() {
+        return skipped;
+    }
+
+    synchronized long getSent() {
+        return sent;
+    }
+
+    synchronized double typeAccuracy() {
+        return holdout == 0 ? Double.NaN : (double) typeAgreed / holdout;
+    }
+
+    synchronized double destinationAccuracy() {
+        return holdout == 0 ? Double.NaN : (double) destinationAgreed / holdout;
+    }
+
+    /**
+     * Agreement on both labels among the holdout notes confident enough to
+     * skip the model.
+     */
+    synchronized double skippedAccuracy() {
+        return holdoutConfident == 0 ? Double.NaN : (double) confidentAgreed / holdoutConfident;
+    }
+
+    int size() {
+        return types.size();
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("llm.local.requests", this, LocalClassifier::getSkipped)
+                .tag("result", "skipped")
+                .description("Classifications answered by the local classifier or sent to the model")
+                .register(registry);
+        FunctionCounter.builder("llm.local.requests", this, LocalClassifier::getSent)
+                .tag("result", "sent")
+                .description("Classifications answered by the local classifier or sent to the model")
+                .register(registry);
+        Gauge.builder("llm.local.examples", this, LocalClassifier::size)
+                .description("Notes the local classifier has learned")
+                .register(registry);
+        Gauge.builder("llm.local.holdout.accuracy", this, LocalClassifier::typeAccuracy)
+                .tag("field", "type")
+                .description("Agreement of the local classifier with the model labels on held-out notes")
+                .register(registry);
+        Gauge.builder("llm.local.holdout.accuracy", this, LocalClassifier::destinationAccuracy)
+                .tag("field", "destination")
+                .description("Agreement of the local classifier with the model labels on held-out notes")
+                .register(registry);
+        Gauge.builder("llm.local.holdout.accuracy", this, LocalClassifier::skippedAccuracy)
+                .tag("field", "skipped")
+                .description("Agreement of the local classifier with the model labels on held-out notes")
+                .register(registry);
+    }
+
+    /**
+     * A saved note: front matter labels and Markdown body.
+     */
+    private record Note(String id, String type, String destination, List<String> tags, String body) {
+
+        private Note {
+            type = label(type);
+            destination = label(destination);
+        }
+
+        private boolean isLabeled() {
+            return !type.isEmpty() && !destination.isEmpty();
+        }
+
+        /**
+         * Reads the front matter written by {@link NoteMarkdownStorageService}.
+         *
+         * @return the note, or null when it has no type or destination
+         */
+        private static Note parse(String markdown) {
+            if (!markdown.startsWith("---\n")) {
+                return null;
+            }
+            int end = markdown.indexOf("\n---\n", 3);
+            if (end < 0) {
+                return null;
+            }
+            String id = null;
+            String type = null;
+            String destination = null;
+            List<String> tags = new ArrayList<>();
+            boolean inTags = false;
+            for (String line : markdown.substring(4, end).split("\n")) {
+                if (inTags && line.startsWith("  - ")) {
+                    tags.add(unquote(line.substring(4)));
+                    continue;
+                }
+                inTags = line.equals("tags:");
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String value = unquote(line.substring(colon + 1));
+                switch (line.substring(0, colon)) {
+                    case "id" -> id = value;
+                    case "type" -> type = value;
+                    case "destination" -> destination = value;
+                    default -> {
+                    }
+                }
+            }
+            Note note = new Note(id, type, destination, tags, markdown.substring(end + 5));
+            return note.isLabeled() ? note : null;
+        }
+
+        private static String unquote(String value) {
+            String v = value.trim();
+            if (v.length() >= 2 && v.startsWith("\"") && v.endsWith("\"")) {
+                v = v.substring(1, v.length() - 1).replace("\\\"", "\"").replace("\\\\", "\\");
+            }
+            return v;
+        }
+    }
+}
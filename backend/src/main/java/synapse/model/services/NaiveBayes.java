@@ -0,0 +1,135 @@
+package synapse.model.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multinomial naive Bayes over hashed features, trained one example at a
+ * time.
+ *
+ * Counts are kept per feature as a short list of (class, count) pairs, so a
+ * prediction only touches the classes seen with the features of the input.
+ * Features are counted once per example (binarized), and log-likelihoods are
+ * divided by the square root of the number of features: plain naive Bayes
+ * gives long texts near-certain posteriors, which would make a confidence
+ * threshold meaningless. Laplace smoothing.
+ */
+final class NaiveBayes {
+
+    private static final double ALPHA = 1.0;
+
+    private final List<String> labels = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private int[] docs = new int[8];
+    private long[] tokens = new long[8];
+    private int totalDocs;
+    private final Map<Integer, Row> rows = new HashMap<>();
+
+    /** Classes seen with one feature and how often. */
+    private static final class Row {
+        private int[] classes = new int[2];
+        private int[] counts = new int[2];
+        private int size;
+
+        private void add(int label) {
+            for (int i = 0; i < size; i++) {
+                if (classes[i] == label) {
+                    counts[i]++;
+                    return;
+                }
+            }
+            if (size == classes.length) {
+                classes = Arrays.copyOf(classes, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            classes[size] = label;
+            counts[size++] = 1;
+        }
+    }
+
+    record Prediction(String label, double probability) {
+    }
+
+    /**
+     * @param features distinct features of the example
+     */
+    synchronized void add(int[] features, String label) {
+        Integer id = ids.get(label);
+        if (id == null) {
+            id = labels.size();
+            ids.put(label, id);
+            labels.add(label);
+            if (id == docs.length) {
+                docs = Arrays.copyOf(docs, id * 2);
+                tokens = Arrays.copyOf(tokens, id * 2);
+            }
+        }
+        docs[id]++;
+        tokens[id] += features.length;
+        totalDocs++;
+        for (int feature : features) {
+            rows.computeIfAbsent(feature, f -> new Row()).add(id);
+        }
+    }
+
+    /**
+     * Posterior of every class with at least {@code minDocs} examples, most
+     * probable first.
+     *
+     * @param features distinct features of the input
+     */
+    synchronized List<Prediction> predict(int[] features, int minDocs) {
+        int classes = labels.size();
+        if (classes == 0 || features.length == 0) {
+            return List.of();
+        }
+        double vocabulary = rows.size() + 1;
+        double[] likelihood = new double[classes];
+        for (int c = 0; c < classes; c++) {
+            likelihood[c] = features.length * Math.log(ALPHA / (tokens[c] + ALPHA * vocabulary));
+        }
+        for (int feature : features) {
+            Row row = rows.get(feature);
+            if (row == null) {
+                continue;
+            }
+            for (int i = 0; i < row.size; i++) {
+                likelihood[row.classes[i]] += Math.log((row.counts[i] + ALPHA) / ALPHA);
+            }
+        }
+
+        double scale = Math.sqrt(features.length);
+        double[] scores = new double[classes];
+        double max = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < classes; c++) {
+            if (docs[c] < minDocs) {
+                scores[c] = Double.NEGATIVE_INFINITY;
+                continue;
+            }
+            scores[c] = Math.log((docs[c] + ALPHA) / (totalDocs + ALPHA * classes)) + likelihood[c] / scale;
+            max = Math.max(max, scores[c]);
+        }
+        if (max == Double.NEGATIVE_INFINITY) {
+            return List.of();
+        }
+        double sum = 0;
+        for (int c = 0; c < classes; c++) {
+            sum += Math.exp(scores[c] - max);
+        }
+        List<Prediction> predictions = new ArrayList<>();
+        for (int c = 0; c < classes; c++) {
+            if (scores[c] != Double.NEGATIVE_INFINITY) {
+                predictions.add(new Prediction(labels.get(c), Math.exp(scores[c] - max) / sum));
+            }
+        }
+        predictions.sort((a, b) -> Double.compare(b.probability(), a.probability()));
+        return predictions;
+    }
+
+    synchronized int size() {
+        return totalDocs;
+    }
+}
@@ -0,0 +1,61 @@
+package synapse.model.services;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import synapse.model.common.exceptions.InstanceNotFoundException;
+
+/**
+ * Second phase of the two-phase classification: the detailed Markdown of a
+ * saved note is generated the first time it is requested and written back
+ * into the note file, which then serves every later request.
+ */
+@Service
+public class NoteDetailsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NoteDetailsService.class);
+
+    private final NoteMarkdownStorageService noteMarkdownStorageService;
+    private final LlamaAIService llamaAIService;
+
+    public NoteDetailsService(NoteMarkdownStorageService noteMarkdownStorageService,
+            LlamaAIService llamaAIService) {
+        this.noteMarkdownStorageService = noteMarkdownStorageService;
+        this.llamaAIService = llamaAIService;
+    }
+
+    /**
+     * Detailed content of a saved note, generated and stored on first use. A
+     * fallback document (model unavailable) is returned but not stored, so
+     * the next request tries again.
+     *
+     * @throws InstanceNotFoundException if there is no note with that storageId
+     */
+    public CompletableFuture<LlamaAIService.DetailedContentResult> detailsAsync(String storageId)
+            throws InstanceNotFoundException {
+        NoteMarkdownStorageService.StoredNote note = noteMarkdownStorageService.readNote(storageId);
+        if (note.getDetailedContent() != null) {
+            return CompletableFuture.completedFuture(
+                    new LlamaAIService.DetailedContentResult(note.getDetailedContent(), false));
+        }
+
+        return llamaAIService.generateDetailedContentAsync(note.getTitle(), note.getBody()).thenApply(result -> {
+            if (result.fallback()) {
+                return result;
+            }
+            try {
+                if (!noteMarkdownStorageService.saveDetails(storageId, result.detailedContent())) {
+                    // Generated concurrently by another request: serve the stored one
+                    return new LlamaAIService.DetailedContentResult(
+                            noteMarkdownStorageService.readNote(storageId).getDetailedContent(), false);
+                }
+            } catch (InstanceNotFoundException e) {
+                logger.info("Note {} was deleted while its details were generated", storageId);
+            }
+            return result;
+        });
+    }
+}
@@ -3,6 +3,7 @@ package synapse.model.services;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
@@ -14,6 +15,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import synapse.model.common.exceptions.InstanceNotFoundException;
 import synapse.rest.dtos.SaveNoteParamsDto;
 
 /**
@@ -26,6 +28,9 @@ public class NoteMarkdownStorageService {
 
     private static final Logger logger = LoggerFactory.getLogger(NoteMarkdownStorageService.class);
 
+    /** Separates the body of a note from the detailed content generated later. */
+    static final String DETAILS_MARKER = "<!-- detailedContent -->";
+
     private final Path notesDir;
 
     public NoteMarkdownStorageService(@Value("${project.notes.dir:digital-brain-notes}") String notesDir) {
@@ -81,6 +86,77 @@ public class NoteMarkdownStorageService {
         return new SaveResult(filename, filename);
     }
 
+    /**
+     * Reads a persisted note.
+     *
+     * @throws InstanceNotFoundException if there is no note with that storageId
+     */
+    public StoredNote readNote(String storageId) throws InstanceNotFoundException {
+        Path filePath = resolveStored(storageId);
+        String markdown;
+        try {
+            markdown = Files.readString(filePath, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new InstanceNotFoundException("project.entities.note", storageId);
+        }
+
+        String title = "";
+        String body = markdown;
+        if (markdown.startsWith("---\n")) {
+            int end = markdown.indexOf("\n---\n", 3);
+            if (end >= 0) {
+                for (String line : markdown.substring(4, end).split("\n")) {
+                    if (line.startsWith("title: ")) {
+                        title = unescapeYaml(line.substring(7).trim());
+                    }
+                }
+                body = markdown.substring(end + 5);
+            }
+        }
+        String details = null;
+        int marker = body.indexOf(DETAILS_MARKER);
+        if (marker >= 0) {
+            details = body.substring(marker + DETAILS_MARKER.length()).strip();
+            body = body.substring(0, marker);
+        }
+        return new StoredNote(storageId, title, body.strip(), details);
+    }
+
+    /**
+     * Appends the generated detailed content to a persisted note, unless it
+     * already has one.
+     *
+     * @return false if the note already had detailed content
+     * @throws InstanceNotFoundException if there is no note with that storageId
+     */
+    public synchronized boolean saveDetails(String storageId, String detailedContent)
+            throws InstanceNotFoundException {
+        Path filePath = resolveStored(storageId);
+        try {
+            String markdown = Files.readString(filePath, StandardCharsets.UTF_8);
+            if (markdown.contains(DETAILS_MARKER)) {
+                return false;
+            }
+            String details = (markdown.endsWith("\n") ? "" : "\n") + "\n" + DETAILS_MARKER + "\n\n"
+                    + detailedContent.strip() + "\n";
+            Files.writeString(filePath, details, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+            return true;
+        } catch (NoSuchFileException e) {
+            throw new InstanceNotFoundException("project.entities.note", storageId);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not save the note details to disk", e);
+        }
+    }
+
+    private Path resolveStored(String storageId) throws InstanceNotFoundException {
+        String safe = safeFilename(storageId);
+        Path filePath = notesDir.resolve(safe).normalize();
+        if (safe.isEmpty() || !filePath.startsWith(notesDir) || !Files.isRegularFile(filePath)) {
+            throw new InstanceNotFoundException("project.entities.note", storageId);
+        }
+        return filePath;
+    }
+
     public void deleteByStorageId(String storageId) {
         String safe = safeFilename(storageId);
         if (safe.isEmpty()) {
@@ -214,6 +290,50 @@ public class NoteMarkdownStorageService {
         return input.replace("\\", "\\\\").replace("\"", "\\\"");
     }
 
+    private String unescapeYaml(String quoted) {
+        String value = quoted;
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        return value.replace("\\\"", "\"").replace("\\\\", "\\");
+    }
+
+    /**
+     * A persisted note: its body and, once generated, its detailed content.
+     */
+    public static class StoredNote {
+        private final String storageId;
+        private final String title;
+        private final String body;
+        private final String detailedContent;
+
+        public StoredNote(String storageId, String title, String body, String detailedContent) {
+            this.storageId = storageId;
+            this.title = title;
+            this.body = body;
+            this.detailedContent = detailedContent;
+        }
+
+        public String getStorageId() {
+            return storageId;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getBody() {
+            return body;
+        }
+
+        /**
+         * @return the generated detailed content, or null if not generated yet
+         */
+        public String getDetailedContent() {
+            return detailedContent;
+        }
+    }
+
     public static class SaveResult {
         private final String storageId;
         private final String filename;
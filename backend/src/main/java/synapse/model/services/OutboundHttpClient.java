@@ -0,0 +1,279 @@
+package synapse.model.services;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+import synapse.config.HttpClientProperties;
+
+/**
+ * The application's outbound HTTP layer, shared by the LLM client and page
+ * extraction.
+ *
+ * All destinations use one connection pool (OkHttp keeps the connections
+ * of each host apart and reuses them) and negotiate HTTP/2 where the host
+ * supports it, so calls to the same host share warm connections or
+ * multiplex over one. Each destination gets its own client view with its
+ * timeouts and response size cap; a body longer than the cap is cut at the
+ * cap, like Jsoup's {@code maxBodySize}.
+ *
+ * Metrics, tagged with the destination: DNS, connect, TLS and
+ * time-to-first-byte timers ({@code http.client.dns}, {@code .connect},
+ * {@code .tls}, {@code .ttfb}), connections acquired new vs reused
+ * ({@code http.client.connections}), calls in progress
+ * ({@code http.client.active}) and truncated bodies
+ * ({@code http.client.truncated}); plus pool gauges
+ * {@code http.client.pool.in_use} and {@code http.client.pool.idle}.
+ */
+@Component
+public class OutboundHttpClient {
+
+    public static final String LLM = "llm";
+    public static final String EXTRACTION = "extraction";
+
+    private static final Logger logger = LoggerFactory.getLogger(OutboundHttpClient.class);
+
+    private final HttpClientProperties properties;
+    private final MeterRegistry registry;
+    private final OkHttpClient base;
+    private final Map<String, OkHttpClient> clients = new ConcurrentHashMap<>();
+
+    public OutboundHttpClient(HttpClientProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+        ConnectionPool pool = new ConnectionPool(properties.getMaxIdleConnections(), properties.getKeepAliveMs(),
+                TimeUnit.MILLISECONDS);
+        this.base = new OkHttpClient.Builder()
+                .connectionPool(pool)
+                .protocols(properties.isHttp2() ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                        : List.of(Protocol.HTTP_1_1))
+                .build();
+
+        Gauge.builder("http.client.pool.in_use", pool,
+                connections -> connections.connectionCount() - connections.idleConnectionCount())
+                .description("Pooled connections carrying a call")
+                .register(registry);
+        Gauge.builder("http.client.pool.idle", pool, ConnectionPool::idleConnectionCount)
+                .description("Pooled connections kept alive for reuse")
+                .register(registry);
+    }
+
+    /**
+     * Client for a destination. Clients share the connection pool; the
+     * dispatcher can be replaced with {@code newBuilder()} to bound a
+     * destination's concurrent asynchronous calls.
+     */
+    public OkHttpClient client(String destination) {
+        return clients.computeIfAbsent(destination, this::newClient);
+    }
+
+    private OkHttpClient newClient(String destination) {
+        HttpClientProperties.Destination settings = properties.destination(destination);
+        DestinationMetrics metrics = new DestinationMetrics(destination, registry);
+        return base.newBuilder()
+                .dispatcher(new Dispatcher())
+                .connectTimeout(Duration.ofMillis(settings.getConnectTimeoutMs()))
+                .readTimeout(Duration.ofMillis(settings.getReadTimeoutMs()))
+                .writeTimeout(Duration.ofMillis(settings.getReadTimeoutMs()))
+                .callTimeout(Duration.ofMillis(settings.getCallTimeoutMs()))
+                .addInterceptor(new SizeCapInterceptor(settings.getMaxResponseBytes(), metrics))
+                .eventListenerFactory(call -> new MetricsListener(metrics))
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        base.connectionPool().evictAll();
+        clients.values().forEach(client -> client.dispatcher().executorService().shutdown());
+    }
+
+    private static final class DestinationMetrics {
+        private final Timer dns;
+        private final Timer connect;
+        private final Timer tls;
+        private final Timer ttfb;
+        private final Counter newConnections;
+        private final Counter reusedConnections;
+        private final Counter truncated;
+        private final AtomicInteger active = new AtomicInteger();
+
+        private DestinationMetrics(String destination, MeterRegistry registry) {
+            dns = Timer.builder("http.client.dns").tag("destination", destination)
+                    .description("DNS lookups").register(registry);
+            connect = Timer.builder("http.client.connect").tag("destination", destination)
+                    .description("New connections, including the TLS handshake").register(registry);
+            tls = Timer.builder("http.client.tls").tag("destination", destination)
+                    .description("TLS handshakes").register(registry);
+            ttfb = Timer.builder("http.client.ttfb").tag("destination", destination)
+                    .description("Time from the start of a call to the first response byte").register(registry);
+            newConnections = Counter.builder("http.client.connections").tags("destination", destination,
+                    "reused", "false").description("Connections acquired by calls").register(registry);
+            reusedConnections = Counter.builder("http.client.connections").tags("destination", destination,
+                    "reused", "true").description("Connections acquired by calls").register(registry);
+            truncated = Counter.builder("http.client.truncated").tag("destination", destination)
+                    .description("Response bodies cut at the size cap").register(registry);
+            Gauge.builder("http.client.active", active, AtomicInteger::get).tag("destination", destination)
+                    .description("Calls in progress").register(registry);
+        }
+    }
+
+    /**
+     * Times the phases of one call.
+     */
+    private static final class MetricsListener extends EventListener {
+        private final DestinationMetrics metrics;
+        private long callStart;
+        private long dnsStart;
+        private long connectStart;
+        private long tlsStart;
+        private boolean connected;
+        private boolean firstByte;
+
+        private MetricsListener(DestinationMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void callStart(Call call) {
+            callStart = System.nanoTime();
+            metrics.active.incrementAndGet();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> addresses) {
+            metrics.dns.record(System.nanoTime() - dnsStart, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connectStart = System.nanoTime();
+            connected = true;
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            tlsStart = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            metrics.tls.record(System.nanoTime() - tlsStart, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            metrics.connect.record(System.nanoTime() - connectStart, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            (connected ? metrics.newConnections : metrics.reusedConnections).increment();
+            // A redirect may acquire another connection
+            connected = false;
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            if (!firstByte) {
+                firstByte = true;
+                metrics.ttfb.record(System.nanoTime() - callStart, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            metrics.active.decrementAndGet();
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            metrics.active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Ends response bodies after {@code maxBytes} bytes.
+     */
+    private static final class SizeCapInterceptor implements Interceptor {
+        private final long maxBytes;
+        private final DestinationMetrics metrics;
+
+        private SizeCapInterceptor(long maxBytes, DestinationMetrics metrics) {
+            this.maxBytes = maxBytes;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Response response = chain.proceed(chain.request());
+            ResponseBody body = response.body();
+            if (body == null || maxBytes <= 0) {
+                return response;
+            }
+            String url = response.request().url().toString();
+            Source capped = new ForwardingSource(body.source()) {
+                private long remaining = maxBytes;
+
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    if (remaining <= 0) {
+                        // Only count bodies that really had more to give
+                        if (remaining == 0 && super.read(new Buffer(), 1) != -1) {
+                            metrics.truncated.increment();
+                            logger.warn("Response from {} cut at {} bytes", url, maxBytes);
+                        }
+                        remaining = -1;
+                        return -1;
+                    }
+                    long read = super.read(sink, Math.min(byteCount, remaining));
+                    if (read > 0) {
+                        remaining -= read;
+                    }
+                    return read;
+                }
+            };
+            long length = body.contentLength() <= maxBytes ? body.contentLength() : -1;
+            return response.newBuilder()
+                    .body(ResponseBody.create(Okio.buffer(capped), body.contentType(), length))
+                    .build();
+        }
+    }
+}
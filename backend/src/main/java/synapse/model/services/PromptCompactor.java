@@ -0,0 +1,372 @@
+package synapse.model.services;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Shrinks content to a token budget before it is sent to the model.
+ *
+ * Short content (up to half the budget, typically a note the user typed) is
+ * returned unchanged. Anything longer, typically an extracted page, is split
+ * into sentences; header lines ({@code Title:}, {@code VIDEO TITLE:}, Markdown
+ * headings...) are always kept. Navigation and boilerplate fragments (cookie
+ * banners, share buttons, menus) and near-duplicate sentences are dropped, the
+ * rest is ranked by how informative it is for the document (TF-ISF weight of
+ * its words, boosted by words in the title and by position) and, when it
+ * still exceeds the budget, the best sentences that fit are kept in their
+ * original order.
+ */
+@Service
+public class PromptCompactor {
+    private static final Logger logger = LoggerFactory.getLogger(PromptCompactor.class);
+
+    /** Header labels written by the extraction stage; their lines are always kept. */
+    private static final Pattern HEADER_LABEL = Pattern.compile(
+            "^(Title|Description|URL|CHANNEL|VIDEO TITLE|VIDEO DESCRIPTION):");
+    /** Label in front of the page body; only the label itself is kept. */
+    private static final Pattern BODY_LABEL = Pattern.compile("^Content:");
+    static final Pattern SENTENCE_END = Pattern.compile(
+            "(?<=[.!?…])\\s+(?=[\\p{Lu}¿¡\"“(\\d])|\\s+[|·•»›]\\s+");
+    private static final Pattern SENTENCE_TAIL = Pattern.compile("[.!?…:;][\"”')\\]]*$");
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    /** Header lines longer than this are treated as body text. */
+    private static final int PINNED_LINE_CHARS = 300;
+    /** Sentences without punctuation are cut into pieces of this many words. */
+    private static final int MAX_SENTENCE_WORDS = 80;
+    /** Longer sentences mentioning a boilerplate phrase are real content. */
+    private static final int BOILERPLATE_MAX_WORDS = 25;
+    /** Maximum Hamming distance between SimHashes of near-duplicate sentences. */
+    private static final int NEAR_DUPLICATE_BITS = 3;
+
+    private static final Set<String> BOILERPLATE = Set.of(
+            "cookie", "cookies", "suscríbete", "suscribete", "subscribe", "newsletter", "iniciar sesión",
+            "inicia sesión", "log in", "sign in", "sign up", "regístrate", "registrate", "política de privacidad",
+            "privacy policy", "aviso legal", "terms of use", "términos de uso", "all rights reserved",
+            "derechos reservados", "todos los derechos", "compartir en", "share on", "leer más", "read more",
+            "publicidad", "advertisement", "síguenos", "follow us", "descarga la app", "download the app",
+            "enable javascript", "activa javascript", "copyright ©", "©");
+
+    private static final Set<String> STOPWORDS = Set.of(
+            "the", "and", "for", "are", "but", "not", "you", "all", "can", "her", "was", "one", "our", "out",
+            "has", "have", "had", "his", "how", "its", "may", "new", "now", "see", "who", "did", "get", "let",
+            "this", "that", "with", "from", "they", "will", "would", "there", "their", "what", "about", "which",
+            "when", "were", "been", "more", "also", "into", "than", "then", "them", "these", "some", "other",
+            "los", "las", "del", "por", "con", "una", "uno", "unos", "unas", "para", "como", "pero", "sus",
+            "mas", "este", "esta", "estos", "estas", "ese", "esa", "eso", "que", "quien", "cual", "cuando",
+            "donde", "sobre", "entre", "sin", "tras", "desde", "hasta", "muy", "tambien", "hay", "son", "ser",
+            "fue", "era", "han", "ha", "sido", "estan", "todo", "todos", "toda", "todas", "porque",
+            "segun", "ante", "bajo", "cada", "otro", "otra", "otros", "otras", "ya", "les", "nos", "lo", "al");
+
+    private final int tokenBudget;
+
+    private static final class Segment {
+        private final int line;
+        private final String text;
+        private final boolean pinned;
+        private final int tokens;
+        private boolean paragraphStart;
+        private List<String> terms = List.of();
+        private long simHash;
+        private double score;
+
+        private Segment(int line, String text, boolean pinned) {
+            this.line = line;
+            this.text = text;
+            this.pinned = pinned;
+            this.tokens = TokenEstimator.estimate(text) + 1;
+        }
+    }
+
+    public PromptCompactor(@Value("${project.llama.prompt.contentTokens:2500}") int tokenBudget) {
+        this.tokenBudget = tokenBudget;
+    }
+
+    /**
+     * @return the configured token budget ({@code prompt.contentTokens})
+     */
+    public int getTokenBudget() {
+        return tokenBudget;
+    }
+
+    /**
+     * Compacts content to the configured token budget.
+     */
+    public String compact(String content) {
+        return compact(content, tokenBudget);
+    }
+
+    /**
+     * Compacts content to the given token budget.
+     *
+     * @param content the content to compact
+     * @param budget  maximum estimated tokens of the result
+     * @return the content itself if it is short, otherwise its most
+     *         informative sentences in original order
+     */
+    public String compact(String content, int budget) {
+        if (content == null) {
+            return "";
+        }
+        int originalTokens = TokenEstimator.estimate(content);
+        if (originalTokens <= budget / 2) {
+            return content;
+        }
+
+        List<Segment> segments = split(content);
+        List<Segment> candidates = new ArrayList<>();
+        int pinnedTokens = 0;
+        Set<String> titleTerms = new HashSet<>();
+        for (Segment segment : segments) {
+            segment.terms = terms(segment.text);
+            if (segment.pinned) {
+                pinnedTokens += segment.tokens;
+                titleTerms.addAll(segment.terms);
+            } else if (!isNoise(segment.text)) {
+                candidates.add(segment);
+            }
+        }
+        candidates = removeNearDuplicates(candidates);
+        score(candidates, titleTerms);
+
+        Set<Segment> kept = new HashSet<>();
+        int remaining = budget - pinnedTokens;
+        List<Segment> ranked = new ArrayList<>(candidates);
+        ranked.sort(Comparator.comparingDouble((Segment s) -> s.score).reversed());
+        for (Segment segment : ranked) {
+            if (segment.tokens <= remaining) {
+                kept.add(segment);
+                remaining -= segment.tokens;
+            }
+        }
+
+        String compacted = join(segments, kept);
+        logger.info("Compacted prompt content from {} to {} estimated tokens ({} of {} sentences kept)",
+                originalTokens, TokenEstimator.estimate(compacted), kept.size(), candidates.size());
+        return compacted;
+    }
+
+    private List<Segment> split(String content) {
+        List<Segment> segments = new ArrayList<>();
+        String[] lines = content.split("\\r?\\n");
+        boolean blankBefore = false;
+        for (int lineNo = 0; lineNo < lines.length; lineNo++) {
+            String line = lines[lineNo].strip();
+            if (line.isEmpty()) {
+                blankBefore = true;
+                continue;
+            }
+            int firstSegment = segments.size();
+            splitLine(segments, lineNo, line);
+            if (blankBefore && segments.size() > firstSegment) {
+                segments.get(firstSegment).paragraphStart = true;
+            }
+            blankBefore = false;
+        }
+        return segments;
+    }
+
+    private void splitLine(List<Segment> segments, int lineNo, String line) {
+        boolean heading = line.startsWith("#") || line.chars().allMatch(c -> c == '=' || c == '-')
+                || (line.length() <= 60 && line.chars().anyMatch(Character::isLetter)
+                        && line.equals(line.toUpperCase(Locale.ROOT)));
+        if (heading || (HEADER_LABEL.matcher(line).find() && line.length() <= PINNED_LINE_CHARS)) {
+            segments.add(new Segment(lineNo, line, true));
+            return;
+        }
+        String body = line;
+        Matcher label = BODY_LABEL.matcher(line);
+        if (label.find()) {
+            segments.add(new Segment(lineNo, label.group(), true));
+            body = line.substring(label.end()).strip();
+        }
+        for (String sentence : SENTENCE_END.split(body)) {
+            addSentence(segments, lineNo, sentence.strip());
+        }
+    }
+
+    private void addSentence(List<Segment> segments, int lineNo, String sentence) {
+        if (sentence.isEmpty()) {
+            return;
+        }
+        String[] words = sentence.split("\\s+");
+        if (words.length <= MAX_SENTENCE_WORDS) {
+            segments.add(new Segment(lineNo, sentence, false));
+            return;
+        }
+        for (int from = 0; from < words.length; from += MAX_SENTENCE_WORDS) {
+            int to = Math.min(words.length, from + MAX_SENTENCE_WORDS);
+            segments.add(new Segment(lineNo, String.join(" ", Arrays.copyOfRange(words, from, to)), false));
+        }
+    }
+
+    /**
+     * Navigation, banners and buttons: short fragments with boilerplate
+     * phrases, very short fragments without punctuation and menu-like runs of
+     * capitalized words.
+     */
+    private boolean isNoise(String text) {
+        String[] words = text.split("\\s+");
+        if (words.length <= BOILERPLATE_MAX_WORDS) {
+            String lower = text.toLowerCase(Locale.ROOT);
+            for (String phrase : BOILERPLATE) {
+                if (lower.contains(phrase)) {
+                    return true;
+                }
+            }
+        }
+        boolean punctuated = text.matches(".*[.!?…:;,]\\W*$") || text.contains(", ");
+        if (words.length < 4 && !punctuated) {
+            return true;
+        }
+        if (words.length >= 6 && !punctuated) {
+            int capitalized = 0;
+            for (String word : words) {
+                if (!word.isEmpty() && Character.isUpperCase(word.charAt(0))) {
+                    capitalized++;
+                }
+            }
+            return capitalized >= words.length * 0.8;
+        }
+        return false;
+    }
+
+    private static boolean isSentence(String text) {
+        return SENTENCE_TAIL.matcher(text).find();
+    }
+
+    private List<Segment> removeNearDuplicates(List<Segment> candidates) {
+        List<Segment> unique = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Segment segment : candidates) {
+            if (segment.terms.isEmpty() || !seen.add(String.join(" ", segment.terms))) {
+                continue;
+            }
+            segment.simHash = simHash(segment.terms);
+            boolean duplicate = false;
+            if (segment.terms.size() >= 5) {
+                for (Segment other : unique) {
+                    if (other.terms.size() >= 5
+                            && Long.bitCount(segment.simHash ^ other.simHash) <= NEAR_DUPLICATE_BITS) {
+                        duplicate = true;
+                        break;
+                    }
+                }
+            }
+            if (!duplicate) {
+                unique.add(segment);
+            }
+        }
+        return unique;
+    }
+
+    /**
+     * TF-ISF: words frequent in the document but concentrated in few sentences
+     * carry the topic. Normalized by the square root of the sentence length so
+     * long sentences do not win by size alone, with a small lead bias.
+     */
+    private void score(List<Segment> candidates, Set<String> titleTerms) {
+        Map<String, Integer> termFrequency = new HashMap<>();
+        Map<String, Integer> sentenceFrequency = new HashMap<>();
+        for (Segment segment : candidates) {
+            for (String term : segment.terms) {
+                termFrequency.merge(term, 1, Integer::sum);
+            }
+            for (String term : new HashSet<>(segment.terms)) {
+                sentenceFrequency.merge(term, 1, Integer::sum);
+            }
+        }
+
+        int total = candidates.size();
+        for (int i = 0; i < total; i++) {
+            Segment segment = candidates.get(i);
+            double weight = 0;
+            for (String term : new LinkedHashSet<>(segment.terms)) {
+                double isf = Math.log((total + 1.0) / sentenceFrequency.get(term));
+                double boost = titleTerms.contains(term) ? 2.0 : 1.0;
+                weight += Math.sqrt(termFrequency.get(term)) * isf * boost;
+            }
+            double position = 1 + 0.3 * (1 - (double) i / total);
+            // Text that is not a sentence (link lists, captions, bylines) ranks lower
+            double form = isSentence(segment.text) ? 1.0 : 0.5;
+            segment.score = weight / Math.sqrt(segment.terms.size()) * position * form;
+        }
+    }
+
+    private static String join(List<Segment> segments, Set<Segment> kept) {
+        StringBuilder out = new StringBuilder();
+        int lastLine = -1;
+        for (Segment segment : segments) {
+            if (!segment.pinned && !kept.contains(segment)) {
+                continue;
+            }
+            if (out.length() > 0) {
+                if (segment.line == lastLine) {
+                    out.append(' ');
+                } else {
+                    out.append(segment.paragraphStart ? "\n\n" : "\n");
+                }
+            }
+            out.append(segment.text);
+            lastLine = segment.line;
+        }
+        return out.toString();
+    }
+
+    private static List<String> terms(String text) {
+        String folded = COMBINING_MARKS.matcher(Normalizer.normalize(text.toLowerCase(Locale.ROOT),
+                Normalizer.Form.NFD)).replaceAll("");
+        List<String> terms = new ArrayList<>();
+        Matcher matcher = WORD.matcher(folded);
+        while (matcher.find()) {
+            String word = matcher.group();
+            if (word.length() >= 3 && !STOPWORDS.contains(word)) {
+                terms.add(word);
+            }
+        }
+        return terms;
+    }
+
+    private static long simHash(List<String> terms) {
+        int[] bits = new int[64];
+        for (String term : terms) {
+            long hash = fnv1a(term);
+            for (int bit = 0; bit < 64; bit++) {
+                bits[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+            }
+        }
+        long result = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (bits[bit] > 0) {
+                result |= 1L << bit;
+            }
+        }
+        return result;
+    }
+
+    private static long fnv1a(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,161 @@
+package synapse.model.services;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Work started ahead of a request that is likely to follow, kept by key for
+ * a limited time.
+ *
+ * Each entry holds the input that was prepared (e.g. an extracted page) and,
+ * when the spend cap allowed it, the future of the work started on it. The
+ * cap bounds both the speculative calls running at once and the tokens they
+ * may spend per minute; past it the input is still kept, only the work is
+ * not started. Entries expire after {@code ttlMillis}; the oldest are
+ * dropped beyond {@code maxEntries}.
+ *
+ * @param <C> the prepared input
+ * @param <R> the result of the work
+ */
+final class Speculations<C, R> {
+
+    private static final long WINDOW_NANOS = 60_000_000_000L;
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final int maxInFlight;
+    private final long tokensPerMinute;
+    private final LongSupplier nanoClock;
+
+    private final LinkedHashMap<String, Entry<C, R>> entries = new LinkedHashMap<>();
+    private int inFlight;
+    private long windowStart;
+    private long windowTokens;
+
+    private long started;
+    private long skipped;
+    private long used;
+
+    /**
+     * @param result the speculative work, or null when it was not started
+     */
+    record Entry<C, R>(C input, CompletableFuture<R> result, long expiresAt) {
+    }
+
+    Speculations(long ttlMillis, int maxEntries, int maxInFlight, long tokensPerMinute, LongSupplier nanoClock) {
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.maxEntries = maxEntries;
+        this.maxInFlight = maxInFlight;
+        this.tokensPerMinute = tokensPerMinute;
+        this.nanoClock = nanoClock;
+        this.windowStart = nanoClock.getAsLong();
+    }
+
+    /**
+     * Keeps the input under the key and starts the work on it if the spend
+     * cap allows. A key that already has a live entry is left as it is.
+     *
+     * @param tokens estimated tokens the work will spend
+     * @return true if the work was started
+     */
+    boolean offer(String key, C input, int tokens, Function<C, CompletableFuture<R>> work) {
+        long expiresAt;
+        synchronized (this) {
+            long now = nanoClock.getAsLong();
+            expire(now);
+            if (entries.containsKey(key)) {
+                return false;
+            }
+            if (now - windowStart >= WINDOW_NANOS) {
+                windowStart = now;
+                windowTokens = 0;
+            }
+            expiresAt = now + ttlNanos;
+            // Kept right away, so a concurrent offer for the key does not start the work again
+            put(key, new Entry<>(input, null, expiresAt));
+            if (inFlight >= maxInFlight || windowTokens + tokens > tokensPerMinute) {
+                skipped++;
+                return false;
+            }
+            inFlight++;
+            windowTokens += tokens;
+            started++;
+        }
+        CompletableFuture<R> result;
+        try {
+            result = work.apply(input);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, error) -> {
+            synchronized (this) {
+                inFlight--;
+            }
+        });
+        synchronized (this) {
+            entries.replace(key, new Entry<>(input, result, expiresAt));
+        }
+        return true;
+    }
+
+    /**
+     * @return the live entry for the key, or null
+     */
+    synchronized Entry<C, R> get(String key) {
+        expire(nanoClock.getAsLong());
+        return entries.get(key);
+    }
+
+    /**
+     * Like {@link #get}, for the request the work was started for: a found
+     * entry is counted as used.
+     */
+    synchronized Entry<C, R> use(String key) {
+        Entry<C, R> entry = get(key);
+        if (entry != null) {
+            used++;
+        }
+        return entry;
+    }
+
+    synchronized long getStarted() {
+        return started;
+    }
+
+    /**
+     * Speculations not started because of the spend cap.
+     */
+    synchronized long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Requests that used an entry.
+     */
+    synchronized long getUsed() {
+        return used;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private void put(String key, Entry<C, R> entry) {
+        entries.put(key, entry);
+        if (entries.size() > maxEntries) {
+            entries.remove(entries.keySet().iterator().next());
+        }
+    }
+
+    private void expire(long now) {
+        // Entries are in insertion order, so they also expire in that order
+        Iterator<Map.Entry<String, Entry<C, R>>> it = entries.entrySet().iterator();
+        while (it.hasNext() && it.next().getValue().expiresAt() - now <= 0) {
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package synapse.model.services;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Estimates how many tokens a text costs for Llama 3 class models.
+ *
+ * The text is split with the same pre-tokenization pattern the model's BPE
+ * tokenizer uses (words with their leading space, groups of up to three
+ * digits, punctuation runs, whitespace). Each piece is then costed by length:
+ * common short words are a single token, longer words and non-ASCII text
+ * (accents, other scripts) split into more pieces. It is an estimate, not
+ * the real vocabulary, but unlike characters / 4 it follows the tokenizer on
+ * code, URLs, numbers and accented text, which is what budgeting needs.
+ */
+public final class TokenEstimator {
+
+    private static final Pattern PRE_TOKENIZER = Pattern.compile(
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}"
+                    + "| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+");
+
+    /** Words up to this length are usually a single vocabulary entry. */
+    private static final int WHOLE_WORD_CHARS = 6;
+    /** Characters per extra token for the rest of a long word. */
+    private static final double CHARS_PER_EXTRA_TOKEN = 4.0;
+    /** Non-ASCII letters are rarer in the vocabulary and cost more. */
+    private static final double NON_ASCII_CHARS_PER_TOKEN = 2.0;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * @return the estimated number of tokens of the text
+     */
+    public static int estimate(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+        int tokens = 0;
+        Matcher matcher = PRE_TOKENIZER.matcher(text);
+        while (matcher.find()) {
+            tokens += piece(text, matcher.start(), matcher.end());
+        }
+        return tokens;
+    }
+
+    private static int piece(CharSequence text, int start, int end) {
+        int ascii = 0;
+        int nonAscii = 0;
+        boolean letters = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == ' ') {
+                continue;
+            }
+            if (c < 128) {
+                ascii++;
+            } else {
+                nonAscii++;
+            }
+            letters |= Character.isLetter(c);
+        }
+        if (ascii + nonAscii == 0) {
+            // Whitespace runs
+            return 1;
+        }
+        if (!letters) {
+            // Digits come in groups of up to three; punctuation runs merge well
+            return Math.max(1, (int) Math.ceil((ascii + nonAscii) / 3.0));
+        }
+        double cost = 1 + Math.max(0, ascii - WHOLE_WORD_CHARS) / CHARS_PER_EXTRA_TOKEN
+                + nonAscii / NON_ASCII_CHARS_PER_TOKEN;
+        return (int) Math.round(cost);
+    }
+}
@@ -0,0 +1,209 @@
+package synapse.model.services;
+
+import java.time.Clock;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import synapse.rest.dtos.TrendsInsightsParamsDto;
+import synapse.rest.dtos.TrendsInsightsResponseDto;
+
+/**
+ * Trend insights with per-user reuse.
+ *
+ * The radar asks for insights every time it is opened, usually with topic
+ * counts that have barely moved. Each user's last insights are kept with
+ * the signature they were generated for: the vector of recent and previous
+ * counts per topic. A request whose signature is within {@code maxDrift} of
+ * the cached one (relative L1 distance, 0 = same counts, 1 = nothing in
+ * common) gets the cached insights at once. Past that, the cached insights
+ * are still returned while new ones are generated in the background for the
+ * next request. A user without insights, with a different window, or whose
+ * insights are older than {@code maxAgeMinutes} waits for a new generation.
+ * Empty answers (LLM unavailable) are not cached.
+ */
+@Service
+public class TrendsInsightsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrendsInsightsService.class);
+
+    private final Function<TrendsInsightsParamsDto, CompletableFuture<TrendsInsightsResponseDto>> generator;
+    private final double maxDrift;
+    private final long maxAgeMillis;
+    private final int maxUsers;
+    private final Clock clock;
+
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong drifted = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private static final class Entry {
+        private final int windowDays;
+        private final Map<String, Integer> signature;
+        private final TrendsInsightsResponseDto insights;
+        private final long createdAt;
+        private boolean refreshing;
+
+        private Entry(int windowDays, Map<String, Integer> signature, TrendsInsightsResponseDto insights,
+                long createdAt) {
+            this.windowDays = windowDays;
+            this.signature = signature;
+            this.insights = insights;
+            this.createdAt = createdAt;
+        }
+    }
+
+    @Autowired
+    public TrendsInsightsService(LlamaAIService llamaAIService,
+            @Value("${project.llama.trends.maxDrift:0.2}") double maxDrift,
+            @Value("${project.llama.trends.maxAgeMinutes:1440}") long maxAgeMinutes,
+            @Value("${project.llama.trends.maxUsers:10000}") int maxUsers,
+            MeterRegistry meterRegistry) {
+        this(llamaAIService::generateTrendsInsightsAsync, maxDrift, maxAgeMinutes * 60_000L, maxUsers,
+                Clock.systemUTC());
+        registerMetrics(meterRegistry);
+    }
+
+    TrendsInsightsService(Function<TrendsInsightsParamsDto, CompletableFuture<TrendsInsightsResponseDto>> generator,
+            double maxDrift, long maxAgeMillis, int maxUsers, Clock clock) {
+        this.generator = generator;
+        this.maxDrift = maxDrift;
+        this.maxAgeMillis = maxAgeMillis;
+        this.maxUsers = maxUsers;
+        this.clock = clock;
+    }
+
+    /**
+     * Trend insights for the user's radar, reused while the topic counts
+     * stay close to those of the cached insights.
+     */
+    public CompletableFuture<TrendsInsightsResponseDto> insightsAsync(Long userId, TrendsInsightsParamsDto params) {
+        if (params == null || userId == null) {
+            return generator.apply(params);
+        }
+        Map<String, Integer> signature = signature(params);
+        long now = clock.millis();
+        Entry entry;
+        boolean refresh = false;
+        synchronized (this) {
+            entry = entries.get(userId);
+            if (entry != null && (entry.windowDays != params.getWindowDays()
+                    || now - entry.createdAt > maxAgeMillis)) {
+                entry = null;
+            }
+            if (entry != null && distance(entry.signature, signature) > maxDrift && !entry.refreshing) {
+                entry.refreshing = true;
+                refresh = true;
+            }
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return generate(userId, params, signature);
+        }
+        if (refresh) {
+            drifted.incrementAndGet();
+            logger.info("Trend counts of user {} drifted, regenerating insights in the background", userId);
+            Entry stale = entry;
+            generate(userId, params, signature).whenComplete((insights, error) -> {
+                synchronized (this) {
+                    stale.refreshing = false;
+                }
+            });
+        } else {
+            hits.incrementAndGet();
+        }
+        return CompletableFuture.completedFuture(entry.insights);
+    }
+
+    private CompletableFuture<TrendsInsightsResponseDto> generate(Long userId, TrendsInsightsParamsDto params,
+            Map<String, Integer> signature) {
+        return generator.apply(params).thenApply(insights -> {
+            if (!isEmpty(insights)) {
+                synchronized (this) {
+                    entries.put(userId, new Entry(params.getWindowDays(), signature, insights, clock.millis()));
+                    if (entries.size() > maxUsers) {
+                        entries.remove(entries.keySet().iterator().next());
+                    }
+                }
+            }
+            return insights;
+        });
+    }
+
+    private static boolean isEmpty(TrendsInsightsResponseDto insights) {
+        return insights == null || ((insights.getInsights() == null || insights.getInsights().isEmpty())
+                && (insights.getTopicLabels() == null || insights.getTopicLabels().isEmpty()));
+    }
+
+    /**
+     * Recent and previous count of each topic, by lower-case topic name.
+     */
+    static Map<String, Integer> signature(TrendsInsightsParamsDto params) {
+        Map<String, Integer> signature = new HashMap<>();
+        if (params.getTopics() == null) {
+            return signature;
+        }
+        for (TrendsInsightsParamsDto.TopicCountDto topic : params.getTopics()) {
+            if (topic == null || topic.getTopic() == null) {
+                continue;
+            }
+            String name = topic.getTopic().trim().toLowerCase(Locale.ROOT);
+            signature.merge(name + "#recent", topic.getRecentCount() == null ? 0 : topic.getRecentCount(),
+                    Integer::sum);
+            signature.merge(name + "#previous", topic.getPreviousCount() == null ? 0 : topic.getPreviousCount(),
+                    Integer::sum);
+        }
+        return signature;
+    }
+
+    /**
+     * Relative L1 distance: the summed count differences over the summed
+     * counts, from 0 (same counts) to 1 (no topic in common).
+     */
+    static double distance(Map<String, Integer> a, Map<String, Integer> b) {
+        Set<String> keys = new HashSet<>(a.keySet());
+        keys.addAll(b.keySet());
+        long difference = 0;
+        long total = 0;
+        for (String key : keys) {
+            int x = a.getOrDefault(key, 0);
+            int y = b.getOrDefault(key, 0);
+            difference += Math.abs(x - y);
+            total += Math.abs(x) + Math.abs(y);
+        }
+        return total == 0 ? 0 : (double) difference / total;
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("llm.trends.cache.requests", hits, AtomicLong::get)
+                .tag("result", "hit")
+                .description("Trend insight requests by cache outcome")
+                .register(registry);
+        FunctionCounter.builder("llm.trends.cache.requests", drifted, AtomicLong::get)
+                .tag("result", "drift")
+                .description("Trend insight requests by cache outcome")
+                .register(registry);
+        FunctionCounter.builder("llm.trends.cache.requests", misses, AtomicLong::get)
+                .tag("result", "miss")
+                .description("Trend insight requests by cache outcome")
+                .register(registry);
+    }
+}
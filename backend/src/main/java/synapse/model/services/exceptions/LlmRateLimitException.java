@@ -0,0 +1,36 @@
+package synapse.model.services.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an LLM call cannot be made within the rate limit: either the
+ * provider answered 429 or the client-side budget would not allow the call
+ * within the maximum wait.
+ */
+public class LlmRateLimitException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/** How long the caller would have to wait, in milliseconds. */
+	private final long retryAfterMillis;
+
+	/**
+	 * Instantiates a new LLM rate limit exception.
+	 *
+	 * @param retryAfterMillis how long the caller would have to wait
+	 */
+	public LlmRateLimitException(long retryAfterMillis) {
+		super("LLM rate limit reached, retry in " + retryAfterMillis + " ms");
+		this.retryAfterMillis = retryAfterMillis;
+	}
+
+	/**
+	 * Gets the time to wait before retrying.
+	 *
+	 * @return the wait in milliseconds
+	 */
+	public long getRetryAfterMillis() {
+		return retryAfterMillis;
+	}
+
+}
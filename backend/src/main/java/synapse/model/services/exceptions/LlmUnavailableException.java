@@ -0,0 +1,29 @@
+package synapse.model.services.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of calling the LLM provider while its circuit breaker is
+ * open, so callers can go straight to their local fallback.
+ */
+public class LlmUnavailableException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Instantiates a new LLM unavailable exception.
+	 */
+	public LlmUnavailableException() {
+		super("LLM provider unavailable (circuit open)");
+	}
+
+	/**
+	 * Instantiates a new LLM unavailable exception for a provider.
+	 *
+	 * @param provider the provider name
+	 */
+	public LlmUnavailableException(String provider) {
+		super("LLM provider " + provider + " unavailable (circuit open)");
+	}
+
+}
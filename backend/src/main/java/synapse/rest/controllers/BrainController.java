@@ -1,5 +1,9 @@
 package synapse.rest.controllers;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,6 +17,7 @@ import org.springframework.core.io.Resource;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.ResponseStatus;
@@ -22,37 +27,52 @@ import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import synapse.model.common.exceptions.InstanceNotFoundException;
+import synapse.rest.common.ErrorsDto;
+import synapse.rest.dtos.BrainSuggestBatchParamsDto;
 import synapse.rest.dtos.BrainSuggestParamsDto;
 import synapse.rest.dtos.BrainSuggestionDto;
 import synapse.rest.dtos.BrainLinkPreviewDto;
 import synapse.rest.dtos.SaveNoteParamsDto;
 import synapse.rest.dtos.SavedNoteDto;
+import synapse.rest.dtos.NoteDetailsDto;
 
 import synapse.rest.dtos.FactCheckParamsDto;
 import synapse.rest.dtos.FactCheckResponseDto;
 import synapse.rest.dtos.TrendsInsightsParamsDto;
 import synapse.rest.dtos.TrendsInsightsResponseDto;
 import synapse.model.services.BrainSuggestionService;
+import synapse.model.services.ClassificationStreamParser;
 import synapse.model.services.LlamaAIService;
+import synapse.model.services.LocalClassifier;
 import synapse.model.services.MediaStorageService;
+import synapse.model.services.NoteDetailsService;
 import synapse.model.services.NoteMarkdownStorageService;
+import synapse.model.services.TrendsInsightsService;
 
 /**
  * REST controller for the Digital Brain API.
  * Thin controller: delegates all business logic to services.
  * URL naming follows REST conventions (nouns, not verbs).
+ * AI endpoints return futures so servlet threads are released while the
+ * model is working.
  */
 @RestController
 @RequestMapping(value = "/api/brains", produces = MediaType.APPLICATION_JSON_VALUE)
 @SuppressWarnings("null")
 public class BrainController {
     private static final Logger logger = LoggerFactory.getLogger(BrainController.class);
+    private static final long SSE_TIMEOUT_MS = 120_000L;
 
     private final BrainSuggestionService brainSuggestionService;
     private final LlamaAIService llamaAIService;
     private final MediaStorageService mediaStorageService;
     private final NoteMarkdownStorageService noteMarkdownStorageService;
+    private final TrendsInsightsService trendsInsightsService;
+    private final LocalClassifier localClassifier;
+    private final NoteDetailsService noteDetailsService;
 
     @Value("${server.servlet.context-path:}")
     private String contextPath;
@@ -60,21 +80,69 @@ public class BrainController {
     public BrainController(BrainSuggestionService brainSuggestionService,
             LlamaAIService llamaAIService,
             MediaStorageService mediaStorageService,
-            NoteMarkdownStorageService noteMarkdownStorageService) {
+            NoteMarkdownStorageService noteMarkdownStorageService,
+            TrendsInsightsService trendsInsightsService,
+            LocalClassifier localClassifier,
+            NoteDetailsService noteDetailsService) {
         this.brainSuggestionService = brainSuggestionService;
         this.llamaAIService = llamaAIService;
         this.mediaStorageService = mediaStorageService;
         this.noteMarkdownStorageService = noteMarkdownStorageService;
+        this.trendsInsightsService = trendsInsightsService;
+        this.localClassifier = localClassifier;
+        this.noteDetailsService = noteDetailsService;
     }
 
     /**
      * POST /api/brains/suggestions — AI content classification.
      */
     @PostMapping("/suggestions")
-    public BrainSuggestionDto suggest(@RequestBody @jakarta.validation.Valid BrainSuggestParamsDto params) {
+    public CompletableFuture<BrainSuggestionDto> suggest(
+            @RequestBody @jakarta.validation.Valid BrainSuggestParamsDto params) {
         logger.info("Received suggestion request for content: {}", params.getContent());
-        BrainSuggestionService.SuggestionResult result = brainSuggestionService.suggest(params.getContent());
-        return toSuggestionDto(result);
+        return brainSuggestionService.suggestAsync(params.getContent()).thenApply(this::toSuggestionDto);
+    }
+
+    /**
+     * POST /api/brains/suggestions/batch — AI classification of several inbox
+     * entries at once. Short entries share model calls; results come back in
+     * request order.
+     */
+    @PostMapping("/suggestions/batch")
+    public CompletableFuture<List<BrainSuggestionDto>> suggestBatch(
+            @RequestBody @jakarta.validation.Valid BrainSuggestBatchParamsDto params) {
+        logger.info("Received batch suggestion request for {} contents", params.getContents().size());
+        return brainSuggestionService.suggestBatchAsync(params.getContents())
+                .thenApply(results -> results.stream().map(this::toSuggestionDto).toList());
+    }
+
+    /**
+     * GET /api/brains/suggestions/stream?content=... — AI classification
+     * streamed as Server-Sent Events.
+     */
+    @GetMapping(value = "/suggestions/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter suggestStream(@RequestParam("content") String content) {
+        if (content == null || content.trim().isEmpty()) {
+            throw new IllegalArgumentException("Empty content");
+        }
+        return streamSuggestion(content);
+    }
+
+    /**
+     * POST /api/brains/suggestions/stream — AI classification streamed as
+     * Server-Sent Events.
+     *
+     * Events: {@code type}, {@code title}, {@code tags}, {@code summary} and
+     * {@code destination} as soon as the model finishes each field, then,
+     * unless the Markdown is generated on demand
+     * ({@code project.llama.details.lazy}, see {@code GET /notes/{storageId}/details}),
+     * {@code detailedContent} deltas while it is generated. The final
+     * {@code result} event carries the authoritative suggestion (the same one
+     * {@code POST /suggestions} returns).
+     */
+    @PostMapping(value = "/suggestions/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter suggestStream(@RequestBody @jakarta.validation.Valid BrainSuggestParamsDto params) {
+        return streamSuggestion(params.getContent());
     }
 
     /**
@@ -157,9 +225,23 @@ public class BrainController {
     @ResponseStatus(HttpStatus.CREATED)
     public SavedNoteDto saveNote(@RequestBody @jakarta.validation.Valid SaveNoteParamsDto params) {
         NoteMarkdownStorageService.SaveResult result = noteMarkdownStorageService.saveNote(params);
+        localClassifier.learn(params.getNoteId(), params.getType(), params.getDestination(), params.getTags(),
+                params.getContent());
         return new SavedNoteDto(result.getStorageId(), result.getFilename());
     }
 
+    /**
+     * GET /api/brains/notes/{storageId}/details — Detailed Markdown of a
+     * persisted note. Generated by the AI on the first request and stored in
+     * the note file; later requests read it from there.
+     */
+    @GetMapping("/notes/{storageId}/details")
+    public CompletableFuture<NoteDetailsDto> noteDetails(@PathVariable("storageId") String storageId)
+            throws InstanceNotFoundException {
+        return noteDetailsService.detailsAsync(storageId)
+                .thenApply(result -> new NoteDetailsDto(storageId, result.detailedContent(), result.fallback()));
+    }
+
     /**
      * DELETE /api/brains/notes/{storageId} — Delete a persisted note (idempotent).
      */
@@ -173,27 +255,74 @@ public class BrainController {
      * POST /api/brains/fact-checks — Fact-check content via AI.
      */
     @PostMapping("/fact-checks")
-    public FactCheckResponseDto factCheck(@RequestBody @jakarta.validation.Valid FactCheckParamsDto params) {
+    public CompletableFuture<FactCheckResponseDto> factCheck(
+            @RequestBody @jakarta.validation.Valid FactCheckParamsDto params) {
         logger.info("Received fact-check request");
-        return new FactCheckResponseDto(llamaAIService.verifyInformation(params.getContent()));
+        return llamaAIService.verifyInformationAsync(params.getContent()).thenApply(FactCheckResponseDto::new);
     }
 
     /**
-     * POST /api/brains/trends/insights — AI-generated trend insights.
+     * POST /api/brains/trends/insights — AI-generated trend insights, reused
+     * while the user's topic counts barely change.
      */
     @PostMapping("/trends/insights")
-    public TrendsInsightsResponseDto trendsInsights(@RequestBody @jakarta.validation.Valid TrendsInsightsParamsDto params) {
+    public CompletableFuture<TrendsInsightsResponseDto> trendsInsights(@RequestAttribute Long userId,
+            @RequestBody @jakarta.validation.Valid TrendsInsightsParamsDto params) {
         logger.info("Received trends insights request. WindowDays: {}. Topics: {}. Items: {}",
                 params.getWindowDays(),
                 params.getTopics() == null ? null : params.getTopics().size(),
                 params.getItems() == null ? null : params.getItems().size());
-        return llamaAIService.generateTrendsInsights(params);
+        return trendsInsightsService.insightsAsync(userId, params);
+    }
+
+    // ── Streaming ───────────────────────────────────────────────────────
+
+    private SseEmitter streamSuggestion(String content) {
+        logger.info("Received streaming suggestion request for content: {}", content);
+        SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
+
+        brainSuggestionService.suggestStream(content, new ClassificationStreamParser.Listener() {
+            @Override
+            public void onField(String name, String value) {
+                sendEvent(emitter, name, value);
+            }
+
+            @Override
+            public void onTags(List<String> tags) {
+                sendEvent(emitter, "tags", tags);
+            }
+
+            @Override
+            public void onDetailedContentDelta(String delta) {
+                sendEvent(emitter, "detailedContent", delta);
+            }
+        }).whenComplete((result, error) -> {
+            if (error != null) {
+                logger.error("Streaming suggestion failed", error);
+                sendEvent(emitter, "error", new ErrorsDto("Internal server error"));
+                emitter.complete();
+                return;
+            }
+            sendEvent(emitter, "result", toSuggestionDto(result));
+            emitter.complete();
+        });
+
+        return emitter;
+    }
+
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the classification still completes and is cached
+            logger.debug("Could not send SSE event '{}': {}", name, e.getMessage());
+        }
     }
 
     // ── DTO mapping ─────────────────────────────────────────────────────
 
     private BrainSuggestionDto toSuggestionDto(BrainSuggestionService.SuggestionResult result) {
-        return new BrainSuggestionDto(
+        BrainSuggestionDto dto = new BrainSuggestionDto(
                 result.getType(),
                 result.getTitle(),
                 result.getSummary(),
@@ -202,5 +331,7 @@ public class BrainController {
                 result.getTags(),
                 result.getMediaUrl(),
                 result.getMediaContentType());
+        dto.setFallback(result.isFallback());
+        return dto;
     }
 }
@@ -0,0 +1,32 @@
+package synapse.rest.dtos;
+
+import java.util.List;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+/**
+ * Several inbox entries to be analyzed by the brain in one request. Results
+ * are returned in the same order.
+ */
+public class BrainSuggestBatchParamsDto {
+
+    @NotNull
+    @Size(min = 1, max = 50)
+    private List<String> contents;
+
+    public BrainSuggestBatchParamsDto() {
+    }
+
+    public BrainSuggestBatchParamsDto(List<String> contents) {
+        this.contents = contents;
+    }
+
+    public List<String> getContents() {
+        return contents;
+    }
+
+    public void setContents(List<String> contents) {
+        this.contents = contents;
+    }
+}
@@ -16,6 +16,10 @@ public class BrainSuggestionDto {
     private String mediaUrl;
     private String mediaContentType;
 
+    // True when the AI was not available and the suggestion was built locally;
+    // the client can offer to classify again later
+    private boolean fallback;
+
     public BrainSuggestionDto() {
     }
 
@@ -94,4 +98,12 @@ public class BrainSuggestionDto {
     public void setMediaContentType(String mediaContentType) {
         this.mediaContentType = mediaContentType;
     }
+
+    public boolean isFallback() {
+        return fallback;
+    }
+
+    public void setFallback(boolean fallback) {
+        this.fallback = fallback;
+    }
 }
@@ -0,0 +1,48 @@
+package synapse.rest.dtos;
+
+/**
+ * Contenido detallado (Markdown) de una nota guardada, generado bajo demanda.
+ */
+public class NoteDetailsDto {
+
+    private String storageId;
+    private String detailedContent;
+    private boolean fallback;
+
+    public NoteDetailsDto() {
+    }
+
+    public NoteDetailsDto(String storageId, String detailedContent, boolean fallback) {
+        this.storageId = storageId;
+        this.detailedContent = detailedContent;
+        this.fallback = fallback;
+    }
+
+    public String getStorageId() {
+        return storageId;
+    }
+
+    public void setStorageId(String storageId) {
+        this.storageId = storageId;
+    }
+
+    public String getDetailedContent() {
+        return detailedContent;
+    }
+
+    public void setDetailedContent(String detailedContent) {
+        this.detailedContent = detailedContent;
+    }
+
+    /**
+     * True when the model could not be used and the content was built
+     * locally; it is not stored, so a later request tries again.
+     */
+    public boolean isFallback() {
+        return fallback;
+    }
+
+    public void setFallback(boolean fallback) {
+        this.fallback = fallback;
+    }
+}
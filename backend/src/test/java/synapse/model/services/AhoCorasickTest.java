@@ -0,0 +1,46 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for AhoCorasick (whole-word multi-pattern matching).
+ */
+public class AhoCorasickTest {
+
+	private static List<Integer> matches(List<String> patterns, String text) {
+		List<Integer> found = new ArrayList<>();
+		new AhoCorasick(patterns).scan(text, found::add);
+		return found;
+	}
+
+	@Test
+	public void testScan_OverlappingPatterns() {
+		List<String> patterns = List.of("he", "she", "hers", "his");
+
+		assertEquals(List.of(1), matches(patterns, "she"));
+		assertEquals(List.of(2), matches(patterns, "hers"));
+		assertEquals(List.of(0, 3, 1), matches(patterns, "he, his, she"));
+		assertEquals(List.of(0, 1), matches(List.of("cadena ser", "ser"), "la Cadena SER"));
+	}
+
+	@Test
+	public void testScan_IgnoresCaseAndDiacritics() {
+		List<String> patterns = List.of("futbol", "el país", "españa");
+
+		assertEquals(List.of(0, 1, 2), matches(patterns, "El FÚTBOL según El Pais:\nEspaña"));
+	}
+
+	@Test
+	public void testScan_WholeWordsUnlessPrefix() {
+		List<String> patterns = List.of("mir", "liga", "equipo*");
+
+		assertEquals(List.of(), matches(patterns, "mirar obliga ligamento"));
+		assertEquals(List.of(0, 1, 2, 2), matches(patterns, "El MIR, la liga y los equipos del equipo"));
+		assertEquals(List.of(), matches(patterns, "subequipo"));
+	}
+}
@@ -0,0 +1,111 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import synapse.config.LlmSpeculationProperties;
+
+/**
+ * Tests for the speculative classification of link previews against the LLM
+ * stub: a streamed suggestion of a previewed link replays the finished
+ * background classification instead of calling the model again.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "project.llama.stub.latencyMedianMs=0", "project.llama.stub.latencyP99Ms=0" })
+@ActiveProfiles({ "test", "llm-stub" })
+public class BrainSuggestionServiceTest {
+
+	/** A public address literal, so the URL passes validation without a DNS lookup. */
+	private static final String URL = "http://93.184.216.34/articles/sourdough";
+
+	@Autowired
+	private LlamaAIService llamaAIService;
+
+	@Autowired
+	private PromptCompactor promptCompactor;
+
+	@Autowired
+	private MediaStorageService mediaStorageService;
+
+	@Autowired
+	private LlmStubServer stub;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Test
+	public void testSuggestStream_ReplaysFinishedSpeculation() throws InterruptedException {
+		AtomicInteger extractions = new AtomicInteger();
+		ContentExtractionService extraction = new ContentExtractionService(null) {
+			@Override
+			public ExtractedContent extractContent(String url) {
+				extractions.incrementAndGet();
+				return new ExtractedContent("Sourdough starter",
+						"How to keep a sourdough starter alive",
+						"Mix equal weights of flour and water and feed the starter every day for a week.", "link");
+			}
+		};
+		BrainSuggestionService service = new BrainSuggestionService(extraction, llamaAIService, promptCompactor,
+				mediaStorageService, Runnable::run, new LlmSpeculationProperties(), new SimpleMeterRegistry());
+
+		long answered = answeredCalls();
+		service.extractLinkPreview(URL);
+		awaitAnsweredCalls(answered + 1);
+		long before = stub.getRequestCount();
+		List<String> fields = new ArrayList<>();
+		List<String> tags = new ArrayList<>();
+
+		BrainSuggestionService.SuggestionResult result = service.suggestStream(URL,
+				new ClassificationStreamParser.Listener() {
+					@Override
+					public void onField(String name, String value) {
+						fields.add(name + "=" + value);
+					}
+
+					@Override
+					public void onTags(List<String> streamed) {
+						tags.addAll(streamed);
+					}
+
+					@Override
+					public void onDetailedContentDelta(String delta) {
+					}
+				}).join();
+
+		assertEquals(0, stub.getRequestCount() - before);
+		assertEquals(1, extractions.get());
+		assertFalse(result.isFallback());
+		assertEquals("type=link", fields.get(0));
+		assertTrue(fields.contains("title=" + result.getTitle()));
+		assertEquals(List.of(result.getTags()), tags);
+	}
+
+	private long answeredCalls() {
+		return meterRegistry.find("llm.operation.latency").timers().stream().mapToLong(timer -> timer.count()).sum();
+	}
+
+	/**
+	 * Waits until the background classification started by the preview has
+	 * been answered.
+	 */
+	private void awaitAnsweredCalls(long calls) throws InterruptedException {
+		for (int i = 0; i < 500 && answeredCalls() < calls; i++) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(50);
+	}
+}
@@ -0,0 +1,69 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import okio.Buffer;
+
+/**
+ * Tests for ChatRequestBody.
+ */
+public class ChatRequestBodyTest {
+
+	private static JsonObject written(ChatRequestBody body) throws IOException {
+		Buffer buffer = new Buffer();
+		body.writeTo(buffer);
+		assertEquals(body.contentLength(), buffer.size());
+		return JsonParser.parseString(buffer.readUtf8()).getAsJsonObject();
+	}
+
+	@Test
+	public void testWriteTo_EscapedPromptWithExactLength() throws IOException {
+		String prompt = "Analyze \"this\" C:\\path\n\tline\r\u0001\u001f ñandú € 😀 <b>&</b> \u2028 end";
+
+		JsonObject json = written(new ChatRequestBody("llama-3.3-70b-versatile", prompt, 4000, false, false));
+
+		assertEquals("llama-3.3-70b-versatile", json.get("model").getAsString());
+		assertEquals(4000, json.get("max_tokens").getAsInt());
+		assertEquals(0.7, json.get("temperature").getAsDouble(), 0);
+		assertFalse(json.has("stream"));
+		assertFalse(json.has("response_format"));
+		JsonObject message = json.getAsJsonArray("messages").get(0).getAsJsonObject();
+		assertEquals("user", message.get("role").getAsString());
+		assertEquals(prompt, message.get("content").getAsString());
+	}
+
+	@Test
+	public void testWriteTo_UnpairedSurrogateCountedAsWritten() throws IOException {
+		JsonObject json = written(new ChatRequestBody("m", "broken \ud800 pair", 10, false, false));
+
+		assertEquals("broken ? pair", json.getAsJsonArray("messages").get(0).getAsJsonObject()
+				.get("content").getAsString());
+	}
+
+	@Test
+	public void testWriteTo_StreamAndJsonModeFlags() throws IOException {
+		JsonObject streamed = written(new ChatRequestBody("m", "p", 800, true, false));
+		JsonObject jsonMode = written(new ChatRequestBody("m", "p", 800, false, true));
+
+		assertTrue(streamed.get("stream").getAsBoolean());
+		assertFalse(streamed.has("response_format"));
+		assertEquals("json_object", jsonMode.getAsJsonObject("response_format").get("type").getAsString());
+		assertFalse(jsonMode.has("stream"));
+	}
+
+	@Test
+	public void testWriteTo_CanBeWrittenAgain() throws IOException {
+		ChatRequestBody body = new ChatRequestBody("m", "Same prompt", 10, false, false);
+
+		assertEquals(written(body), written(body));
+	}
+}
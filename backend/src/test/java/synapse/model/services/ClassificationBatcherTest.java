@@ -0,0 +1,61 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+
+/**
+ * Tests for ClassificationBatcher (packing items and mapping batch answers).
+ */
+public class ClassificationBatcherTest {
+
+	@Test
+	public void testPack_RespectsItemCountAndTokenBudget() {
+		List<Integer> costs = List.of(100, 100, 100, 100, 100, 900, 50, 50);
+
+		List<List<Integer>> groups = ClassificationBatcher.pack(costs, 4, 1000);
+
+		assertEquals(List.of(List.of(0, 1, 2, 3), List.of(4, 5), List.of(6, 7)), groups);
+	}
+
+	@Test
+	public void testPack_OversizedItemGetsItsOwnGroup() {
+		List<List<Integer>> groups = ClassificationBatcher.pack(List.of(50, 5000, 50), 8, 1000);
+
+		assertEquals(List.of(List.of(0), List.of(1), List.of(2)), groups);
+	}
+
+	@Test
+	public void testPack_ThirtyShortEntriesTakeFewCalls() {
+		List<Integer> costs = Collections.nCopies(30, 80);
+
+		assertEquals(4, ClassificationBatcher.pack(costs, 8, 3000).size());
+	}
+
+	@Test
+	public void testParseResults_MapsById() {
+		String answer = "{\"results\":[{\"id\":2,\"title\":\"B\"},{\"id\":1,\"title\":\"A\"},"
+				+ "{\"id\":7,\"title\":\"out of range\"},{\"title\":\"no id\"},\"junk\"]}";
+
+		Map<Integer, JsonObject> byId = ClassificationBatcher.parseResults(answer, 3);
+
+		assertEquals(2, byId.size());
+		assertEquals("A", byId.get(1).get("title").getAsString());
+		assertEquals("B", byId.get(2).get("title").getAsString());
+		assertFalse(byId.containsKey(3));
+	}
+
+	@Test
+	public void testParseResults_TruncatedAnswerIsNotABatchAnswer() {
+		assertNull(ClassificationBatcher.parseResults("{\"results\":[{\"id\":1,\"title\":\"A\"},{\"id\":2,\"ti", 2));
+		assertNull(ClassificationBatcher.parseResults("{\"title\":\"single item answer\"}", 2));
+	}
+}
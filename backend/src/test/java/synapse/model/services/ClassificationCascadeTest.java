@@ -0,0 +1,63 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for ClassificationCascade (when a small-model answer is kept).
+ */
+public class ClassificationCascadeTest {
+
+	private final ClassificationCascade cascade = new ClassificationCascade(50, 3, 100);
+
+	private static String answer(String tags, int detailedLength) {
+		return "{\"type\":\"article\",\"title\":\"PostgreSQL en macOS\",\"tags\":[" + tags + "],"
+				+ "\"summary\":\"Instalación\",\"destination\":\"resource\",\"detailedContent\":\""
+				+ "x".repeat(detailedLength) + "\"}";
+	}
+
+	@Test
+	public void testReview_AcceptsSpecificCompleteAnswer() {
+		assertEquals(ClassificationCascade.ACCEPTED,
+				cascade.review("```json\n" + answer("\"postgresql\",\"macos\",\"homebrew\"", 120) + "\n```"));
+	}
+
+	@Test
+	public void testReview_EscalatesGenericTags() {
+		assertEquals(ClassificationCascade.GENERIC_TAGS,
+				cascade.review(answer("\"postgresql\",\"General\",\"technology\",\"\"", 120)));
+		assertEquals(ClassificationCascade.GENERIC_TAGS, cascade.review(answer("", 120)));
+	}
+
+	@Test
+	public void testReview_EscalatesShortDetailedContent() {
+		assertEquals(ClassificationCascade.SHORT_CONTENT,
+				cascade.review(answer("\"postgresql\",\"macos\",\"homebrew\"", 20)));
+	}
+
+	@Test
+	public void testReview_SummaryOnlyAnswerWhenNoDetailedContentIsAsked() {
+		ClassificationCascade summaryOnly = new ClassificationCascade(1200, 3, 0);
+
+		assertEquals(ClassificationCascade.ACCEPTED, summaryOnly.review(
+				"{\"type\":\"article\",\"title\":\"PostgreSQL en macOS\",\"tags\":[\"postgresql\",\"macos\",\"homebrew\"]}"));
+	}
+
+	@Test
+	public void testReview_EscalatesInvalidJson() {
+		assertEquals(ClassificationCascade.INVALID_JSON, cascade.review("I cannot classify this content."));
+		assertEquals(ClassificationCascade.INVALID_JSON,
+				cascade.review("{\"type\":\"article\",\"title\":\"PostgreSQL en macOS\",\"tags\":[\"postgr"));
+		assertEquals(ClassificationCascade.INVALID_JSON, cascade.review("{\"type\":\"article\"}"));
+		assertEquals(ClassificationCascade.INVALID_JSON, cascade.review(null));
+	}
+
+	@Test
+	public void testStartsSmall_OnlyShortContents() {
+		assertTrue(cascade.startsSmall("Comprar leche"));
+		assertFalse(cascade.startsSmall("Una frase bastante larga sobre bases de datos. ".repeat(20)));
+	}
+}
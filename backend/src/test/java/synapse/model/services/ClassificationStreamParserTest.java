@@ -0,0 +1,111 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests for ClassificationStreamParser (incremental parsing of model output).
+ */
+public class ClassificationStreamParserTest {
+
+	private static final String RESPONSE = "```json\n{\"type\":\"article\",\"title\":\"Caf\\u00e9 \\\"Central\\\"\","
+			+ "\"tags\":[\"coffee\",\"madrid\"],\"score\":{\"a\":[1,\"}\"]},\"summary\":\"Line one\\nline two\","
+			+ "\"destination\":\"note\",\"detailedContent\":\"# Title\\n\\n## Summary\\n\\nBody\"}\n```";
+
+	private static class RecordingListener implements ClassificationStreamParser.Listener {
+		private final Map<String, String> fields = new LinkedHashMap<>();
+		private final List<String> tags = new ArrayList<>();
+		private final StringBuilder detailedContent = new StringBuilder();
+		private final List<String> order = new ArrayList<>();
+
+		@Override
+		public void onField(String name, String value) {
+			fields.put(name, value);
+			order.add(name);
+		}
+
+		@Override
+		public void onTags(List<String> tagList) {
+			tags.addAll(tagList);
+			order.add("tags");
+		}
+
+		@Override
+		public void onDetailedContentDelta(String delta) {
+			detailedContent.append(delta);
+			if (order.isEmpty() || !order.get(order.size() - 1).equals("detailedContent")) {
+				order.add("detailedContent");
+			}
+		}
+	}
+
+	@Test
+	public void testAccept_WholeResponse() {
+		RecordingListener listener = new RecordingListener();
+		ClassificationStreamParser parser = new ClassificationStreamParser(listener);
+
+		parser.accept(RESPONSE);
+
+		assertFields(listener);
+		assertEquals(List.of("type", "title", "tags", "summary", "destination", "detailedContent"), listener.order);
+		assertTrue(parser.isDone());
+	}
+
+	@Test
+	public void testAccept_EverySplitPoint() {
+		for (int split = 0; split <= RESPONSE.length(); split++) {
+			RecordingListener listener = new RecordingListener();
+			ClassificationStreamParser parser = new ClassificationStreamParser(listener);
+
+			parser.accept(RESPONSE.substring(0, split));
+			parser.accept(RESPONSE.substring(split));
+
+			assertFields(listener);
+		}
+	}
+
+	@Test
+	public void testAccept_CharByCharStreamsDetailedContent() {
+		RecordingListener listener = new RecordingListener();
+		ClassificationStreamParser parser = new ClassificationStreamParser(listener);
+		int[] deltas = { 0 };
+		ClassificationStreamParser counting = new ClassificationStreamParser(new ClassificationStreamParser.Listener() {
+			@Override
+			public void onField(String name, String value) {
+			}
+
+			@Override
+			public void onTags(List<String> tags) {
+			}
+
+			@Override
+			public void onDetailedContentDelta(String delta) {
+				deltas[0]++;
+			}
+		});
+
+		for (char c : RESPONSE.toCharArray()) {
+			parser.accept(String.valueOf(c));
+			counting.accept(String.valueOf(c));
+		}
+
+		assertFields(listener);
+		assertTrue(deltas[0] > 1);
+	}
+
+	private void assertFields(RecordingListener listener) {
+		assertEquals("article", listener.fields.get("type"));
+		assertEquals("Café \"Central\"", listener.fields.get("title"));
+		assertEquals("Line one\nline two", listener.fields.get("summary"));
+		assertEquals("note", listener.fields.get("destination"));
+		assertEquals(List.of("coffee", "madrid"), listener.tags);
+		assertEquals("# Title\n\n## Summary\n\nBody", listener.detailedContent.toString());
+	}
+}
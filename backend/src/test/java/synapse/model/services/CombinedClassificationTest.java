@@ -0,0 +1,104 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import synapse.model.services.LlamaAIService.ClassificationResult;
+import synapse.rest.dtos.FactCheckResponseDto.ClaimVerification;
+
+/**
+ * Tests for the combined classify + fact-check call against the LLM stub:
+ * one call answers both, and the later classification and fact-check of the
+ * same content are served without calling the model again.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "project.llama.cache.enabled=true", "project.llama.cache.dir=",
+		"project.llama.stub.latencyMedianMs=0", "project.llama.stub.latencyP99Ms=0",
+		"project.llama.combined.enabled=true" })
+@ActiveProfiles({ "test", "llm-stub" })
+public class CombinedClassificationTest {
+
+	@Autowired
+	private LlamaAIService llamaAIService;
+
+	@Autowired
+	private LlmStubServer stub;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private static final String CONTENT = "Title: The Brooklyn Bridge\n"
+			+ "The Brooklyn Bridge was opened to traffic in 1883 after fourteen years of work.\n"
+			+ "It connects the boroughs of Manhattan and Brooklyn over the East River.\n"
+			+ "Its towers are built of limestone, granite and Rosendale cement.";
+
+	@Test
+	public void testClassify_OneCallServesClassificationAndFactCheck() {
+		long before = stub.getRequestCount();
+		ClassificationResult classified = llamaAIService.classifyContent(CONTENT);
+		long classifyCalls = stub.getRequestCount() - before;
+
+		ClassificationResult again = llamaAIService.classifyContent(CONTENT);
+		List<ClaimVerification> claims = llamaAIService.verifyInformation(CONTENT);
+
+		assertEquals(1, classifyCalls);
+		assertEquals(1, stub.getRequestCount() - before);
+		assertFalse(classified.isFallback());
+		assertTrue(classified.getTitle().startsWith("The Brooklyn Bridge"));
+		assertEquals(classified.getTitle(), again.getTitle());
+		assertEquals(3, claims.size());
+		assertEquals("suspicious", claims.get(0).getStatus());
+		assertEquals("true", claims.get(1).getStatus());
+	}
+
+	@Test
+	public void testClassify_BackgroundCallServesInteractiveOne() {
+		String content = "Title: The Eiffel Tower\n"
+				+ "The Eiffel Tower was completed in 1889 for the World's Fair in Paris.\n"
+				+ "It was the tallest structure in the world for forty-one years.";
+		long before = stub.getRequestCount();
+		double shared = sharedCalls();
+
+		CompletableFuture<ClassificationResult> background = llamaAIService.classifyContentAsync(content,
+				LlmPriority.BACKGROUND);
+		ClassificationResult interactive = llamaAIService.classifyContent(content);
+
+		assertEquals(1, stub.getRequestCount() - before);
+		assertFalse(interactive.isFallback());
+		assertEquals(background.join().getTitle(), interactive.getTitle());
+		assertEquals(shared + 1, sharedCalls(), 0);
+	}
+
+	private double sharedCalls() {
+		return meterRegistry.get("llm.singleflight.calls").tag("result", "shared").functionCounter().count();
+	}
+
+	@Test
+	public void testClassify_LongContentFactCheckServedFromCombinedCall() {
+		StringBuilder content = new StringBuilder("Title: The pantry shelves\n");
+		for (int i = 0; i < 600; i++) {
+			content.append("Shelf ").append((char) ('a' + i / 26)).append((char) ('a' + i % 26))
+					.append("ol has jam.").append(i % 10 == 9 ? "\n" : " ");
+		}
+		assertTrue(TokenEstimator.estimate(content) > 2500);
+
+		ClassificationResult classified = llamaAIService.classifyContent(content.toString());
+		long before = stub.getRequestCount();
+		llamaAIService.verifyInformation(content.toString());
+
+		assertFalse(classified.isFallback());
+		assertEquals(0, stub.getRequestCount() - before);
+	}
+}
@@ -0,0 +1,77 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import synapse.rest.dtos.FactCheckResponseDto.ClaimVerification;
+
+/**
+ * Tests for FactCheckChunker (sentence selection, claim assignment and
+ * merging).
+ */
+public class FactCheckChunkerTest {
+
+	@Test
+	public void testSentences_KeepsClaimBearingSentencesOnce() {
+		String content = "Title: Historia del café\n"
+				+ "# Orígenes\n"
+				+ "Content: El café llegó a Europa en el siglo XVII. Muy rico.\n"
+				+ "https://example.com/cafe\n"
+				+ "Etiopía es el origen del café arábica. El café llegó a Europa en el siglo XVII!";
+
+		List<String> sentences = FactCheckChunker.sentences(content);
+
+		assertEquals(List.of("El café llegó a Europa en el siglo XVII.", "Etiopía es el origen del café arábica."),
+				sentences);
+	}
+
+	@Test
+	public void testNormalize_IgnoresCaseAccentsAndPunctuation() {
+		assertEquals("el cafe llego a europa", FactCheckChunker.normalize("  El café, llegó a  Europa!"));
+		assertEquals(FactCheckChunker.normalize("Etiopía es el origen."),
+				FactCheckChunker.normalize("etiopia es el ORIGEN"));
+	}
+
+	@Test
+	public void testAssign_UsesSentenceNumbersThenText() throws IOException {
+		List<String> sentences = List.of("Water boils at 100 degrees at sea level.", "The Moon is made of cheese.");
+		List<LlmResponseDecoder.Claim> claims = LlmResponseDecoder.readNumberedClaims(
+				"{\"claims\":[{\"sentence\":\"2\",\"originalText\":\"The Moon is made of cheese\",\"status\":\"false\"},"
+						+ "{\"originalText\":\"water boils at 100 degrees\",\"status\":\"true\"}]}");
+
+		FactCheckChunker.Verdicts verdicts = FactCheckChunker.assign(claims, sentences);
+
+		assertTrue(verdicts.complete());
+		assertEquals("water boils at 100 degrees", verdicts.bySentence().get(0).get(0).getOriginalText());
+		assertEquals("false", verdicts.bySentence().get(1).get(0).getStatus());
+	}
+
+	@Test
+	public void testAssign_UntraceableClaimMarksChunkIncomplete() throws IOException {
+		List<LlmResponseDecoder.Claim> claims = LlmResponseDecoder.readNumberedClaims(
+				"{\"claims\":[{\"sentence\":9,\"originalText\":\"Something else entirely\"}]}");
+
+		FactCheckChunker.Verdicts verdicts = FactCheckChunker.assign(claims, List.of("The sky is blue today."));
+
+		assertFalse(verdicts.complete());
+		assertEquals(1, verdicts.bySentence().get(0).size());
+	}
+
+	@Test
+	public void testMerge_KeepsOneClaimWithTheMostSevereVerdict() {
+		List<ClaimVerification> merged = FactCheckChunker.merge(List.of(
+				new ClaimVerification("The Moon is made of cheese.", "suspicious", "", ""),
+				new ClaimVerification("Water boils at 100C", "true", "", ""),
+				new ClaimVerification("the moon is made of cheese", "false", "It is rock.", "The Moon is rock.")));
+
+		assertEquals(2, merged.size());
+		assertEquals("false", merged.get(0).getStatus());
+		assertEquals("Water boils at 100C", merged.get(1).getOriginalText());
+	}
+}
@@ -0,0 +1,62 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import synapse.rest.dtos.FactCheckResponseDto.ClaimVerification;
+
+/**
+ * Tests for chunked fact-checking against the LLM stub: long content is
+ * split over several calls, and re-checking edited content only sends the
+ * sentences that changed.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "project.llama.cache.enabled=true", "project.llama.cache.dir=",
+		"project.llama.stub.latencyMedianMs=0", "project.llama.stub.latencyP99Ms=0",
+		"project.llama.factCheck.chunkTokens=60" })
+@ActiveProfiles({ "test", "llm-stub" })
+public class FactCheckTest {
+
+	@Autowired
+	private LlamaAIService llamaAIService;
+
+	@Autowired
+	private LlmStubServer stub;
+
+	private static String article(String lastSentence) {
+		return "The Eiffel Tower was completed in 1889 for the World Fair.\n"
+				+ "It was the tallest structure in the world for four decades.\n"
+				+ "Paris receives millions of visitors every single year.\n"
+				+ "Gustave Eiffel's company designed and built the tower.\n"
+				+ lastSentence;
+	}
+
+	@Test
+	public void testVerify_ChunksLongContentAndReusesSentenceVerdicts() {
+		long before = stub.getRequestCount();
+		List<ClaimVerification> first = llamaAIService.verifyInformation(
+				article("The tower is repainted roughly every seven years."));
+		long firstCalls = stub.getRequestCount() - before;
+
+		List<ClaimVerification> edited = llamaAIService.verifyInformation(
+				article("The tower was repainted for the 2024 Olympic Games."));
+		long editedCalls = stub.getRequestCount() - before - firstCalls;
+
+		assertTrue("Expected several chunks, got " + firstCalls, firstCalls > 1);
+		assertEquals(1, editedCalls);
+		assertEquals(5, first.size());
+		assertEquals(5, edited.size());
+		assertEquals("The tower was repainted for the 2024 Olympic Games.", edited.get(4).getOriginalText());
+		assertEquals("suspicious", edited.get(4).getStatus());
+		assertEquals("true", edited.get(2).getStatus());
+	}
+}
@@ -0,0 +1,80 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for FallbackTagger.
+ */
+public class FallbackTaggerTest {
+
+	private final FallbackTagger bundled;
+
+	public FallbackTaggerTest() throws IOException {
+		bundled = new FallbackTagger("");
+	}
+
+	@Test
+	public void testTags_BundledRulesWithDiacriticsAndRequirements() {
+		List<String> tags = bundled.tags("Resumen de la Liga", "",
+				"El fútbol español vuelve este fin de semana con todos los equipos.");
+
+		assertEquals(List.of("sports", "spanish-football", "resumen"), tags);
+	}
+
+	@Test
+	public void testTags_RankedByWeightedHits() {
+		List<String> tags = bundled.tags("Novedades de software libre", "Un vídeo sobre programación",
+				"Publicado en YouTube. Vídeo de la sección de tecnología.");
+
+		assertEquals("technology", tags.get(0));
+		assertEquals("video", tags.get(1));
+		assertTrue(tags.contains("novedades"));
+	}
+
+	@Test
+	public void testTags_RequiredTagMustMatch() {
+		FallbackTagger tagger = new FallbackTagger(FallbackTagger.parse(new StringReader(
+				"{\"rules\":[{\"tags\":[\"healthcare\"],\"terms\":[\"hospital*\"]},"
+						+ "{\"tags\":[\"public-healthcare\"],\"requires\":\"healthcare\",\"terms\":[\"publica*\"]}],"
+						+ "\"titleStopwords\":[\"despues\"]}")));
+
+		assertEquals(List.of("content"), tagger.tags("", "", "La escuela pública"));
+		assertEquals(List.of("healthcare", "public-healthcare"), tagger.tags("", "", "Hospitales de gestión pública"));
+		assertEquals(List.of("healthcare", "urgencias", "hospital"), tagger.tags("Urgencias después del hospital", "", ""));
+	}
+
+	@Test
+	public void testTags_WholeWordsOnly() {
+		assertEquals(List.of("content"), bundled.tags("", "", "Hay que mirar lo que obliga el reyezuelo"));
+	}
+
+	private static String page(int paragraphs) {
+		StringBuilder content = new StringBuilder("Title: La sanidad pública ante el verano | Cadena SER\n"
+				+ "Description: Los hospitales refuerzan plantillas.\nContent: ");
+		for (int i = 0; i < paragraphs; i++) {
+			content.append("Los centros de salud de la comunidad afrontan la campaña estival con menos médicos ")
+					.append("de familia y más pacientes desplazados, según fuentes del sector consultadas. ");
+		}
+		return content.toString();
+	}
+
+	@Test
+	public void testTags_TopicsOfTypicalPage() {
+		String content = page(20);
+		String title = "La sanidad pública ante el verano | Cadena SER";
+		String summary = "Los hospitales refuerzan plantillas.";
+
+		List<String> tags = bundled.tags(title, summary, content);
+
+		for (String topic : List.of("healthcare", "public-healthcare", "article")) {
+			assertTrue(topic + " missing from " + tags, tags.contains(topic));
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for JsonRepair (defects models typically make in JSON answers).
+ */
+public class JsonRepairTest {
+
+	@Test
+	public void testRepair_ValidObjectUnchanged() {
+		String json = "{\"title\":\"A \\\"quoted\\\" title\",\"tags\":[\"a\",\"b\"],\"n\":12,\"ok\":true,\"x\":null}";
+
+		assertEquals(json, JsonRepair.repair("Here you go:\n```json\n" + json + "\n```"));
+		assertNull(JsonRepair.repair("no json here"));
+	}
+
+	@Test
+	public void testRepair_ControlCharactersAndInvalidEscapes() {
+		assertEquals("{\"detailedContent\":\"# Title\\n\\n\\tIndented \\\\d+\"}",
+				JsonRepair.repair("{\"detailedContent\":\"# Title\n\n\tIndented \\d+\"}"));
+	}
+
+	@Test
+	public void testRepair_TrailingCommasAndMismatchedClosers() {
+		assertEquals("{\"tags\":[\"a\",\"b\"],\"title\":\"T\"}",
+				JsonRepair.repair("{\"tags\":[\"a\",\"b\", ],\"title\":\"T\",\n}"));
+		assertEquals("{\"tags\":[\"a\"]}", JsonRepair.repair("{\"tags\":[\"a\"}"));
+	}
+
+	@Test
+	public void testRepair_UnescapedQuotesInsideString() {
+		assertEquals("{\"summary\":\"The \\\"Rust\\\" book\",\"type\":\"note\"}",
+				JsonRepair.repair("{\"summary\":\"The \"Rust\" book\",\"type\":\"note\"}"));
+	}
+
+	@Test
+	public void testRepair_TruncatedAnswerKeepsCompleteFields() throws IOException {
+		String full = "{\"type\":\"article\",\"title\":\"Virtual threads\",\"tags\":[\"java\",\"loom\",\"concurrency\"],"
+				+ "\"summary\":\"How virtual threads work\",\"destination\":\"note\","
+				+ "\"detailedContent\":\"# Virtual threads\\n\\n## Summary\\n\\nVirtual threads are cheap.\"}";
+
+		for (int cut = 1; cut < full.length(); cut++) {
+			String repaired = JsonRepair.repair(full.substring(0, cut));
+			LlmResponseDecoder.Classification json = LlmResponseDecoder.readClassification(repaired);
+			if (json.tags != null) {
+				// Arrays are cut between elements, never inside one
+				assertEquals(List.of("java", "loom", "concurrency").subList(0, json.tags.size()), json.tags);
+			}
+		}
+
+		LlmResponseDecoder.Classification json = LlmResponseDecoder.readClassification(
+				JsonRepair.repair(full.substring(0, full.indexOf("cheap"))));
+		assertEquals("article", json.type);
+		assertEquals("Virtual threads", json.title);
+		assertEquals("How virtual threads work", json.summary);
+		assertEquals("note", json.destination);
+		assertNull(json.detailedContent);
+		assertEquals("{\"type\":\"article\",\"tags\":[\"java\"]}",
+				JsonRepair.repair("{\"type\":\"article\",\"tags\":[\"java\",\"lo"));
+		assertEquals("{\"type\":\"article\"}", JsonRepair.repair("{\"type\":\"article\",\"count\":12"));
+	}
+}
@@ -0,0 +1,105 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import synapse.model.services.LlamaAIService.ClassificationResult;
+
+/**
+ * Tests that in two-phase mode (the default) suggestions carry no
+ * detailedContent, neither from the model nor from the local template, so
+ * the on-demand details are its only source; and that a streamed suggestion
+ * replays the answer a single classification cached.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "project.llama.cache.enabled=true", "project.llama.cache.dir=",
+		"project.llama.stub.latencyMedianMs=0", "project.llama.stub.latencyP99Ms=0" })
+@ActiveProfiles({ "test", "llm-stub" })
+public class LazyDetailsTest {
+
+	@Autowired
+	private LlamaAIService llamaAIService;
+
+	@Autowired
+	private LlmStubServer stub;
+
+	private static final String CONTENT = "Title: Sourdough starter\n"
+			+ "Mix equal weights of flour and water and feed the starter every day for a week.";
+
+	@Test
+	public void testClassify_NoDetailedContent() {
+		ClassificationResult result = llamaAIService.classifyContent(CONTENT);
+
+		assertFalse(result.isFallback());
+		assertNull(result.getDetailedContent());
+	}
+
+	@Test
+	public void testClassifyStreaming_NoDetailedContentDeltas() {
+		List<String> deltas = new ArrayList<>();
+		List<String> fields = new ArrayList<>();
+
+		ClassificationResult result = llamaAIService.classifyContentStreaming(CONTENT,
+				new ClassificationStreamParser.Listener() {
+					@Override
+					public void onField(String name, String value) {
+						fields.add(name);
+					}
+
+					@Override
+					public void onTags(List<String> tags) {
+					}
+
+					@Override
+					public void onDetailedContentDelta(String delta) {
+						deltas.add(delta);
+					}
+				}).join();
+
+		assertFalse(result.isFallback());
+		assertNull(result.getDetailedContent());
+		assertEquals(List.of(), deltas);
+		assertFalse(fields.isEmpty());
+	}
+
+	@Test
+	public void testClassifyStreaming_ReplaysCachedSmallModelAnswer() {
+		String content = "Title: Pruning tomatoes\n"
+				+ "Remove the suckers that grow between the main stem and the branches once a week.";
+		ClassificationResult classified = llamaAIService.classifyContent(content);
+		long before = stub.getRequestCount();
+		List<String> fields = new ArrayList<>();
+
+		ClassificationResult streamed = llamaAIService.classifyContentStreaming(content,
+				new ClassificationStreamParser.Listener() {
+					@Override
+					public void onField(String name, String value) {
+						fields.add(name);
+					}
+
+					@Override
+					public void onTags(List<String> tags) {
+					}
+
+					@Override
+					public void onDetailedContentDelta(String delta) {
+					}
+				}).join();
+
+		assertEquals(0, stub.getRequestCount() - before);
+		assertEquals(classified.getTitle(), streamed.getTitle());
+		assertTrue(fields.contains("title"));
+	}
+}
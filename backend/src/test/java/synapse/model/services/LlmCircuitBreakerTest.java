@@ -0,0 +1,81 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Tests for LlmCircuitBreaker (sliding window, open and half-open states).
+ */
+public class LlmCircuitBreakerTest {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final long SLOW = TimeUnit.SECONDS.toNanos(40);
+
+	private final AtomicLong now = new AtomicLong();
+
+	private LlmCircuitBreaker newBreaker() {
+		return new LlmCircuitBreaker(10, 4, 0.5, 0.8, Duration.ofSeconds(30), Duration.ofSeconds(30), 2, now::get);
+	}
+
+	@Test
+	public void testOpensOnFailureRateAndShortCircuits() {
+		LlmCircuitBreaker breaker = newBreaker();
+
+		for (int i = 0; i < 4; i++) {
+			assertTrue(breaker.tryAcquire());
+			if (i % 2 == 0) {
+				breaker.onFailure(FAST);
+			} else {
+				breaker.onSuccess(FAST);
+			}
+		}
+
+		assertEquals(LlmCircuitBreaker.State.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire());
+		assertEquals(1, breaker.getShortCircuited());
+	}
+
+	@Test
+	public void testOpensOnSlowCalls() {
+		LlmCircuitBreaker breaker = newBreaker();
+
+		for (int i = 0; i < 4; i++) {
+			assertTrue(breaker.tryAcquire());
+			breaker.onSuccess(SLOW);
+		}
+
+		assertEquals(LlmCircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void testHalfOpenProbesCloseOrReopen() {
+		LlmCircuitBreaker breaker = newBreaker();
+		for (int i = 0; i < 4; i++) {
+			breaker.tryAcquire();
+			breaker.onFailure(FAST);
+		}
+
+		now.addAndGet(TimeUnit.SECONDS.toNanos(31));
+		assertTrue(breaker.tryAcquire());
+		assertTrue(breaker.tryAcquire());
+		assertFalse(breaker.tryAcquire());
+		breaker.onSuccess(FAST);
+		breaker.onFailure(FAST);
+		assertEquals(LlmCircuitBreaker.State.OPEN, breaker.getState());
+
+		now.addAndGet(TimeUnit.SECONDS.toNanos(31));
+		assertTrue(breaker.tryAcquire());
+		assertTrue(breaker.tryAcquire());
+		breaker.onSuccess(FAST);
+		breaker.onSuccess(FAST);
+		assertEquals(LlmCircuitBreaker.State.CLOSED, breaker.getState());
+		assertEquals(2, breaker.getOpened());
+	}
+}
@@ -0,0 +1,60 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for LlmJournal (append-only recording and reading back).
+ */
+public class LlmJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRecord_AppendsAcrossRestartsAndSkipsTornLines() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("journal/llm.jsonl");
+		LlmJournal journal = new LlmJournal(file.toString());
+		journal.record("model-a", "Prompt with \"quotes\"\nand lines", "{\"title\":\"A\"}", 420,
+				new LlmResponseDecoder.Usage(120, 30, 150));
+		journal.close();
+		Files.writeString(file, "{\"model\":\"model-a\",\"prom", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+		Files.writeString(file, "\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+		LlmJournal reopened = new LlmJournal(file.toString());
+		reopened.record("model-b", "Second prompt", "{}", 80, LlmResponseDecoder.Usage.NONE);
+		reopened.close();
+
+		List<LlmJournal.Entry> entries = LlmJournal.read(file);
+		assertEquals(2, entries.size());
+		LlmJournal.Entry first = entries.get(0);
+		assertEquals("model-a", first.model());
+		assertEquals("Prompt with \"quotes\"\nand lines", first.prompt());
+		assertEquals("{\"title\":\"A\"}", first.response());
+		assertEquals(420, first.latencyMs());
+		assertEquals(120, first.promptTokens());
+		assertEquals(30, first.completionTokens());
+		assertEquals("Second prompt", entries.get(1).prompt());
+		assertEquals(1, reopened.getRecords());
+	}
+
+	@Test
+	public void testRecord_OffWithoutFile() {
+		LlmJournal journal = new LlmJournal("");
+		journal.record("model", "prompt", "{}", 10, LlmResponseDecoder.Usage.NONE);
+
+		assertFalse(journal.isRecording());
+		assertEquals(0, journal.getRecords());
+	}
+}
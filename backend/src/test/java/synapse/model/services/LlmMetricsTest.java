@@ -0,0 +1,69 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Tests for LlmMetrics (LLM usage and latency meters).
+ */
+public class LlmMetricsTest {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private final LlmMetrics metrics = new LlmMetrics(registry);
+
+	@Test
+	public void testTime_RecordsPromptSizeAndLatencyByOutcome() {
+		CompletableFuture<String> ok = new CompletableFuture<>();
+		CompletableFuture<String> failed = new CompletableFuture<>();
+		CompletableFuture<String> cancelled = new CompletableFuture<>();
+		metrics.time(LlmMetrics.CLASSIFY, "llama", "12345", ok);
+		metrics.time(LlmMetrics.CLASSIFY, "llama", "123", failed);
+		metrics.time(LlmMetrics.CLASSIFY, "llama", "1", cancelled);
+
+		ok.complete("{}");
+		failed.completeExceptionally(new IOException("down"));
+		cancelled.cancel(true);
+
+		assertEquals(3, registry.get("llm.prompt.chars").tags("operation", "classify", "model", "llama")
+				.summary().count());
+		assertEquals(9, registry.get("llm.prompt.chars").summary().totalAmount(), 0);
+		assertEquals(1, registry.get("llm.operation.latency").tags("outcome", "success").timer().count());
+		assertEquals(1, registry.get("llm.operation.latency").tags("outcome", "error").timer().count());
+	}
+
+	@Test
+	public void testTokens_ByType() {
+		metrics.tokens("llama", new LlmResponseDecoder.Usage(1200, 300, 1500));
+		metrics.tokens("llama", new LlmResponseDecoder.Usage(100, 50, 150));
+		metrics.tokens("llama", LlmResponseDecoder.Usage.NONE);
+
+		assertEquals(1300, registry.get("llm.tokens").tags("model", "llama", "type", "prompt").counter().count(), 0);
+		assertEquals(350, registry.get("llm.tokens").tags("model", "llama", "type", "completion").counter().count(),
+				0);
+	}
+
+	@Test
+	public void testHttpResponsesAndParseFailures() {
+		metrics.httpResponse("primary", "llama", 200);
+		metrics.httpResponse("primary", "llama", 200);
+		metrics.httpResponse("primary", "llama", 429);
+		metrics.httpResponse("backup", "mixtral", -1);
+		metrics.parseFailure(LlmMetrics.TRENDS, "llama");
+
+		assertEquals(2, registry.get("llm.http.responses").tags("provider", "primary", "status", "200").counter()
+				.count(), 0);
+		assertEquals(1, registry.get("llm.http.responses").tags("status", "429").counter().count(), 0);
+		assertEquals(1, registry.get("llm.http.responses").tags("model", "mixtral", "status", "io_error").counter()
+				.count(), 0);
+		assertEquals(1, registry.get("llm.parse.failures").tags("operation", "trends").counter().count(), 0);
+		assertNull(registry.find("llm.parse.failures").tags("operation", "classify").counter());
+	}
+}
@@ -0,0 +1,110 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+
+import synapse.model.services.exceptions.LlmRateLimitException;
+
+import okhttp3.Headers;
+
+/**
+ * Tests for LlmRateLimiter (client-side request and token budget).
+ */
+public class LlmRateLimiterTest {
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	private final AtomicLong now = new AtomicLong();
+
+	@After
+	public void tearDown() {
+		scheduler.shutdownNow();
+	}
+
+	@Test
+	public void testAcquire_WaitsForRefillInsteadOfFailing() throws Exception {
+		LlmRateLimiter limiter = new LlmRateLimiter(60, 100_000, Duration.ofSeconds(5), scheduler, now::get);
+
+		for (int i = 0; i < 60; i++) {
+			assertTrue(limiter.acquire(10).isDone());
+		}
+		CompletableFuture<Void> waiting = limiter.acquire(10);
+		assertFalse(waiting.isDone());
+		assertEquals(1, limiter.waitingCount());
+
+		// One request per second refills at 60 requests per minute
+		now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		waiting.get(5, TimeUnit.SECONDS);
+		assertEquals(0, limiter.waitingCount());
+	}
+
+	@Test
+	public void testAcquire_HigherPriorityWaitersGoFirst() throws Exception {
+		LlmRateLimiter limiter = new LlmRateLimiter(60, 100_000, Duration.ofSeconds(5), scheduler, now::get);
+		for (int i = 0; i < 60; i++) {
+			limiter.acquire(10);
+		}
+
+		CompletableFuture<Void> background = limiter.acquire(10, LlmPriority.BACKGROUND);
+		CompletableFuture<Void> interactive = limiter.acquire(10, LlmPriority.INTERACTIVE);
+		assertEquals(2, limiter.waitingCount());
+
+		now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		interactive.get(5, TimeUnit.SECONDS);
+		assertFalse(background.isDone());
+
+		now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		background.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testAcquire_FailsWhenWaitWouldExceedLimit() throws Exception {
+		LlmRateLimiter limiter = new LlmRateLimiter(60, 1000, Duration.ofSeconds(1), scheduler, now::get);
+
+		assertTrue(limiter.acquire(1000).isDone());
+		CompletableFuture<Void> rejected = limiter.acquire(1000);
+
+		try {
+			rejected.get(5, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof LlmRateLimitException);
+			assertEquals(1, limiter.getRejected());
+			return;
+		}
+		throw new AssertionError("Expected rejection");
+	}
+
+	@Test
+	public void testOnResponse_FollowsProviderHeaders() {
+		LlmRateLimiter limiter = new LlmRateLimiter(30, 100_000, Duration.ofSeconds(5), scheduler, now::get);
+
+		limiter.onResponse(200, Headers.of(
+				"x-ratelimit-limit-tokens", "6000",
+				"x-ratelimit-remaining-tokens", "2500"));
+		assertEquals(2500, limiter.availableTokens(), 0.001);
+
+		limiter.onResponse(429, Headers.of("Retry-After", "3"));
+		assertEquals(3000, limiter.pausedForMillis());
+		assertEquals(1, limiter.getThrottled());
+		assertFalse(limiter.acquire(1).isDone());
+	}
+
+	@Test
+	public void testParseDurationMillis() {
+		assertEquals(7660, LlmRateLimiter.parseDurationMillis("7.66s"));
+		assertEquals(179_560, LlmRateLimiter.parseDurationMillis("2m59.56s"));
+		assertEquals(120, LlmRateLimiter.parseDurationMillis("120ms"));
+		assertEquals(-1, LlmRateLimiter.parseDurationMillis("soon"));
+	}
+}
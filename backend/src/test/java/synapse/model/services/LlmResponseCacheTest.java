@@ -0,0 +1,127 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.Test;
+
+/**
+ * Tests for LlmResponseCache (TTL, weight-based eviction and disk mirror).
+ */
+public class LlmResponseCacheTest {
+
+	private static class MutableClock extends Clock {
+		private long millis = 1_000_000L;
+
+		@Override
+		public ZoneOffset getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(java.time.ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return Instant.ofEpochMilli(millis);
+		}
+	}
+
+	@Test
+	public void testKey_DependsOnModelAndPrompt() {
+		assertEquals(LlmResponseCache.key("m", "prompt"), LlmResponseCache.key("m", "prompt"));
+		assertNotEquals(LlmResponseCache.key("m", "prompt"), LlmResponseCache.key("other", "prompt"));
+		assertNotEquals(LlmResponseCache.key("m", "prompt"), LlmResponseCache.key("m", "prompt2"));
+	}
+
+	@Test
+	public void testGet_HitAndMissCounters() {
+		LlmResponseCache cache = new LlmResponseCache(true, 60_000L, 1000L, null, Clock.systemUTC());
+
+		assertNull(cache.get("a"));
+		cache.put("a", "{\"title\":\"x\"}");
+
+		assertEquals("{\"title\":\"x\"}", cache.get("a"));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testGet_ExpiredEntryIsMiss() {
+		MutableClock clock = new MutableClock();
+		LlmResponseCache cache = new LlmResponseCache(true, 1000L, 1000L, null, clock);
+
+		cache.put("a", "value");
+		clock.millis += 1001L;
+
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testRemove_DropsEntryAndWeight() {
+		LlmResponseCache cache = new LlmResponseCache(true, 60_000L, 1000L, null, Clock.systemUTC());
+
+		cache.put("a", "value");
+		cache.remove("a");
+		cache.remove("missing");
+
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.weight());
+	}
+
+	@Test
+	public void testPut_EvictsLeastRecentlyUsedByWeight() {
+		LlmResponseCache cache = new LlmResponseCache(true, 60_000L, 10L, null, Clock.systemUTC());
+
+		cache.put("a", "aaaa");
+		cache.put("b", "bbbb");
+		cache.get("a");
+		cache.put("c", "cccc");
+
+		assertNull(cache.get("b"));
+		assertEquals("aaaa", cache.get("a"));
+		assertEquals("cccc", cache.get("c"));
+		assertEquals(8L, cache.weight());
+		assertEquals(1, cache.getEvictions());
+	}
+
+	@Test
+	public void testDisabled_NeverStores() {
+		LlmResponseCache cache = new LlmResponseCache(false, 60_000L, 1000L, null, Clock.systemUTC());
+
+		cache.put("a", "value");
+
+		assertNull(cache.get("a"));
+	}
+
+	@Test
+	public void testDiskMirror_SurvivesRestart() throws Exception {
+		Path dir = Files.createTempDirectory("llm-cache");
+		MutableClock clock = new MutableClock();
+
+		LlmResponseCache first = new LlmResponseCache(true, 1000L, 1000L, dir.toString(), clock);
+		first.put("a", "persisted\nvalue");
+		first.put("b", "expiring");
+
+		LlmResponseCache second = new LlmResponseCache(true, 1000L, 1000L, dir.toString(), clock);
+		assertEquals("persisted\nvalue", second.get("a"));
+
+		clock.millis += 1001L;
+		LlmResponseCache third = new LlmResponseCache(true, 1000L, 1000L, dir.toString(), clock);
+		assertEquals(0, third.size());
+		try (var files = Files.list(dir)) {
+			assertEquals(0, files.count());
+		}
+	}
+}
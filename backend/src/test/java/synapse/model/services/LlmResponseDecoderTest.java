@@ -0,0 +1,172 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import okio.Buffer;
+
+import synapse.rest.dtos.FactCheckResponseDto;
+import synapse.rest.dtos.TrendsInsightsResponseDto;
+
+/**
+ * Tests for LlmResponseDecoder.
+ */
+public class LlmResponseDecoderTest {
+
+	private static String envelope(String content) {
+		JsonObject message = new JsonObject();
+		message.addProperty("role", "assistant");
+		message.addProperty("content", content);
+		JsonObject choice = new JsonObject();
+		choice.addProperty("index", 0);
+		choice.add("message", message);
+		choice.addProperty("finish_reason", "stop");
+		JsonObject other = new JsonObject();
+		other.addProperty("index", 1);
+		other.add("message", new JsonObject());
+		JsonArray choices = new JsonArray();
+		choices.add(choice);
+		choices.add(other);
+		JsonObject usage = new JsonObject();
+		usage.addProperty("prompt_tokens", 1200);
+		usage.addProperty("completion_tokens", 800);
+		usage.addProperty("total_tokens", 2000);
+		JsonObject body = new JsonObject();
+		body.addProperty("id", "chatcmpl-1");
+		body.addProperty("object", "chat.completion");
+		body.add("choices", choices);
+		body.add("usage", usage);
+		body.add("x_groq", new JsonObject());
+		return body.toString();
+	}
+
+	private static String classificationAnswer() {
+		StringBuilder detailed = new StringBuilder("# Virtual threads\\n\\n## Summary\\n\\n");
+		for (int i = 0; i < 40; i++) {
+			detailed.append("- Virtual threads are cheap to block and are scheduled on carrier threads. ");
+		}
+		return "Here is the classification:\n```json\n{\n  \"type\": \"article\",\n  \"title\": \"Virtual threads\",\n"
+				+ "  \"tags\": [\"java\", \"concurrency\", 21, {\"nested\": true}],\n"
+				+ "  \"summary\": \"How virtual threads work.\",\n  \"destination\": \"note\",\n"
+				+ "  \"detailedContent\": \"" + detailed + "\",\n  \"confidence\": {\"score\": 0.9}\n}\n```\nHope it helps!";
+	}
+
+	@Test
+	public void testReadCompletion_KeepsFirstChoiceAndUsage() throws IOException {
+		LlmResponseDecoder.Completion completion = LlmResponseDecoder
+				.readCompletion(new StringReader(envelope("{\"title\":\"A\"}")));
+
+		assertEquals("{\"title\":\"A\"}", completion.content());
+		assertEquals(2000, completion.totalTokens());
+		assertEquals(1200, completion.usage().promptTokens());
+		assertEquals(800, completion.usage().completionTokens());
+	}
+
+	@Test
+	public void testReadCompletion_MissingOrNullContent() throws IOException {
+		assertEquals("", LlmResponseDecoder.readCompletion(new StringReader("{\"choices\":[]}")).content());
+		assertEquals("", LlmResponseDecoder
+				.readCompletion(new StringReader("{\"choices\":[{\"message\":{\"content\":null}}]}")).content());
+	}
+
+	@Test
+	public void testReadCompletion_FromSourceDecodesUtf8() throws IOException {
+		String content = "{\"title\":\"Café ☕ 𝄞 ñ\"}";
+		Buffer body = new Buffer().writeUtf8(envelope(content));
+
+		assertEquals(content, LlmResponseDecoder.readCompletion(body).content());
+	}
+
+	@Test
+	public void testUtf8SourceReader_SplitsSurrogatePairsAcrossReads() throws IOException {
+		LlmResponseDecoder.Utf8SourceReader reader = new LlmResponseDecoder.Utf8SourceReader(
+				new Buffer().writeUtf8("a𝄞"));
+		char[] one = new char[1];
+		StringBuilder text = new StringBuilder();
+		while (reader.read(one, 0, 1) != -1) {
+			text.append(one[0]);
+		}
+
+		assertEquals("a𝄞", text.toString());
+	}
+
+	@Test
+	public void testReadStreamChunk_DeltaAndGroqUsage() throws IOException {
+		LlmResponseDecoder.Completion delta = LlmResponseDecoder
+				.readStreamChunk("{\"choices\":[{\"index\":0,\"delta\":{\"content\":\"{\\\"ti\"}}]}");
+		LlmResponseDecoder.Completion last = LlmResponseDecoder.readStreamChunk(
+				"{\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}],\"x_groq\":{\"usage\":{\"prompt_tokens\":30,\"completion_tokens\":12,\"total_tokens\":42}}}");
+
+		assertEquals("{\"ti", delta.content());
+		assertEquals(0, delta.totalTokens());
+		assertEquals("", last.content());
+		assertEquals(42, last.totalTokens());
+		assertEquals(30, last.usage().promptTokens());
+		assertEquals(12, last.usage().completionTokens());
+	}
+
+	@Test
+	public void testReadClassification_FencedAnswerWithProse() throws IOException {
+		LlmResponseDecoder.Classification result = LlmResponseDecoder.readClassification(classificationAnswer());
+
+		assertEquals("article", result.type);
+		assertEquals("Virtual threads", result.title);
+		assertEquals(List.of("java", "concurrency", "21"), result.tags);
+		assertEquals("How virtual threads work.", result.summary);
+		assertTrue(result.detailedContent.startsWith("# Virtual threads\n"));
+	}
+
+	@Test
+	public void testReadClassification_NoJsonAndTruncatedJson() {
+		try {
+			assertNull(LlmResponseDecoder.readClassification("I cannot classify this."));
+			LlmResponseDecoder.readClassification("{\"title\": \"Cut off");
+			throw new AssertionError("Truncated JSON must not decode");
+		} catch (IOException expected) {
+			// expected
+		}
+		assertFalse(LlmResponseDecoder.isJsonObject("{\"title\": \"Cut off"));
+		assertFalse(LlmResponseDecoder.isJsonObject("no json"));
+		assertTrue(LlmResponseDecoder.isJsonObject(classificationAnswer()));
+	}
+
+	@Test
+	public void testReadFailedGeneration_GroqJsonModeError() {
+		String body = "{\"error\":{\"message\":\"Failed to generate JSON. Please adjust your prompt.\","
+				+ "\"type\":\"invalid_request_error\",\"code\":\"json_validate_failed\","
+				+ "\"failed_generation\":\"{\\\"title\\\": \\\"Cut\"}}";
+
+		assertEquals("{\"title\": \"Cut", LlmResponseDecoder.readFailedGeneration(body));
+		assertNull(LlmResponseDecoder.readFailedGeneration("{\"error\":{\"message\":\"Invalid model\"}}"));
+		assertNull(LlmResponseDecoder.readFailedGeneration("Bad Gateway"));
+	}
+
+	@Test
+	public void testReadClaimsAndTrends() throws IOException {
+		List<FactCheckResponseDto.ClaimVerification> claims = LlmResponseDecoder.readClaims(
+				"```\n{\"claims\":[{\"originalText\":\"The Earth is flat\",\"status\":\"false\","
+						+ "\"explanation\":\"It is an oblate spheroid.\",\"correction\":\"The Earth is round\"},"
+						+ "\"not a claim\",{\"originalText\":\"Water boils at 100C\"}]}\n```");
+		TrendsInsightsResponseDto trends = LlmResponseDecoder.readTrends(
+				"{\"topicLabels\":{\"tech\":\"Java concurrency\"},\"insights\":[\"More Java\"],\"recommendations\":[]}");
+
+		assertEquals(2, claims.size());
+		assertEquals("false", claims.get(0).getStatus());
+		assertEquals("The Earth is round", claims.get(0).getCorrection());
+		assertEquals("suspicious", claims.get(1).getStatus());
+		assertEquals("", claims.get(1).getExplanation());
+		assertEquals("Java concurrency", trends.getTopicLabels().get("tech"));
+		assertEquals(List.of("More Java"), trends.getInsights());
+	}
+}
@@ -0,0 +1,116 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for LlmRouter (provider ranking, hedged requests and failover).
+ */
+public class LlmRouterTest {
+
+	private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+	@After
+	public void tearDown() {
+		scheduler.shutdownNow();
+	}
+
+	private LlmProvider provider(String name) {
+		return new LlmProvider(name, "https://" + name + ".example.com/v1/chat/completions", "key-" + name, "model",
+				new LlmRateLimiter(60, 100_000, Duration.ofSeconds(5), scheduler),
+				new LlmCircuitBreaker(10, 4, 0.5, 0.8, Duration.ofSeconds(30), Duration.ofSeconds(30), 2));
+	}
+
+	private LlmRouter router(boolean hedging, LlmProvider... providers) {
+		return new LlmRouter(List.of(providers), scheduler, hedging, Duration.ofMillis(50), Duration.ofMillis(50));
+	}
+
+	@Test
+	public void testRank_PrefersFastHealthyProviders() {
+		LlmProvider slow = provider("slow");
+		LlmProvider fast = provider("fast");
+		LlmProvider broken = provider("broken");
+		LlmProvider unknown = provider("unknown");
+		LlmProvider unconfigured = new LlmProvider("unconfigured", "", "", "model", null, null);
+		for (int i = 0; i < 5; i++) {
+			slow.recordSuccess(2000 * MILLIS);
+			fast.recordSuccess(500 * MILLIS);
+			broken.recordSuccess(100 * MILLIS);
+			broken.getCircuitBreaker().tryAcquire();
+			broken.getCircuitBreaker().onFailure(100 * MILLIS);
+		}
+
+		LlmRouter router = router(false, unknown, broken, slow, unconfigured, fast);
+
+		assertEquals(List.of(fast, slow, unknown, broken), router.rank());
+	}
+
+	@Test
+	public void testRank_ErrorsOutweighSpeed() {
+		LlmProvider flaky = provider("flaky");
+		LlmProvider steady = provider("steady");
+		flaky.recordSuccess(300 * MILLIS);
+		flaky.recordFailure(300 * MILLIS);
+		flaky.recordFailure(300 * MILLIS);
+		steady.recordSuccess(800 * MILLIS);
+
+		assertEquals(steady, router(false, flaky, steady).rank().get(0));
+	}
+
+	@Test
+	public void testExecute_HedgesSlowCallAndCancelsLoser() throws Exception {
+		LlmProvider first = provider("first");
+		LlmProvider second = provider("second");
+		LlmRouter router = router(true, first, second);
+		CompletableFuture<String> stuck = new CompletableFuture<>();
+
+		CompletableFuture<String> result = router.execute(100,
+				provider -> provider == first ? stuck : CompletableFuture.completedFuture("second answer"));
+
+		assertEquals("second answer", result.get(5, TimeUnit.SECONDS));
+		assertTrue(stuck.isCancelled());
+		assertEquals(1, router.getHedged());
+		assertEquals(1, router.getHedgesWon());
+	}
+
+	@Test
+	public void testExecute_FastAnswerIsNotHedged() throws Exception {
+		LlmProvider first = provider("first");
+		LlmProvider second = provider("second");
+		LlmRouter router = router(true, first, second);
+
+		CompletableFuture<String> result = router.execute(100,
+				provider -> CompletableFuture.completedFuture(provider.getName()));
+
+		assertEquals("first", result.get(5, TimeUnit.SECONDS));
+		Thread.sleep(150);
+		assertEquals(0, router.getHedged());
+	}
+
+	@Test
+	public void testExecute_FailsOverToNextProvider() throws Exception {
+		LlmProvider first = provider("first");
+		LlmProvider second = provider("second");
+		LlmRouter router = router(false, first, second);
+
+		CompletableFuture<String> result = router.execute(100, provider -> provider == first
+				? CompletableFuture.failedFuture(new IOException("boom"))
+				: CompletableFuture.completedFuture("second answer"));
+
+		assertEquals("second answer", result.get(5, TimeUnit.SECONDS));
+		assertEquals(1, router.getFailovers());
+	}
+}
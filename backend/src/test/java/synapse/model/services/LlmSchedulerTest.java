@@ -0,0 +1,148 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Tests for LlmScheduler (priority classes, shares and starvation guard).
+ */
+public class LlmSchedulerTest {
+
+	private final AtomicLong now = new AtomicLong();
+	private final List<String> startOrder = new ArrayList<>();
+	private final List<CompletableFuture<String>> calls = new ArrayList<>();
+
+	private CompletableFuture<String> submit(LlmScheduler scheduler, LlmPriority priority, String name) {
+		return scheduler.submit(priority, () -> {
+			startOrder.add(name);
+			CompletableFuture<String> call = new CompletableFuture<>();
+			calls.add(call);
+			return call;
+		});
+	}
+
+	/** Completes the oldest running call. */
+	private void finishOne() {
+		CompletableFuture<String> call = calls.stream().filter(c -> !c.isDone()).findFirst().orElseThrow();
+		call.complete("done");
+	}
+
+	@Test
+	public void testSubmit_LowerClassesKeepToTheirShare() {
+		LlmScheduler scheduler = new LlmScheduler(4, 0.5, 0.25, 100, 60_000, now::get);
+
+		for (int i = 0; i < 3; i++) {
+			submit(scheduler, LlmPriority.BACKGROUND, "background" + i);
+		}
+		assertEquals(1, scheduler.running(LlmPriority.BACKGROUND));
+		assertEquals(2, scheduler.queued(LlmPriority.BACKGROUND));
+
+		CompletableFuture<String> interactive = submit(scheduler, LlmPriority.INTERACTIVE, "interactive");
+		assertEquals(List.of("background0", "interactive"), startOrder);
+		finishOne();
+		finishOne();
+		assertTrue(interactive.isDone());
+		assertEquals(List.of("background0", "interactive", "background1"), startOrder);
+	}
+
+	@Test
+	public void testSubmit_FreedSlotGoesToTheHighestClass() {
+		LlmScheduler scheduler = new LlmScheduler(1, 1, 1, 100, 60_000, now::get);
+
+		submit(scheduler, LlmPriority.BACKGROUND, "running");
+		submit(scheduler, LlmPriority.BACKGROUND, "background");
+		submit(scheduler, LlmPriority.BATCH, "batch");
+		submit(scheduler, LlmPriority.INTERACTIVE, "interactive");
+
+		finishOne();
+		finishOne();
+		finishOne();
+		assertEquals(List.of("running", "interactive", "batch", "background"), startOrder);
+		assertEquals(0, scheduler.getPromoted());
+	}
+
+	@Test
+	public void testSubmit_LongWaitingCallsArePromoted() {
+		LlmScheduler scheduler = new LlmScheduler(1, 1, 1, 100, 1_000, now::get);
+
+		submit(scheduler, LlmPriority.INTERACTIVE, "running");
+		submit(scheduler, LlmPriority.BACKGROUND, "background");
+		now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		submit(scheduler, LlmPriority.INTERACTIVE, "interactive");
+
+		finishOne();
+		assertEquals(List.of("running", "background"), startOrder);
+		assertEquals(1, scheduler.getPromoted());
+		assertEquals(TimeUnit.SECONDS.toNanos(2), scheduler.waitNanos(LlmPriority.BACKGROUND));
+	}
+
+	@Test
+	public void testPromote_MovesAWaitingCallUpKeepingItsAge() {
+		LlmScheduler scheduler = new LlmScheduler(1, 1, 1, 100, 60_000, now::get);
+
+		submit(scheduler, LlmPriority.INTERACTIVE, "running");
+		scheduler.submit(LlmPriority.BACKGROUND, "key", () -> {
+			startOrder.add("speculative");
+			CompletableFuture<String> call = new CompletableFuture<>();
+			calls.add(call);
+			return call;
+		});
+		now.addAndGet(1);
+		submit(scheduler, LlmPriority.INTERACTIVE, "interactive");
+
+		assertFalse(scheduler.promote("other", LlmPriority.INTERACTIVE));
+		assertTrue(scheduler.promote("key", LlmPriority.INTERACTIVE));
+		assertFalse(scheduler.promote("key", LlmPriority.BATCH));
+		assertEquals(2, scheduler.queued(LlmPriority.INTERACTIVE));
+
+		finishOne();
+		finishOne();
+		assertEquals(List.of("running", "speculative", "interactive"), startOrder);
+		assertFalse(scheduler.promote("key", LlmPriority.INTERACTIVE));
+	}
+
+	@Test
+	public void testSubmit_CancelledCallsLeaveTheQueue() {
+		LlmScheduler scheduler = new LlmScheduler(1, 1, 1, 100, 60_000, now::get);
+
+		submit(scheduler, LlmPriority.INTERACTIVE, "running");
+		CompletableFuture<String> cancelled = submit(scheduler, LlmPriority.INTERACTIVE, "cancelled");
+		submit(scheduler, LlmPriority.INTERACTIVE, "next");
+		cancelled.cancel(true);
+		assertEquals(1, scheduler.queued(LlmPriority.INTERACTIVE));
+
+		finishOne();
+		assertEquals(List.of("running", "next"), startOrder);
+	}
+
+	@Test
+	public void testSubmit_RejectsWhenTheClassQueueIsFull() throws Exception {
+		LlmScheduler scheduler = new LlmScheduler(1, 1, 1, 1, 60_000, now::get);
+
+		submit(scheduler, LlmPriority.BATCH, "running");
+		submit(scheduler, LlmPriority.BATCH, "queued");
+		CompletableFuture<String> rejected = submit(scheduler, LlmPriority.BATCH, "rejected");
+
+		assertFalse(submit(scheduler, LlmPriority.INTERACTIVE, "interactive").isDone());
+		try {
+			rejected.get();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+			assertEquals(1, scheduler.rejected(LlmPriority.BATCH));
+			assertFalse(startOrder.contains("rejected"));
+			return;
+		}
+		throw new AssertionError("Expected rejection");
+	}
+}
@@ -0,0 +1,220 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+/**
+ * Tests for LlmStubServer (chat completions protocol, streaming and fault
+ * injection).
+ */
+public class LlmStubServerTest {
+
+	private static final MediaType JSON = MediaType.get("application/json");
+
+	private final OkHttpClient client = new OkHttpClient();
+	private LlmStubServer stub;
+
+	@After
+	public void tearDown() {
+		if (stub != null) {
+			stub.stop();
+		}
+	}
+
+	private LlmStubServer start(double errorRate, double rateLimitRate) throws IOException {
+		stub = new LlmStubServer(0, Duration.ZERO, Duration.ZERO, errorRate, rateLimitRate, 1);
+		stub.start();
+		return stub;
+	}
+
+	private Response call(String prompt, boolean stream, Integer maxTokens) throws IOException {
+		JsonObject message = new JsonObject();
+		message.addProperty("role", "user");
+		message.addProperty("content", prompt);
+		JsonArray messages = new JsonArray();
+		messages.add(message);
+		JsonObject body = new JsonObject();
+		body.addProperty("model", "stub-model");
+		body.add("messages", messages);
+		body.addProperty("stream", stream);
+		if (maxTokens != null) {
+			body.addProperty("max_tokens", maxTokens);
+		}
+		return client.newCall(new Request.Builder().url(stub.getUrl())
+				.post(RequestBody.create(body.toString(), JSON)).build()).execute();
+	}
+
+	private static String classificationPrompt(String content) {
+		return "Analyze the following content and generate a JSON classification.\n\nCONTENT:\n" + content
+				+ "\n\nMANDATORY RULES:\n1. ...";
+	}
+
+	@Test
+	public void testCompletion_ClassificationPrompt() throws IOException {
+		start(0, 0);
+		String content = "Title: Virtual threads in Java\n\nVirtual threads make blocking code cheap. "
+				+ "Virtual threads are scheduled by the JVM on carrier threads.";
+
+		try (Response response = call(classificationPrompt(content), false, null)) {
+			assertEquals(200, response.code());
+			JsonObject body = JsonParser.parseString(response.body().string()).getAsJsonObject();
+			JsonObject choice = body.getAsJsonArray("choices").get(0).getAsJsonObject();
+			assertEquals("stop", choice.get("finish_reason").getAsString());
+			JsonObject answer = JsonParser.parseString(choice.getAsJsonObject("message").get("content").getAsString())
+					.getAsJsonObject();
+			assertEquals("Virtual threads in Java", answer.get("title").getAsString());
+			assertEquals("threads", answer.getAsJsonArray("tags").get(0).getAsString());
+			assertTrue(answer.get("detailedContent").getAsString().startsWith("# Virtual threads in Java"));
+			assertTrue(body.getAsJsonObject("usage").get("total_tokens").getAsInt() > 0);
+		}
+	}
+
+	@Test
+	public void testCompletion_StreamMatchesPlainAnswer() throws IOException {
+		start(0, 0);
+		String prompt = classificationPrompt("Title: Streaming\n\nServer-sent events deliver the answer in chunks.");
+		String plain;
+		try (Response response = call(prompt, false, null)) {
+			plain = JsonParser.parseString(response.body().string()).getAsJsonObject().getAsJsonArray("choices")
+					.get(0).getAsJsonObject().getAsJsonObject("message").get("content").getAsString();
+		}
+
+		StringBuilder streamed = new StringBuilder();
+		JsonObject usage = null;
+		String last = null;
+		try (Response response = call(prompt, true, null)) {
+			assertEquals("text/event-stream", response.header("Content-Type"));
+			for (String line : response.body().string().split("\n")) {
+				if (!line.startsWith("data: ")) {
+					continue;
+				}
+				last = line.substring(6);
+				if (last.equals("[DONE]")) {
+					continue;
+				}
+				JsonObject chunk = JsonParser.parseString(last).getAsJsonObject();
+				JsonObject delta = chunk.getAsJsonArray("choices").get(0).getAsJsonObject().getAsJsonObject("delta");
+				if (delta.has("content")) {
+					streamed.append(delta.get("content").getAsString());
+				}
+				if (chunk.has("x_groq")) {
+					usage = chunk.getAsJsonObject("x_groq").getAsJsonObject("usage");
+				}
+			}
+		}
+
+		assertEquals(plain, streamed.toString());
+		assertEquals("[DONE]", last);
+		assertNotNull(usage);
+	}
+
+	@Test
+	public void testCompletion_BatchPromptAnswersEveryItem() throws IOException {
+		start(0, 0);
+		String prompt = "Classify each item and return one JSON classification for every one.\n\n"
+				+ "### ITEM 1\nTitle: First\n\nAbout databases.\n\n"
+				+ "### ITEM 2\nTitle: Second\n\nAbout compilers.\n\n"
+				+ "MANDATORY RULES FOR EACH ITEM:\n1. ...";
+
+		try (Response response = call(prompt, false, null)) {
+			String content = JsonParser.parseString(response.body().string()).getAsJsonObject()
+					.getAsJsonArray("choices").get(0).getAsJsonObject().getAsJsonObject("message").get("content")
+					.getAsString();
+			JsonArray results = JsonParser.parseString(content).getAsJsonObject().getAsJsonArray("results");
+			assertEquals(2, results.size());
+			assertEquals(2, results.get(1).getAsJsonObject().get("id").getAsInt());
+			assertEquals("Second", results.get(1).getAsJsonObject().get("title").getAsString());
+		}
+	}
+
+	@Test
+	public void testCompletion_MaxTokensCutsAnswer() throws IOException {
+		start(0, 0);
+		try (Response response = call(classificationPrompt("Title: Long\n\n" + "Some long sentence here. ".repeat(50)),
+				false, 10)) {
+			JsonObject body = JsonParser.parseString(response.body().string()).getAsJsonObject();
+			assertEquals("length",
+					body.getAsJsonArray("choices").get(0).getAsJsonObject().get("finish_reason").getAsString());
+			assertEquals(10, body.getAsJsonObject("usage").get("completion_tokens").getAsInt());
+		}
+	}
+
+	@Test
+	public void testCompletion_FixtureOverridesAnswer() throws IOException {
+		start(0, 0).addFixture(Pattern.compile("kubernetes"), "{\"title\":\"Fixture\"}");
+		try (Response response = call(classificationPrompt("All about kubernetes"), false, null)) {
+			assertTrue(response.body().string().contains("{\\\"title\\\":\\\"Fixture\\\"}"));
+		}
+	}
+
+	@Test
+	public void testCompletion_JournalReplaysRecordedAnswers() throws IOException {
+		Path file = Files.createTempFile("llm-journal", ".jsonl");
+		LlmJournal journal = new LlmJournal(file.toString());
+		String prompt = classificationPrompt("Recorded content");
+		journal.record("stub-model", prompt, "{\"title\":\"First\"}", 150, new LlmResponseDecoder.Usage(900, 40, 940));
+		journal.record("stub-model", prompt, "{\"title\":\"Second\"}", 150, new LlmResponseDecoder.Usage(900, 45, 945));
+		journal.record("other-model", classificationPrompt("Other"), "{}", 150, LlmResponseDecoder.Usage.NONE);
+		journal.close();
+		start(0, 0).loadJournal(file);
+
+		long begin = System.nanoTime();
+		JsonObject first;
+		try (Response response = call(prompt, false, null)) {
+			first = JsonParser.parseString(response.body().string()).getAsJsonObject();
+		}
+		long elapsedMillis = (System.nanoTime() - begin) / 1_000_000;
+		String second;
+		try (Response response = call(prompt, false, null)) {
+			second = response.body().string();
+		}
+		String unrecorded;
+		try (Response response = call(classificationPrompt("Other"), false, null)) {
+			unrecorded = response.body().string();
+		}
+
+		assertEquals("{\"title\":\"First\"}", first.getAsJsonArray("choices").get(0).getAsJsonObject()
+				.getAsJsonObject("message").get("content").getAsString());
+		assertEquals(900, first.getAsJsonObject("usage").get("prompt_tokens").getAsInt());
+		assertTrue("Answered in " + elapsedMillis + " ms", elapsedMillis >= 150);
+		assertTrue(second.contains("Second"));
+		// Recorded for another model: generated answer
+		assertTrue(unrecorded.contains("detailedContent"));
+	}
+
+	@Test
+	public void testFaults_RateLimitAndServerErrors() throws IOException {
+		start(0, 1);
+		try (Response response = call("hello", false, null)) {
+			assertEquals(429, response.code());
+			assertEquals("1", response.header("Retry-After"));
+		}
+		stub.stop();
+
+		start(1, 0);
+		try (Response response = call("hello", false, null)) {
+			assertEquals(500, response.code());
+		}
+		assertEquals(1, stub.getRequestCount());
+	}
+}
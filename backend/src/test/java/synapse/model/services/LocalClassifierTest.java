@@ -0,0 +1,125 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for LocalClassifier, trained on notes written as
+ * NoteMarkdownStorageService saves them.
+ */
+public class LocalClassifierTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String[] FOOTBALL = { "El Real Madrid gana la liga tras el partido contra el Getafe",
+			"Vinicius marca dos goles y el equipo lidera la liga", "El entrenador del Getafe analiza el partido",
+			"La liga española vuelve este fin de semana con el derbi", "El Real Madrid ficha a un defensa" };
+
+	private static final String[] CODE = { "Instalar PostgreSQL en macOS con Homebrew y configurar el servicio",
+			"Configurar Spring Boot con PostgreSQL y migraciones de esquema", "Comandos de Homebrew para instalar Java",
+			"Crear un índice en PostgreSQL para acelerar consultas", "Spring Boot: configurar el pool de conexiones" };
+
+	private void writeNote(Path dir, String id, String type, String destination, String body, String... tags)
+			throws IOException {
+		StringBuilder md = new StringBuilder("---\nid: \"" + id + "\"\ntitle: \"Nota\"\ndestination: \""
+				+ destination + "\"\ntype: \"" + type + "\"\ncreatedAt: \"2026-02-28T12:46:29.552Z\"\n");
+		if (tags.length > 0) {
+			md.append("tags:\n");
+			for (String tag : tags) {
+				md.append("  - \"").append(tag).append("\"\n");
+			}
+		}
+		md.append("---\n\n").append(body).append('\n');
+		Files.writeString(dir.resolve(id + ".md"), md.toString(), StandardCharsets.UTF_8);
+	}
+
+	private Path corpus(int copies) throws IOException {
+		Path dir = folder.newFolder("notes").toPath();
+		for (int c = 0; c < copies; c++) {
+			for (int i = 0; i < FOOTBALL.length; i++) {
+				writeNote(dir, "note-f" + c + "-" + i, "link", "recurso", FOOTBALL[i], "futbol-espanol", "liga");
+				writeNote(dir, "note-c" + c + "-" + i, "codigo", "apunte", CODE[i], "postgresql", "macos");
+			}
+		}
+		Files.writeString(dir.resolve("README.md"), "Sin front matter", StandardCharsets.UTF_8);
+		return dir;
+	}
+
+	@Test
+	public void testTrain_LearnsLabelsFromFrontMatter() throws IOException {
+		LocalClassifier classifier = new LocalClassifier(true, 0.6, 1, 0);
+		classifier.train(corpus(2));
+
+		assertEquals(20, classifier.size());
+		LocalClassifier.Prediction football = classifier.predict("El Getafe pierde el partido de liga");
+		assertEquals("article", football.type());
+		assertEquals("resource", football.destination());
+		assertEquals("futbol-espanol", football.tags().get(0));
+		assertTrue(football.tags().contains("liga"));
+
+		LocalClassifier.Prediction code = classifier.predict("Cómo instalar PostgreSQL con Homebrew");
+		assertEquals("code", code.type());
+		assertEquals("note", code.destination());
+	}
+
+	@Test
+	public void testConfidentPrediction_RequiresExamplesAndThreshold() throws IOException {
+		Path dir = corpus(2);
+		LocalClassifier untrained = new LocalClassifier(true, 0.6, 100, 0);
+		untrained.train(dir);
+		assertNull(untrained.confidentPrediction("El Getafe pierde el partido de liga"));
+
+		LocalClassifier strict = new LocalClassifier(true, 0.999, 1, 0);
+		strict.train(dir);
+		assertNull(strict.confidentPrediction("Resumen de la semana"));
+		assertEquals(1, strict.getSent());
+
+		LocalClassifier classifier = new LocalClassifier(true, 0.6, 1, 0);
+		classifier.train(dir);
+		assertNotNull(classifier.confidentPrediction("El Getafe pierde el partido de liga contra el Real Madrid"));
+		assertEquals(1, classifier.getSkipped());
+	}
+
+	@Test
+	public void testLearn_IncrementalAndOncePerNote() {
+		LocalClassifier classifier = new LocalClassifier(true, 0.6, 1, 0);
+		classifier.learn("note-1", "link", "recurso", new String[] { "liga" }, FOOTBALL[0]);
+		classifier.learn("note-1", "link", "recurso", new String[] { "liga" }, FOOTBALL[0]);
+		classifier.learn("note-2", "", "recurso", null, FOOTBALL[1]);
+		classifier.learn("note-3", "codigo", "apunte", null, CODE[0]);
+
+		assertEquals(2, classifier.size());
+		assertEquals("code", classifier.predict("Instalar PostgreSQL").type());
+	}
+
+	@Test
+	public void testHoldout_MeasuresAgreementWithoutLearning() throws IOException {
+		LocalClassifier classifier = new LocalClassifier(true, 0.6, 1, 50);
+		classifier.train(corpus(6));
+
+		assertTrue(classifier.size() > 0 && classifier.size() < 60);
+		assertEquals(1.0, classifier.typeAccuracy(), 0.1);
+		assertEquals(1.0, classifier.destinationAccuracy(), 0.1);
+	}
+
+	@Test
+	public void testFeatures_FoldedDistinctWords() {
+		assertEquals(LocalClassifier.features("Fútbol FUTBOL futbol").length, 1);
+		int[] accented = LocalClassifier.features("Instalación de PostgreSQL");
+		int[] plain = LocalClassifier.features("instalacion DE postgresql");
+		assertEquals(java.util.Arrays.toString(plain), java.util.Arrays.toString(accented));
+		assertEquals(0, LocalClassifier.features("a").length);
+	}
+}
@@ -0,0 +1,60 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import synapse.model.services.LlamaAIService.ClassificationResult;
+
+/**
+ * Tests that broken JSON answers are repaired against the LLM stub instead
+ * of falling back to the local result.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = { "project.llama.stub.latencyMedianMs=0", "project.llama.stub.latencyP99Ms=0" })
+@ActiveProfiles({ "test", "llm-stub" })
+public class MalformedResponseTest {
+
+	@Autowired
+	private LlamaAIService llamaAIService;
+
+	@Autowired
+	private LlmStubServer stub;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	private double salvaged() {
+		return meterRegistry.find("llm.malformed.responses").tag("outcome", "salvaged").counters().stream()
+				.mapToDouble(counter -> counter.count()).sum();
+	}
+
+	@Test
+	public void testClassify_TruncatedAnswerWithTrailingCommaIsSalvaged() {
+		stub.addFixture(Pattern.compile("Zeppelin airships"),
+				"{\"type\":\"article\",\"title\":\"Zeppelin airships\",\n"
+						+ "\"tags\":[\"zeppelin\",\"airships\",\"aviation-history\",],\n"
+						+ "\"destination\":\"resource\",\n\"summary\":\"Rigid airships flew passengers across the Atl");
+		double before = salvaged();
+
+		ClassificationResult result = llamaAIService.classifyContent(
+				"Title: Zeppelin airships\nRigid airships carried passengers across the Atlantic in the 1930s.");
+
+		assertFalse(result.isFallback());
+		assertEquals("article", result.getType());
+		assertEquals("Zeppelin airships", result.getTitle());
+		assertEquals("resource", result.getDestination());
+		assertArrayEquals(new String[] { "zeppelin", "airships", "aviation-history" }, result.getTags());
+		assertEquals(1, salvaged() - before, 0);
+	}
+}
@@ -0,0 +1,70 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for NaiveBayes.
+ */
+public class NaiveBayesTest {
+
+	@Test
+	public void testPredict_MostProbableFirst() {
+		NaiveBayes bayes = new NaiveBayes();
+		bayes.add(new int[] { 1, 2, 3 }, "sports");
+		bayes.add(new int[] { 1, 2, 4 }, "sports");
+		bayes.add(new int[] { 7, 8, 9 }, "code");
+
+		List<NaiveBayes.Prediction> predictions = bayes.predict(new int[] { 1, 2, 5 }, 1);
+
+		assertEquals("sports", predictions.get(0).label());
+		assertEquals("code", predictions.get(1).label());
+		assertEquals(1.0, predictions.get(0).probability() + predictions.get(1).probability(), 1e-9);
+		assertEquals(3, bayes.size());
+	}
+
+	@Test
+	public void testPredict_MinDocsExcludesRareClasses() {
+		NaiveBayes bayes = new NaiveBayes();
+		bayes.add(new int[] { 1, 2 }, "sports");
+		bayes.add(new int[] { 1, 3 }, "sports");
+		bayes.add(new int[] { 1, 2 }, "football");
+
+		List<NaiveBayes.Prediction> predictions = bayes.predict(new int[] { 1, 2 }, 2);
+
+		assertEquals(1, predictions.size());
+		assertEquals("sports", predictions.get(0).label());
+	}
+
+	@Test
+	public void testPredict_EmptyWithoutExamplesOrFeatures() {
+		NaiveBayes bayes = new NaiveBayes();
+
+		assertTrue(bayes.predict(new int[] { 1 }, 1).isEmpty());
+		bayes.add(new int[] { 1 }, "note");
+		assertTrue(bayes.predict(new int[0], 1).isEmpty());
+	}
+
+	@Test
+	public void testPredict_LongTextsAreNotCertain() {
+		NaiveBayes bayes = new NaiveBayes();
+		for (int i = 0; i < 20; i++) {
+			bayes.add(new int[] { 1, 2, 100 + i }, "sports");
+			bayes.add(new int[] { 1, 3, 200 + i }, "code");
+		}
+		int[] features = new int[300];
+		for (int i = 0; i < features.length; i++) {
+			features[i] = 1000 + i;
+		}
+		features[0] = 2;
+
+		NaiveBayes.Prediction top = bayes.predict(features, 1).get(0);
+
+		assertEquals("sports", top.label());
+		assertTrue("Probability " + top.probability(), top.probability() < 0.9);
+	}
+}
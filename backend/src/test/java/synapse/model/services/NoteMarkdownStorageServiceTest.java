@@ -0,0 +1,67 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import synapse.model.common.exceptions.InstanceNotFoundException;
+import synapse.rest.dtos.SaveNoteParamsDto;
+
+/**
+ * Tests for NoteMarkdownStorageService (reading notes back and storing their
+ * generated details).
+ */
+public class NoteMarkdownStorageServiceTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private SaveNoteParamsDto note() {
+		SaveNoteParamsDto note = new SaveNoteParamsDto();
+		note.setNoteId("note-1");
+		note.setTitle("El \"stopper\" de Vinicius");
+		note.setContent("# El stopper de Vinicius\n\nhttps://www.mundodeportivo.com/futbol");
+		note.setCreatedAt("2026-02-28T12:46:29.552Z");
+		return note;
+	}
+
+	@Test
+	public void testReadNote_TitleAndBodyWithoutFrontMatter() throws Exception {
+		NoteMarkdownStorageService storage = new NoteMarkdownStorageService(folder.getRoot().getPath());
+		String storageId = storage.saveNote(note()).getStorageId();
+
+		NoteMarkdownStorageService.StoredNote stored = storage.readNote(storageId);
+
+		assertEquals("El \"stopper\" de Vinicius", stored.getTitle());
+		assertEquals("# El stopper de Vinicius\n\nhttps://www.mundodeportivo.com/futbol", stored.getBody());
+		assertNull(stored.getDetailedContent());
+	}
+
+	@Test
+	public void testSaveDetails_StoredOnce() throws Exception {
+		NoteMarkdownStorageService storage = new NoteMarkdownStorageService(folder.getRoot().getPath());
+		String storageId = storage.saveNote(note()).getStorageId();
+
+		assertTrue(storage.saveDetails(storageId, "# Detalle\n\n## Resumen\n\nEl Getafe frena a Vinicius.\n"));
+		assertFalse(storage.saveDetails(storageId, "# Otro detalle"));
+
+		NoteMarkdownStorageService.StoredNote stored = storage.readNote(storageId);
+		assertEquals("# Detalle\n\n## Resumen\n\nEl Getafe frena a Vinicius.", stored.getDetailedContent());
+		assertEquals("# El stopper de Vinicius\n\nhttps://www.mundodeportivo.com/futbol", stored.getBody());
+		String markdown = Files.readString(folder.getRoot().toPath().resolve(storageId), StandardCharsets.UTF_8);
+		assertTrue(markdown.startsWith("---\nid: \"note-1\""));
+	}
+
+	@Test(expected = InstanceNotFoundException.class)
+	public void testReadNote_PathTraversalIsNotFound() throws Exception {
+		new NoteMarkdownStorageService(folder.getRoot().getPath()).readNote("../secrets.md");
+	}
+}
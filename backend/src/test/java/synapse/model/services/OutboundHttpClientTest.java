@@ -0,0 +1,121 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import synapse.config.HttpClientProperties;
+
+/**
+ * Tests for OutboundHttpClient (connection reuse, size cap, metrics) and
+ * page fetches through it.
+ */
+public class OutboundHttpClientTest {
+
+	private HttpServer server;
+	private SimpleMeterRegistry registry;
+	private OutboundHttpClient httpClient;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		route("/small", "text/plain", "hello".getBytes(StandardCharsets.UTF_8));
+		route("/large", "text/plain", new byte[64 * 1024]);
+		route("/page", "text/html; charset=ISO-8859-1",
+				"<html><head><title>Canción de otoño</title></head><body><article><p>Texto del artículo.</p></article></body></html>"
+						.getBytes(StandardCharsets.ISO_8859_1));
+		route("/file.pdf", "application/pdf", "%PDF-1.4".getBytes(StandardCharsets.US_ASCII));
+		server.start();
+
+		HttpClientProperties properties = new HttpClientProperties();
+		HttpClientProperties.Destination extraction = new HttpClientProperties.Destination();
+		extraction.setMaxResponseBytes(16 * 1024);
+		properties.getDestinations().put(OutboundHttpClient.EXTRACTION, extraction);
+		registry = new SimpleMeterRegistry();
+		httpClient = new OutboundHttpClient(properties, registry);
+	}
+
+	@After
+	public void tearDown() {
+		httpClient.shutdown();
+		server.stop(0);
+	}
+
+	private void route(String path, String contentType, byte[] body) {
+		server.createContext(path, exchange -> {
+			exchange.getResponseHeaders().add("Content-Type", contentType);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+	}
+
+	private String url(String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	private byte[] get(OkHttpClient client, String path) throws IOException {
+		try (Response response = client.newCall(new Request.Builder().url(url(path)).build()).execute()) {
+			return response.body().bytes();
+		}
+	}
+
+	private double connections(String destination, String reused) {
+		return registry.get("http.client.connections").tags("destination", destination, "reused", reused).counter()
+				.count();
+	}
+
+	@Test
+	public void testClient_ReusesConnectionsAcrossDestinations() throws IOException {
+		get(httpClient.client(OutboundHttpClient.EXTRACTION), "/small");
+		get(httpClient.client(OutboundHttpClient.EXTRACTION), "/small");
+		get(httpClient.client(OutboundHttpClient.LLM), "/small");
+
+		assertEquals(1, connections(OutboundHttpClient.EXTRACTION, "false"), 0);
+		assertEquals(1, connections(OutboundHttpClient.EXTRACTION, "true"), 0);
+		assertEquals(1, connections(OutboundHttpClient.LLM, "true"), 0);
+		assertEquals(2, registry.get("http.client.ttfb").tag("destination", OutboundHttpClient.EXTRACTION).timer()
+				.count());
+		assertEquals(1, registry.get("http.client.connect").tag("destination", OutboundHttpClient.EXTRACTION)
+				.timer().count());
+		assertEquals(0, registry.get("http.client.active").tag("destination", OutboundHttpClient.EXTRACTION)
+				.gauge().value(), 0);
+	}
+
+	@Test
+	public void testClient_CutsBodiesAtTheDestinationCap() throws IOException {
+		assertEquals(16 * 1024, get(httpClient.client(OutboundHttpClient.EXTRACTION), "/large").length);
+		assertEquals(64 * 1024, get(httpClient.client(OutboundHttpClient.LLM), "/large").length);
+		assertEquals(5, get(httpClient.client(OutboundHttpClient.EXTRACTION), "/small").length);
+
+		assertEquals(1, registry.get("http.client.truncated").tag("destination", OutboundHttpClient.EXTRACTION)
+				.counter().count(), 0);
+	}
+
+	@Test
+	public void testExtraction_FetchesPagesThroughTheSharedClient() {
+		ContentExtractionService extraction = new ContentExtractionService(httpClient);
+
+		ContentExtractionService.ExtractedContent page = extraction.extractContent(url("/page"));
+		ContentExtractionService.ExtractedContent pdf = extraction.extractContent(url("/file.pdf"));
+
+		assertEquals("Canción de otoño", page.getTitle());
+		assertEquals("Texto del artículo.", page.getContent());
+		assertTrue(pdf.getContent().startsWith("Error extracting content: Unhandled content type"));
+	}
+}
@@ -0,0 +1,95 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.jsoup.Jsoup;
+import org.junit.Test;
+
+/**
+ * Tests for PromptCompactor on pages from the prompt corpus
+ * (src/test/resources/prompt-corpus), run through the same extraction and
+ * formatting as a suggestion for a URL.
+ */
+public class PromptCompactorTest {
+
+	private static final String LEAD = "Álvaro Arbeloa se atreve con lo que nadie se había atrevido";
+
+	private final PromptCompactor compactor = new PromptCompactor(2500);
+
+	@Test
+	public void testCompact_ShortContentIsUnchanged() {
+		String note = "Receta de tortilla de patatas\nHuevos, patatas y cebolla.";
+
+		assertEquals(note, compactor.compact(note));
+	}
+
+	@Test
+	public void testCompact_DropsBoilerplateAndDuplicates() throws IOException {
+		String page = extractedPage("news-article.html");
+
+		String compacted = compactor.compact(page);
+
+		assertTrue(compacted.startsWith("Title: Arbeloa se atreve con lo que nadie"));
+		assertTrue(compacted.contains("Description: "));
+		assertTrue(compacted.contains("los canteranos han disputado más de 1.800 minutos"));
+		assertFalse(compacted.contains("Utilizamos cookies"));
+		assertFalse(compacted.contains("Me gusta"));
+		assertFalse(compacted.contains("Publicidad"));
+		// The pull quote repeats the lead sentence
+		assertEquals(compacted.indexOf(LEAD), compacted.lastIndexOf(LEAD));
+		assertTrue(TokenEstimator.estimate(compacted) < TokenEstimator.estimate(page));
+	}
+
+	@Test
+	public void testCompact_FitsBudgetKeepingHeadersAndOrder() throws IOException {
+		String page = extractedPage("news-article.html");
+
+		String compacted = compactor.compact(page, 400);
+
+		assertTrue(TokenEstimator.estimate(compacted) <= 400);
+		assertTrue(compacted.startsWith("Title: "));
+		assertTrue(compacted.contains("Arbeloa"));
+		int lead = compacted.indexOf("Arbeloa dirigió");
+		int later = compacted.indexOf("Arbeloa, por su parte");
+		assertTrue(lead < 0 || later < 0 || lead < later);
+	}
+
+	@Test
+	public void testExtraction_KeepsBlocksAndCodeLines() throws IOException {
+		String page = extractedPage("tutorial.html");
+
+		assertTrue(page.contains("\nStep 2 — Installing PostgreSQL\n"));
+		assertTrue(page.contains("createuser --pwprompt appuser\ncreatedb --owner=appuser appdb"));
+		assertFalse(page.contains("Accept all"));
+		assertFalse(page.contains("Thanks, this worked"));
+	}
+
+	@Test
+	public void testTokenEstimator() {
+		assertEquals(0, TokenEstimator.estimate(""));
+		assertEquals(TokenEstimator.estimate("hello world"), 2);
+		assertTrue(TokenEstimator.estimate("https://www.marca.com/futbol/real-madrid/2026/02/28/arbeloa.html") > 10);
+	}
+
+	/**
+	 * Extracts a corpus page and formats it like BrainSuggestionService does
+	 * for URLs.
+	 */
+	private String extractedPage(String name) throws IOException {
+		String html;
+		try (InputStream in = getClass().getResourceAsStream("/prompt-corpus/" + name)) {
+			html = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+		ContentExtractionService.ExtractedContent extracted = new ContentExtractionService(null)
+				.extractWebPageContent(Jsoup.parse(html), "https://example.com/" + name);
+		return "Title: " + extracted.getTitle() + "\n\n"
+				+ "Description: " + extracted.getDescription() + "\n\n"
+				+ "Content: " + extracted.getContent();
+	}
+}
@@ -0,0 +1,107 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests for SingleFlight (coalescing of concurrent identical calls).
+ */
+public class SingleFlightTest {
+
+	@Test
+	public void testExecute_ConcurrentCallersShareOneCall() throws Exception {
+		SingleFlight<String, String> flight = new SingleFlight<>();
+		AtomicInteger calls = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+
+		try {
+			Future<String> first = pool.submit(() -> flight.execute("k", () -> {
+				calls.incrementAndGet();
+				release.await(5, TimeUnit.SECONDS);
+				return "result";
+			}));
+			waitUntil(() -> flight.inFlightCount() == 1);
+
+			Future<String> second = pool.submit(() -> flight.execute("k", () -> {
+				calls.incrementAndGet();
+				return "other";
+			}));
+			waitUntil(() -> flight.getShared() == 1);
+			release.countDown();
+
+			assertEquals("result", first.get(5, TimeUnit.SECONDS));
+			assertEquals("result", second.get(5, TimeUnit.SECONDS));
+			assertEquals(1, calls.get());
+			assertEquals(0, flight.inFlightCount());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testExecute_FailureReachesEveryWaiter() throws Exception {
+		SingleFlight<String, String> flight = new SingleFlight<>();
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+
+		try {
+			Future<String> first = pool.submit(() -> flight.execute("k", () -> {
+				release.await(5, TimeUnit.SECONDS);
+				throw new IOException("upstream down");
+			}));
+			waitUntil(() -> flight.inFlightCount() == 1);
+
+			Future<String> second = pool.submit(() -> flight.execute("k", () -> "unused"));
+			waitUntil(() -> flight.getShared() == 1);
+			release.countDown();
+
+			assertFailsWithIOException(first);
+			assertFailsWithIOException(second);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testExecute_KeyIsReleasedAfterCompletion() throws Exception {
+		SingleFlight<String, Integer> flight = new SingleFlight<>();
+		AtomicInteger calls = new AtomicInteger();
+
+		flight.execute("k", calls::incrementAndGet);
+		flight.execute("k", calls::incrementAndGet);
+
+		assertEquals(2, calls.get());
+		assertEquals(2, flight.getExecutions());
+	}
+
+	private void assertFailsWithIOException(Future<String> future) throws Exception {
+		try {
+			future.get(5, TimeUnit.SECONDS);
+		} catch (java.util.concurrent.ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+			return;
+		}
+		throw new AssertionError("Expected failure");
+	}
+
+	private void waitUntil(java.util.function.BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!condition.getAsBoolean()) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new AssertionError("Condition not met in time");
+			}
+			Thread.sleep(5);
+		}
+	}
+}
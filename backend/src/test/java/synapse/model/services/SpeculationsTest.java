@@ -0,0 +1,91 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Tests for Speculations (retention and spend cap of speculative work).
+ */
+public class SpeculationsTest {
+
+	private final AtomicLong now = new AtomicLong();
+	private final AtomicInteger calls = new AtomicInteger();
+	private final CompletableFuture<String> pending = new CompletableFuture<>();
+
+	private CompletableFuture<String> work(String input) {
+		calls.incrementAndGet();
+		return pending;
+	}
+
+	@Test
+	public void testOffer_KeepsInputAndResultUntilTheTtl() {
+		Speculations<String, String> speculations = new Speculations<>(1000, 10, 4, 10_000, now::get);
+
+		assertTrue(speculations.offer("https://example.com/a", "page", 100, this::work));
+		assertFalse(speculations.offer("https://example.com/a", "page", 100, this::work));
+		Speculations.Entry<String, String> entry = speculations.get("https://example.com/a");
+
+		assertEquals(1, calls.get());
+		assertEquals("page", entry.input());
+		assertSame(pending, entry.result());
+		now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		assertNull(speculations.get("https://example.com/a"));
+		assertEquals(0, speculations.size());
+	}
+
+	@Test
+	public void testOffer_SpendCapKeepsTheInputOnly() {
+		Speculations<String, String> speculations = new Speculations<>(600_000, 10, 1, 1000, now::get);
+
+		assertTrue(speculations.offer("a", "page a", 400, this::work));
+		// One call at a time
+		assertFalse(speculations.offer("b", "page b", 400, this::work));
+		pending.complete("done");
+		assertTrue(speculations.offer("c", "page c", 400, input -> CompletableFuture.completedFuture("c")));
+		// 800 of the 1000 tokens per minute are spent
+		assertFalse(speculations.offer("d", "page d", 400, this::work));
+		now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+		assertTrue(speculations.offer("e", "page e", 400, this::work));
+
+		assertEquals("page b", speculations.get("b").input());
+		assertNull(speculations.get("b").result());
+		assertEquals(3, speculations.getStarted());
+		assertEquals(2, speculations.getSkipped());
+	}
+
+	@Test
+	public void testOffer_DropsTheOldestBeyondMaxEntries() {
+		Speculations<String, String> speculations = new Speculations<>(60_000, 2, 10, 100_000, now::get);
+
+		speculations.offer("a", "page a", 10, this::work);
+		speculations.offer("b", "page b", 10, this::work);
+		speculations.offer("c", "page c", 10, this::work);
+
+		assertNull(speculations.get("a"));
+		assertEquals("page c", speculations.get("c").input());
+		assertEquals(2, speculations.size());
+	}
+
+	@Test
+	public void testUse_OnlyUsesAreCounted() {
+		Speculations<String, String> speculations = new Speculations<>(60_000, 10, 4, 10_000, now::get);
+		speculations.offer("a", "page a", 10, this::work);
+
+		speculations.get("a");
+		speculations.get("a");
+		assertEquals(0, speculations.getUsed());
+		assertEquals("page a", speculations.use("a").input());
+		assertNull(speculations.use("b"));
+		assertEquals(1, speculations.getUsed());
+	}
+}
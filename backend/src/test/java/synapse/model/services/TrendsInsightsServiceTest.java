@@ -0,0 +1,103 @@
+package synapse.model.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import synapse.rest.dtos.TrendsInsightsParamsDto;
+import synapse.rest.dtos.TrendsInsightsResponseDto;
+
+/**
+ * Tests for TrendsInsightsService (per-user reuse of trend insights).
+ */
+public class TrendsInsightsServiceTest {
+
+	private final List<CompletableFuture<TrendsInsightsResponseDto>> generations = new ArrayList<>();
+
+	private final TrendsInsightsService service = new TrendsInsightsService(params -> {
+		CompletableFuture<TrendsInsightsResponseDto> generation = new CompletableFuture<>();
+		generations.add(generation);
+		return generation;
+	}, 0.2, 60_000, 100, Clock.fixed(Instant.EPOCH, ZoneOffset.UTC));
+
+	private static TrendsInsightsParamsDto radar(int javaRecent, int cookingRecent) {
+		TrendsInsightsParamsDto params = new TrendsInsightsParamsDto();
+		params.setWindowDays(30);
+		params.setTopics(List.of(topic("Java", javaRecent, 10), topic("Cooking", cookingRecent, 5)));
+		params.setItems(List.of());
+		return params;
+	}
+
+	private static TrendsInsightsParamsDto.TopicCountDto topic(String name, int recent, int previous) {
+		TrendsInsightsParamsDto.TopicCountDto topic = new TrendsInsightsParamsDto.TopicCountDto();
+		topic.setTopic(name);
+		topic.setRecentCount(recent);
+		topic.setPreviousCount(previous);
+		return topic;
+	}
+
+	private static TrendsInsightsResponseDto insights(String text) {
+		return new TrendsInsightsResponseDto(Map.of(), List.of(text), List.of());
+	}
+
+	@Test
+	public void testInsights_ReusedWhileCountsStayClose() {
+		CompletableFuture<TrendsInsightsResponseDto> first = service.insightsAsync(1L, radar(12, 4));
+		TrendsInsightsResponseDto generated = insights("More Java lately");
+		generations.get(0).complete(generated);
+
+		TrendsInsightsResponseDto again = service.insightsAsync(1L, radar(13, 4)).join();
+
+		assertSame(generated, first.join());
+		assertSame(generated, again);
+		assertEquals(1, generations.size());
+	}
+
+	@Test
+	public void testInsights_DriftServesCachedAndRegeneratesInBackground() {
+		service.insightsAsync(1L, radar(12, 4));
+		TrendsInsightsResponseDto old = insights("More Java lately");
+		generations.get(0).complete(old);
+
+		CompletableFuture<TrendsInsightsResponseDto> drifted = service.insightsAsync(1L, radar(2, 30));
+		assertTrue(drifted.isDone());
+		assertSame(old, drifted.join());
+		// One background generation at a time
+		service.insightsAsync(1L, radar(2, 30));
+		assertEquals(2, generations.size());
+
+		TrendsInsightsResponseDto fresh = insights("Cooking took over");
+		generations.get(1).complete(fresh);
+		assertSame(fresh, service.insightsAsync(1L, radar(2, 30)).join());
+	}
+
+	@Test
+	public void testInsights_PerUserAndNotCachedWhenEmpty() {
+		service.insightsAsync(1L, radar(12, 4));
+		generations.get(0).complete(new TrendsInsightsResponseDto());
+		service.insightsAsync(1L, radar(12, 4));
+		service.insightsAsync(2L, radar(12, 4));
+
+		assertEquals(3, generations.size());
+	}
+
+	@Test
+	public void testDistance() {
+		Map<String, Integer> base = TrendsInsightsService.signature(radar(10, 10));
+
+		assertEquals(0, TrendsInsightsService.distance(base, TrendsInsightsService.signature(radar(10, 10))), 1e-9);
+		assertEquals(2.0 / 72, TrendsInsightsService.distance(base, TrendsInsightsService.signature(radar(12, 10))),
+				1e-9);
+		assertEquals(1, TrendsInsightsService.distance(base, Map.of("other#recent", 5)), 1e-9);
+	}
+}
@@ -1,9 +1,17 @@
 package synapse.rest.controllers;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import java.util.List;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,22 +22,27 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import synapse.model.entities.User;
 import synapse.model.entities.UserDao;
+import synapse.model.services.NoteMarkdownStorageService;
 import synapse.model.services.exceptions.IncorrectLoginException;
 import synapse.rest.dtos.AuthenticatedUserDto;
+import synapse.rest.dtos.BrainSuggestBatchParamsDto;
 import synapse.rest.dtos.BrainSuggestParamsDto;
 import synapse.rest.dtos.LoginParamsDto;
+import synapse.rest.dtos.SaveNoteParamsDto;
 
 /**
  * Tests for BrainController (suggestions endpoint).
+ * The LLM API key is blanked so the AI path uses the local fallback offline.
  */
 @RunWith(SpringRunner.class)
-@SpringBootTest
+@SpringBootTest(properties = "project.llama.apiKey=")
 @AutoConfigureMockMvc
 @ActiveProfiles("test")
 @Transactional
@@ -49,6 +62,9 @@ public class BrainControllerTest {
 	@Autowired
 	private SessionController sessionController;
 
+	@Autowired
+	private NoteMarkdownStorageService noteMarkdownStorageService;
+
 	private final ObjectMapper mapper = new ObjectMapper();
 
 	private String getAuthToken() throws IncorrectLoginException {
@@ -86,4 +102,125 @@ public class BrainControllerTest {
 				.content(mapper.writeValueAsBytes(params)))
 				.andExpect(status().isBadRequest());
 	}
+
+	@Test
+	public void testSuggest_Text_CompletesAsynchronously() throws Exception {
+		String token = getAuthToken();
+		BrainSuggestParamsDto params = new BrainSuggestParamsDto("Receta de tortilla de patatas\nHuevos, patatas y cebolla.");
+		MvcResult result = mockMvc.perform(post("/api/brains/suggestions")
+				.header("Authorization", "Bearer " + token)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(mapper.writeValueAsBytes(params)))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.title").value("Receta de tortilla de patatas"))
+				.andExpect(jsonPath("$.destination").value("note"))
+				.andExpect(jsonPath("$.fallback").value(true));
+	}
+
+	@Test
+	public void testSuggestStream_EmitsResultEvent() throws Exception {
+		String token = getAuthToken();
+		BrainSuggestParamsDto params = new BrainSuggestParamsDto("Notas sobre la reunion del lunes con el equipo");
+		MvcResult result = mockMvc.perform(post("/api/brains/suggestions/stream")
+				.header("Authorization", "Bearer " + token)
+				.contentType(MediaType.APPLICATION_JSON)
+				.accept(MediaType.TEXT_EVENT_STREAM)
+				.content(mapper.writeValueAsBytes(params)))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("event:result")))
+				.andExpect(content().string(containsString("Notas sobre la reunion del lunes con el equipo")));
+	}
+
+	@Test
+	public void testSuggestBatch_ReturnsOneResultPerContentInOrder() throws Exception {
+		String token = getAuthToken();
+		BrainSuggestBatchParamsDto params = new BrainSuggestBatchParamsDto(List.of(
+				"Receta de tortilla de patatas\nHuevos, patatas y cebolla.",
+				"",
+				"Comprar entradas para el concierto del viernes"));
+		MvcResult result = mockMvc.perform(post("/api/brains/suggestions/batch")
+				.header("Authorization", "Bearer " + token)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(mapper.writeValueAsBytes(params)))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+
+		mockMvc.perform(asyncDispatch(result))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(3))
+				.andExpect(jsonPath("$[0].title").value("Receta de tortilla de patatas"))
+				.andExpect(jsonPath("$[1].title").value("Note"))
+				.andExpect(jsonPath("$[2].title").value("Comprar entradas para el concierto del viernes"));
+	}
+
+	@Test
+	public void testSuggestBatch_EmptyList_ReturnsBadRequest() throws Exception {
+		String token = getAuthToken();
+		mockMvc.perform(post("/api/brains/suggestions/batch")
+				.header("Authorization", "Bearer " + token)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(mapper.writeValueAsBytes(new BrainSuggestBatchParamsDto(List.of()))))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void testNoteDetails_FallbackIsNotStored() throws Exception {
+		String token = getAuthToken();
+		SaveNoteParamsDto note = new SaveNoteParamsDto();
+		note.setNoteId("note-details-test");
+		note.setTitle("Instalar PostgreSQL en macOS");
+		note.setContent("# Instalar PostgreSQL en macOS\n\nbrew install postgresql@16");
+		MvcResult saved = mockMvc.perform(post("/api/brains/notes")
+				.header("Authorization", "Bearer " + token)
+				.contentType(MediaType.APPLICATION_JSON)
+				.content(mapper.writeValueAsBytes(note)))
+				.andExpect(status().isCreated())
+				.andReturn();
+		String storageId = mapper.readTree(saved.getResponse().getContentAsString()).get("storageId").asText();
+
+		try {
+			MvcResult result = mockMvc.perform(get("/api/brains/notes/" + storageId + "/details")
+					.header("Authorization", "Bearer " + token))
+					.andExpect(request().asyncStarted())
+					.andReturn();
+
+			mockMvc.perform(asyncDispatch(result))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.storageId").value(storageId))
+					.andExpect(jsonPath("$.fallback").value(true))
+					.andExpect(jsonPath("$.detailedContent").value(containsString("brew install postgresql@16")));
+			assertNull(noteMarkdownStorageService.readNote(storageId).getDetailedContent());
+		} finally {
+			// The local classifier trains on the notes directory
+			noteMarkdownStorageService.deleteByStorageId(storageId);
+		}
+	}
+
+	@Test
+	public void testNoteDetails_UnknownNote_ReturnsNotFound() throws Exception {
+		String token = getAuthToken();
+		mockMvc.perform(get("/api/brains/notes/missing-note.md/details")
+				.header("Authorization", "Bearer " + token))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	public void testMetrics_RequireAuthentication() throws Exception {
+		mockMvc.perform(get("/actuator/metrics"))
+				.andExpect(status().isForbidden());
+
+		String token = getAuthToken();
+		mockMvc.perform(get("/actuator/metrics")
+				.header("Authorization", "Bearer " + token))
+				.andExpect(status().isOk())
+				.andExpect(content().string(containsString("llm.cache")));
+	}
 }
@@ -6,8 +6,8 @@ import { extractFirstUrl, extractYouTubeId } from "../model/noteModel";
 import { buildTrendsReport } from "../model/trendsModel";
 import { downloadNoteAsFile, downloadNoteDocument } from "../model/exportModel";
 import { loadInbox } from "../repository/inboxRepository";
-import { loadNotes, deleteNoteById, toggleNoteReadStatus } from "../repository/notesRepository";
-import { deleteNoteFromBackend, deleteMediaFromBackend } from "../services/brainApiService";
+import { loadNotes, deleteNoteById, toggleNoteReadStatus, setNoteDetailedContent } from "../repository/notesRepository";
+import { deleteNoteFromBackend, deleteMediaFromBackend, loadNoteDetails } from "../services/brainApiService";
 import MarkdownRenderer from "./MarkdownRenderer";
 import "./DigitalBrainArcade.css";
 
@@ -150,6 +150,26 @@ const DigitalBrainArcade = () => {
     }
   }, [viewMode, selectedNote]);
 
+  /* Al abrir el detalle de una nota guardada: pedir su contenido detallado (se genera solo la primera vez). */
+  useEffect(() => {
+    if (viewMode !== "detail" || !selectedNote?.storageId || selectedNote.detailedContent) {
+      return;
+    }
+    const noteId = selectedNote.id;
+    loadNoteDetails(
+      selectedNote.storageId,
+      (data) => {
+        if (!data?.detailedContent || data.fallback) return;
+        const updated = setNoteDetailedContent(noteId, data.detailedContent);
+        setNotes(updated);
+        setSelectedNote((current) =>
+          current && current.id === noteId ? { ...current, detailedContent: data.detailedContent } : current
+        );
+      },
+      () => {}
+    );
+  }, [viewMode, selectedNote]);
+
   const trendsReport = useMemo(() => {
     const items = [...(notes || []), ...(inboxEntries || [])];
     return buildTrendsReport(items, { windowDays: 14, maxTopics: 7 });
@@ -696,6 +716,7 @@ const DigitalBrainArcade = () => {
                     <audio src={selectedNote.media.url} controls className="arcade-screen__audio" />
                   )}
                   <MarkdownRenderer content={selectedNote.content || ""} />
+                  {selectedNote.detailedContent && <MarkdownRenderer content={selectedNote.detailedContent} />}
                 </div>
                 <div className="arcade-screen__hint">
                   {isNoteAudio(selectedNote) ||
@@ -1,6 +1,8 @@
 import React, { useEffect, useRef, useState } from "react";
 import { useNavigate, useLocation } from "react-router-dom";
 import DigitalBrainProcessEntry from "./DigitalBrainProcessEntry";
+import { loadInbox, saveInbox } from "../repository/inboxRepository";
+import { suggestContentBatch } from "../services/brainApiService";
 import "./DigitalBrainProcessBatch.css";
 
 const TRANSITION_MS = 400;
@@ -12,6 +14,7 @@ export const DigitalBrainProcessBatch = () => {
   const [currentIndex, setCurrentIndex] = useState(0);
   const [phase, setPhase] = useState("idle"); // idle | transitioning
   const [stripOffset, setStripOffset] = useState(0);
+  const [prefetched, setPrefetched] = useState(false);
   const stripRef = useRef(null);
 
   useEffect(() => {
@@ -20,6 +23,34 @@ export const DigitalBrainProcessBatch = () => {
     }
   }, [ids, navigate]);
 
+  // Pedimos las sugerencias de todo el lote de una vez (varias entradas por
+  // llamada al LLM) y las guardamos en cada entrada; DigitalBrainProcessEntry
+  // reutiliza aiSuggestion y solo pide sugerencia a las que falten.
+  useEffect(() => {
+    if (!ids || !Array.isArray(ids) || ids.length === 0) return;
+    const pending = loadInbox().filter((item) => ids.includes(item.id) && !item.aiSuggestion);
+    if (pending.length === 0) {
+      setPrefetched(true);
+      return;
+    }
+    suggestContentBatch(
+      pending.map((item) => item.rawContent),
+      (results) => {
+        const byId = {};
+        pending.forEach((item, i) => {
+          const suggestion = results && results[i];
+          // Las respuestas locales de respaldo no se guardan: la entrada lo reintentará sola
+          if (suggestion && !suggestion.fallback) {
+            byId[item.id] = { ...suggestion, detailedContent: undefined };
+          }
+        });
+        saveInbox(loadInbox().map((item) => (byId[item.id] ? { ...item, aiSuggestion: byId[item.id] } : item)));
+        setPrefetched(true);
+      },
+      () => setPrefetched(true)
+    );
+  }, [ids]);
+
   useEffect(() => {
     if (phase !== "transitioning") return;
     const t = requestAnimationFrame(() => {
@@ -48,6 +79,18 @@ export const DigitalBrainProcessBatch = () => {
     return null;
   }
 
+  if (!prefetched) {
+    return (
+      <div className="synapse-batch">
+        <div className="synapse-batch__progress">
+          <span className="synapse-batch__progress-text">
+            Analizando {ids.length} elementos...
+          </span>
+        </div>
+      </div>
+    );
+  }
+
   const currentId = ids[currentIndex];
   const nextId = phase === "transitioning" ? ids[currentIndex + 1] : null;
 
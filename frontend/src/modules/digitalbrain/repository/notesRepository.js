@@ -69,3 +69,15 @@ export const clearNoteReminder = (noteId) => {
   saveNotes(updatedNotes);
   return updatedNotes;
 };
+
+/**
+ * Guarda el contenido detallado (Markdown generado por IA) de una nota.
+ */
+export const setNoteDetailedContent = (noteId, detailedContent) => {
+  const notes = loadNotes();
+  const updatedNotes = notes.map((note) =>
+    note.id === noteId ? { ...note, detailedContent } : note
+  );
+  saveNotes(updatedNotes);
+  return updatedNotes;
+};
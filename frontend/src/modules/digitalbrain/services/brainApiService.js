@@ -18,6 +18,20 @@ export const suggestContent = (rawContent, onSuccess, onErrors) => {
   );
 };
 
+/**
+ * Request classification suggestions for several inbox entries at once.
+ * Results come back in the same order as the contents.
+ * POST /brains/suggestions/batch
+ */
+export const suggestContentBatch = (rawContents, onSuccess, onErrors) => {
+  appFetch(
+    "/brains/suggestions/batch",
+    fetchConfig("POST", { contents: rawContents }),
+    onSuccess,
+    onErrors
+  );
+};
+
 /**
  * URL preview: extracts title/description and a snippet.
  * GET /brains/previews?url=...
@@ -69,6 +83,20 @@ export const saveNoteToBackend = (note, onSuccess, onErrors) => {
   );
 };
 
+/**
+ * Detailed Markdown of a persisted note, generated by the AI the first time
+ * it is requested and stored in the note file.
+ * GET /brains/notes/:storageId/details
+ */
+export const loadNoteDetails = (storageId, onSuccess, onErrors) => {
+  appFetch(
+    `/brains/notes/${encodeURIComponent(storageId)}/details`,
+    fetchConfig("GET"),
+    onSuccess,
+    onErrors
+  );
+};
+
 /**
  * Delete a persisted note from disk (by storageId).
  * DELETE /brains/notes/:storageId